@@ -0,0 +1,121 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.polsl.database.ConnectionPool;
+import pl.polsl.database.GasFlowRecord;
+import pl.polsl.database.HistoryReader;
+import pl.polsl.database.WriteBehindQueue;
+
+/**
+ * Benchmarks of the database insert and select paths against an embedded in-memory Derby database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class DatabaseBenchmark {
+
+    /** Number of records written per benchmark invocation. */
+    private static final int RECORDS_PER_INVOCATION = 1000;
+
+    /** Number of rows read per page. */
+    private static final int PAGE_SIZE = 1000;
+
+    /** Pool of connections to the embedded database. */
+    private ConnectionPool pool;
+
+    /** Queue writing the records. */
+    private WriteBehindQueue queue;
+
+    /** Reader of the stored history. */
+    private HistoryReader reader;
+
+    /**
+     * Creates the schema in a fresh in-memory database and fills it with rows to read.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        this.pool = new ConnectionPool("jdbc:derby:memory:benchmark;create=true", "app", "app");
+        try (Connection connection = this.pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE GasFlow "
+                + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+            statement.executeUpdate("CREATE TABLE PressureHistory "
+                + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, pressure DOUBLE,"
+                + "history_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, calculation_id INT,"
+                + "FOREIGN KEY (calculation_id) REFERENCES GasFlow(id))");
+        }
+        this.queue = new WriteBehindQueue(this.pool, 100000, 500, 5, 1000);
+        this.reader = new HistoryReader(this.pool, HistoryReader.DEFAULT_FETCH_SIZE);
+        this.insert();
+    }
+
+    /**
+     * Writes the remaining records and closes the pool.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.queue.close();
+        this.pool.close();
+    }
+
+    /**
+     * Measures writing records through the write-behind queue until they are committed.
+     *
+     * @throws SQLException If the queue rejects a record.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_INVOCATION)
+    public void insert() throws SQLException
+    {
+        long target = this.queue.getWrittenRecords() + RECORDS_PER_INVOCATION;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < RECORDS_PER_INVOCATION; i++) {
+            this.queue.submit(new GasFlowRecord(i, i / 2.0, 1013.25 + i, now));
+        }
+        while (this.queue.getWrittenRecords() < target) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Measures streaming a page of PressureHistory rows.
+     *
+     * @param blackhole Consumer of the rows.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void selectPage(Blackhole blackhole) throws SQLException
+    {
+        this.reader.readPressureHistory(0, PAGE_SIZE, (id, pressure, historyTime, calculationId) -> {
+            blackhole.consume(pressure);
+            blackhole.consume(historyTime);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pl.polsl.model.FlowProfileReplay;
+import pl.polsl.model.PressureKernel;
+import pl.polsl.model.PressureSolver;
+import pl.polsl.model.ReplayResult;
+import pl.polsl.model.RungeKuttaIntegrator;
+
+/**
+ * Benchmark of replaying a flow profile in simulated time, reported per event.
+ * The profile is a day of set-points changing every 100 ms, read from memory so parsing and
+ * integration are measured without disk access.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+public class FlowProfileReplayBenchmark {
+
+    /** Number of events in the profile. */
+    private static final int EVENTS = 864000;
+
+    /** The profile. */
+    private String profile;
+
+    /** Replay under test. */
+    private FlowProfileReplay replay;
+
+    /**
+     * Builds the profile and the replay.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        StringBuilder builder = new StringBuilder(EVENTS * 16);
+        builder.append("time,inflow,outflow\n");
+        for (int i = 0; i < EVENTS; i++) {
+            builder.append(i * 100L).append(',').append(i % 13).append(',').append(i % 7 + 3).append('\n');
+        }
+        this.profile = builder.toString();
+        this.replay = new FlowProfileReplay(
+                new PressureSolver(new RungeKuttaIntegrator(), PressureSolver.DEFAULT_MAX_STEP_MIN),
+                PressureKernel.gasConductivityFactor(5.84, 293), 5066.25, FlowProfileReplay.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Measures replaying the whole profile.
+     *
+     * @return Summary of the replay.
+     * @throws IOException Never, the profile is in memory.
+     * @throws SQLException Never, the batches are discarded.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public ReplayResult replay() throws IOException, SQLException
+    {
+        return this.replay.replay(new BufferedReader(new StringReader(this.profile), 1 << 16), 1013.25,
+                (times, inflows, outflows, pressures, count) -> { });
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pl.polsl.model.PressureIntegrator;
+import pl.polsl.model.PressureRate;
+import pl.polsl.model.PressureSolver;
+
+/**
+ * Benchmark comparing the cost and accuracy of the pressure integrators.
+ * The tank has an outflow proportional to its pressure, dp/dt = 10 - 0.5 p, which has the exact solution
+ * p(t) = 20 + (p0 - 20) e^(-0.5 t); the absolute error of each configuration is printed after the trial.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class IntegratorBenchmark {
+
+    /** Length of the integrated gap, in minutes. */
+    private static final double GAP_MIN = 30;
+
+    /** Starting pressure, in hPa. */
+    private static final double START_PRESSURE = 100;
+
+    /** Rate of change of the pressure. */
+    private static final PressureRate RATE = (time, pressure) -> 10 - 0.5 * pressure;
+
+    /** Name of the integrator. */
+    @Param({"euler", "rk4", "adaptive"})
+    public String integrator;
+
+    /** Maximum length of a sub-step, in minutes. */
+    @Param({"0.01", "0.1", "1"})
+    public double maxStepMin;
+
+    /** Solver under test. */
+    private PressureSolver solver;
+
+    /**
+     * Creates the solver.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.solver = new PressureSolver(PressureIntegrator.forName(this.integrator), this.maxStepMin);
+    }
+
+    /**
+     * Prints the error against the exact solution.
+     */
+    @TearDown(Level.Trial)
+    public void reportError()
+    {
+        double exact = 20 + (START_PRESSURE - 20) * Math.exp(-0.5 * GAP_MIN);
+        double error = Math.abs(this.integrate() - exact);
+        System.out.printf("%n%s, max step %s min: absolute error %.3e hPa%n", this.integrator, this.maxStepMin, error);
+    }
+
+    /**
+     * Measures integrating the whole gap.
+     *
+     * @return The final pressure.
+     */
+    @Benchmark
+    public double integrate()
+    {
+        return this.solver.solve(RATE, START_PRESSURE, GAP_MIN, Double.MAX_VALUE).getPressure();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pl.polsl.model.Model;
+import pl.polsl.model.PressureOverflowException;
+
+/**
+ * Benchmarks of pressure updates and history statistics at different history sizes.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ModelBenchmark {
+
+    /** Number of samples in the pressure history. */
+    @Param({"1000", "100000", "10000000"})
+    public int historySize;
+
+    /** Model under test. */
+    private Model model;
+
+    /**
+     * Creates a model with a full history of random pressures.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.model = new Model(this.historySize, null);
+        double[] history = new double[this.historySize];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 1000 + Math.random() * 100;
+        }
+        this.model.setPressureHistory(history);
+        this.model.setGasInflow(1.0);
+        this.model.setGasOutflow(1.0);
+    }
+
+    /**
+     * Closes the model.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.model.close();
+    }
+
+    /**
+     * Measures one pressure update, including the history append and eviction.
+     *
+     * @return The new pressure.
+     * @throws PressureOverflowException Never, inflow equals outflow.
+     */
+    @Benchmark
+    public double updatePressure() throws PressureOverflowException
+    {
+        this.model.updatePressure();
+        return this.model.getPressure();
+    }
+
+    /**
+     * Measures the maximum pressure query.
+     *
+     * @return The maximum pressure.
+     */
+    @Benchmark
+    public double maxPressure()
+    {
+        return this.model.getMaxPressure();
+    }
+
+    /**
+     * Measures the minimum pressure query.
+     *
+     * @return The minimum pressure.
+     */
+    @Benchmark
+    public double minPressure()
+    {
+        return this.model.getMinPressure();
+    }
+
+    /**
+     * Measures the average pressure query.
+     *
+     * @return The average pressure.
+     */
+    @Benchmark
+    public double averagePressure()
+    {
+        return this.model.getAveragePressure();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pl.polsl.metrics.MetricsRegistry;
+import pl.polsl.model.OverflowPredictor;
+import pl.polsl.model.PressureKernel;
+import pl.polsl.model.TankState;
+
+/**
+ * Benchmark of the overflow predictor with many tanks: re-predicting one tank after a flow change,
+ * and one tick of the wheel while every tank has an alert pending.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class OverflowPredictorBenchmark {
+
+    /** Number of tanks with pending alerts. */
+    @Param({"1000", "100000"})
+    public int tanks;
+
+    /** Gas conductivity factor of every tank. */
+    private final double factor = PressureKernel.gasConductivityFactor(5.84, 293);
+
+    /** Predictor under test, not started; the benchmark advances it. */
+    private OverflowPredictor predictor;
+
+    /** Tank ids. */
+    private String[] ids;
+
+    /** Next tank to update. */
+    private int next = 0;
+
+    /** Time of the next tick in milliseconds. */
+    private long now;
+
+    /**
+     * Registers every tank with an alert hours ahead.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.predictor = new OverflowPredictor(60000, new MetricsRegistry());
+        this.ids = new String[this.tanks];
+        this.now = System.currentTimeMillis();
+        for (int i = 0; i < this.tanks; i++) {
+            this.ids[i] = "tank-" + i;
+            this.predictor.update(this.ids[i], new TankState(0.01 + i % 100 * 0.001, 0, 1013.25, this.now),
+                    this.factor, 5066.25);
+        }
+    }
+
+    /**
+     * Stops the predictor.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.predictor.close();
+    }
+
+    /**
+     * Measures predicting one tank after its flows changed, replacing its pending alert.
+     */
+    @Benchmark
+    public void update()
+    {
+        int i = this.next++ % this.tanks;
+        this.predictor.update(this.ids[i], new TankState(0.02 + i % 100 * 0.001, 0.01, 1013.25, this.now),
+                this.factor, 5066.25);
+    }
+
+    /**
+     * Measures one tick of the wheel.
+     *
+     * @return Number of delivered alerts.
+     */
+    @Benchmark
+    public int tick()
+    {
+        this.now += OverflowPredictor.DEFAULT_TICK_MILLIS;
+        return this.predictor.advance(this.now);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pl.polsl.model.Model;
+
+/**
+ * Benchmarks of saving and reading large pressure history files in the text and binary formats.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PressureHistoryFileBenchmark {
+
+    /** Number of samples in the file. */
+    @Param({"100000", "1000000"})
+    public int historySize;
+
+    /** Model under test. */
+    private Model model;
+
+    /** File the history is written to and read from. */
+    private File file;
+
+    /** Binary file the history is written to and read from. */
+    private File binaryFile;
+
+    /**
+     * Creates a model with a full history and writes it to a temporary file.
+     *
+     * @throws IOException If the temporary file could not be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.model = new Model(this.historySize, null);
+        double[] history = new double[this.historySize];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 1000 + Math.random() * 100;
+        }
+        this.model.setPressureHistory(history);
+        this.file = File.createTempFile("pressureHistoryBenchmark", ".txt");
+        this.model.savePressureHistory(this.file.getPath());
+        this.binaryFile = File.createTempFile("pressureHistoryBenchmark", ".bin");
+        this.model.savePressureHistoryBinary(this.binaryFile.getPath());
+    }
+
+    /**
+     * Closes the model and deletes the file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.model.close();
+        this.file.delete();
+        this.binaryFile.delete();
+    }
+
+    /**
+     * Measures saving the whole history.
+     *
+     * @return The saved file length.
+     */
+    @Benchmark
+    public long savePressureHistory()
+    {
+        this.model.savePressureHistory(this.file.getPath());
+        return this.file.length();
+    }
+
+    /**
+     * Measures reading the whole history.
+     *
+     * @return The number of samples read.
+     */
+    @Benchmark
+    public int readPressureHistory()
+    {
+        this.model.readPressureHistory(this.file.getPath());
+        return this.model.getPressureHistory().size();
+    }
+
+    /**
+     * Measures saving the whole history in the binary format.
+     *
+     * @return The saved file length.
+     * @throws IOException If the file could not be written.
+     */
+    @Benchmark
+    public long savePressureHistoryBinary() throws IOException
+    {
+        this.model.savePressureHistoryBinary(this.binaryFile.getPath());
+        return this.binaryFile.length();
+    }
+
+    /**
+     * Measures reading the whole history in the binary format.
+     *
+     * @return The number of samples read.
+     * @throws IOException If the file could not be read.
+     */
+    @Benchmark
+    public int readPressureHistoryBinary() throws IOException
+    {
+        this.model.readPressureHistoryBinary(this.binaryFile.getPath());
+        return this.model.getPressureHistory().size();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pl.polsl.model.SimulationEngine;
+import pl.polsl.model.Tank;
+
+/**
+ * Benchmark of one simulation tick over many tanks.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class SimulationEngineBenchmark {
+
+    /** Number of registered tanks. */
+    @Param({"100", "10000", "1000000"})
+    public int tanks;
+
+    /** Engine under test. */
+    private SimulationEngine engine;
+
+    /**
+     * Registers tanks with balanced flows, so pressures stay constant between iterations.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.engine = new SimulationEngine();
+        for (int i = 0; i < this.tanks; i++) {
+            Tank tank = new Tank();
+            tank.setGasInflow((double) (i % 10));
+            tank.setGasOutflow((double) (i % 10));
+            this.engine.addTank(Integer.toString(i), tank);
+        }
+    }
+
+    /**
+     * Measures one tick of every tank.
+     *
+     * @return Number of overflowing tanks.
+     */
+    @Benchmark
+    public int tick()
+    {
+        return this.engine.tick(1.0 / 600);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.benchmark;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pl.polsl.metrics.MetricsRegistry;
+import pl.polsl.model.TankEventLog;
+import pl.polsl.model.TankState;
+
+/**
+ * Benchmark of recording tank state changes in the event log until they are on disk,
+ * comparable per record with the insert benchmark of {@link DatabaseBenchmark}.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class TankEventLogBenchmark {
+
+    /** Number of records written per benchmark invocation. */
+    private static final int RECORDS_PER_INVOCATION = 1000;
+
+    /** Directory of the log. */
+    private Path directory;
+
+    /** Log under test. */
+    private TankEventLog log;
+
+    /** State appended next. */
+    private TankState state = new TankState(1.0, 0.5, 1013.25, 0);
+
+    /**
+     * Opens the log in a new temporary directory.
+     *
+     * @throws IOException If the log can't be opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.directory = Files.createTempDirectory("tankEventLogBenchmark");
+        this.log = new TankEventLog(this.directory, new MetricsRegistry());
+    }
+
+    /**
+     * Closes the log and deletes its directory.
+     *
+     * @throws IOException If a file can't be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        this.log.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    /**
+     * Measures appending state changes and waiting until they are forced to disk.
+     *
+     * @throws IOException If the log stopped after an I/O error.
+     * @throws InterruptedException If waiting for the writer is interrupted.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_INVOCATION)
+    public void appendAndSync() throws IOException, InterruptedException
+    {
+        for (int i = 0; i < RECORDS_PER_INVOCATION; i++) {
+            this.state = this.state.withPressure(this.state.getPressure() + 0.01, this.state.getTime() + 1000);
+            this.log.append(TankEventLog.Type.UPDATE, this.state);
+        }
+        this.log.sync();
+    }
+}
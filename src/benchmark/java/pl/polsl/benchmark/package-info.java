@@ -0,0 +1,9 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/package-info.java to edit this template
+ */
+/**
+ * The benchmark package contains JMH benchmarks of the model and persistence hot paths.
+ * They are compiled and run only with the {@code benchmarks} Maven profile.
+ */
+package pl.polsl.benchmark;
@@ -0,0 +1,100 @@
+package com.mycompany.gasinstallationweb.resources;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletContext;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import pl.polsl.database.HistoryReader;
+import pl.polsl.model.Model;
+import pl.polsl.view.ExportFormat;
+import pl.polsl.view.HistoryExportWriter;
+import pl.polsl.view.HtmlWriter;
+
+/**
+ * Bulk export of the stored history joined with the gas flows, as CSV, JSON Lines or columnar binary.
+ * Rows are read in keyset pages, each on a pooled connection returned before the page is written,
+ * and streamed through the format writer and, by default, gzip straight to the response,
+ * so neither memory use nor the time a connection is held depends on the size of the export
+ * or the speed of the client.
+ * The range can be limited by row id and by time.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@Path("history/export")
+public class HistoryExportResource {
+
+    /** Context holding the shared Model. */
+    @Context
+    private ServletContext servletContext;
+
+    /**
+     * Exports the history.
+     *
+     * @param format "csv", "jsonl" or "columnar".
+     * @param afterId Only rows with a greater id are exported.
+     * @param toId Only rows with this id or lower are exported.
+     * @param from Only rows recorded at this time or later are exported, in epoch milliseconds.
+     * @param to Only rows recorded before this time are exported, in epoch milliseconds.
+     * @param compress Whether to gzip the output.
+     * @return The streamed export, or 400 if the format or range is invalid.
+     */
+    @GET
+    public Response export(@QueryParam("format") @DefaultValue("csv") String format,
+            @QueryParam("afterId") @DefaultValue("0") int afterId,
+            @QueryParam("toId") @DefaultValue("" + Integer.MAX_VALUE) int toId,
+            @QueryParam("from") @DefaultValue("0") long from,
+            @QueryParam("to") @DefaultValue("" + HistoryReader.MAX_TIME) long to,
+            @QueryParam("compress") @DefaultValue("true") boolean compress)
+    {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.forName(format);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        if (from < 0 || to > HistoryReader.MAX_TIME || from > to || afterId > toId) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid export range").build();
+        }
+        Model model = (Model) this.servletContext.getAttribute("Model");
+        StreamingOutput body = output -> {
+            OutputStream out = compress
+                    ? new GZIPOutputStream(output, HtmlWriter.DEFAULT_BUFFER_SIZE)
+                    : new BufferedOutputStream(output, HtmlWriter.DEFAULT_BUFFER_SIZE);
+            HistoryExportWriter writer = exportFormat.createWriter(out);
+            try {
+                model.exportHistoryFromDatabase(afterId, toId, from, to,
+                        (id, pressure, historyTime, calculationId, inflow, outflow) -> {
+                            try {
+                                writer.writeRow(id, pressure, historyTime.getTime(), calculationId, inflow, outflow);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (SQLException e) {
+                throw new IOException("History export failed", e);
+            }
+            writer.finish();
+            if (out instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) out).finish();
+            }
+            out.flush();
+        };
+        String fileName = "history." + exportFormat.getExtension() + (compress ? ".gz" : "");
+        return Response.ok(body, compress ? "application/gzip" : exportFormat.getMediaType())
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.gasinstallationweb.resources;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import pl.polsl.metrics.MetricsRegistry;
+
+/**
+ * Metrics of the application in the Prometheus text exposition format, for scraping.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@Path("metrics")
+public class MetricsResource {
+
+    /** Media type of the Prometheus text format. */
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Context holding the shared metrics registry. */
+    @Context
+    private ServletContext servletContext;
+
+    /**
+     * Renders every metric.
+     *
+     * @return The metrics, or 503 if the application didn't start its metrics.
+     */
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public Response getMetrics()
+    {
+        MetricsRegistry metrics = (MetricsRegistry) this.servletContext.getAttribute("MetricsRegistry");
+        if (metrics == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+        return Response.ok(metrics.toPrometheusText()).cacheControl(CacheControl.valueOf("no-store")).build();
+    }
+}
@@ -0,0 +1,203 @@
+package com.mycompany.gasinstallationweb.resources;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import pl.polsl.model.Model;
+import pl.polsl.model.TankState;
+import pl.polsl.view.JsonView;
+
+/**
+ * Single producer of the live pressure stream shared by all SSE subscribers.
+ * One thread samples the Model at a fixed interval and, when the state version changed,
+ * renders the event once and hands it to every subscriber.
+ * Each subscriber has at most one send in flight and one pending event: when a new snapshot
+ * arrives before the previous send completed, it replaces the pending one,
+ * so slow consumers skip intermediate states instead of building up a backlog.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureBroadcaster implements AutoCloseable {
+
+    /** Name of the events. */
+    private static final String EVENT_NAME = "state";
+
+    /** Model sampled by the producer. */
+    private final Model model;
+
+    /** Factory of the events. */
+    private final Sse sse;
+
+    /** Thread sampling the model. */
+    private final ScheduledExecutorService executor;
+
+    /** Connected subscribers. */
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /** The newest event, or null before the first sample. */
+    private volatile OutboundSseEvent latest = null;
+
+    /** Version of the state in the newest event. */
+    private long latestVersion = -1;
+
+    /**
+     * Constructor
+     * Starts sampling the model.
+     *
+     * @param model Model sampled by the producer.
+     * @param sse Factory of the events.
+     * @param intervalMillis Interval between samples in milliseconds.
+     */
+    public PressureBroadcaster(Model model, Sse sse, long intervalMillis)
+    {
+        this.model = model;
+        this.sse = sse;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pressure-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a subscriber and sends it the newest state right away.
+     *
+     * @param sink Sink of the subscriber's connection.
+     */
+    public void subscribe(SseEventSink sink)
+    {
+        Subscriber subscriber = new Subscriber(sink);
+        this.subscribers.add(subscriber);
+        OutboundSseEvent event = this.latest;
+        if (event != null) {
+            subscriber.offer(event);
+        }
+    }
+
+    /**
+     * Gets the number of connected subscribers.
+     *
+     * @return The number of subscribers.
+     */
+    public int getSubscriberCount()
+    {
+        return this.subscribers.size();
+    }
+
+    /**
+     * Stops sampling and closes every subscriber's connection.
+     */
+    @Override
+    public void close()
+    {
+        this.executor.shutdownNow();
+        for (Subscriber subscriber : this.subscribers) {
+            subscriber.sink.close();
+        }
+        this.subscribers.clear();
+    }
+
+    /**
+     * Samples the model and publishes the state if it changed. Never throws,
+     * because an exception would cancel the schedule.
+     */
+    private void sample()
+    {
+        try {
+            TankState state = this.model.getState();
+            if (state.getVersion() != this.latestVersion) {
+                this.latestVersion = state.getVersion();
+                this.latest = this.sse.newEventBuilder()
+                        .name(EVENT_NAME)
+                        .id(Long.toString(state.getVersion()))
+                        .data(JsonView.state(state, this.model.getMaxAllowedPressure()))
+                        .build();
+            }
+            OutboundSseEvent event = this.latest;
+            for (Subscriber subscriber : this.subscribers) {
+                if (subscriber.sink.isClosed()) {
+                    this.subscribers.remove(subscriber);
+                } else {
+                    subscriber.offer(event);
+                }
+            }
+        } catch (RuntimeException e) {
+            // the next sample tries again
+        }
+    }
+
+    /**
+     * Connection of one subscriber with its coalescing slot.
+     */
+    private final class Subscriber {
+
+        /** Sink of the connection. */
+        private final SseEventSink sink;
+
+        /** Event waiting for the previous send to complete, or null. */
+        private final AtomicReference<OutboundSseEvent> pending = new AtomicReference<>();
+
+        /** True while a send is in flight. */
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        /** The last event handed to the sink, not sent again. */
+        private volatile OutboundSseEvent lastSent = null;
+
+        /**
+         * Constructor
+         *
+         * @param sink Sink of the connection.
+         */
+        Subscriber(SseEventSink sink)
+        {
+            this.sink = sink;
+        }
+
+        /**
+         * Offers an event, replacing an event still waiting to be sent.
+         *
+         * @param event The event.
+         */
+        void offer(OutboundSseEvent event)
+        {
+            if (event != this.lastSent) {
+                this.pending.set(event);
+                this.drain();
+            }
+        }
+
+        /**
+         * Starts sending the pending event unless a send is already in flight.
+         */
+        private void drain()
+        {
+            while (this.pending.get() != null && this.sending.compareAndSet(false, true)) {
+                OutboundSseEvent event = this.pending.getAndSet(null);
+                if (event == null) {
+                    this.sending.set(false);
+                    continue;
+                }
+                this.lastSent = event;
+                this.sink.send(event).whenComplete((result, error) -> {
+                    this.sending.set(false);
+                    if (error != null) {
+                        subscribers.remove(this);
+                        this.sink.close();
+                    } else {
+                        this.drain();
+                    }
+                });
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mycompany.gasinstallationweb.resources;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import pl.polsl.model.Model;
+
+/**
+ * Server-Sent Events stream of the state of the shared tank; the tanks of individual clients are not streamed. Every connection subscribes to the one
+ * {@link PressureBroadcaster} of the application, created on the first subscription and stored
+ * in the servlet context under "PressureBroadcaster". The {@code streamIntervalMillis} context
+ * parameter sets how often the state is sampled (500 ms by default).
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@Path("tank/stream")
+public class PressureStreamResource {
+
+    /** Default interval between samples in milliseconds. */
+    private static final long DEFAULT_INTERVAL_MILLIS = 500;
+
+    /** Context holding the shared Model and broadcaster. */
+    @Context
+    private ServletContext servletContext;
+
+    /**
+     * Subscribes the connection to the live stream.
+     *
+     * @param sink Sink of the connection.
+     * @param sse Factory of the events.
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribe(@Context SseEventSink sink, @Context Sse sse)
+    {
+        this.getBroadcaster(sse).subscribe(sink);
+    }
+
+    /**
+     * Gets the shared broadcaster, creating it on first use.
+     *
+     * @param sse Factory of the events.
+     * @return The broadcaster.
+     */
+    private PressureBroadcaster getBroadcaster(Sse sse)
+    {
+        synchronized (this.servletContext) {
+            PressureBroadcaster broadcaster = (PressureBroadcaster) this.servletContext.getAttribute("PressureBroadcaster");
+            if (broadcaster == null) {
+                broadcaster = new PressureBroadcaster((Model) this.servletContext.getAttribute("Model"), sse,
+                        this.getIntervalMillis());
+                this.servletContext.setAttribute("PressureBroadcaster", broadcaster);
+            }
+            return broadcaster;
+        }
+    }
+
+    /**
+     * Reads the sampling interval from the context parameters.
+     *
+     * @return The interval in milliseconds.
+     */
+    private long getIntervalMillis()
+    {
+        String parameter = this.servletContext.getInitParameter("streamIntervalMillis");
+        if (parameter != null) {
+            try {
+                long interval = Long.parseLong(parameter.trim());
+                if (interval > 0) {
+                    return interval;
+                }
+            } catch (NumberFormatException e) {
+                this.servletContext.log("Invalid streamIntervalMillis: " + parameter);
+            }
+        }
+        return DEFAULT_INTERVAL_MILLIS;
+    }
+}
@@ -0,0 +1,194 @@
+package com.mycompany.gasinstallationweb.resources;
+
+import java.security.SecureRandom;
+import javax.servlet.ServletContext;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import pl.polsl.model.Model;
+import pl.polsl.model.PressureHistory;
+import pl.polsl.model.PressureOverflowException;
+import pl.polsl.model.TankState;
+import pl.polsl.view.JsonView;
+
+/**
+ * JSON API of the shared tank: current state, flow changes, statistics and pages of the stored history.
+ * It ignores the "tankId" cookie; the tanks of individual clients are reachable only through the servlets.
+ * GET responses carry an ETag built from the version of the tank state or of the history,
+ * so a poll with a matching If-None-Match header is answered with 304 Not Modified
+ * without rendering anything. Versions start from zero again whenever the application starts,
+ * so every tag also carries a random epoch chosen at startup; otherwise a tag cached by a client
+ * before a restart could match a different state after it.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@Path("tank")
+@Produces(MediaType.APPLICATION_JSON)
+public class TankResource {
+
+    /** Default number of samples on a history page. */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    /** Maximum number of samples on a history page. */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /** Random prefix of the ETags, distinguishing versions of this run from those of earlier runs. */
+    private static final String EPOCH = Long.toHexString(new SecureRandom().nextLong());
+
+    /** Responses may be stored but must be revalidated before reuse. */
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("no-cache");
+
+    /** Context holding the shared Model. */
+    @Context
+    private ServletContext servletContext;
+
+    /**
+     * Gets the current pressure and flows.
+     *
+     * @param request The request, used to evaluate If-None-Match.
+     * @return The state, or 304 if it didn't change.
+     */
+    @GET
+    public Response getState(@Context Request request)
+    {
+        Model model = this.getModel();
+        TankState state = model.getState();
+        EntityTag tag = entityTag("s" + state.getVersion());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        return Response.ok(JsonView.state(state, model.getMaxAllowedPressure()))
+                .tag(tag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Sets the gas flows. A flow that is not given keeps its value.
+     * Without the simulation scheduler the pressure is first integrated up to now with the old flows.
+     *
+     * @param inflow The new gas inflow rate, or null.
+     * @param outflow The new gas outflow rate, or null.
+     * @return The new state, or 400 if a flow is negative or not a number.
+     */
+    @PUT
+    @Path("flows")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    public Response setFlows(@FormParam("inflow") Double inflow, @FormParam("outflow") Double outflow)
+    {
+        if (!isValidFlow(inflow) || !isValidFlow(outflow)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Flows must be non-negative numbers\"}").build();
+        }
+        Model model = this.getModel();
+        if (this.servletContext.getAttribute("SimulationScheduler") == null) {
+            try {
+                model.updatePressure();
+            } catch (PressureOverflowException e) {
+                // reported through the pressure in the returned state
+            }
+        }
+        if (inflow != null) {
+            model.setGasInflow(inflow);
+        }
+        if (outflow != null) {
+            model.setGasOutflow(outflow);
+        }
+        TankState state = model.getState();
+        return Response.ok(JsonView.state(state, model.getMaxAllowedPressure()))
+                .tag(entityTag("s" + state.getVersion())).build();
+    }
+
+    /**
+     * Gets the statistics of the stored history.
+     *
+     * @param request The request, used to evaluate If-None-Match.
+     * @return The statistics, or 304 if the history didn't change.
+     */
+    @GET
+    @Path("statistics")
+    public Response getStatistics(@Context Request request)
+    {
+        PressureHistory history = this.getModel().getPressureHistoryStore();
+        EntityTag tag = entityTag("h" + history.getVersion());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        return Response.ok(JsonView.statistics(history.getStatistics()))
+                .tag(tag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Gets a page of the stored history, oldest sample first.
+     * With from or to only samples taken in that time range are paged, located by a binary search
+     * over the sample times.
+     *
+     * @param request The request, used to evaluate If-None-Match.
+     * @param offset Position of the first sample; pages never start before the time range.
+     * @param limit Maximum number of samples, capped at {@value #MAX_PAGE_SIZE}.
+     * @param from Start of the time range in milliseconds, inclusive.
+     * @param to End of the time range in milliseconds, exclusive.
+     * @return The page, or 304 if the history didn't change.
+     */
+    @GET
+    @Path("history")
+    public Response getHistory(@Context Request request, @QueryParam("offset") @DefaultValue("0") int offset,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("from") @DefaultValue("" + Long.MIN_VALUE) long from,
+            @QueryParam("to") @DefaultValue("" + Long.MAX_VALUE) long to)
+    {
+        PressureHistory history = this.getModel().getPressureHistoryStore();
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        EntityTag tag = entityTag("h" + history.getVersion() + "-" + offset + "-" + pageSize + "-" + from + "-" + to);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+        return Response.ok(JsonView.history(history, offset, pageSize, from, to))
+                .tag(tag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Builds the ETag of a version, prefixed with the epoch of this run.
+     *
+     * @param version The version and anything else the response depends on.
+     * @return The entity tag.
+     */
+    private static EntityTag entityTag(String version)
+    {
+        return new EntityTag(EPOCH + "-" + version);
+    }
+
+    /**
+     * Gets the shared Model created by the context listener.
+     *
+     * @return The Model.
+     */
+    private Model getModel()
+    {
+        return (Model) this.servletContext.getAttribute("Model");
+    }
+
+    /**
+     * Checks whether an optional flow parameter is acceptable.
+     *
+     * @param flow The flow, or null if not given.
+     * @return True if the flow is missing or a non-negative finite number.
+     */
+    private static boolean isValidFlow(Double flow)
+    {
+        return flow == null || (flow >= 0 && !flow.isInfinite() && !flow.isNaN());
+    }
+}
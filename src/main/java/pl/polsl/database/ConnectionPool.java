@@ -0,0 +1,567 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of database connections with prepared-statement caching.
+ * <p>
+ * Connections are opened lazily, up to the maximum pool size. A connection that was idle for
+ * longer than the validation interval is checked with {@link Connection#isValid(int)} before it
+ * is handed out, and broken connections are replaced by new ones, so the pool reconnects on its own
+ * after the database restarts.
+ * <p>
+ * Callers use plain JDBC: closing a borrowed connection returns it to the pool, and
+ * {@code prepareStatement} returns a handle of a statement cached per physical connection whose
+ * {@code close} closes its open result sets and clears its parameters, leaving the statement prepared.
+ * Returning the connection closes every handle still open, so the next borrower never sees a cursor
+ * left behind. Handles can't be unwrapped, since the physical connection or statement would
+ * outlive the loan.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ConnectionPool implements ConnectionProvider, AutoCloseable {
+
+    /** Default maximum number of open connections. */
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    /** Default time to wait for a free connection, in milliseconds. */
+    public static final long DEFAULT_BORROW_TIMEOUT = 5000;
+
+    /** Default idle time after which a connection is validated before use, in milliseconds. */
+    public static final long DEFAULT_VALIDATION_INTERVAL = 30000;
+
+    /** Maximum number of prepared statements cached per connection. */
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    /** Time allowed for a validation query, in seconds. */
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    /** URL of the database. */
+    private final String url;
+
+    /** Database user. */
+    private final String user;
+
+    /** Database password. */
+    private final String password;
+
+    /** Time to wait for a free connection, in milliseconds. */
+    private final long borrowTimeout;
+
+    /** Idle time after which a connection is validated before use, in milliseconds. */
+    private final long validationInterval;
+
+    /** Permits limiting the number of borrowed connections. */
+    private final Semaphore permits;
+
+    /** Idle connections, most recently used first. */
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    /** Number of open physical connections. */
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    /** Number of statements prepared on the physical connections, cache misses included only. */
+    private final AtomicInteger preparedStatements = new AtomicInteger();
+
+    /** True once the pool was closed. */
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor
+     * Creates a pool with default settings.
+     *
+     * @param url URL of the database.
+     * @param user Database user.
+     * @param password Database password.
+     */
+    public ConnectionPool(String url, String user, String password)
+    {
+        this(url, user, password, DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT, DEFAULT_VALIDATION_INTERVAL);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param url URL of the database.
+     * @param user Database user.
+     * @param password Database password.
+     * @param maxSize Maximum number of open connections.
+     * @param borrowTimeout Time to wait for a free connection, in milliseconds.
+     * @param validationInterval Idle time after which a connection is validated before use, in milliseconds.
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeout,
+            long validationInterval)
+    {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.borrowTimeout = borrowTimeout;
+        this.validationInterval = validationInterval;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing it returns it to the pool.
+     *
+     * @return Open connection.
+     * @throws SQLException If the pool is closed, no connection got free in time or the database is unreachable.
+     */
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        if (this.closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!this.permits.tryAcquire(this.borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("No free database connection in " + this.borrowTimeout + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            return this.takeConnection().newHandle();
+        } catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of open physical connections.
+     *
+     * @return The number of open connections.
+     */
+    public int getOpenConnections()
+    {
+        return this.openConnections.get();
+    }
+
+    /**
+     * Gets the number of statements prepared on the physical connections, which grows only when
+     * a statement is not found in the cache.
+     *
+     * @return The number of prepared statements.
+     */
+    public int getPreparedStatements()
+    {
+        return this.preparedStatements.get();
+    }
+
+    /**
+     * Gets the number of idle connections.
+     *
+     * @return The number of idle connections.
+     */
+    public int getIdleConnections()
+    {
+        return this.idle.size();
+    }
+
+    /**
+     * Closes idle connections and makes borrowed ones close when they are returned.
+     */
+    @Override
+    public void close()
+    {
+        this.closed = true;
+        PooledConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            connection.destroy();
+        }
+    }
+
+    /**
+     * Takes an idle connection that passed validation or opens a new one.
+     *
+     * @return Pooled connection.
+     * @throws SQLException If a new connection could not be opened.
+     */
+    private PooledConnection takeConnection() throws SQLException
+    {
+        PooledConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            if (connection.isUsable()) {
+                return connection;
+            }
+            connection.destroy();
+        }
+        connection = new PooledConnection(DriverManager.getConnection(this.url, this.user, this.password));
+        this.openConnections.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * Returns a connection to the pool, or closes it if it is broken or the pool is closed.
+     *
+     * @param connection The connection to return.
+     */
+    private void release(PooledConnection connection)
+    {
+        try {
+            if (!this.closed && !connection.broken && connection.reset()) {
+                this.idle.offerFirst(connection);
+                if (this.closed && this.idle.remove(connection)) {
+                    connection.destroy();
+                }
+            } else {
+                connection.destroy();
+            }
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Physical connection with its prepared-statement cache.
+     */
+    private final class PooledConnection {
+
+        /** Underlying JDBC connection. */
+        private final Connection physical;
+
+        /** Cached statements in access order, keyed by SQL and generated-keys flag. */
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** Time the connection was last returned to the pool, in milliseconds. */
+        private long lastUsed = System.currentTimeMillis();
+
+        /** True once a connection-level error was seen. */
+        private volatile boolean broken = false;
+
+        /**
+         * Constructor
+         *
+         * @param physical Underlying JDBC connection.
+         */
+        PooledConnection(Connection physical)
+        {
+            this.physical = physical;
+        }
+
+        /**
+         * Creates a connection handle for one borrower.
+         *
+         * @return Proxy of the connection that returns it to the pool on close.
+         */
+        Connection newHandle()
+        {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(this));
+        }
+
+        /**
+         * Checks whether the connection can be handed out, validating it after a long idle time.
+         *
+         * @return True if the connection is usable.
+         */
+        boolean isUsable()
+        {
+            if (this.broken) {
+                return false;
+            }
+            if (System.currentTimeMillis() - this.lastUsed < ConnectionPool.this.validationInterval) {
+                return true;
+            }
+            try {
+                return this.physical.isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Gets a cached prepared statement or prepares a new one.
+         *
+         * @param sql The SQL statement.
+         * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+         * @return Prepared statement owned by the cache.
+         * @throws SQLException If the statement could not be prepared.
+         */
+        PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException
+        {
+            String key = autoGeneratedKeys + sql;
+            PreparedStatement statement = this.statements.get(key);
+            if (statement == null) {
+                statement = this.physical.prepareStatement(sql, autoGeneratedKeys);
+                ConnectionPool.this.preparedStatements.incrementAndGet();
+                this.statements.put(key, statement);
+                if (this.statements.size() > STATEMENT_CACHE_SIZE) {
+                    Iterator<PreparedStatement> eldest = this.statements.values().iterator();
+                    closeQuietly(eldest.next());
+                    eldest.remove();
+                }
+            }
+            return statement;
+        }
+
+        /**
+         * Restores default connection state before the connection goes back to the pool.
+         *
+         * @return True if the connection can be reused.
+         */
+        boolean reset()
+        {
+            try {
+                if (!this.physical.getAutoCommit()) {
+                    this.physical.rollback();
+                    this.physical.setAutoCommit(true);
+                }
+                this.lastUsed = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Closes cached statements and the physical connection.
+         */
+        void destroy()
+        {
+            for (PreparedStatement statement : this.statements.values()) {
+                closeQuietly(statement);
+            }
+            this.statements.clear();
+            try {
+                this.physical.close();
+            } catch (SQLException e) {
+            } finally {
+                ConnectionPool.this.openConnections.decrementAndGet();
+            }
+        }
+
+        /**
+         * Marks the connection as broken if the error is a connection-level one (SQLState class 08).
+         *
+         * @param e The error thrown by the connection or one of its statements.
+         */
+        void inspect(Throwable e)
+        {
+            if (e instanceof SQLException) {
+                String state = ((SQLException) e).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    this.broken = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Handler of a borrowed connection handle.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        /** The pooled connection behind the handle. */
+        private final PooledConnection connection;
+
+        /** True once the handle was closed. */
+        private boolean handleClosed = false;
+
+        /** Proxy this handler serves, set on first call. */
+        private Connection proxy;
+
+        /** Statement handles handed out on this connection handle and not closed yet. */
+        private final List<StatementHandler> openStatements = new ArrayList<>();
+
+        /**
+         * Constructor
+         *
+         * @param connection The pooled connection behind the handle.
+         */
+        ConnectionHandler(PooledConnection connection)
+        {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            this.proxy = (Connection) proxy;
+            switch (method.getName()) {
+                case "close":
+                    if (!this.handleClosed) {
+                        this.handleClosed = true;
+                        for (StatementHandler statement : new ArrayList<>(this.openStatements)) {
+                            statement.closeHandle();
+                        }
+                        ConnectionPool.this.release(this.connection);
+                    }
+                    return null;
+                case "isClosed":
+                    return this.handleClosed || this.connection.physical.isClosed();
+                case "unwrap":
+                    throw new SQLException("Pooled connections can't be unwrapped");
+                case "isWrapperFor":
+                    return false;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + this.connection.physical;
+                default:
+                    break;
+            }
+            if (this.handleClosed) {
+                throw new SQLException("Connection is closed");
+            }
+            if ("prepareStatement".equals(method.getName()) && args.length <= 2
+                    && (args.length == 1 || method.getParameterTypes()[1] == int.class)) {
+                int autoGeneratedKeys = args.length == 1 ? Statement.NO_GENERATED_KEYS : (Integer) args[1];
+                try {
+                    PreparedStatement statement = this.connection.prepare((String) args[0], autoGeneratedKeys);
+                    StatementHandler handler = new StatementHandler(statement, this);
+                    this.openStatements.add(handler);
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class}, handler);
+                } catch (SQLException e) {
+                    this.connection.inspect(e);
+                    throw e;
+                }
+            }
+            try {
+                return method.invoke(this.connection.physical, args);
+            } catch (InvocationTargetException e) {
+                this.connection.inspect(e.getCause());
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Handler of a cached prepared statement handed out to a borrower.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        /** The cached statement. */
+        private final PreparedStatement statement;
+
+        /** Handler of the connection the statement belongs to. */
+        private final ConnectionHandler connectionHandler;
+
+        /** Result sets returned through this handle and not closed by the borrower. */
+        private final List<ResultSet> resultSets = new ArrayList<>();
+
+        /** True once the handle was closed. */
+        private boolean handleClosed = false;
+
+        /**
+         * Constructor
+         *
+         * @param statement The cached statement.
+         * @param connectionHandler Handler of the connection the statement belongs to.
+         */
+        StatementHandler(PreparedStatement statement, ConnectionHandler connectionHandler)
+        {
+            this.statement = statement;
+            this.connectionHandler = connectionHandler;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            switch (method.getName()) {
+                case "close":
+                    this.closeHandle();
+                    return null;
+                case "isClosed":
+                    return this.handleClosed;
+                case "getConnection":
+                    return this.connectionHandler.proxy;
+                case "unwrap":
+                    throw new SQLException("Pooled statements can't be unwrapped");
+                case "isWrapperFor":
+                    return false;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (this.handleClosed) {
+                throw new SQLException("Statement is closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(this.statement, args);
+            } catch (InvocationTargetException e) {
+                this.connectionHandler.connection.inspect(e.getCause());
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                Iterator<ResultSet> open = this.resultSets.iterator();
+                while (open.hasNext()) {
+                    if (open.next().isClosed()) {
+                        open.remove();
+                    }
+                }
+                this.resultSets.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        /**
+         * Closes the result sets still open and clears the parameters, leaving the cached statement prepared.
+         * Called when the borrower closes the statement or returns its connection.
+         */
+        void closeHandle()
+        {
+            if (this.handleClosed) {
+                return;
+            }
+            this.handleClosed = true;
+            this.connectionHandler.openStatements.remove(this);
+            try {
+                for (ResultSet resultSet : this.resultSets) {
+                    resultSet.close();
+                }
+                this.statement.clearParameters();
+                this.statement.clearBatch();
+            } catch (SQLException e) {
+                this.connectionHandler.connection.inspect(e);
+            } finally {
+                this.resultSets.clear();
+            }
+        }
+    }
+
+    /**
+     * Closes a statement, ignoring errors.
+     *
+     * @param statement The statement to close.
+     */
+    private static void closeQuietly(Statement statement)
+    {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Interface.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of database connections. Callers close the connections they get.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ConnectionProvider {
+
+    /**
+     * Gets a connection to the database.
+     *
+     * @return Open connection.
+     * @throws SQLException If the connection could not be obtained.
+     */
+    Connection getConnection() throws SQLException;
+}
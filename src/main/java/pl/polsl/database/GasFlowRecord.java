@@ -0,0 +1,82 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+/**
+ * Immutable state of the tank to be stored as one GasFlow row and its PressureHistory row.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class GasFlowRecord {
+
+    /** Gas inflow rate. */
+    private final double inflow;
+
+    /** Gas outflow rate. */
+    private final double outflow;
+
+    /** Gas pressure. */
+    private final double pressure;
+
+    /** Time the state was recorded, in milliseconds since the epoch. */
+    private final long time;
+
+    /**
+     * Constructor
+     *
+     * @param inflow Gas inflow rate.
+     * @param outflow Gas outflow rate.
+     * @param pressure Gas pressure.
+     * @param time Time the state was recorded, in milliseconds since the epoch.
+     */
+    public GasFlowRecord(double inflow, double outflow, double pressure, long time)
+    {
+        this.inflow = inflow;
+        this.outflow = outflow;
+        this.pressure = pressure;
+        this.time = time;
+    }
+
+    /**
+     * Getter for inflow
+     *
+     * @return The gas inflow rate.
+     */
+    public double getInflow()
+    {
+        return this.inflow;
+    }
+
+    /**
+     * Getter for outflow
+     *
+     * @return The gas outflow rate.
+     */
+    public double getOutflow()
+    {
+        return this.outflow;
+    }
+
+    /**
+     * Getter for pressure
+     *
+     * @return The gas pressure.
+     */
+    public double getPressure()
+    {
+        return this.pressure;
+    }
+
+    /**
+     * Getter for time
+     *
+     * @return The time the state was recorded, in milliseconds since the epoch.
+     */
+    public long getTime()
+    {
+        return this.time;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Interface.java to edit this template
+ */
+package pl.polsl.database;
+
+/**
+ * Callback receiving GasFlow rows one by one as they are read from the database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface GasFlowRowHandler {
+
+    /**
+     * Handles one GasFlow row.
+     *
+     * @param id Row id.
+     * @param inflow Gas inflow rate.
+     * @param outflow Gas outflow rate.
+     */
+    void row(int id, double inflow, double outflow);
+}
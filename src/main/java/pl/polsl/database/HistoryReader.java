@@ -0,0 +1,267 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streaming reader of the GasFlow and PressureHistory tables.
+ * Rows are read in pages using keyset pagination and passed to a callback one by one.
+ * Every call takes a connection for one page and returns it, so a caller paging through a long
+ * range never holds a pooled connection between pages. Only the export buffers a page, so that
+ * a slow consumer doesn't keep the connection either.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class HistoryReader {
+
+    /** Default number of rows the driver fetches in one round-trip. */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /** Latest time accepted in time ranges, the end of year 9999, in milliseconds. */
+    public static final long MAX_TIME = 253402300799999L;
+
+    /** Query reading a page of GasFlow rows. */
+    private static final String SELECT_GAS_FLOW_PAGE
+            = "SELECT id, inflow, outflow FROM GasFlow WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+
+    /** Query reading a page of PressureHistory rows. */
+    private static final String SELECT_PRESSURE_HISTORY_PAGE
+            = "SELECT id, pressure, history_time, calculation_id FROM PressureHistory WHERE id > ? ORDER BY id "
+            + "FETCH FIRST ? ROWS ONLY";
+
+    /** Number of joined rows read per connection by the export. */
+    public static final int EXPORT_PAGE_SIZE = 1000;
+
+    /**
+     * Query reading PressureHistory rows in a time range after a (history_time, id) key,
+     * served by the index on (history_time, id).
+     */
+    private static final String SELECT_PRESSURE_HISTORY_BY_TIME
+            = "SELECT id, pressure, history_time, calculation_id FROM PressureHistory "
+            + "WHERE history_time >= ? AND history_time < ? AND (history_time > ? OR (history_time = ? AND id > ?)) "
+            + "ORDER BY history_time, id FETCH FIRST ? ROWS ONLY";
+
+    /** Query reading the PressureHistory rows of one calculation, served by the index on calculation_id. */
+    private static final String SELECT_PRESSURE_HISTORY_BY_CALCULATION
+            = "SELECT id, pressure, history_time, calculation_id FROM PressureHistory "
+            + "WHERE calculation_id = ? ORDER BY id";
+
+    /** Query reading PressureHistory rows joined with GasFlow within an id and time range. */
+    private static final String SELECT_JOINED_HISTORY
+            = "SELECT p.id, p.pressure, p.history_time, p.calculation_id, g.inflow, g.outflow "
+            + "FROM PressureHistory p LEFT JOIN GasFlow g ON p.calculation_id = g.id "
+            + "WHERE p.id > ? AND p.id <= ? AND p.history_time >= ? AND p.history_time < ? ORDER BY p.id "
+            + "FETCH FIRST ? ROWS ONLY";
+
+    /** Source of database connections. */
+    private final ConnectionProvider connectionProvider;
+
+    /** Number of rows the driver fetches in one round-trip. */
+    private final int fetchSize;
+
+    /**
+     * Constructor
+     *
+     * @param connectionProvider Source of database connections.
+     * @param fetchSize Number of rows the driver fetches in one round-trip.
+     */
+    public HistoryReader(ConnectionProvider connectionProvider, int fetchSize)
+    {
+        this.connectionProvider = connectionProvider;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Reads GasFlow rows with id greater than the cursor, in id order.
+     *
+     * @param afterId Id of the last row already read, 0 to start from the beginning.
+     * @param limit Maximum number of rows to read.
+     * @param handler Callback receiving the rows.
+     * @return Id of the last row read, or afterId if there were no rows.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public int readGasFlow(int afterId, int limit, GasFlowRowHandler handler) throws SQLException
+    {
+        int lastId = afterId;
+        try (Connection connection = this.connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_GAS_FLOW_PAGE)) {
+            statement.setFetchSize(Math.max(1, Math.min(limit, this.fetchSize)));
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    lastId = resultSet.getInt(1);
+                    handler.row(lastId, resultSet.getDouble(2), resultSet.getDouble(3));
+                }
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * Reads PressureHistory rows with id greater than the cursor, in id order.
+     *
+     * @param afterId Id of the last row already read, 0 to start from the beginning.
+     * @param limit Maximum number of rows to read.
+     * @param handler Callback receiving the rows.
+     * @return Id of the last row read, or afterId if there were no rows.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public int readPressureHistory(int afterId, int limit, PressureHistoryRowHandler handler) throws SQLException
+    {
+        int lastId = afterId;
+        try (Connection connection = this.connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_PRESSURE_HISTORY_PAGE)) {
+            statement.setFetchSize(Math.max(1, Math.min(limit, this.fetchSize)));
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    lastId = resultSet.getInt(1);
+                    handler.row(lastId, resultSet.getDouble(2), resultSet.getTimestamp(3), resultSet.getInt(4));
+                }
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * Reads a page of PressureHistory rows recorded in a time range, oldest first.
+     * Rows recorded at the same time are ordered by id, so passing the returned key back
+     * continues exactly after the last row, however many rows share its time.
+     *
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @param after Key returned by the previous page, or null to start at the beginning of the range.
+     * @param limit Maximum number of rows to read.
+     * @param handler Callback receiving the rows.
+     * @return Key of the last row read if the page was full, or null if the range has no more rows.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public HistoryTimeKey readPressureHistoryByTime(long from, long to, HistoryTimeKey after, int limit,
+            PressureHistoryRowHandler handler) throws SQLException
+    {
+        HistoryTimeKey last = null;
+        int count = 0;
+        Timestamp afterTime = new Timestamp(after == null ? from : after.getTime());
+        try (Connection connection = this.connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_PRESSURE_HISTORY_BY_TIME)) {
+            statement.setFetchSize(Math.max(1, Math.min(limit, this.fetchSize)));
+            statement.setTimestamp(1, new Timestamp(from));
+            statement.setTimestamp(2, new Timestamp(to));
+            statement.setTimestamp(3, afterTime);
+            statement.setTimestamp(4, afterTime);
+            statement.setInt(5, after == null ? Integer.MIN_VALUE : after.getId());
+            statement.setInt(6, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Timestamp historyTime = resultSet.getTimestamp(3);
+                    handler.row(resultSet.getInt(1), resultSet.getDouble(2), historyTime, resultSet.getInt(4));
+                    last = new HistoryTimeKey(historyTime.getTime(), resultSet.getInt(1));
+                    count++;
+                }
+            }
+        }
+        return count == limit ? last : null;
+    }
+
+    /**
+     * Reads the PressureHistory rows of one calculation, in id order.
+     *
+     * @param calculationId Id of the GasFlow row.
+     * @param handler Callback receiving the rows.
+     * @return Number of rows read.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public int readPressureHistoryByCalculation(int calculationId, PressureHistoryRowHandler handler)
+            throws SQLException
+    {
+        int count = 0;
+        try (Connection connection = this.connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_PRESSURE_HISTORY_BY_CALCULATION)) {
+            statement.setFetchSize(this.fetchSize);
+            statement.setInt(1, calculationId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    handler.row(resultSet.getInt(1), resultSet.getDouble(2), resultSet.getTimestamp(3), resultSet.getInt(4));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads PressureHistory rows joined with their GasFlow rows, in id order.
+     * The rows are read in pages of {@link #EXPORT_PAGE_SIZE}, each with its own connection: a page is
+     * copied into arrays and the connection returned to the pool before the handler sees any row, so
+     * a slow consumer, such as a client downloading an export, never holds a connection, and memory
+     * use doesn't depend on the range.
+     *
+     * @param afterId Only rows with a greater id are read, 0 to start from the beginning.
+     * @param toId Only rows with this id or lower are read.
+     * @param from Only rows recorded at this time or later are read, in milliseconds.
+     * @param to Only rows recorded before this time are read, in milliseconds.
+     * @param handler Callback receiving the rows.
+     * @return Number of rows read.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public long readJoinedHistory(int afterId, int toId, long from, long to, JoinedHistoryRowHandler handler)
+            throws SQLException
+    {
+        int[] ids = new int[EXPORT_PAGE_SIZE];
+        double[] pressures = new double[EXPORT_PAGE_SIZE];
+        Timestamp[] times = new Timestamp[EXPORT_PAGE_SIZE];
+        int[] calculationIds = new int[EXPORT_PAGE_SIZE];
+        double[] inflows = new double[EXPORT_PAGE_SIZE];
+        double[] outflows = new double[EXPORT_PAGE_SIZE];
+        long count = 0;
+        int lastId = afterId;
+        int size;
+        do {
+            size = 0;
+            try (Connection connection = this.connectionProvider.getConnection();
+                    PreparedStatement statement = connection.prepareStatement(SELECT_JOINED_HISTORY)) {
+                statement.setFetchSize(Math.min(EXPORT_PAGE_SIZE, this.fetchSize));
+                statement.setInt(1, lastId);
+                statement.setInt(2, toId);
+                statement.setTimestamp(3, new Timestamp(from));
+                statement.setTimestamp(4, new Timestamp(to));
+                statement.setInt(5, EXPORT_PAGE_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids[size] = resultSet.getInt(1);
+                        pressures[size] = resultSet.getDouble(2);
+                        times[size] = resultSet.getTimestamp(3);
+                        calculationIds[size] = resultSet.getInt(4);
+                        inflows[size] = resultSet.getDouble(5);
+                        if (resultSet.wasNull()) {
+                            inflows[size] = Double.NaN;
+                        }
+                        outflows[size] = resultSet.getDouble(6);
+                        if (resultSet.wasNull()) {
+                            outflows[size] = Double.NaN;
+                        }
+                        size++;
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                handler.row(ids[i], pressures[i], times[i], calculationIds[i], inflows[i], outflows[i]);
+            }
+            if (size > 0) {
+                lastId = ids[size - 1];
+            }
+            count += size;
+        } while (size == EXPORT_PAGE_SIZE);
+        return count;
+    }
+}
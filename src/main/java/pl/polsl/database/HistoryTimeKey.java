@@ -0,0 +1,53 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+/**
+ * Position in PressureHistory ordered by time, the time and id of the last row read,
+ * from which {@link HistoryReader#readPressureHistoryByTime} continues with the next page.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class HistoryTimeKey {
+
+    /** Time of the last row read, in milliseconds since the epoch. */
+    private final long time;
+
+    /** Id of the last row read, ordering rows recorded at the same time. */
+    private final int id;
+
+    /**
+     * Constructor
+     *
+     * @param time Time of the last row read, in milliseconds since the epoch.
+     * @param id Id of the last row read.
+     */
+    public HistoryTimeKey(long time, int id)
+    {
+        this.time = time;
+        this.id = id;
+    }
+
+    /**
+     * Getter for time
+     *
+     * @return Time of the last row read, in milliseconds since the epoch.
+     */
+    public long getTime()
+    {
+        return this.time;
+    }
+
+    /**
+     * Getter for id
+     *
+     * @return Id of the last row read.
+     */
+    public int getId()
+    {
+        return this.id;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Timestamp;
+
+/**
+ * Callback receiving PressureHistory rows joined with their GasFlow rows one by one
+ * as they are read from the database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface JoinedHistoryRowHandler {
+
+    /**
+     * Handles one joined row.
+     *
+     * @param id PressureHistory row id.
+     * @param pressure Gas pressure.
+     * @param historyTime Time the pressure was recorded.
+     * @param calculationId Id of the related GasFlow row, 0 if there is none.
+     * @param inflow Gas inflow rate, NaN if there is no GasFlow row.
+     * @param outflow Gas outflow rate, NaN if there is no GasFlow row.
+     */
+    void row(int id, double pressure, Timestamp historyTime, int calculationId, double inflow, double outflow);
+}
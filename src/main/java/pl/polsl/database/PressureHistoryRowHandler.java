@@ -0,0 +1,27 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Interface.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Timestamp;
+
+/**
+ * Callback receiving PressureHistory rows one by one as they are read from the database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface PressureHistoryRowHandler {
+
+    /**
+     * Handles one PressureHistory row.
+     *
+     * @param id Row id.
+     * @param pressure Gas pressure.
+     * @param historyTime Time the pressure was recorded.
+     * @param calculationId Id of the related GasFlow row.
+     */
+    void row(int id, double pressure, Timestamp historyTime, int calculationId);
+}
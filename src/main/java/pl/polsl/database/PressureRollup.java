@@ -0,0 +1,355 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-minute, per-hour and per-day aggregates (min, max, average, count, last) of PressureHistory,
+ * kept in companion tables described by {@link RollupResolution}.
+ * The {@link WriteBehindQueue} updates them in the same transaction as the raw rows:
+ * a batch is first aggregated per bucket in memory, then every touched bucket is merged
+ * with one UPDATE, or inserted when it doesn't exist yet. When two writers insert the same bucket,
+ * the second one gets a duplicate key and merges into the first one's row instead. The tables are created by the {@link SchemaMigrator}, which also
+ * fills them from the history written before they existed.
+ * Queries over long ranges read the coarsest sufficient table instead of scanning raw samples.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureRollup {
+
+    /** SQLState of an insert violating a primary key. */
+    private static final String DUPLICATE_KEY = "23505";
+
+    /** Number of backfilled buckets inserted per batch. */
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    /** Source of database connections used for queries. */
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * Constructor
+     *
+     * @param connectionProvider Source of database connections used for queries.
+     */
+    public PressureRollup(ConnectionProvider connectionProvider)
+    {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Fills every rollup table from the rows already in PressureHistory, one day at a time.
+     * Used by the {@link SchemaMigrator} to fill the tables for history written before they existed.
+     * Each day replaces the buckets of that day in every table and is committed on its own, so the
+     * backfill never holds locks on the whole history and an interrupted run resumes from the last
+     * committed day, which is recomputed, instead of starting over. Within a day the rows are read once
+     * in time order, so each bucket is complete when the next one starts and only the current bucket
+     * of each resolution is kept in memory. Days without history are skipped.
+     *
+     * @param connection Connection with auto-commit off; every day is committed on it.
+     * @throws SQLException If an SQL exception occurs. The day being filled is rolled back by the caller.
+     */
+    public static void backfill(Connection connection) throws SQLException
+    {
+        RollupResolution[] resolutions = RollupResolution.values();
+        long dayMillis = RollupResolution.DAY.getBucketMillis();
+        PreparedStatement[] deletes = new PreparedStatement[resolutions.length];
+        PreparedStatement[] inserts = new PreparedStatement[resolutions.length];
+        try (Statement statement = connection.createStatement();
+                PreparedStatement next = connection.prepareStatement("SELECT MIN(history_time) FROM PressureHistory "
+                        + "WHERE history_time >= ? AND pressure IS NOT NULL");
+                PreparedStatement rows = connection.prepareStatement("SELECT pressure, history_time FROM PressureHistory "
+                        + "WHERE history_time >= ? AND history_time < ? AND pressure IS NOT NULL ORDER BY history_time, id")) {
+            for (int i = 0; i < resolutions.length; i++) {
+                String table = resolutions[i].getTableName();
+                deletes[i] = connection.prepareStatement("DELETE FROM " + table
+                        + " WHERE bucket_start >= ? AND bucket_start < ?");
+                inserts[i] = connection.prepareStatement(insertSql(table));
+            }
+            Timestamp day = readTimestamp(statement, "SELECT MAX(bucket_start) FROM " + RollupResolution.DAY.getTableName());
+            if (day == null) {
+                day = readTimestamp(statement, "SELECT MIN(history_time) FROM PressureHistory WHERE pressure IS NOT NULL");
+            }
+            while (day != null) {
+                long start = RollupResolution.DAY.bucketStart(day.getTime());
+                long end = start + dayMillis;
+                backfillDay(rows, deletes, inserts, start, end);
+                connection.commit();
+                next.setTimestamp(1, new Timestamp(end));
+                try (ResultSet resultSet = next.executeQuery()) {
+                    day = resultSet.next() ? resultSet.getTimestamp(1) : null;
+                }
+            }
+        } finally {
+            for (int i = 0; i < resolutions.length; i++) {
+                if (deletes[i] != null) {
+                    deletes[i].close();
+                }
+                if (inserts[i] != null) {
+                    inserts[i].close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the buckets of one day in every rollup table with aggregates of the history of that day.
+     *
+     * @param rows Query reading the history between two times in time order.
+     * @param deletes Statements deleting the buckets between two times, one per resolution.
+     * @param inserts Statements built from {@link #insertSql(String)}, one per resolution.
+     * @param start Start of the day in milliseconds.
+     * @param end End of the day in milliseconds, exclusive.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static void backfillDay(PreparedStatement rows, PreparedStatement[] deletes, PreparedStatement[] inserts,
+            long start, long end) throws SQLException
+    {
+        RollupResolution[] resolutions = RollupResolution.values();
+        long[] starts = new long[resolutions.length];
+        Bucket[] buckets = new Bucket[resolutions.length];
+        int[] pending = new int[resolutions.length];
+        for (PreparedStatement delete : deletes) {
+            delete.setTimestamp(1, new Timestamp(start));
+            delete.setTimestamp(2, new Timestamp(end));
+            delete.executeUpdate();
+        }
+        rows.setTimestamp(1, new Timestamp(start));
+        rows.setTimestamp(2, new Timestamp(end));
+        try (ResultSet resultSet = rows.executeQuery()) {
+            while (resultSet.next()) {
+                double pressure = resultSet.getDouble(1);
+                long time = resultSet.getTimestamp(2).getTime();
+                for (int i = 0; i < resolutions.length; i++) {
+                    long bucketStart = resolutions[i].bucketStart(time);
+                    if (buckets[i] != null && bucketStart != starts[i]) {
+                        addInsert(inserts[i], starts[i], buckets[i]);
+                        if (++pending[i] == BACKFILL_BATCH_SIZE) {
+                            inserts[i].executeBatch();
+                            pending[i] = 0;
+                        }
+                        buckets[i] = null;
+                    }
+                    if (buckets[i] == null) {
+                        buckets[i] = new Bucket();
+                        starts[i] = bucketStart;
+                    }
+                    buckets[i].add(pressure, time);
+                }
+            }
+        }
+        for (int i = 0; i < resolutions.length; i++) {
+            if (buckets[i] != null) {
+                addInsert(inserts[i], starts[i], buckets[i]);
+            }
+            inserts[i].executeBatch();
+        }
+    }
+
+    /**
+     * Runs a query returning a single timestamp.
+     *
+     * @param statement Statement running the query.
+     * @param sql The query.
+     * @return The timestamp, or null if the query returned NULL.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static Timestamp readTimestamp(Statement statement, String sql) throws SQLException
+    {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getTimestamp(1) : null;
+        }
+    }
+
+    /**
+     * Builds the statement inserting a new bucket into a rollup table.
+     *
+     * @param table Name of the rollup table.
+     * @return The INSERT statement.
+     */
+    private static String insertSql(String table)
+    {
+        return "INSERT INTO " + table
+                + " (bucket_start, min_pressure, max_pressure, sum_pressure, sample_count,"
+                + " last_pressure, last_time) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    /**
+     * Sets the parameters of the insert statement to a bucket and adds it to the batch.
+     *
+     * @param insert Statement built from {@link #insertSql(String)}.
+     * @param start Start of the bucket in milliseconds.
+     * @param bucket The bucket.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static void addInsert(PreparedStatement insert, long start, Bucket bucket) throws SQLException
+    {
+        insert.setTimestamp(1, new Timestamp(start));
+        insert.setDouble(2, bucket.min);
+        insert.setDouble(3, bucket.max);
+        insert.setDouble(4, bucket.sum);
+        insert.setLong(5, bucket.count);
+        insert.setDouble(6, bucket.last);
+        insert.setTimestamp(7, new Timestamp(bucket.lastTime));
+        insert.addBatch();
+    }
+
+    /**
+     * Merges a batch of records into every rollup table. Runs in the caller's transaction.
+     *
+     * @param connection Connection with the open transaction.
+     * @param batch The records written to PressureHistory.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public static void update(Connection connection, List<GasFlowRecord> batch) throws SQLException
+    {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            Map<Long, Bucket> buckets = new TreeMap<>();
+            for (GasFlowRecord record : batch) {
+                buckets.computeIfAbsent(resolution.bucketStart(record.getTime()), start -> new Bucket())
+                        .add(record.getPressure(), record.getTime());
+            }
+            String table = resolution.getTableName();
+            try (PreparedStatement updateStatement = connection.prepareStatement("UPDATE " + table + " SET "
+                    + "min_pressure = CASE WHEN ? < min_pressure THEN ? ELSE min_pressure END, "
+                    + "max_pressure = CASE WHEN ? > max_pressure THEN ? ELSE max_pressure END, "
+                    + "sum_pressure = sum_pressure + ?, "
+                    + "sample_count = sample_count + ?, "
+                    + "last_pressure = CASE WHEN ? >= last_time THEN ? ELSE last_pressure END, "
+                    + "last_time = CASE WHEN ? >= last_time THEN ? ELSE last_time END "
+                    + "WHERE bucket_start = ?");
+                    PreparedStatement insertStatement = connection.prepareStatement(insertSql(table))) {
+                for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+                    Bucket bucket = entry.getValue();
+                    Timestamp bucketStart = new Timestamp(entry.getKey());
+                    Timestamp lastTime = new Timestamp(bucket.lastTime);
+                    updateStatement.setDouble(1, bucket.min);
+                    updateStatement.setDouble(2, bucket.min);
+                    updateStatement.setDouble(3, bucket.max);
+                    updateStatement.setDouble(4, bucket.max);
+                    updateStatement.setDouble(5, bucket.sum);
+                    updateStatement.setLong(6, bucket.count);
+                    updateStatement.setTimestamp(7, lastTime);
+                    updateStatement.setDouble(8, bucket.last);
+                    updateStatement.setTimestamp(9, lastTime);
+                    updateStatement.setTimestamp(10, lastTime);
+                    updateStatement.setTimestamp(11, bucketStart);
+                    if (updateStatement.executeUpdate() == 0) {
+                        insertStatement.setTimestamp(1, bucketStart);
+                        insertStatement.setDouble(2, bucket.min);
+                        insertStatement.setDouble(3, bucket.max);
+                        insertStatement.setDouble(4, bucket.sum);
+                        insertStatement.setLong(5, bucket.count);
+                        insertStatement.setDouble(6, bucket.last);
+                        insertStatement.setTimestamp(7, lastTime);
+                        try {
+                            insertStatement.executeUpdate();
+                        } catch (SQLException e) {
+                            // another writer created the bucket meanwhile; merge into its row
+                            if (!DUPLICATE_KEY.equals(e.getSQLState()) || updateStatement.executeUpdate() == 0) {
+                                throw e;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the buckets overlapping a time range at the finest resolution giving at most maxBuckets buckets.
+     *
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @param maxBuckets Maximum number of buckets wanted.
+     * @param handler Callback receiving the buckets in time order.
+     * @return The resolution that was read.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public RollupResolution read(long from, long to, int maxBuckets, RollupRowHandler handler) throws SQLException
+    {
+        RollupResolution resolution = RollupResolution.forRange(from, to, maxBuckets);
+        this.read(resolution, from, to, handler);
+        return resolution;
+    }
+
+    /**
+     * Reads the buckets overlapping a time range at the given resolution.
+     *
+     * @param resolution Resolution to read.
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @param handler Callback receiving the buckets in time order.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public void read(RollupResolution resolution, long from, long to, RollupRowHandler handler) throws SQLException
+    {
+        try (Connection connection = this.connectionProvider.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT bucket_start, min_pressure,"
+                        + " max_pressure, sum_pressure, sample_count, last_pressure FROM " + resolution.getTableName()
+                        + " WHERE bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start")) {
+            statement.setTimestamp(1, new Timestamp(resolution.bucketStart(from)));
+            statement.setTimestamp(2, new Timestamp(to));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long count = resultSet.getLong(5);
+                    handler.row(resultSet.getTimestamp(1), resultSet.getDouble(2), resultSet.getDouble(3),
+                            resultSet.getDouble(4) / count, count, resultSet.getDouble(6));
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregate of the records of one batch falling into one bucket.
+     */
+    private static final class Bucket {
+
+        /** Minimum pressure. */
+        private double min = Double.POSITIVE_INFINITY;
+
+        /** Maximum pressure. */
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /** Sum of pressures. */
+        private double sum = 0;
+
+        /** Number of records. */
+        private long count = 0;
+
+        /** Pressure of the newest record. */
+        private double last = 0;
+
+        /** Time of the newest record, in milliseconds. */
+        private long lastTime = Long.MIN_VALUE;
+
+        /**
+         * Adds a record.
+         *
+         * @param pressure The pressure of the record.
+         * @param time The time of the record in milliseconds.
+         */
+        void add(double pressure, long time)
+        {
+            this.min = Math.min(this.min, pressure);
+            this.max = Math.max(this.max, pressure);
+            this.sum += pressure;
+            this.count++;
+            if (time >= this.lastTime) {
+                this.last = pressure;
+                this.lastTime = time;
+            }
+        }
+    }
+}
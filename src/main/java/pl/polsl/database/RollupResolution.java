@@ -0,0 +1,93 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+/**
+ * Resolution of the PressureHistory rollups, each kept in its own companion table.
+ * Buckets are aligned to multiples of their length since the epoch, so days are UTC days.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public enum RollupResolution {
+
+    /** One bucket per minute. */
+    MINUTE(60000L, "PressureRollupMinute"),
+
+    /** One bucket per hour. */
+    HOUR(3600000L, "PressureRollupHour"),
+
+    /** One bucket per day. */
+    DAY(86400000L, "PressureRollupDay");
+
+    /** Length of a bucket in milliseconds. */
+    private final long bucketMillis;
+
+    /** Name of the table holding the buckets. */
+    private final String tableName;
+
+    /**
+     * Constructor
+     *
+     * @param bucketMillis Length of a bucket in milliseconds.
+     * @param tableName Name of the table holding the buckets.
+     */
+    RollupResolution(long bucketMillis, String tableName)
+    {
+        this.bucketMillis = bucketMillis;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Getter for bucketMillis
+     *
+     * @return Length of a bucket in milliseconds.
+     */
+    public long getBucketMillis()
+    {
+        return this.bucketMillis;
+    }
+
+    /**
+     * Getter for tableName
+     *
+     * @return Name of the table holding the buckets.
+     */
+    public String getTableName()
+    {
+        return this.tableName;
+    }
+
+    /**
+     * Gets the start of the bucket containing the given time.
+     *
+     * @param time Time in milliseconds.
+     * @return Start of the bucket in milliseconds.
+     */
+    public long bucketStart(long time)
+    {
+        return time - Math.floorMod(time, this.bucketMillis);
+    }
+
+    /**
+     * Picks the finest resolution that covers the time range with at most the given number of buckets.
+     *
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @param maxBuckets Maximum number of buckets wanted.
+     * @return The resolution, {@link #DAY} if even days give more buckets.
+     */
+    public static RollupResolution forRange(long from, long to, int maxBuckets)
+    {
+        for (RollupResolution resolution : values()) {
+            long buckets = (resolution.bucketStart(Math.max(from, to - 1)) - resolution.bucketStart(from))
+                    / resolution.bucketMillis + 1;
+            if (buckets <= maxBuckets) {
+                return resolution;
+            }
+        }
+        return DAY;
+    }
+}
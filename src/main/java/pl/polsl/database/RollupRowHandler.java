@@ -0,0 +1,29 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Timestamp;
+
+/**
+ * Callback receiving PressureHistory rollup buckets one by one as they are read from the database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface RollupRowHandler {
+
+    /**
+     * Handles one rollup bucket.
+     *
+     * @param bucketStart Start of the bucket.
+     * @param min Minimum pressure in the bucket.
+     * @param max Maximum pressure in the bucket.
+     * @param average Average pressure in the bucket.
+     * @param count Number of samples in the bucket.
+     * @param last The newest pressure in the bucket.
+     */
+    void row(Timestamp bucketStart, double min, double max, double average, long count, double last);
+}
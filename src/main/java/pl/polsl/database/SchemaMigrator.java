@@ -0,0 +1,248 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Versioned migration of the database schema.
+ * <p>
+ * The applied version is stored in the SchemaVersion table, one row per migration.
+ * On the first call for a database the version is read once, every pending migration runs
+ * in its own transaction together with the row recording it, and the resulting version is cached
+ * by database URL, so later Models sharing the database don't touch the schema at all.
+ * Migrations check the metadata before creating anything, so databases created before
+ * versioning, which already have some of the tables, are brought up to date as well.
+ * The rollup backfill is the exception: it commits one day of history at a time, so it never holds the
+ * whole history in one transaction, and its version is recorded after the last day. A backfill interrupted
+ * midway runs again on the next start and resumes from the last committed day.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class SchemaMigrator {
+
+    /** Version of the schema after all migrations. */
+    public static final int CURRENT_VERSION = 5;
+
+    /** Migrations in the order they are applied; the migration at index i creates version i + 1. */
+    private static final Migration[] MIGRATIONS = {
+        new Migration("GasFlow table", connection -> createTableIfMissing(connection, "GasFlow",
+                "CREATE TABLE GasFlow "
+                + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,"
+                + "inflow DOUBLE,"
+                + "outflow DOUBLE)")),
+        new Migration("PressureHistory table", connection -> createTableIfMissing(connection, "PressureHistory",
+                "CREATE TABLE PressureHistory "
+                + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,"
+                + "pressure DOUBLE,"
+                + "history_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "calculation_id INT,"
+                + "FOREIGN KEY (calculation_id) REFERENCES GasFlow(id))")),
+        new Migration("PressureHistory time and calculation indexes", connection -> {
+            createIndexIfMissing(connection, "PressureHistory", "PressureHistoryTimeIdx",
+                    "CREATE INDEX PressureHistoryTimeIdx ON PressureHistory (history_time, id)");
+            createIndexIfMissing(connection, "PressureHistory", "PressureHistoryCalculationIdx",
+                    "CREATE INDEX PressureHistoryCalculationIdx ON PressureHistory (calculation_id)");
+        }),
+        new Migration("Pressure rollup tables", connection -> {
+            for (RollupResolution resolution : RollupResolution.values()) {
+                createTableIfMissing(connection, resolution.getTableName(),
+                        "CREATE TABLE " + resolution.getTableName()
+                        + " (bucket_start TIMESTAMP PRIMARY KEY,"
+                        + "min_pressure DOUBLE,"
+                        + "max_pressure DOUBLE,"
+                        + "sum_pressure DOUBLE,"
+                        + "sample_count BIGINT,"
+                        + "last_pressure DOUBLE,"
+                        + "last_time TIMESTAMP)");
+            }
+        }),
+        new Migration("Pressure rollups backfilled from PressureHistory", PressureRollup::backfill)
+    };
+
+    /** Applied schema versions by database URL. */
+    private static final Map<String, Integer> MIGRATED = new HashMap<>();
+
+    /**
+     * Constructor
+     * Not used, the class has only static methods.
+     */
+    private SchemaMigrator()
+    {
+    }
+
+    /**
+     * Brings the schema of a database up to {@link #CURRENT_VERSION}, unless this was already done
+     * for the same URL.
+     *
+     * @param url URL of the database, used as the cache key.
+     * @param connectionProvider Source of connections to the database.
+     * @return The schema version.
+     * @throws SQLException If the database is unreachable or a migration fails.
+     */
+    public static synchronized int migrate(String url, ConnectionProvider connectionProvider) throws SQLException
+    {
+        Integer cached = MIGRATED.get(url);
+        if (cached != null) {
+            return cached;
+        }
+        int version;
+        try (Connection connection = connectionProvider.getConnection()) {
+            version = migrate(connection);
+        }
+        MIGRATED.put(url, version);
+        return version;
+    }
+
+    /**
+     * Applies every pending migration on the given connection. Doesn't use the cache.
+     *
+     * @param connection Connection to the database; its auto-commit mode is restored afterwards.
+     * @return The schema version.
+     * @throws SQLException If a migration fails; the failed migration is rolled back.
+     */
+    public static int migrate(Connection connection) throws SQLException
+    {
+        createTableIfMissing(connection, "SchemaVersion",
+                "CREATE TABLE SchemaVersion (version INT PRIMARY KEY, description VARCHAR(200), applied_at TIMESTAMP)");
+        int version = readVersion(connection);
+        if (version >= CURRENT_VERSION) {
+            return version;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement record = connection.prepareStatement(
+                "INSERT INTO SchemaVersion (version, description, applied_at) VALUES (?, ?, ?)")) {
+            for (; version < CURRENT_VERSION; version++) {
+                Migration migration = MIGRATIONS[version];
+                try {
+                    migration.step.apply(connection);
+                    record.setInt(1, version + 1);
+                    record.setString(2, migration.description);
+                    record.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                    record.executeUpdate();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw new SQLException("Schema migration to version " + (version + 1)
+                            + " (" + migration.description + ") failed: " + e.getMessage(), e.getSQLState(), e);
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return version;
+    }
+
+    /**
+     * Reads the applied schema version.
+     *
+     * @param connection Connection to the database.
+     * @return The highest applied version, 0 if none.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static int readVersion(Connection connection) throws SQLException
+    {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM SchemaVersion")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Creates a table unless the metadata shows it exists.
+     *
+     * @param connection Connection to the database.
+     * @param table Name of the table.
+     * @param sql The CREATE TABLE statement.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static void createTableIfMissing(Connection connection, String table, String sql) throws SQLException
+    {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(null, connection.getSchema(), table.toUpperCase(), null)) {
+            if (tables.next()) {
+                return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Creates an index unless the metadata shows it exists.
+     *
+     * @param connection Connection to the database.
+     * @param table Name of the indexed table.
+     * @param index Name of the index.
+     * @param sql The CREATE INDEX statement.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static void createIndexIfMissing(Connection connection, String table, String index, String sql)
+            throws SQLException
+    {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(null, connection.getSchema(), table.toUpperCase(), false, true)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Schema change run inside the migration transaction. A step may commit partial work itself,
+     * if running it again continues from where it stopped.
+     */
+    @FunctionalInterface
+    private interface MigrationStep {
+
+        /**
+         * Applies the change.
+         *
+         * @param connection Connection with the open transaction.
+         * @throws SQLException If an SQL exception occurs.
+         */
+        void apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * One numbered migration.
+     */
+    private static final class Migration {
+
+        /** Description stored in SchemaVersion. */
+        private final String description;
+
+        /** The change. */
+        private final MigrationStep step;
+
+        /**
+         * Constructor
+         *
+         * @param description Description stored in SchemaVersion.
+         * @param step The change.
+         */
+        Migration(String description, MigrationStep step)
+        {
+            this.description = description;
+            this.step = step;
+        }
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind pipeline for GasFlow and PressureHistory rows.
+ * Records are put into a bounded queue and written by a background thread in JDBC batches,
+ * one transaction per batch. A batch is written when it reaches the batch size or when the
+ * flush interval has passed since its first record arrived.
+ * When the queue is full, {@link #submit(GasFlowRecord)} waits up to the offer timeout
+ * and then fails, so callers feel the backpressure instead of growing the heap.
+ * <p>
+ * When rollups are enabled, the {@link PressureRollup} tables are updated in the same transaction.
+ * <p>
+ * GasFlow rows are inserted one by one, each returning its generated id, so the PressureHistory rows
+ * are linked to the right calculation without locking the GasFlow table against readers and other writers;
+ * the PressureHistory rows are then inserted in one JDBC batch.
+ * <p>
+ * A failed batch is retried with growing pauses up to {@value #MAX_ATTEMPTS} times and then dropped;
+ * a batch rejected for its data (SQLState classes 22 and 23) is dropped at once, since retrying
+ * it can't succeed and would block every record queued behind it.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    /** Default maximum number of records waiting in the queue. */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /** Default maximum number of records written in one batch. */
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    /** Default time a record may wait for its batch to fill, in milliseconds. */
+    public static final long DEFAULT_FLUSH_INTERVAL = 200;
+
+    /** Default time submit waits for free space in the queue, in milliseconds. */
+    public static final long DEFAULT_OFFER_TIMEOUT = 100;
+
+    /** Longest pause between retries of a failed batch, in milliseconds. */
+    private static final long MAX_RETRY_DELAY = 5000;
+
+    /** Number of attempts made for a failed batch before it is dropped. */
+    private static final int MAX_ATTEMPTS = 10;
+
+    /** Number of attempts made for a failed batch once the queue is closing. */
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+
+    /** Query inserting a GasFlow row. */
+    private static final String INSERT_GAS_FLOW = "INSERT INTO GasFlow (inflow, outflow) VALUES (?, ?)";
+
+    /** Query inserting a PressureHistory row. */
+    private static final String INSERT_PRESSURE_HISTORY
+            = "INSERT INTO PressureHistory (pressure, history_time, calculation_id) VALUES (?, ?, ?)";
+
+    /** Source of connections used by the flusher. */
+    private final ConnectionProvider connectionProvider;
+
+    /** Records waiting to be written. */
+    private final BlockingQueue<GasFlowRecord> queue;
+
+    /** Maximum number of records written in one batch. */
+    private final int batchSize;
+
+    /** Time a record may wait for its batch to fill, in milliseconds. */
+    private final long flushInterval;
+
+    /** Time submit waits for free space in the queue, in milliseconds. */
+    private final long offerTimeout;
+
+    /** True if the rollup tables are updated with every batch. */
+    private final boolean updateRollups;
+
+    /** Background thread writing the batches. */
+    private final Thread flusher;
+
+    /** False once the queue was closed. */
+    private volatile boolean running = true;
+
+    /** Number of records written to the database. */
+    private final AtomicLong writtenRecords = new AtomicLong();
+
+    /** Number of records committed by every queue sharing it, grown after each committed batch. */
+    private final AtomicLong commitSequence;
+
+    /** Number of records accepted by submit. */
+    private final AtomicLong acceptedRecords = new AtomicLong();
+
+    /** Number of records the flusher is done with, written or dropped. Guarded by progress. */
+    private long handledRecords = 0;
+
+    /** Monitor notified whenever the flusher is done with a batch. */
+    private final Object progress = new Object();
+
+    /** Number of records rejected because the queue was full. */
+    private final AtomicLong rejectedRecords = new AtomicLong();
+
+    /** Number of records dropped because their batch failed too many times or was rejected for its data. */
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    /** Number of batches written. */
+    private final AtomicLong flushCount = new AtomicLong();
+
+    /** Number of failed batch writes. */
+    private final AtomicLong failedFlushCount = new AtomicLong();
+
+    /** Total time spent writing batches, in nanoseconds. */
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+
+    /** Longest batch write, in nanoseconds. */
+    private volatile long maxFlushNanos = 0;
+
+    /** Duration of the last batch write, in nanoseconds. */
+    private volatile long lastFlushNanos = 0;
+
+    /** Last error reported by the database, or null. */
+    private volatile SQLException lastError = null;
+
+    /**
+     * Constructor
+     * Creates the queue with default settings and starts the flusher.
+     *
+     * @param connectionProvider Source of connections used by the flusher.
+     */
+    public WriteBehindQueue(ConnectionProvider connectionProvider)
+    {
+        this(connectionProvider, false);
+    }
+
+    /**
+     * Constructor
+     * Creates the queue with default settings and starts the flusher.
+     *
+     * @param connectionProvider Source of connections used by the flusher.
+     * @param updateRollups True to update the {@link PressureRollup} tables with every batch.
+     */
+    public WriteBehindQueue(ConnectionProvider connectionProvider, boolean updateRollups)
+    {
+        this(connectionProvider, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_OFFER_TIMEOUT,
+                updateRollups);
+    }
+
+    /**
+     * Constructor
+     * Creates the queue and starts the flusher.
+     *
+     * @param connectionProvider Source of connections used by the flusher.
+     * @param capacity Maximum number of records waiting in the queue.
+     * @param batchSize Maximum number of records written in one batch.
+     * @param flushInterval Time a record may wait for its batch to fill, in milliseconds.
+     * @param offerTimeout Time submit waits for free space in the queue, in milliseconds.
+     */
+    public WriteBehindQueue(ConnectionProvider connectionProvider, int capacity, int batchSize,
+            long flushInterval, long offerTimeout)
+    {
+        this(connectionProvider, capacity, batchSize, flushInterval, offerTimeout, false);
+    }
+
+    /**
+     * Constructor
+     * Creates the queue and starts the flusher.
+     *
+     * @param connectionProvider Source of connections used by the flusher.
+     * @param capacity Maximum number of records waiting in the queue.
+     * @param batchSize Maximum number of records written in one batch.
+     * @param flushInterval Time a record may wait for its batch to fill, in milliseconds.
+     * @param offerTimeout Time submit waits for free space in the queue, in milliseconds.
+     * @param updateRollups True to update the {@link PressureRollup} tables with every batch.
+     */
+    public WriteBehindQueue(ConnectionProvider connectionProvider, int capacity, int batchSize,
+            long flushInterval, long offerTimeout, boolean updateRollups)
+    {
+        this(connectionProvider, capacity, batchSize, flushInterval, offerTimeout, updateRollups, new AtomicLong());
+    }
+
+    /**
+     * Constructor
+     * Creates the queue and starts the flusher. Queues writing to one database can share the commit sequence,
+     * which then changes whenever any of them commits rows.
+     *
+     * @param connectionProvider Source of connections used by the flusher.
+     * @param capacity Maximum number of records waiting in the queue.
+     * @param batchSize Maximum number of records written in one batch.
+     * @param flushInterval Time a record may wait for its batch to fill, in milliseconds.
+     * @param offerTimeout Time submit waits for free space in the queue, in milliseconds.
+     * @param updateRollups True to update the {@link PressureRollup} tables with every batch.
+     * @param commitSequence Counter of committed records, grown by the size of every committed batch.
+     */
+    public WriteBehindQueue(ConnectionProvider connectionProvider, int capacity, int batchSize,
+            long flushInterval, long offerTimeout, boolean updateRollups, AtomicLong commitSequence)
+    {
+        this.commitSequence = commitSequence;
+        this.connectionProvider = connectionProvider;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.updateRollups = updateRollups;
+        this.flusher = new Thread(this::runFlusher, "gas-flow-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a record for writing.
+     *
+     * @param record The record to write.
+     * @throws SQLException If the queue is closed or stays full for longer than the offer timeout.
+     */
+    public void submit(GasFlowRecord record) throws SQLException
+    {
+        this.submit(record, this.offerTimeout);
+    }
+
+    /**
+     * Queues a record for writing, waiting for free space up to the given time.
+     * Bulk writers that would rather slow down than lose rows pass a longer timeout than the default one.
+     *
+     * @param record The record to write.
+     * @param timeout Time to wait for free space in the queue, in milliseconds.
+     * @throws SQLException If the queue is closed or stays full for longer than the timeout.
+     */
+    public void submit(GasFlowRecord record, long timeout) throws SQLException
+    {
+        if (!this.running) {
+            throw new SQLException("Write-behind queue is closed");
+        }
+        boolean accepted;
+        try {
+            accepted = this.queue.offer(record, timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write-behind queue", e);
+        }
+        if (!accepted) {
+            this.rejectedRecords.incrementAndGet();
+            throw new SQLException("Database writes are falling behind, try again later");
+        }
+        this.acceptedRecords.incrementAndGet();
+    }
+
+    /**
+     * Waits until every record accepted before the call was written or dropped.
+     * Records submitted meanwhile by other callers are not waited for.
+     *
+     * @throws SQLException If some of the records were dropped, or the thread was interrupted.
+     */
+    public void flush() throws SQLException
+    {
+        long target = this.acceptedRecords.get();
+        long dropped = this.droppedRecords.get();
+        synchronized (this.progress) {
+            while (this.handledRecords < target && this.flusher.isAlive()) {
+                try {
+                    this.progress.wait(this.flushInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for the write-behind queue", e);
+                }
+            }
+        }
+        if (this.droppedRecords.get() != dropped) {
+            throw new SQLException("Records could not be written to the database", this.lastError);
+        }
+    }
+
+    /**
+     * Stops accepting records, writes every queued record and stops the flusher.
+     * Waits until the flusher finishes.
+     */
+    @Override
+    public void close()
+    {
+        this.running = false;
+        boolean interrupted = false;
+        while (this.flusher.isAlive()) {
+            try {
+                this.flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of records waiting in the queue.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the number of records written to the database.
+     *
+     * @return The number of written records.
+     */
+    public long getWrittenRecords()
+    {
+        return this.writtenRecords.get();
+    }
+
+    /**
+     * Gets the commit sequence, which grows whenever this queue or a queue sharing the sequence commits rows.
+     *
+     * @return The number of records committed by the queues sharing the sequence.
+     */
+    public long getCommitSequence()
+    {
+        return this.commitSequence.get();
+    }
+
+    /**
+     * Gets the number of records rejected because the queue was full.
+     *
+     * @return The number of rejected records.
+     */
+    public long getRejectedRecords()
+    {
+        return this.rejectedRecords.get();
+    }
+
+    /**
+     * Gets the number of records dropped because their batch failed {@value #MAX_ATTEMPTS} times,
+     * a few times once the queue was closing, or was rejected for its data.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDroppedRecords()
+    {
+        return this.droppedRecords.get();
+    }
+
+    /**
+     * Gets the number of batches written.
+     *
+     * @return The number of successful flushes.
+     */
+    public long getFlushCount()
+    {
+        return this.flushCount.get();
+    }
+
+    /**
+     * Gets the number of failed batch writes.
+     *
+     * @return The number of failed flushes.
+     */
+    public long getFailedFlushCount()
+    {
+        return this.failedFlushCount.get();
+    }
+
+    /**
+     * Gets the mean duration of a successful batch write.
+     *
+     * @return The mean flush latency in milliseconds, or 0 if nothing was written.
+     */
+    public double getAverageFlushLatency()
+    {
+        long flushes = this.flushCount.get();
+        return flushes == 0 ? 0 : this.totalFlushNanos.get() / 1e6 / flushes;
+    }
+
+    /**
+     * Gets the duration of the last successful batch write.
+     *
+     * @return The last flush latency in milliseconds.
+     */
+    public double getLastFlushLatency()
+    {
+        return this.lastFlushNanos / 1e6;
+    }
+
+    /**
+     * Gets the duration of the longest successful batch write.
+     *
+     * @return The maximum flush latency in milliseconds.
+     */
+    public double getMaxFlushLatency()
+    {
+        return this.maxFlushNanos / 1e6;
+    }
+
+    /**
+     * Gets the last error reported by the database.
+     *
+     * @return The last error, or null if no write has failed.
+     */
+    public SQLException getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * Main loop of the flusher. Collects batches and writes them until the queue is closed and empty.
+     */
+    private void runFlusher()
+    {
+        List<GasFlowRecord> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                this.collectBatch(batch);
+            } catch (InterruptedException e) {
+                this.running = false;
+            }
+            if (!batch.isEmpty()) {
+                this.writeWithRetry(batch);
+                synchronized (this.progress) {
+                    this.handledRecords += batch.size();
+                    this.progress.notifyAll();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Fills the batch until it reaches the batch size or the flush interval passes
+     * since the first record was taken.
+     *
+     * @param batch The list to fill.
+     * @throws InterruptedException If the flusher was interrupted.
+     */
+    private void collectBatch(List<GasFlowRecord> batch) throws InterruptedException
+    {
+        GasFlowRecord first = this.queue.poll(this.flushInterval, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.flushInterval);
+        while (batch.size() < this.batchSize) {
+            this.queue.drainTo(batch, this.batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= this.batchSize || remaining <= 0 || !this.running) {
+                break;
+            }
+            GasFlowRecord next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Writes the batch, retrying with growing pauses while the database is failing.
+     * The batch is dropped after {@value #MAX_ATTEMPTS} attempts, after a few once the queue is closing,
+     * and at once if the database rejects its data.
+     *
+     * @param batch The records to write.
+     */
+    private void writeWithRetry(List<GasFlowRecord> batch)
+    {
+        long delay = this.flushInterval;
+        int attempts = 0;
+        while (true) {
+            try {
+                long start = System.nanoTime();
+                this.writeBatch(batch);
+                long duration = System.nanoTime() - start;
+                this.lastFlushNanos = duration;
+                this.maxFlushNanos = Math.max(this.maxFlushNanos, duration);
+                this.totalFlushNanos.addAndGet(duration);
+                this.flushCount.incrementAndGet();
+                this.writtenRecords.addAndGet(batch.size());
+                this.commitSequence.addAndGet(batch.size());
+                return;
+            } catch (SQLException e) {
+                this.lastError = e;
+                this.failedFlushCount.incrementAndGet();
+                attempts++;
+                if (attempts >= MAX_ATTEMPTS || (!this.running && attempts >= SHUTDOWN_ATTEMPTS)
+                        || isRejectedData(e)) {
+                    this.droppedRecords.addAndGet(batch.size());
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                this.running = false;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Writes the batch in one transaction.
+     *
+     * @param batch The records to write.
+     * @throws SQLException If an SQL exception occurs. The transaction is rolled back.
+     */
+    private void writeBatch(List<GasFlowRecord> batch) throws SQLException
+    {
+        try (Connection connection = this.connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement gasFlowStatement = connection.prepareStatement(INSERT_GAS_FLOW,
+                    Statement.RETURN_GENERATED_KEYS);
+                    PreparedStatement historyStatement = connection.prepareStatement(INSERT_PRESSURE_HISTORY)) {
+                int[] ids = new int[batch.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    GasFlowRecord record = batch.get(i);
+                    gasFlowStatement.setDouble(1, record.getInflow());
+                    gasFlowStatement.setDouble(2, record.getOutflow());
+                    gasFlowStatement.executeUpdate();
+                    try (ResultSet keys = gasFlowStatement.getGeneratedKeys()) {
+                        if (!keys.next()) {
+                            throw new SQLException("Could not read back the generated GasFlow id");
+                        }
+                        ids[i] = keys.getInt(1);
+                    }
+                }
+
+                for (int i = 0; i < ids.length; i++) {
+                    GasFlowRecord record = batch.get(i);
+                    historyStatement.setDouble(1, record.getPressure());
+                    historyStatement.setTimestamp(2, new Timestamp(record.getTime()));
+                    historyStatement.setInt(3, ids[i]);
+                    historyStatement.addBatch();
+                }
+                historyStatement.executeBatch();
+                if (this.updateRollups) {
+                    PressureRollup.update(connection, batch);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the database rejected the data of a batch, as opposed to failing to write it.
+     *
+     * @param e The error of the batch.
+     * @return True for data exceptions and constraint violations.
+     */
+    private static boolean isRejectedData(SQLException e)
+    {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            String state = cause.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/package-info.java to edit this template
+ */
+/**
+ * The database package contains the data-access layer of the application.
+ * The {@link pl.polsl.database.WriteBehindQueue} class writes GasFlow and PressureHistory rows
+ * in batches on a background thread, {@link pl.polsl.database.GasFlowRecord} holds one such row pair.
+ * The {@link pl.polsl.database.ConnectionPool} class hands out pooled connections with cached prepared statements.
+ * The {@link pl.polsl.database.HistoryReader} class streams pages of stored history to row callbacks,
+ * and the history joined with the gas flows to a {@link pl.polsl.database.JoinedHistoryRowHandler} for export;
+ * a {@link pl.polsl.database.HistoryTimeKey} continues a time-ordered read after its last row.
+ * The {@link pl.polsl.database.SchemaMigrator} class applies pending versioned schema migrations once per database.
+ * The {@link pl.polsl.database.PressureRollup} class keeps per-minute, per-hour and per-day aggregates of the history.
+ */
+package pl.polsl.database;
@@ -0,0 +1,173 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with HDR-style log-linear buckets.
+ * <p>
+ * Values below 32 ns get a bucket each; above that every power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so a bucket is never wider than 1/16 of its values
+ * and the whole range of a long fits in {@value #BUCKETS} counters.
+ * Recording finds the bucket with a few bit operations and increments an atomic counter,
+ * so it neither allocates nor locks and can be called from any thread.
+ * Readings taken while values are recorded are approximate but never torn.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    /** Number of buckets per power of two. */
+    public static final int SUB_BUCKETS = 16;
+
+    /** Number of bits of {@link #SUB_BUCKETS}. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Number of buckets covering every non-negative long. */
+    public static final int BUCKETS = 960;
+
+    /** Counts of the recorded values per bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Number of recorded values. */
+    private final AtomicLong count = new AtomicLong();
+
+    /** Sum of the recorded values. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** Largest recorded value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(nanos, 0);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        long current;
+        while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+            // another thread raised the maximum, compare again
+        }
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos The reading taken when the measured work started.
+     */
+    public void recordSince(long startNanos)
+    {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     *
+     * @return The sum in nanoseconds.
+     */
+    public long getSum()
+    {
+        return this.sum.get();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return The maximum in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * Estimates a quantile of the recorded values as the middle of the bucket holding it.
+     *
+     * @param quantile The quantile, from 0 to 1.
+     * @return The estimate in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getValueAtQuantile(double quantile)
+    {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(quantile, 0), 1) * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long lower = lowerBound(i);
+                long middle = lower + (upperBound(i) - lower) / 2;
+                return Math.min(middle, this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value A non-negative value.
+     * @return Index of the bucket.
+     */
+    static int bucketOf(long value)
+    {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the smallest value of a bucket.
+     *
+     * @param bucket Index of the bucket.
+     * @return The smallest value.
+     */
+    static long lowerBound(int bucket)
+    {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        return (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+    /**
+     * Gets the largest value of a bucket.
+     *
+     * @param bucket Index of the bucket.
+     * @return The largest value.
+     */
+    static long upperBound(int bucket)
+    {
+        return bucket + 1 == BUCKETS ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+}
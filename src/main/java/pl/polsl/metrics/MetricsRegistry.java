@@ -0,0 +1,270 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named metrics of the application, rendered in the Prometheus text exposition format.
+ * <p>
+ * A metric family has a name, a help text, a type and optionally one label.
+ * Latency histograms are exported as summaries in seconds, counters and gauges either hold
+ * their own value or read it from a supplier when scraped, so existing counters elsewhere
+ * don't have to be duplicated. Lookups don't allocate once a series exists, but hot paths
+ * should keep the returned instrument in a field.
+ * At most {@value #MAX_LABEL_VALUES} label values are kept per family; later ones share the series "other".
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class MetricsRegistry {
+
+    /** Maximum number of label values per family. */
+    public static final int MAX_LABEL_VALUES = 64;
+
+    /** Label value shared by the values above the limit. */
+    private static final String OTHER = "other";
+
+    /** Quantiles exported for every latency histogram. */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /** Nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** Metric families by name, sorted for stable output. */
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Gets or creates a latency histogram without labels.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @return The histogram.
+     */
+    public LatencyHistogram timer(String name, String help)
+    {
+        return this.timer(name, help, null, null);
+    }
+
+    /**
+     * Gets or creates a labelled latency histogram.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @param label Name of the label, or null.
+     * @param value Value of the label.
+     * @return The histogram.
+     */
+    public LatencyHistogram timer(String name, String help, String label, String value)
+    {
+        return (LatencyHistogram) this.family(name, help, "summary", label).series(value, LatencyHistogram::new);
+    }
+
+    /**
+     * Gets or creates a counter without labels.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @return The counter.
+     */
+    public LongAdder counter(String name, String help)
+    {
+        return this.counter(name, help, null, null);
+    }
+
+    /**
+     * Gets or creates a labelled counter.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @param label Name of the label, or null.
+     * @param value Value of the label.
+     * @return The counter.
+     */
+    public LongAdder counter(String name, String help, String label, String value)
+    {
+        return (LongAdder) this.family(name, help, "counter", label).series(value, LongAdder::new);
+    }
+
+    /**
+     * Registers a counter whose value is read from a supplier when scraped. Replaces an earlier supplier.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @param supplier Source of the value.
+     */
+    public void counter(String name, String help, DoubleSupplier supplier)
+    {
+        this.family(name, help, "counter", null).series.put("", supplier);
+    }
+
+    /**
+     * Registers a gauge whose value is read from a supplier when scraped. Replaces an earlier supplier.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @param supplier Source of the value.
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier)
+    {
+        this.family(name, help, "gauge", null).series.put("", supplier);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @return The text.
+     */
+    public String toPrometheusText()
+    {
+        StringBuilder text = new StringBuilder(4096);
+        for (Family family : this.families.values()) {
+            text.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String labels = family.label == null ? "" : family.label + "=\"" + escape(series.getKey()) + "\"";
+                Object instrument = series.getValue();
+                if (instrument instanceof LatencyHistogram) {
+                    LatencyHistogram histogram = (LatencyHistogram) instrument;
+                    for (double quantile : QUANTILES) {
+                        String quantileLabel = "quantile=\"" + quantile + "\"";
+                        appendSample(text, family.name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                                histogram.getValueAtQuantile(quantile) / NANOS_PER_SECOND);
+                    }
+                    appendSample(text, family.name + "_sum", labels, histogram.getSum() / NANOS_PER_SECOND);
+                    appendSample(text, family.name + "_count", labels, histogram.getCount());
+                } else if (instrument instanceof LongAdder) {
+                    appendSample(text, family.name, labels, ((LongAdder) instrument).sum());
+                } else {
+                    appendSample(text, family.name, labels, ((DoubleSupplier) instrument).getAsDouble());
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Gets or creates a metric family.
+     *
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @param type Prometheus type of the metric.
+     * @param label Name of the label, or null.
+     * @return The family.
+     * @throws IllegalArgumentException If the family exists with another type or label.
+     */
+    private Family family(String name, String help, String type, String label)
+    {
+        Family family = this.families.get(name);
+        if (family == null) {
+            family = this.families.computeIfAbsent(name, key -> new Family(name, help, type, label));
+        }
+        if (!family.type.equals(type) || (family.label == null ? label != null : !family.label.equals(label))) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as another kind");
+        }
+        return family;
+    }
+
+    /**
+     * Appends one sample line.
+     *
+     * @param text Builder of the output.
+     * @param name Name of the sample.
+     * @param labels Rendered labels, or an empty string.
+     * @param value The value.
+     */
+    private static void appendSample(StringBuilder text, String name, String labels, double value)
+    {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ');
+        if (Double.isNaN(value)) {
+            text.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            text.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value The label value.
+     * @return The value with backslashes, quotes and new lines escaped.
+     */
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Metric family: name, help, type, label and the series by label value.
+     */
+    private static final class Family {
+
+        /** Name of the metric. */
+        private final String name;
+
+        /** Description of the metric. */
+        private final String help;
+
+        /** Prometheus type of the metric. */
+        private final String type;
+
+        /** Name of the label, or null. */
+        private final String label;
+
+        /** Instruments by label value, "" without a label. */
+        private final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        /**
+         * Constructor
+         *
+         * @param name Name of the metric.
+         * @param help Description of the metric.
+         * @param type Prometheus type of the metric.
+         * @param label Name of the label, or null.
+         */
+        Family(String name, String help, String type, String label)
+        {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.label = label;
+        }
+
+        /**
+         * Gets or creates the instrument of a label value.
+         *
+         * @param value The label value, null without a label.
+         * @param factory Creates a missing instrument.
+         * @return The instrument.
+         */
+        Object series(String value, Supplier<Object> factory)
+        {
+            String key = value == null ? "" : value;
+            Object instrument = this.series.get(key);
+            if (instrument != null) {
+                return instrument;
+            }
+            if (this.series.size() >= MAX_LABEL_VALUES) {
+                key = OTHER;
+            }
+            return this.series.computeIfAbsent(key, k -> factory.get());
+        }
+    }
+}
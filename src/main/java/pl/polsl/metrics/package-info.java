@@ -0,0 +1,11 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/package-info.java to edit this template
+ */
+/**
+ * The metrics package contains the instrumentation of the application.
+ * The {@link pl.polsl.metrics.LatencyHistogram} class records latencies into fixed log-linear buckets without allocating,
+ * the {@link pl.polsl.metrics.MetricsRegistry} class holds named histograms, counters and gauges
+ * and renders them in the Prometheus text format.
+ */
+package pl.polsl.metrics;
@@ -0,0 +1,79 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Runge-Kutta method with adaptive step size.
+ * Each step is compared with two half steps; the difference estimates the local error,
+ * and the step is halved until the error is within the tolerance and doubled again while it stays well below it.
+ * Where the rate is smooth the whole step is taken at once, near sharp changes it is refined.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class AdaptiveIntegrator implements PressureIntegrator {
+
+    /** Default tolerance of the local error, in hPa. */
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    /** Shortest step taken regardless of the error, in minutes. */
+    private static final double MIN_STEP = 1e-9;
+
+    /** Method taking the trial steps. */
+    private final RungeKuttaIntegrator rungeKutta = new RungeKuttaIntegrator();
+
+    /** Tolerance of the local error, in hPa. */
+    private final double tolerance;
+
+    /**
+     * Constructor
+     * Uses the default tolerance.
+     */
+    public AdaptiveIntegrator()
+    {
+        this(DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tolerance Tolerance of the local error, in hPa.
+     */
+    public AdaptiveIntegrator(double tolerance)
+    {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public double step(PressureRate rate, double timeMin, double pressure, double stepMin)
+    {
+        double end = timeMin + stepMin;
+        double time = timeMin;
+        double h = stepMin;
+        while (time < end) {
+            boolean last = time + h >= end;
+            if (last) {
+                h = end - time;
+            }
+            double full = this.rungeKutta.step(rate, time, pressure, h);
+            double middle = this.rungeKutta.step(rate, time, pressure, h / 2);
+            double half = this.rungeKutta.step(rate, time + h / 2, middle, h / 2);
+            double error = Math.abs(half - full) / 15;
+            if (error <= this.tolerance || h <= MIN_STEP) {
+                pressure = half + (half - full) / 15;
+                time = last ? end : time + h;
+                if (error < this.tolerance / 32) {
+                    h *= 2;
+                }
+            } else {
+                h /= 2;
+            }
+        }
+        return pressure;
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Explicit Euler method: one rate evaluation per step, first-order accurate.
+ * Exact while the rate doesn't change during the step.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class EulerIntegrator implements PressureIntegrator {
+
+    @Override
+    public double step(PressureRate rate, double timeMin, double pressure, double stepMin)
+    {
+        return pressure + rate.rate(timeMin, pressure) * stepMin;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Replays a recorded flow profile through the tank physics in simulated time.
+ * <p>
+ * A profile is a text file with one event per line: {@code time,inflow,outflow}, where time is in
+ * milliseconds and never decreases. Empty lines, lines starting with '#' and a header line are skipped.
+ * Between two events the pressure is integrated with the flows of the earlier event by the
+ * {@link PressureSolver}, so the clock is taken from the profile and never from the wall clock.
+ * The pressure at every event is collected into primitive arrays handed to a {@link ReplayBatchHandler}
+ * when full, so no object is created per event.
+ * <p>
+ * An instance is not thread-safe; use one per replay.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class FlowProfileReplay implements PressureRate {
+
+    /** Default number of events in a batch. */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /** Solver integrating the pressure between events. */
+    private final PressureSolver solver;
+
+    /** Gas conductivity factor of the tank. */
+    private final double gasConductivityFactor;
+
+    /** Maximum allowed pressure of the tank, in hPa. */
+    private final double maxPressure;
+
+    /** Times of the batched events. */
+    private final long[] times;
+
+    /** Inflows of the batched events. */
+    private final double[] inflows;
+
+    /** Outflows of the batched events. */
+    private final double[] outflows;
+
+    /** Pressures at the batched events. */
+    private final double[] pressures;
+
+    /** Inflow in force during the integrated interval. */
+    private double inflow;
+
+    /** Outflow in force during the integrated interval. */
+    private double outflow;
+
+    /**
+     * Constructor
+     *
+     * @param solver Solver integrating the pressure between events.
+     * @param gasConductivityFactor Gas conductivity factor of the tank.
+     * @param maxPressure Maximum allowed pressure of the tank, in hPa.
+     * @param batchSize Number of events handed to the handler at once.
+     */
+    public FlowProfileReplay(PressureSolver solver, double gasConductivityFactor, double maxPressure, int batchSize)
+    {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.solver = solver;
+        this.gasConductivityFactor = gasConductivityFactor;
+        this.maxPressure = maxPressure;
+        this.times = new long[batchSize];
+        this.inflows = new double[batchSize];
+        this.outflows = new double[batchSize];
+        this.pressures = new double[batchSize];
+    }
+
+    /**
+     * Replays a profile, starting with no flows at the time of the first event.
+     *
+     * @param profile Reader of the profile.
+     * @param startingPressure Pressure before the first event, in hPa.
+     * @param handler Callback receiving the batches of results.
+     * @return Summary of the replay.
+     * @throws IOException If the profile could not be read or has an invalid line.
+     * @throws SQLException If the handler failed to write a batch.
+     */
+    public ReplayResult replay(BufferedReader profile, double startingPressure, ReplayBatchHandler handler)
+            throws IOException, SQLException
+    {
+        double pressure = startingPressure;
+        double peak = startingPressure;
+        long time = Long.MIN_VALUE;
+        long events = 0;
+        long overflows = 0;
+        long firstOverflowTime = -1;
+        int count = 0;
+        this.inflow = 0;
+        this.outflow = 0;
+        long lineNumber = 0;
+        String line;
+        while ((line = profile.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || !isEventLine(line)) {
+                continue;
+            }
+            int first = line.indexOf(',');
+            int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+            if (second < 0) {
+                throw new IOException("Profile line " + lineNumber + " should be time,inflow,outflow");
+            }
+            long eventTime;
+            double eventInflow;
+            double eventOutflow;
+            try {
+                eventTime = Long.parseLong(line.substring(0, first).trim());
+                eventInflow = Double.parseDouble(line.substring(first + 1, second));
+                eventOutflow = Double.parseDouble(line.substring(second + 1));
+            } catch (NumberFormatException e) {
+                throw new IOException("Profile line " + lineNumber + " has an invalid number", e);
+            }
+            if (time != Long.MIN_VALUE) {
+                if (eventTime < time) {
+                    throw new IOException("Profile line " + lineNumber + " goes back in time");
+                }
+                if (eventTime > time) {
+                    IntegrationResult result = this.solver.solveConstantFlows(this.inflow, this.outflow,
+                            this.gasConductivityFactor, pressure, (eventTime - time) / 60000.0, this.maxPressure);
+                    if (result.hasCrossed()) {
+                        overflows++;
+                        if (firstOverflowTime < 0) {
+                            firstOverflowTime = time + Math.round(result.getCrossingTimeMin() * 60000);
+                        }
+                    }
+                    pressure = result.getPressure();
+                    peak = Math.max(peak, pressure);
+                }
+            }
+            time = eventTime;
+            this.inflow = eventInflow;
+            this.outflow = eventOutflow;
+            this.times[count] = time;
+            this.inflows[count] = eventInflow;
+            this.outflows[count] = eventOutflow;
+            this.pressures[count] = pressure;
+            events++;
+            if (++count == this.times.length) {
+                handler.batch(this.times, this.inflows, this.outflows, this.pressures, count);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            handler.batch(this.times, this.inflows, this.outflows, this.pressures, count);
+        }
+        return new ReplayResult(events, overflows, firstOverflowTime, peak, pressure,
+                time == Long.MIN_VALUE ? 0 : time);
+    }
+
+    /**
+     * Computes the rate of change of the pressure with the flows of the current interval.
+     *
+     * @param timeMin Time from the start of the interval in minutes, unused.
+     * @param pressure The current pressure.
+     * @return The rate of change in hPa per minute.
+     */
+    @Override
+    public double rate(double timeMin, double pressure)
+    {
+        return PressureKernel.rate(pressure, this.inflow, this.outflow, this.gasConductivityFactor);
+    }
+
+    /**
+     * Checks whether a line holds an event rather than a comment or header.
+     *
+     * @param line A non-empty line of the profile.
+     * @return True if the line starts with a digit, sign or whitespace.
+     */
+    private static boolean isEventLine(String line)
+    {
+        char first = line.charAt(0);
+        return (first >= '0' && first <= '9') || first == '-' || first == '+' || first == ' ';
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Result of integrating the pressure over an interval: the final pressure
+ * and the time at which it first rose above the threshold.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class IntegrationResult {
+
+    /** The pressure at the end of the interval, in hPa. */
+    private final double pressure;
+
+    /** Time of the first crossing from the start of the interval in minutes, or -1. */
+    private final double crossingTimeMin;
+
+    /**
+     * Constructor
+     *
+     * @param pressure The pressure at the end of the interval, in hPa.
+     * @param crossingTimeMin Time of the first crossing from the start of the interval in minutes, or -1.
+     */
+    public IntegrationResult(double pressure, double crossingTimeMin)
+    {
+        this.pressure = pressure;
+        this.crossingTimeMin = crossingTimeMin;
+    }
+
+    /**
+     * Getter for pressure
+     *
+     * @return The pressure at the end of the interval, in hPa.
+     */
+    public double getPressure()
+    {
+        return this.pressure;
+    }
+
+    /**
+     * Getter for crossingTimeMin
+     *
+     * @return Time from the start of the interval at which the pressure first rose above the threshold,
+     * in minutes, or -1 if it didn't.
+     */
+    public double getCrossingTimeMin()
+    {
+        return this.crossingTimeMin;
+    }
+
+    /**
+     * Checks whether the pressure rose above the threshold during the interval.
+     *
+     * @return True if a crossing was found.
+     */
+    public boolean hasCrossed()
+    {
+        return this.crossingTimeMin >= 0;
+    }
+}
@@ -5,18 +5,29 @@
 package pl.polsl.model;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
+import java.nio.file.Paths;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.DoubleStream;
+import pl.polsl.database.ConnectionPool;
+import pl.polsl.database.GasFlowRecord;
+import pl.polsl.database.GasFlowRowHandler;
+import pl.polsl.database.HistoryReader;
+import pl.polsl.database.HistoryTimeKey;
+import pl.polsl.database.JoinedHistoryRowHandler;
+import pl.polsl.database.PressureHistoryRowHandler;
+import pl.polsl.database.PressureRollup;
+import pl.polsl.database.RollupResolution;
+import pl.polsl.database.RollupRowHandler;
+import pl.polsl.database.SchemaMigrator;
+import pl.polsl.database.WriteBehindQueue;
+import pl.polsl.metrics.MetricsRegistry;
     
 /**
  * The Model class represents the core logic and data of the gas installation monitoring system.
@@ -25,151 +36,484 @@ import java.util.List;
  * @version 5.1
  */
 
-public class Model {
-    
-    /** Gas constant used in pressure calculations. */
-    final private double gasConstant = 8.314;
+public class Model implements AutoCloseable {
     
     /** Gas conductivity factor based on tank volume and temperature. */
     final private double gasConductivityFactor;
     
-    /** Timestamp representing the start time of the model's operation. */
-    private long timer;
-    
     /** Tank object representing the gas storage tank. */
     private final Tank tank;
     
-    /** List that stores historical values of pressure */
-    private ArrayList<Double> pressureHistory;
+    /** Bounded store of historical values of pressure */
+    private final PressureHistory pressureHistory;
     
-    /** Connection to the database */
-    private Connection connection = null;
-
     /** URL of the database */
     private final String url = "jdbc:derby://localhost:1527/sample";
+    
+    /** Pool of connections to the database */
+    private final ConnectionPool connectionPool;
+    
+    /** Streaming reader of the database history */
+    private final HistoryReader historyReader;
+    
+    /** Reader of the per-minute, per-hour and per-day pressure aggregates */
+    private final PressureRollup pressureRollup;
+    
+    /** Metrics of the Model and of the components built around it */
+    private final MetricsRegistry metrics;
+    
+    /** Whether this Model created the database resources and closes them */
+    private final boolean ownsResources;
+    
+    /** Number of pressure updates that ended above the maximum */
+    private final LongAdder overflowEvents;
+    
+    /** Error from connecting to or migrating the database, null if it is available */
+    private SQLException databaseError = null;
+    
+    /** Queue writing GasFlow and PressureHistory rows in the background, null without database */
+    private WriteBehindQueue writeBehindQueue = null;
+    
+    /** Number of rows committed to the database by the write queues of this Model and the Models sharing it */
+    private final AtomicLong databaseVersion;
+    
+    /** Time a replay waits for free space in the write queue, in milliseconds */
+    private static final long REPLAY_OFFER_TIMEOUT = 60000;
+    
+    /** Service warned whenever the flows or the pressure are set, or null */
+    private volatile OverflowPredictor overflowPredictor = null;
+    
+    /** Id of this tank in the overflow predictor */
+    private volatile String overflowTankId = null;
+    
+    /** Log receiving every change of the state, or null. */
+    private volatile TankEventLog eventLog = null;
+    
+    /** Solver integrating the pressure between updates */
+    private volatile PressureSolver solver = new PressureSolver(new RungeKuttaIntegrator(), PressureSolver.DEFAULT_MAX_STEP_MIN);
 
     /**
-     * Creates tables in the database for GasFlow and PressureHistory.
+     * Queues current GasFlow and PressureHistory data for saving to the database.
+     * Rows are written in batches by a background thread.
      *
-     * @throws SQLException If an SQL exception occurs.
+     * @throws SQLException If there is no database connection or the write queue is full.
+     */
+    public void saveGasFlowToDatabase() throws SQLException {
+        if (this.writeBehindQueue == null) {
+            throw new SQLException("No connection to the database");
+        }
+        TankState state = this.tank.getState();
+        this.timeDatabaseCall("save_gas_flow", () -> {
+            this.writeBehindQueue.submit(new GasFlowRecord(state.getGasInflow(), state.getGasOutflow(),
+                    state.getPressure(), System.currentTimeMillis()));
+            return null;
+        });
+    }
+    
+    /**
+     * Getter for the queue writing data to the database.
+     *
+     * @return The write-behind queue, or null if there is no database connection.
      */
-    private void createTables() throws SQLException {
-        Statement statement = connection.createStatement();
-        statement.executeUpdate("CREATE TABLE GasFlow "
-            + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,"
-            + "inflow DOUBLE,"
-            + "outflow DOUBLE)");
+    public WriteBehindQueue getWriteBehindQueue()
+    {
+        return this.writeBehindQueue;
+    }
 
-        statement.executeUpdate("CREATE TABLE PressureHistory "
-            + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,"
-            + "pressure DOUBLE,"
-            + "history_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
-            + "calculation_id INT,"
-            + "FOREIGN KEY (calculation_id) REFERENCES GasFlow(id)");
+    /**
+     * Gets the version of the database contents written by this application.
+     * It grows whenever the write queue, which Models sharing the database share as well, commits rows,
+     * so results read from the database stay valid while it is unchanged.
+     *
+     * @return The number of rows committed so far.
+     */
+    public long getDatabaseVersion()
+    {
+        return this.databaseVersion.get();
     }
 
     /**
-     * Saves GasFlow data to the database and triggers saving PressureHistory data.
+     * Streams a page of GasFlow rows from the database to the handler.
      *
+     * @param afterId Id of the last row already read, 0 to start from the beginning.
+     * @param limit Maximum number of rows to read.
+     * @param handler Callback receiving the rows.
+     * @return Id of the last row read, or afterId if there were no rows.
      * @throws SQLException If an SQL exception occurs.
      */
-    public void saveGasFlowToDatabase() throws SQLException {
-        String insertQuery = "INSERT INTO GasFlow (inflow, outflow) VALUES (?, ?)";
-        PreparedStatement preparedStatement = connection.prepareStatement(insertQuery, Statement.RETURN_GENERATED_KEYS);
-        preparedStatement.setDouble(1, this.tank.getGasInflow());
-        preparedStatement.setDouble(2, this.tank.getGasOutflow());
-        preparedStatement.executeUpdate();
-
-        ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
-        if (generatedKeys.next()) {
-            this.savePressureHistoryToDatabase(generatedKeys.getInt(1));
-        }
+    public int readGasFlowFromDatabase(int afterId, int limit, GasFlowRowHandler handler) throws SQLException {
+        return this.timeDatabaseCall("read_gas_flow", () -> this.historyReader.readGasFlow(afterId, limit, handler));
     }
 
     /**
-     * Saves PressureHistory data to the database.
+     * Streams a page of PressureHistory rows from the database to the handler.
      *
-     * @param calculationId The ID associated with the GasFlow calculation.
+     * @param afterId Id of the last row already read, 0 to start from the beginning.
+     * @param limit Maximum number of rows to read.
+     * @param handler Callback receiving the rows.
+     * @return Id of the last row read, or afterId if there were no rows.
      * @throws SQLException If an SQL exception occurs.
      */
-    private void savePressureHistoryToDatabase(int calculationId) throws SQLException {
-        String insertQuery = "INSERT INTO PressureHistory (pressure, calculation_id) VALUES (?, ?)";
-        PreparedStatement preparedStatement = connection.prepareStatement(insertQuery);
-        preparedStatement.setDouble(1, this.tank.getPressure());
-        preparedStatement.setInt(2, calculationId);
-        preparedStatement.executeUpdate();
+    public int readPressureHistoryFromDatabase(int afterId, int limit, PressureHistoryRowHandler handler)
+            throws SQLException {
+        return this.timeDatabaseCall("read_pressure_history",
+                () -> this.historyReader.readPressureHistory(afterId, limit, handler));
     }
 
     /**
-     * Retrieves GasFlow data from the database.
+     * Streams a page of PressureHistory rows recorded in a time range from the database to the handler,
+     * oldest first, using the index on history_time.
      *
-     * @return List of lists containing GasFlow data.
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @param after Key returned for the previous page, or null to start at the beginning of the range.
+     * @param limit Maximum number of rows to read.
+     * @param handler Callback receiving the rows.
+     * @return Key to pass for the next page, or null if the range has no more rows.
      * @throws SQLException If an SQL exception occurs.
      */
-    public List<List<Object>> getGasFlowDataFromDatabase() throws SQLException {
-        List<List<Object>> gasFlowDataList = new ArrayList<>();
-
-        String selectQuery = "SELECT * FROM GasFlow";
-        PreparedStatement preparedStatement = connection.prepareStatement(selectQuery);
-        ResultSet resultSet = preparedStatement.executeQuery();
-
-        ResultSetMetaData metaData = resultSet.getMetaData();
-        int columnCount = metaData.getColumnCount();
-
-        while (resultSet.next()) {
-            List<Object> gasFlowData = new ArrayList<>();
-            for (int i = 1; i <= columnCount; i++) {
-                Object value = resultSet.getObject(i);
-                gasFlowData.add(value);
-            }
-            gasFlowDataList.add(gasFlowData);
-        }
-        return gasFlowDataList;
+    public HistoryTimeKey readPressureHistoryByTime(long from, long to, HistoryTimeKey after, int limit,
+            PressureHistoryRowHandler handler) throws SQLException {
+        return this.timeDatabaseCall("read_pressure_history_by_time",
+                () -> this.historyReader.readPressureHistoryByTime(from, to, after, limit, handler));
     }
 
     /**
-     * Retrieves PressureHistory data from the database.
+     * Streams the PressureHistory rows of one calculation from the database to the handler, in id order,
+     * using the index on calculation_id.
      *
-     * @return List of lists containing PressureHistory data.
+     * @param calculationId Id of the GasFlow row.
+     * @param handler Callback receiving the rows.
+     * @return Number of rows read.
      * @throws SQLException If an SQL exception occurs.
      */
-    public List<List<Object>> getPressureHistoryDataFromDatabase() throws SQLException {
-        List<List<Object>> pressureHistoryDataList = new ArrayList<>();
-
-        String selectQuery = "SELECT * FROM PressureHistory";
-        PreparedStatement preparedStatement = connection.prepareStatement(selectQuery);
-        ResultSet resultSet = preparedStatement.executeQuery();
-
-        ResultSetMetaData metaData = resultSet.getMetaData();
-        int columnCount = metaData.getColumnCount();
+    public int readPressureHistoryByCalculation(int calculationId, PressureHistoryRowHandler handler)
+            throws SQLException {
+        return this.timeDatabaseCall("read_pressure_history_by_calculation",
+                () -> this.historyReader.readPressureHistoryByCalculation(calculationId, handler));
+    }
 
-        while (resultSet.next()) {
-            List<Object> pressureHistoryData = new ArrayList<>();
-            for (int i = 1; i <= columnCount; i++) {
-                Object value = resultSet.getObject(i);
-                pressureHistoryData.add(value);
-            }
-            pressureHistoryDataList.add(pressureHistoryData);
-        }
-        return pressureHistoryDataList;
-    }  
+    /**
+     * Streams PressureHistory rows joined with their GasFlow rows within an id and time range
+     * from the database to the handler, in pages that each take a connection only while being read.
+     *
+     * @param afterId Only rows with a greater id are read, 0 to start from the beginning.
+     * @param toId Only rows with this id or lower are read.
+     * @param from Only rows recorded at this time or later are read, in milliseconds.
+     * @param to Only rows recorded before this time are read, in milliseconds.
+     * @param handler Callback receiving the rows.
+     * @return Number of rows read.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public long exportHistoryFromDatabase(int afterId, int toId, long from, long to, JoinedHistoryRowHandler handler)
+            throws SQLException {
+        return this.timeDatabaseCall("export_history",
+                () -> this.historyReader.readJoinedHistory(afterId, toId, from, to, handler));
+    }
+    
+    /**
+     * Streams pressure aggregates over a time range from the database to the handler,
+     * at the finest resolution giving at most maxBuckets buckets.
+     *
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @param maxBuckets Maximum number of buckets wanted.
+     * @param handler Callback receiving the buckets in time order.
+     * @return The resolution that was read.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    public RollupResolution readPressureRollup(long from, long to, int maxBuckets, RollupRowHandler handler)
+            throws SQLException {
+        return this.timeDatabaseCall("read_pressure_rollup", () -> this.pressureRollup.read(from, to, maxBuckets, handler));
+    }
     
     /**
      * Constructor
      * Initializes the tank, computes the gas conductivity factor and sets the start time.
+     * Keeps up to {@link PressureHistory#DEFAULT_CAPACITY} pressure samples in memory.
      */
     public Model()
+    {
+        this(PressureHistory.DEFAULT_CAPACITY, null);
+    }
+    
+    /**
+     * Constructor
+     * Initializes the tank, computes the gas conductivity factor and sets the start time.
+     * Brings the database schema up to date with {@link SchemaMigrator}; if the database can't be used,
+     * the Model works in memory only and the reason is kept in {@link #getDatabaseError()}.
+     * 
+     * @param historyCapacity Maximum number of pressure samples kept in memory.
+     * @param historySpillFileName Name of the file evicted pressure samples are appended to, or null to drop them.
+     */
+    public Model(int historyCapacity, String historySpillFileName)
     {
         this.tank = new Tank();
-        this.gasConductivityFactor = this.tank.getVolume() / (this.tank.getTemperature() * this.gasConstant);
-        this.timer = System.currentTimeMillis();
-        this.pressureHistory = new ArrayList<>();
+        this.gasConductivityFactor = PressureKernel.gasConductivityFactor(this.tank.getVolume(), this.tank.getTemperature());
+        this.pressureHistory = new PressureHistory(historyCapacity, historySpillFileName);
+        this.connectionPool = new ConnectionPool(url, "app", "app");
+        this.historyReader = new HistoryReader(this.connectionPool, HistoryReader.DEFAULT_FETCH_SIZE);
+        this.pressureRollup = new PressureRollup(this.connectionPool);
+        this.metrics = new MetricsRegistry();
+        this.ownsResources = true;
+        this.databaseVersion = new AtomicLong();
+        this.overflowEvents = this.metrics.counter("gas_tank_overflow_events_total",
+                "Pressure updates that ended above the maximum allowed pressure");
         try {
             Class.forName("org.apache.derby.jdbc.ClientDriver");
-            connection = DriverManager.getConnection(url, "app", "app");
-            this.createTables();
-        } catch (ClassNotFoundException | SQLException e) {
+            this.timeDatabaseCall("migrate_schema", () -> SchemaMigrator.migrate(url, this.connectionPool));
+            this.writeBehindQueue = new WriteBehindQueue(this.connectionPool, WriteBehindQueue.DEFAULT_CAPACITY,
+                    WriteBehindQueue.DEFAULT_BATCH_SIZE, WriteBehindQueue.DEFAULT_FLUSH_INTERVAL,
+                    WriteBehindQueue.DEFAULT_OFFER_TIMEOUT, true, this.databaseVersion);
+        } catch (ClassNotFoundException e) {
+            this.databaseError = new SQLException("Derby client driver not found", e);
+        } catch (SQLException e) {
+            this.databaseError = e;
+        }
+        this.registerMetrics();
+    }
+    
+    /**
+     * Constructor
+     * Creates a Model of another, independent tank that shares the database resources, solver and metrics
+     * of the given Model. Creating it opens no connections, and closing it closes nothing;
+     * the given Model must outlive it.
+     * 
+     * @param shared The Model whose database resources are used.
+     * @param historyCapacity Maximum number of pressure samples kept in memory.
+     */
+    public Model(Model shared, int historyCapacity)
+    {
+        this.tank = new Tank();
+        this.gasConductivityFactor = PressureKernel.gasConductivityFactor(this.tank.getVolume(), this.tank.getTemperature());
+        this.pressureHistory = new PressureHistory(historyCapacity);
+        this.connectionPool = shared.connectionPool;
+        this.historyReader = shared.historyReader;
+        this.pressureRollup = shared.pressureRollup;
+        this.metrics = shared.metrics;
+        this.ownsResources = false;
+        this.databaseVersion = shared.databaseVersion;
+        this.overflowEvents = shared.overflowEvents;
+        this.databaseError = shared.databaseError;
+        this.writeBehindQueue = shared.writeBehindQueue;
+        this.solver = shared.solver;
+    }
+    
+    /**
+     * Replaces the flows, pressure and time of the tank, e.g. when restoring a saved session.
+     * 
+     * @param state The state to take the values from.
+     */
+    public void restoreState(TankState state)
+    {
+        TankState current;
+        do {
+            current = this.tank.getState();
+        } while (!this.tank.compareAndSetState(current, current.withGasInflow(state.getGasInflow())
+                .withGasOutflow(state.getGasOutflow()).withPressure(state.getPressure(), state.getTime())));
+        this.predictOverflow();
+        this.logEvent(TankEventLog.Type.RESTORE, this.tank.getState());
+    }
+    
+    /**
+     * Starts recording every change of the state in an event log. The state recovered by the log,
+     * if any, replaces the current one; otherwise the current state is recorded as the starting point.
+     * 
+     * @param log The log, or null to stop recording.
+     */
+    public void setEventLog(TankEventLog log)
+    {
+        this.eventLog = log;
+        if (log == null) {
+            return;
+        }
+        if (log.getRecoveredState() != null) {
+            this.restoreState(log.getRecoveredState());
+        } else {
+            this.logEvent(TankEventLog.Type.RESTORE, this.tank.getState());
+        }
+    }
+    
+    /**
+     * Gets the event log recording the changes of the state.
+     * 
+     * @return The log, or null.
+     */
+    public TankEventLog getEventLog()
+    {
+        return this.eventLog;
+    }
+    
+    /**
+     * Appends a change of the state to the event log, if any.
+     * 
+     * @param type Kind of the change.
+     * @param state The state after the change.
+     */
+    private void logEvent(TankEventLog.Type type, TankState state)
+    {
+        TankEventLog log = this.eventLog;
+        if (log != null) {
+            log.append(type, state);
+        }
+    }
+    
+    /**
+     * Registers the tank with an overflow predictor, which is then told about every change of the flows
+     * or the pressure, and unregisters it from the previous one.
+     * 
+     * @param predictor The predictor, or null to stop predicting.
+     * @param tankId Id of the tank in the alerts.
+     */
+    public void setOverflowPredictor(OverflowPredictor predictor, String tankId)
+    {
+        OverflowPredictor previous = this.overflowPredictor;
+        if (previous != null) {
+            previous.remove(this.overflowTankId);
         }
+        this.overflowTankId = tankId;
+        this.overflowPredictor = predictor;
+        this.predictOverflow();
+    }
+    
+    /**
+     * Gets the overflow predictor the tank is registered with.
+     * 
+     * @return The predictor, or null.
+     */
+    public OverflowPredictor getOverflowPredictor()
+    {
+        return this.overflowPredictor;
+    }
+    
+    /**
+     * Tells the overflow predictor, if any, about the current state.
+     */
+    private void predictOverflow()
+    {
+        OverflowPredictor predictor = this.overflowPredictor;
+        if (predictor != null) {
+            predictor.update(this.overflowTankId, this.tank.getState(), this.gasConductivityFactor,
+                    this.tank.getMaxAllowedPressure());
+        }
+    }
+    
+    /**
+     * Registers gauges reading the state of the tank, the history and the database queue.
+     */
+    private void registerMetrics()
+    {
+        this.metrics.gauge("gas_tank_pressure_hpa", "Current pressure in the tank", this.tank::getPressure);
+        this.metrics.gauge("gas_tank_history_size", "Pressure samples kept in memory", this.pressureHistory::size);
+        this.metrics.counter("gas_tank_history_spill_lost_total", "Evicted pressure samples lost because the spill file could not be written",
+                this.pressureHistory::getLostSpillCount);
+        this.metrics.gauge("gas_tank_database_available", "1 if the database is used, 0 if the Model runs in memory only",
+                () -> this.databaseError == null ? 1 : 0);
+        WriteBehindQueue queue = this.writeBehindQueue;
+        if (queue != null) {
+            this.metrics.gauge("gas_tank_db_queue_depth", "Records waiting for the database writer", queue::getQueueDepth);
+            this.metrics.counter("gas_tank_db_written_records_total", "Records written to the database",
+                    queue::getWrittenRecords);
+            this.metrics.counter("gas_tank_db_rejected_records_total", "Records rejected because the queue was full",
+                    queue::getRejectedRecords);
+            this.metrics.counter("gas_tank_db_dropped_records_total", "Records lost because a batch failed",
+                    queue::getDroppedRecords);
+            this.metrics.counter("gas_tank_db_flushes_total", "Batches written to the database", queue::getFlushCount);
+            this.metrics.gauge("gas_tank_db_last_flush_seconds", "Duration of the last batch write",
+                    () -> queue.getLastFlushLatency() / 1000);
+        }
+    }
+    
+    /**
+     * Gets the metrics of this Model, shared with the components built around it.
+     * 
+     * @return The metrics registry.
+     */
+    public MetricsRegistry getMetrics()
+    {
+        return this.metrics;
+    }
+    
+    /**
+     * Runs a database call, recording its latency and counting its failures.
+     * 
+     * @param <T> Type of the result.
+     * @param operation Name of the operation used as the metric label.
+     * @param call The database call.
+     * @return Result of the call.
+     * @throws SQLException If the call fails.
+     */
+    private <T> T timeDatabaseCall(String operation, DatabaseCall<T> call) throws SQLException
+    {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } catch (SQLException e) {
+            this.countError(operation);
+            throw e;
+        } finally {
+            this.metrics.timer("gas_tank_db_call_seconds", "Latency of database calls", "operation", operation)
+                    .recordSince(start);
+        }
+    }
+    
+    /**
+     * Counts a failed operation, including the ones whose exceptions are not passed on.
+     * 
+     * @param operation Name of the operation used as the metric label.
+     */
+    private void countError(String operation)
+    {
+        this.metrics.counter("gas_tank_errors_total", "Failed operations", "operation", operation).increment();
+    }
+    
+    /**
+     * Database call recorded by {@link #timeDatabaseCall}.
+     * 
+     * @param <T> Type of the result.
+     */
+    @FunctionalInterface
+    private interface DatabaseCall<T>
+    {
+        /**
+         * Runs the call.
+         * 
+         * @return Result of the call.
+         * @throws SQLException If the call fails.
+         */
+        T call() throws SQLException;
+    }
+    
+    /**
+     * Gets the reason the database is not used, so callers that need it can fail fast.
+     * 
+     * @return The error from connecting to or migrating the database, or null if it is available.
+     */
+    public SQLException getDatabaseError()
+    {
+        return this.databaseError;
+    }
+    
+    /**
+     * Writes the evicted pressure samples still buffered to the spill file, then all queued data
+     * to the database, and closes the database connections.
+     * A Model sharing the resources of another one only writes its spill buffer.
+     */
+    @Override
+    public void close()
+    {
+        try {
+            this.pressureHistory.flushSpill();
+        } catch (IOException e) {
+            this.countError("flush_spill");
+        }
+        if (!this.ownsResources) {
+            return;
+        }
+        if (this.writeBehindQueue != null) {
+            this.writeBehindQueue.close();
+        }
+        this.connectionPool.close();
     }
         
     /**
@@ -182,42 +526,157 @@ public class Model {
         return this.tank.getPressure();
     }
     
+    /**
+     * Gets a consistent snapshot of flows and pressure in the tank.
+     * 
+     * @return The current state of the tank.
+     */
+    public TankState getState()
+    {
+        return this.tank.getState();
+    }
+    
+    /**
+     * Gets the gas conductivity factor used in pressure calculations.
+     * 
+     * @return The gas conductivity factor.
+     */
+    public double getGasConductivityFactor()
+    {
+        return this.gasConductivityFactor;
+    }
+    
      /**
      * Updates the gas pressure based on inflow, outflow, gasConductivityFactor and elapsed time.
-     * Calls {@code applyChangeOfPressure} to apply calculated pressure change and 
+     * The new state is computed from a snapshot and swapped in with compare-and-set, so concurrent
+     * calls integrate disjoint time intervals and no update is lost.
+     * Calls {@code applyChangeOfPressure} to record calculated pressure and 
      * throws exception if gas pressure is too high
      * 
      * @throws PressureOverflowException If the gas pressure exceeds the maximum allowed value.
      */
     public void updatePressure() throws PressureOverflowException
     {
-        long elapsedTime = System.currentTimeMillis() - this.timer;
-        this.timer = System.currentTimeMillis();
-        double elapsedTimeMin = (double) elapsedTime / 60000;
-        double change = ((this.tank.getGasInflow() - this.tank.getGasOutflow()) / this.gasConductivityFactor) * elapsedTimeMin;
-        double result = this.tank.getPressure() + change;
-
-        if(result < 0) result = 0;
-        this.applyChangeOfPressure(result);   
+        this.advance(-1);
+    }
+    
+    /**
+     * Integrates the gas pressure over a fixed time step, independent of the wall clock.
+     * Used by {@link SimulationScheduler} to advance the simulation in deterministic ticks.
+     * 
+     * @param elapsedMillis The length of the step in milliseconds.
+     * @throws PressureOverflowException If the gas pressure exceeds the maximum allowed value.
+     */
+    public void step(long elapsedMillis) throws PressureOverflowException
+    {
+        this.advance(elapsedMillis);
+    }
+    
+    /**
+     * Applies a pressure integrated outside the Model, by the {@link SimulationEngine} of the
+     * {@link TankSessionManager}, if the state it started from is still current, and records the result.
+     * 
+     * @param expected The state the pressure was integrated from.
+     * @param pressure The new gas pressure.
+     * @param elapsedMillis The length of the step in milliseconds.
+     * @return False if the state changed meanwhile and nothing was applied.
+     * @throws PressureOverflowException If the gas pressure exceeds the maximum allowed value.
+     */
+    boolean applyStep(TankState expected, double pressure, long elapsedMillis) throws PressureOverflowException
+    {
+        TankState updated = expected.withPressure(pressure, expected.getTime() + elapsedMillis);
+        if (!this.tank.compareAndSetState(expected, updated)) {
+            return false;
+        }
+        this.logEvent(TankEventLog.Type.UPDATE, updated);
+        double max = this.tank.getMaxAllowedPressure();
+        long crossingTime = expected.getPressure() <= max && pressure > max
+                ? expected.getTime() + Math.round(elapsedMillis * (max - expected.getPressure()) / (pressure - expected.getPressure()))
+                : -1;
+        this.applyChangeOfPressure(updated.getTime(), pressure, crossingTime);
+        return true;
+    }
+    
+    /**
+     * Gets the tank simulated by the Model.
+     * 
+     * @return The tank.
+     */
+    Tank getTank()
+    {
+        return this.tank;
+    }
+    
+    /**
+     * Integrates the gas pressure from the time of the current state, swapping in the new state
+     * with compare-and-set, and records the result.
+     * 
+     * @param elapsedMillis The length of the step in milliseconds, or a negative value to integrate up to now.
+     * @throws PressureOverflowException If the gas pressure exceeds the maximum allowed value.
+     */
+    private void advance(long elapsedMillis) throws PressureOverflowException
+    {
+        TankState current;
+        TankState updated;
+        IntegrationResult result;
+        do {
+            current = this.tank.getState();
+            long end = elapsedMillis < 0
+                    ? Math.max(System.currentTimeMillis(), current.getTime())
+                    : current.getTime() + elapsedMillis;
+            double elapsedTimeMin = (double) (end - current.getTime()) / 60000;
+            double inflow = current.getGasInflow();
+            double outflow = current.getGasOutflow();
+            result = this.solver.solveConstantFlows(inflow, outflow, this.gasConductivityFactor,
+                    current.getPressure(), elapsedTimeMin, this.tank.getMaxAllowedPressure());
+            updated = current.withPressure(result.getPressure(), end);
+        } while (!this.tank.compareAndSetState(current, updated));
+        this.logEvent(TankEventLog.Type.UPDATE, updated);
+        long crossingTime = result.hasCrossed()
+                ? current.getTime() + Math.round(result.getCrossingTimeMin() * 60000)
+                : -1;
+        this.applyChangeOfPressure(updated.getTime(), updated.getPressure(), crossingTime);
     }
     
    /**
-    * Applies the calculated change in gas pressure to the tank. Updates pressure history.
+    * Records the gas pressure already applied to the tank in the pressure history.
     * Throws a PressureOverflowException if the pressure exceeds the maximum allowed value.
     * 
-    * @param pressure The new gas pressure to be set in the tank.
+    * @param time Simulated time of the new pressure in milliseconds.
+    * @param pressure The new gas pressure set in the tank.
+    * @param crossingTime Simulated time at which the pressure crossed the maximum, or -1.
     * @throws PressureOverflowException If the gas pressure exceeds the maximum allowed value.
     */
-    private void applyChangeOfPressure(double pressure) throws PressureOverflowException
+    private void applyChangeOfPressure(long time, double pressure, long crossingTime) throws PressureOverflowException
     {
-        this.setPressure(pressure);
-        this.updatePressureHistory();  
+        this.updatePressureHistory(time, pressure);  
         if(pressure > this.tank.getMaxAllowedPressure())
         {
-            throw new PressureOverflowException("Pressure exceeds maximum allowed value");
+            this.overflowEvents.increment();
+            throw new PressureOverflowException("Pressure exceeds maximum allowed value", crossingTime);
         }
     }
     
+    /**
+     * Sets the solver integrating the pressure between updates.
+     * 
+     * @param solver The new solver.
+     */
+    public void setSolver(PressureSolver solver)
+    {
+        this.solver = solver;
+    }
+    
+    /**
+     * Gets the solver integrating the pressure between updates.
+     * 
+     * @return The solver.
+     */
+    public PressureSolver getSolver()
+    {
+        return this.solver;
+    }
+    
     /**
      * Sets the gas inflow rate to the tank.
      * 
@@ -226,6 +685,8 @@ public class Model {
     public void setGasInflow(Double inflow)
     {
         this.tank.setGasInflow(inflow);
+        this.predictOverflow();
+        this.logEvent(TankEventLog.Type.INFLOW, this.tank.getState());
     }
     
      /**
@@ -236,6 +697,8 @@ public class Model {
     public void setGasOutflow(Double outflow)
     {
         this.tank.setGasOutflow(outflow);
+        this.predictOverflow();
+        this.logEvent(TankEventLog.Type.OUTFLOW, this.tank.getState());
     }
     
     /**
@@ -261,23 +724,42 @@ public class Model {
      */
     public void startTime()
     {
-        this.timer = System.currentTimeMillis();
+        long now = System.currentTimeMillis();
+        TankState current;
+        do {
+            current = this.tank.getState();
+        } while (!this.tank.compareAndSetState(current, current.withTime(now)));
+        this.predictOverflow();
+        this.logEvent(TankEventLog.Type.TIME, this.tank.getState());
     }
     
     /**
-     * Adds current gas pressure to the pressureHistory.
+     * Adds gas pressure to the pressureHistory.
+     * 
+     * @param time Simulated time of the pressure in milliseconds.
+     * @param pressure The gas pressure to record.
      */
-    private void updatePressureHistory()
+    private void updatePressureHistory(long time, double pressure)
     {
-        this.pressureHistory.add(this.tank.getPressure());
+        this.pressureHistory.add(time, pressure);
     }
     
     /**
      * Getter for pressureHistory list.
      *
-     * @return The list containing historical pressure values.
+     * @return Read-only list view of the historical pressure values.
      */ 
-    public ArrayList<Double> getPressureHistory() 
+    public List<Double> getPressureHistory() 
+    {
+        return this.pressureHistory.asList();
+    }
+    
+    /**
+     * Getter for the primitive pressureHistory store.
+     *
+     * @return The ring buffer containing historical pressure values.
+     */
+    public PressureHistory getPressureHistoryStore()
     {
         return this.pressureHistory;
     }
@@ -289,10 +771,7 @@ public class Model {
      */    
     public double getMaxPressure()
     {
-        return this.pressureHistory.stream()
-                .mapToDouble(a -> a)
-                .max()
-                .orElse(-1.0);
+        return this.pressureHistory.getStatistics().getWindowMax();
     }
     
     /**
@@ -302,10 +781,7 @@ public class Model {
      */  
     public double getMinPressure()
     {
-        return this.pressureHistory.stream()
-                .mapToDouble(a -> a)
-                .min()
-                .orElse(-1.0);
+        return this.pressureHistory.getStatistics().getWindowMin();
     }
     
     /**
@@ -315,20 +791,43 @@ public class Model {
      */ 
     public double getAveragePressure()
     {
-        return this.pressureHistory.stream()
-                .mapToDouble(a -> a)
-                .average()
-                .orElse(-1.0);
+        return this.pressureHistory.getStatistics().getWindowAverage();
     }
     
     /**
-     * Setter for pressureHistory.
+     * Gets the variance of all pressure values recorded since the history was last replaced.
      *
-     * @param pressureHistory The ArrayList containing historical gas pressure values.
+     * @return The variance of historical gas pressure values or -1 if no values were recorded.
      */
-    public void setPressureHistory(ArrayList pressureHistory)
+    public double getPressureVariance()
     {
-        this.pressureHistory = pressureHistory;
+        return this.pressureHistory.getStatistics().getVariance();
+    }
+    
+    /**
+     * Setter for pressureHistory. Replaces stored values with the given ones.
+     * Only the newest values fit if the list is longer than the history capacity.
+     *
+     * @param pressureHistory The list containing historical gas pressure values.
+     */
+    public void setPressureHistory(List<Double> pressureHistory)
+    {
+        double[] values = new double[pressureHistory.size()];
+        int i = 0;
+        for (double value : pressureHistory) {
+            values[i++] = value;
+        }
+        this.pressureHistory.replace(values);
+    }
+    
+    /**
+     * Setter for pressureHistory. Replaces stored values with the given ones.
+     *
+     * @param pressureHistory The array containing historical gas pressure values.
+     */
+    public void setPressureHistory(double[] pressureHistory)
+    {
+        this.pressureHistory.replace(pressureHistory);
     }
     
     /**
@@ -339,6 +838,8 @@ public class Model {
     public void setPressure(double pressure)
     {
         this.tank.setPressure(pressure);
+        this.predictOverflow();
+        this.logEvent(TankEventLog.Type.PRESSURE, this.tank.getState());
     }
     
     /**
@@ -366,11 +867,13 @@ public class Model {
      */
     public void savePressureHistory(String fileName)
     {
-        try (FileWriter writer = new FileWriter(fileName)) {
-            for (Double value : this.pressureHistory) {
-            writer.write(value.toString() + "\n");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            for (double value : this.pressureHistory.toArray()) {
+                writer.write(Double.toString(value));
+                writer.write('\n');
             }
         } catch (IOException e) {
+            this.countError("save_pressure_history");
         }
     }
     
@@ -383,19 +886,98 @@ public class Model {
     }
     
     /**
-     * Reads the pressure history from the specified filename.
+     * Reads the pressure history from the specified filename, appending the values to the stored ones
+     * as samples taken now. Values read before an unreadable or malformed line are still appended.
      * 
      * @param fileName The name of the file to read the pressure history from.
      */
     public void readPressureHistory(String fileName)
     {
+        DoubleStream.Builder values = DoubleStream.builder();
         try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                double number = Double.parseDouble(line);
-                this.pressureHistory.add(number);
+                values.add(Double.parseDouble(line));
             }
         } catch (IOException | NumberFormatException e) {
-        }    
+            this.countError("read_pressure_history");
+        }
+        this.pressureHistory.addAll(values.build().toArray());
+    }
+    
+    /**
+     * Saves the pressure history with sample times to a binary {@link PressureHistoryFile},
+     * replacing its previous content.
+     * 
+     * @param fileName The name of the binary file.
+     * @throws IOException If the file could not be written.
+     */
+    public void savePressureHistoryBinary(String fileName) throws IOException
+    {
+        long[] times;
+        double[] values;
+        synchronized (this.pressureHistory) {
+            times = this.pressureHistory.timesToArray();
+            values = this.pressureHistory.toArray();
+        }
+        try (PressureHistoryFile file = new PressureHistoryFile(Paths.get(fileName))) {
+            file.clear();
+            file.append(times, values, 0, values.length);
+            file.force();
+        }
+    }
+    
+    /**
+     * Replays a recorded flow profile (see {@link FlowProfileReplay}) in simulated time,
+     * starting from the current pressure. The live tank is not changed.
+     * With saveToDatabase the pressure at every event is written to the database through the write-behind
+     * queue of this Model, the only writer of the GasFlow table, waiting for free space instead of rejecting rows;
+     * the replayed rows are written before returning.
+     * 
+     * @param fileName The name of the profile file.
+     * @param saveToDatabase Whether to store the replayed events in the database.
+     * @return Summary of the replay.
+     * @throws IOException If the profile could not be read or has an invalid line.
+     * @throws SQLException If there is no database connection or the events could not be written.
+     */
+    public ReplayResult replayFlowProfile(String fileName, boolean saveToDatabase) throws IOException, SQLException
+    {
+        FlowProfileReplay replay = new FlowProfileReplay(this.solver, this.gasConductivityFactor,
+                this.tank.getMaxAllowedPressure(), FlowProfileReplay.DEFAULT_BATCH_SIZE);
+        double startingPressure = this.tank.getPressure();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName), 1 << 16)) {
+            if (!saveToDatabase) {
+                return replay.replay(reader, startingPressure, (times, inflows, outflows, pressures, count) -> { });
+            }
+            if (this.writeBehindQueue == null) {
+                throw new SQLException("No connection to the database");
+            }
+            WriteBehindQueue queue = this.writeBehindQueue;
+            ReplayResult result = replay.replay(reader, startingPressure, (times, inflows, outflows, pressures, count) -> {
+                for (int i = 0; i < count; i++) {
+                    queue.submit(new GasFlowRecord(inflows[i], outflows[i], pressures[i], times[i]), REPLAY_OFFER_TIMEOUT);
+                }
+            });
+            queue.flush();
+            return result;
+        }
+    }
+    
+    /**
+     * Reads the pressure history from a binary {@link PressureHistoryFile}, replacing stored values.
+     * If the file holds more samples than the history can keep, only the newest are read.
+     * 
+     * @param fileName The name of the binary file.
+     * @throws IOException If the file could not be read.
+     */
+    public void readPressureHistoryBinary(String fileName) throws IOException
+    {
+        try (PressureHistoryFile file = new PressureHistoryFile(Paths.get(fileName))) {
+            int length = (int) Math.min(file.size(), this.pressureHistory.capacity());
+            long[] times = new long[length];
+            double[] values = new double[length];
+            file.read(file.size() - length, times, values, length);
+            this.pressureHistory.replace(times, values);
+        }
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Early warning that a tank will soon reach its maximum pressure or run empty,
+ * delivered by {@link OverflowPredictor} to its listeners.
+ * Immutable.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class OverflowAlert {
+
+    /**
+     * What the tank is about to reach.
+     */
+    public enum Kind {
+        /** The pressure reaches the maximum allowed pressure. */
+        OVERFLOW,
+        /** The pressure falls to 0. */
+        EMPTY
+    }
+
+    /** Id of the tank. */
+    private final String tankId;
+
+    /** What the tank is about to reach. */
+    private final Kind kind;
+
+    /** Predicted time of the crossing, in milliseconds. */
+    private final long crossingTime;
+
+    /** State the prediction was made from. */
+    private final TankState state;
+
+    /**
+     * Constructor
+     *
+     * @param tankId Id of the tank.
+     * @param kind What the tank is about to reach.
+     * @param crossingTime Predicted time of the crossing, in milliseconds.
+     * @param state State the prediction was made from.
+     */
+    public OverflowAlert(String tankId, Kind kind, long crossingTime, TankState state)
+    {
+        this.tankId = tankId;
+        this.kind = kind;
+        this.crossingTime = crossingTime;
+        this.state = state;
+    }
+
+    /**
+     * Gets the id of the tank.
+     *
+     * @return The tank id.
+     */
+    public String getTankId()
+    {
+        return this.tankId;
+    }
+
+    /**
+     * Gets what the tank is about to reach.
+     *
+     * @return The kind of the alert.
+     */
+    public Kind getKind()
+    {
+        return this.kind;
+    }
+
+    /**
+     * Gets the predicted time of the crossing.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getCrossingTime()
+    {
+        return this.crossingTime;
+    }
+
+    /**
+     * Gets the state the prediction was made from.
+     *
+     * @return The tank state.
+     */
+    public TankState getState()
+    {
+        return this.state;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OverflowAlert{" + "tankId=" + this.tankId + ", kind=" + this.kind
+                + ", crossingTime=" + this.crossingTime + '}';
+    }
+}
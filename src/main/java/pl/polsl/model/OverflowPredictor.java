@@ -0,0 +1,332 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import pl.polsl.metrics.MetricsRegistry;
+
+/**
+ * Early-warning service predicting when tanks overflow or run empty.
+ * <p>
+ * With constant flows the pressure changes linearly (see {@link PressureKernel#rate}), so the time
+ * to reach the maximum or 0 follows in closed form from the state, without integrating anything.
+ * Tanks report their state with {@link #update} whenever the flows or the pressure are set; pressure
+ * updates between those stay on the same line and need no new prediction. Each prediction is a timeout
+ * on a {@link TimerWheel} due the warning lead before the crossing, replacing the previous timeout of the
+ * tank, and a single thread advancing the wheel every tick delivers the due {@link OverflowAlert}s to the
+ * listeners. An update costs O(1) and a tick only visits its slot, so thousands of tanks cost nothing
+ * while their flows don't change.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class OverflowPredictor implements AutoCloseable {
+
+    /** Default length of a tick of the wheel in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    /** Default number of slots of the wheel, about 100 seconds per revolution with the default tick. */
+    public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+    /** Milliseconds in a minute, the time unit of the flow rates. */
+    private static final double MILLIS_PER_MINUTE = 60000.0;
+
+    /** Time before the crossing at which the alert is delivered, in milliseconds. */
+    private final long warningLead;
+
+    /** Length of a tick in milliseconds. */
+    private final long tickMillis;
+
+    /** Pending alerts. Guarded by this. */
+    private final TimerWheel<OverflowAlert> wheel;
+
+    /** Latest prediction of every tank by id. Guarded by this. */
+    private final Map<String, Prediction> predictions = new HashMap<>();
+
+    /** Listeners receiving the alerts. */
+    private final List<Consumer<OverflowAlert>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Thread advancing the wheel. */
+    private final ScheduledExecutorService executor;
+
+    /** Number of predictions made. */
+    private final AtomicLong predictionCount = new AtomicLong();
+
+    /** Number of alerts delivered. */
+    private final AtomicLong alertCount = new AtomicLong();
+
+    /** Last error thrown by a listener, or null. */
+    private volatile RuntimeException lastError = null;
+
+    /**
+     * Constructor
+     * Uses the default tick and wheel size.
+     *
+     * @param warningLead Time before the crossing at which the alert is delivered, in milliseconds.
+     * @param metrics Registry receiving the prediction and alert counters.
+     */
+    public OverflowPredictor(long warningLead, MetricsRegistry metrics)
+    {
+        this(warningLead, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, metrics);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param warningLead Time before the crossing at which the alert is delivered, in milliseconds.
+     * @param tickMillis Length of a tick of the wheel in milliseconds, the precision of the alerts.
+     * @param wheelSize Number of slots of the wheel.
+     * @param metrics Registry receiving the prediction and alert counters.
+     */
+    public OverflowPredictor(long warningLead, long tickMillis, int wheelSize, MetricsRegistry metrics)
+    {
+        if (warningLead < 0) {
+            throw new IllegalArgumentException("Warning lead must not be negative");
+        }
+        this.warningLead = warningLead;
+        this.tickMillis = tickMillis;
+        this.wheel = new TimerWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        metrics.counter("gas_tank_overflow_predictions_total", "Overflow and empty-tank predictions made",
+                this.predictionCount::get);
+        metrics.counter("gas_tank_overflow_alerts_total", "Overflow and empty-tank alerts delivered",
+                this.alertCount::get);
+        metrics.gauge("gas_tank_overflow_alerts_pending", "Overflow and empty-tank alerts waiting on the timer wheel",
+                this::getPendingCount);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "overflow-predictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts advancing the wheel every tick.
+     */
+    public void start()
+    {
+        this.executor.scheduleAtFixedRate(() -> this.advance(System.currentTimeMillis()),
+                this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops advancing the wheel. Pending alerts are not delivered.
+     */
+    @Override
+    public void close()
+    {
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(this.tickMillis * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a listener receiving the alerts. Listeners run on the predictor thread and should return quickly.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Consumer<OverflowAlert> listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Consumer<OverflowAlert> listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Computes the time until the pressure reaches the maximum with the flows of the state.
+     *
+     * @param state The state.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @param maxPressure The maximum allowed pressure.
+     * @return The time in minutes, 0 if already above, infinity if the pressure doesn't rise.
+     */
+    public static double minutesToOverflow(TankState state, double gasConductivityFactor, double maxPressure)
+    {
+        double rate = (state.getGasInflow() - state.getGasOutflow()) / gasConductivityFactor;
+        if (state.getPressure() > maxPressure) {
+            return 0;
+        }
+        return rate > 0 ? (maxPressure - state.getPressure()) / rate : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Computes the time until the tank is empty with the flows of the state.
+     *
+     * @param state The state.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @return The time in minutes, infinity if the pressure doesn't fall or the tank is already empty.
+     */
+    public static double minutesToEmpty(TankState state, double gasConductivityFactor)
+    {
+        double rate = (state.getGasInflow() - state.getGasOutflow()) / gasConductivityFactor;
+        return rate < 0 && state.getPressure() > 0 ? state.getPressure() / -rate : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Predicts the next crossing of a tank.
+     *
+     * @param tankId Id of the tank.
+     * @param state The state.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @param maxPressure The maximum allowed pressure.
+     * @return The alert for the crossing, or null if the pressure stays between 0 and the maximum.
+     */
+    public static OverflowAlert predict(String tankId, TankState state, double gasConductivityFactor,
+            double maxPressure)
+    {
+        double overflow = minutesToOverflow(state, gasConductivityFactor, maxPressure);
+        if (overflow != Double.POSITIVE_INFINITY) {
+            return new OverflowAlert(tankId, OverflowAlert.Kind.OVERFLOW,
+                    state.getTime() + Math.round(overflow * MILLIS_PER_MINUTE), state);
+        }
+        double empty = minutesToEmpty(state, gasConductivityFactor);
+        if (empty != Double.POSITIVE_INFINITY) {
+            return new OverflowAlert(tankId, OverflowAlert.Kind.EMPTY,
+                    state.getTime() + Math.round(empty * MILLIS_PER_MINUTE), state);
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the prediction of a tank with one made from the given state.
+     * States older than the last one reported for the tank are ignored, so concurrent updates
+     * can't leave a stale prediction behind.
+     *
+     * @param tankId Id of the tank.
+     * @param state The current state.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @param maxPressure The maximum allowed pressure.
+     */
+    public void update(String tankId, TankState state, double gasConductivityFactor, double maxPressure)
+    {
+        OverflowAlert alert = predict(tankId, state, gasConductivityFactor, maxPressure);
+        this.predictionCount.incrementAndGet();
+        synchronized (this) {
+            Prediction previous = this.predictions.get(tankId);
+            if (previous != null) {
+                if (previous.version > state.getVersion()) {
+                    return;
+                }
+                if (previous.timeout != null) {
+                    this.wheel.cancel(previous.timeout);
+                }
+            }
+            TimerWheel.Timeout<OverflowAlert> timeout = alert == null
+                    ? null : this.wheel.schedule(alert, alert.getCrossingTime() - this.warningLead);
+            this.predictions.put(tankId, new Prediction(state.getVersion(), timeout));
+        }
+    }
+
+    /**
+     * Forgets a tank and cancels its pending alert.
+     *
+     * @param tankId Id of the tank.
+     */
+    public synchronized void remove(String tankId)
+    {
+        Prediction previous = this.predictions.remove(tankId);
+        if (previous != null && previous.timeout != null) {
+            this.wheel.cancel(previous.timeout);
+        }
+    }
+
+    /**
+     * Delivers the alerts due up to the given time. Called every tick by the predictor thread.
+     *
+     * @param now Current time in milliseconds.
+     * @return Number of delivered alerts.
+     */
+    public int advance(long now)
+    {
+        List<OverflowAlert> due = new ArrayList<>();
+        synchronized (this) {
+            this.wheel.advance(now, due::add);
+        }
+        for (OverflowAlert alert : due) {
+            this.alertCount.incrementAndGet();
+            for (Consumer<OverflowAlert> listener : this.listeners) {
+                try {
+                    listener.accept(alert);
+                } catch (RuntimeException e) {
+                    this.lastError = e;
+                }
+            }
+        }
+        return due.size();
+    }
+
+    /**
+     * Gets the number of alerts waiting to be delivered.
+     *
+     * @return The number of pending alerts.
+     */
+    public synchronized int getPendingCount()
+    {
+        return this.wheel.size();
+    }
+
+    /**
+     * Gets the number of delivered alerts.
+     *
+     * @return The number of alerts.
+     */
+    public long getAlertCount()
+    {
+        return this.alertCount.get();
+    }
+
+    /**
+     * Gets the last error thrown by a listener.
+     *
+     * @return The error, or null.
+     */
+    public RuntimeException getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * Latest prediction of a tank.
+     */
+    private static final class Prediction {
+
+        /** Version of the state the prediction was made from. */
+        private final long version;
+
+        /** The pending alert, or null if none is due. */
+        private final TimerWheel.Timeout<OverflowAlert> timeout;
+
+        /**
+         * Constructor
+         *
+         * @param version Version of the state the prediction was made from.
+         * @param timeout The pending alert, or null if none is due.
+         */
+        Prediction(long version, TimerWheel.Timeout<OverflowAlert> timeout)
+        {
+            this.version = version;
+            this.timeout = timeout;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+
+/**
+ * Bounded store of historical pressure values backed by a primitive ring buffer.
+ * Every sample keeps the time it was taken at, in a parallel ring of timestamps.
+ * Samples are kept sorted by time, so time ranges are found with a binary search
+ * ({@link #firstIndexAt(long)}) instead of a scan.
+ * When the buffer is full the oldest sample is evicted and, if a spill file was given,
+ * appended to that file in the same one-value-per-line format used by
+ * {@link Model#savePressureHistory(String)}. The file is written in chunks; when a chunk can't be written
+ * its samples are dropped and counted ({@link #getLostSpillCount()}), so appending never fails.
+ * Running {@link PressureStatistics} are updated on every change, with the window
+ * covering exactly the samples kept in memory. The window expires samples in the order they are
+ * stored, so when a sample is moved back to keep the times sorted the window is rebuilt from the
+ * buffer; this costs a pass over the samples but happens only for out-of-order arrivals.
+ * Every change increments the version returned by {@link #getVersion()}.
+ * Appended samples get consecutive sequence numbers ({@link #getSequence()}), and changes other than
+ * appending at the end are counted by {@link #getRewriteCount()}, so a reader that saw the history
+ * once can tell whether it only has to fetch the new samples ({@link #toArraySince(long)}).
+ * All methods are synchronized, so the history can be appended to and read from many threads.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureHistory {
+
+    /** Default number of samples kept in memory. */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    /** Number of evicted samples collected before they are written to the spill file. */
+    private static final int SPILL_CHUNK_SIZE = 1024;
+
+    /** Ring buffer holding the samples. */
+    private final double[] samples;
+
+    /** Times of the samples in milliseconds, at the same indexes as the samples. */
+    private final long[] times;
+
+    /** Index of the oldest sample in the ring buffer. */
+    private int head = 0;
+
+    /** Number of samples currently stored. */
+    private int size = 0;
+
+    /** Name of the file evicted samples are appended to, or null when spilling is disabled. */
+    private final String spillFileName;
+
+    /** Evicted samples waiting to be written to the spill file. */
+    private final double[] spillBuffer;
+
+    /** Number of samples waiting in spillBuffer. */
+    private int spillSize = 0;
+
+    /** Number of evicted samples dropped because the spill file could not be written. */
+    private long lostSpillCount = 0;
+
+    /** Statistics of the stored samples. */
+    private final PressureStatistics statistics;
+
+    /** Number of changes of the stored samples. */
+    private long version = 0;
+
+    /** Number of samples ever appended, the sequence number of the next sample. */
+    private long sequence = 0;
+
+    /** Number of changes other than appending a sample after all stored ones. */
+    private long rewrites = 0;
+
+    /**
+     * Constructor
+     * Creates a history with the given capacity and without spilling.
+     *
+     * @param capacity Maximum number of samples kept in memory.
+     */
+    public PressureHistory(int capacity)
+    {
+        this(capacity, null);
+    }
+
+    /**
+     * Constructor
+     * Creates a history with the given capacity that appends evicted samples to a file.
+     *
+     * @param capacity Maximum number of samples kept in memory.
+     * @param spillFileName Name of the file evicted samples are appended to, or null to drop them.
+     */
+    public PressureHistory(int capacity, String spillFileName)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.samples = new double[capacity];
+        this.times = new long[capacity];
+        this.spillFileName = spillFileName;
+        this.spillBuffer = spillFileName == null ? null : new double[SPILL_CHUNK_SIZE];
+        this.statistics = new PressureStatistics(capacity);
+    }
+
+    /**
+     * Appends a sample taken now, evicting the oldest one when the buffer is full.
+     *
+     * @param value The pressure value to store.
+     */
+    public synchronized void add(double value)
+    {
+        this.add(System.currentTimeMillis(), value);
+    }
+
+    /**
+     * Appends a sample, evicting the oldest one when the buffer is full.
+     *
+     * @param time Time of the sample in milliseconds.
+     * @param value The pressure value to store.
+     */
+    public synchronized void add(long time, double value)
+    {
+        boolean evicting = this.size == this.samples.length;
+        double evicted = 0.0;
+        if (evicting) {
+            evicted = this.samples[this.head];
+            this.samples[this.head] = value;
+            this.times[this.head] = time;
+            this.head = this.next(this.head);
+            this.statistics.remove(evicted);
+        } else {
+            int index = this.index(this.size);
+            this.samples[index] = value;
+            this.times[index] = time;
+            this.size++;
+        }
+        boolean reordered = this.restoreTimeOrder();
+        this.statistics.add(value);
+        if (reordered) {
+            this.rewrites++;
+            this.statistics.rebuildWindow(this.toArray());
+        }
+        this.sequence++;
+        this.version++;
+        if (evicting) {
+            this.spill(evicted);
+        }
+    }
+
+    /**
+     * Finds the first stored sample taken at or after the given time with a binary search over the sample times.
+     *
+     * @param time Time in milliseconds.
+     * @return Position of the sample, or the number of stored samples if all are older.
+     */
+    public synchronized int firstIndexAt(long time)
+    {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.times[this.index(middle)] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Counts the stored samples taken in a time range.
+     *
+     * @param from Start of the range in milliseconds, inclusive.
+     * @param to End of the range in milliseconds, exclusive.
+     * @return The number of samples.
+     */
+    public synchronized int countBetween(long from, long to)
+    {
+        return from >= to ? 0 : this.firstIndexAt(to) - this.firstIndexAt(from);
+    }
+
+    /**
+     * Appends all given samples in order, all taken now.
+     *
+     * @param values The pressure values to store.
+     */
+    public synchronized void addAll(double[] values)
+    {
+        long time = System.currentTimeMillis();
+        for (double value : values) {
+            this.add(time, value);
+        }
+    }
+
+    /**
+     * Appends all given samples in order.
+     *
+     * @param times Times of the samples in milliseconds.
+     * @param values The pressure values to store.
+     */
+    public synchronized void addAll(long[] times, double[] values)
+    {
+        if (times.length != values.length) {
+            throw new IllegalArgumentException("Different number of times and values");
+        }
+        for (int i = 0; i < values.length; i++) {
+            this.add(times[i], values[i]);
+        }
+    }
+
+    /**
+     * Gets a sample by its position, where 0 is the oldest stored sample.
+     *
+     * @param i Position of the sample.
+     * @return The stored pressure value.
+     */
+    public synchronized double get(int i)
+    {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + this.size);
+        }
+        return this.samples[this.index(i)];
+    }
+
+    /**
+     * Gets the time of a sample by its position, where 0 is the oldest stored sample.
+     *
+     * @param i Position of the sample.
+     * @return Time of the sample in milliseconds.
+     */
+    public synchronized long getTime(int i)
+    {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + this.size);
+        }
+        return this.times[this.index(i)];
+    }
+
+    /**
+     * Gets the number of stored samples.
+     *
+     * @return The number of stored samples.
+     */
+    public synchronized int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Checks whether the history is empty.
+     *
+     * @return True if no samples are stored.
+     */
+    public synchronized boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Gets the number of changes of the stored samples.
+     *
+     * @return The version, growing with every added sample and every clear.
+     */
+    public synchronized long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * Gets the sequence number the next appended sample will get.
+     * The stored samples have the numbers from {@code getSequence() - size()} up to {@code getSequence() - 1}.
+     *
+     * @return The number of samples ever appended.
+     */
+    public synchronized long getSequence()
+    {
+        return this.sequence;
+    }
+
+    /**
+     * Gets the number of changes that did more than append a sample after the stored ones:
+     * clearing, replacing and samples inserted before later ones.
+     * While it stays the same, samples already read are unchanged unless evicted.
+     *
+     * @return The number of rewrites.
+     */
+    public synchronized long getRewriteCount()
+    {
+        return this.rewrites;
+    }
+
+    /**
+     * Gets the maximum number of samples kept in memory.
+     *
+     * @return The capacity of the ring buffer.
+     */
+    public int capacity()
+    {
+        return this.samples.length;
+    }
+
+    /**
+     * Atomically replaces all stored samples with the given ones. Removed samples are not spilled.
+     *
+     * @param values The pressure values to store.
+     */
+    public synchronized void replace(double[] values)
+    {
+        this.clear();
+        this.addAll(values);
+    }
+
+    /**
+     * Atomically replaces all stored samples with the given ones. Removed samples are not spilled.
+     *
+     * @param times Times of the samples in milliseconds.
+     * @param values The pressure values to store.
+     */
+    public synchronized void replace(long[] times, double[] values)
+    {
+        this.clear();
+        this.addAll(times, values);
+    }
+
+    /**
+     * Removes all stored samples. Samples are not spilled.
+     */
+    public synchronized void clear()
+    {
+        this.head = 0;
+        this.size = 0;
+        this.statistics.clear();
+        this.rewrites++;
+        this.version++;
+    }
+
+    /**
+     * Gets the running statistics of the stored samples.
+     *
+     * @return The statistics, updated on every change of the history.
+     */
+    public PressureStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Copies the stored samples, oldest first, into a new array.
+     *
+     * @return Array of stored samples.
+     */
+    public synchronized double[] toArray()
+    {
+        double[] result = new double[this.size];
+        int firstPart = Math.min(this.size, this.samples.length - this.head);
+        System.arraycopy(this.samples, this.head, result, 0, firstPart);
+        System.arraycopy(this.samples, 0, result, firstPart, this.size - firstPart);
+        return result;
+    }
+
+    /**
+     * Copies the stored samples with the given sequence number or later, oldest first, into a new array.
+     *
+     * @param from The first sequence number to copy; older samples are skipped.
+     * @return Array of the samples, empty if there are none that new.
+     */
+    public synchronized double[] toArraySince(long from)
+    {
+        int skip = (int) Math.min(Math.max(from - (this.sequence - this.size), 0), this.size);
+        double[] result = new double[this.size - skip];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.samples[this.index(skip + i)];
+        }
+        return result;
+    }
+
+    /**
+     * Copies the times of the stored samples, oldest first, into a new array.
+     *
+     * @return Array of sample times in milliseconds.
+     */
+    public synchronized long[] timesToArray()
+    {
+        long[] result = new long[this.size];
+        int firstPart = Math.min(this.size, this.times.length - this.head);
+        System.arraycopy(this.times, this.head, result, 0, firstPart);
+        System.arraycopy(this.times, 0, result, firstPart, this.size - firstPart);
+        return result;
+    }
+
+    /**
+     * Passes every stored sample, oldest first, to the given consumer.
+     *
+     * @param action Consumer of the samples.
+     */
+    public synchronized void forEach(DoubleConsumer action)
+    {
+        for (int i = 0; i < this.size; i++) {
+            action.accept(this.samples[this.index(i)]);
+        }
+    }
+
+    /**
+     * Gets a stream of a snapshot of stored samples, oldest first.
+     *
+     * @return Stream of stored samples.
+     */
+    public DoubleStream stream()
+    {
+        return Arrays.stream(this.toArray());
+    }
+
+    /**
+     * Gets a read-only list view of the stored samples. Values are boxed only when accessed.
+     *
+     * @return List view of the stored samples.
+     */
+    public List<Double> asList()
+    {
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                return PressureHistory.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return PressureHistory.this.size();
+            }
+        };
+    }
+
+    /**
+     * Writes evicted samples still waiting in memory to the spill file.
+     * When writing fails the samples stay in memory, so a later call can retry.
+     *
+     * @throws IOException If the spill file could not be written.
+     */
+    public synchronized void flushSpill() throws IOException
+    {
+        if (this.spillSize == 0) {
+            return;
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(this.spillFileName, true))) {
+            for (int i = 0; i < this.spillSize; i++) {
+                writer.write(Double.toString(this.spillBuffer[i]));
+                writer.newLine();
+            }
+        }
+        this.spillSize = 0;
+    }
+
+    /**
+     * Gets the number of evicted samples dropped because the spill file could not be written.
+     *
+     * @return The number of lost samples.
+     */
+    public synchronized long getLostSpillCount()
+    {
+        return this.lostSpillCount;
+    }
+
+    /**
+     * Queues an evicted sample for the spill file and writes the queue when it is full.
+     * If the queue can't be written its samples are dropped and counted, making room for the next ones.
+     *
+     * @param evicted The evicted pressure value.
+     */
+    private void spill(double evicted)
+    {
+        if (this.spillBuffer == null) {
+            return;
+        }
+        this.spillBuffer[this.spillSize++] = evicted;
+        if (this.spillSize == this.spillBuffer.length) {
+            try {
+                this.flushSpill();
+            } catch (IOException e) {
+                this.lostSpillCount += this.spillSize;
+                this.spillSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Maps a logical position to an index in the ring buffer.
+     *
+     * @param i Logical position, 0 being the oldest sample.
+     * @return Index in the samples array.
+     */
+    private int index(int i)
+    {
+        int index = this.head + i;
+        return index < this.samples.length ? index : index - this.samples.length;
+    }
+
+    /**
+     * Moves the newest sample back past samples with later times, so the times stay sorted
+     * when concurrent updates record their results out of order. Usually moves nothing.
+     *
+     * @return True if the sample was moved.
+     */
+    private boolean restoreTimeOrder()
+    {
+        int i = this.size - 1;
+        int current = this.index(i);
+        while (i > 0) {
+            int previous = this.index(i - 1);
+            if (this.times[previous] <= this.times[current]) {
+                break;
+            }
+            long time = this.times[previous];
+            this.times[previous] = this.times[current];
+            this.times[current] = time;
+            double sample = this.samples[previous];
+            this.samples[previous] = this.samples[current];
+            this.samples[current] = sample;
+            current = previous;
+            i--;
+        }
+        return i < this.size - 1;
+    }
+
+    /**
+     * Gets the ring buffer index following the given one.
+     *
+     * @param index Index in the samples array.
+     * @return The next index.
+     */
+    private int next(int index)
+    {
+        return index + 1 == this.samples.length ? 0 : index + 1;
+    }
+}
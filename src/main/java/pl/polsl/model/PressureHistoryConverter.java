@@ -0,0 +1,92 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Converts text pressure history files (one value per line, as written by {@link Model#savePressureHistory(String)})
+ * to the binary {@link PressureHistoryFile} format.
+ * Text files have no timestamps, so every sample gets the last modification time of the text file.
+ * Usage: {@code java pl.polsl.model.PressureHistoryConverter PressureHistory.txt PressureHistory.bin}
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class PressureHistoryConverter {
+
+    /** Number of samples appended at once. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Utility class, no instances.
+     */
+    private PressureHistoryConverter()
+    {
+    }
+
+    /**
+     * Converts a text file to a new binary file, replacing the binary file if it exists.
+     *
+     * @param textFile Path of the text file.
+     * @param binaryFile Path of the binary file.
+     * @return Number of converted samples.
+     * @throws IOException If a file could not be read or written, or a line is not a number.
+     */
+    public static long convert(Path textFile, Path binaryFile) throws IOException
+    {
+        long time = Files.getLastModifiedTime(textFile).toMillis();
+        long[] times = new long[CHUNK_SIZE];
+        double[] pressures = new double[CHUNK_SIZE];
+        Arrays.fill(times, time);
+        Files.deleteIfExists(binaryFile);
+        try (BufferedReader reader = Files.newBufferedReader(textFile, StandardCharsets.UTF_8);
+                PressureHistoryFile file = new PressureHistoryFile(binaryFile)) {
+            int count = 0;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    pressures[count++] = Double.parseDouble(line);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid value in line " + lineNumber + ": " + line, e);
+                }
+                if (count == CHUNK_SIZE) {
+                    file.append(times, pressures, 0, count);
+                    count = 0;
+                }
+            }
+            file.append(times, pressures, 0, count);
+            file.force();
+            return file.size();
+        }
+    }
+
+    /**
+     * Converts the text file given as the first argument to the binary file given as the second.
+     *
+     * @param args Paths of the text and binary files.
+     * @throws IOException If the conversion failed.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2) {
+            System.err.println("Usage: PressureHistoryConverter <text file> <binary file>");
+            System.exit(1);
+        }
+        long count = convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("Converted " + count + " samples");
+    }
+}
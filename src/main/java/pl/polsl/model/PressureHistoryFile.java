@@ -0,0 +1,243 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only binary file of timestamped pressure samples.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte header: the magic number "GPH1", the format version
+ * and the number of samples. It is followed by fixed-size records, each a timestamp in milliseconds (long)
+ * and a pressure in hPa (double), so sample i starts at byte HEADER_SIZE + i * RECORD_SIZE
+ * and any range is read in O(1) through a memory-mapped region.
+ * Appends write the records first and update the count last, so a torn append is discarded on the next open.
+ * Instances are not thread-safe.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureHistoryFile implements AutoCloseable {
+
+    /** Magic number at the start of the file, "GPH1" in ASCII. */
+    public static final int MAGIC = 0x47504831;
+
+    /** Version of the format. */
+    public static final int VERSION = 1;
+
+    /** Size of the header in bytes. */
+    public static final int HEADER_SIZE = 16;
+
+    /** Size of one record in bytes. */
+    public static final int RECORD_SIZE = Long.BYTES + Double.BYTES;
+
+    /** Byte offset of the sample count in the header. */
+    private static final int COUNT_OFFSET = 8;
+
+    /** Number of records written with one buffer. */
+    private static final int WRITE_CHUNK = 4096;
+
+    /** Channel of the open file. */
+    private final FileChannel channel;
+
+    /** Number of samples in the file. */
+    private long size;
+
+    /**
+     * Constructor
+     * Opens the file, creating it with an empty header if it doesn't exist.
+     *
+     * @param path Path of the file.
+     * @throws IOException If the file could not be opened or is not a pressure history file.
+     */
+    public PressureHistoryFile(Path path) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (this.channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+                this.writeFully(header, 0);
+                this.size = 0;
+            } else {
+                this.size = this.readHeader();
+                long end = HEADER_SIZE + this.size * RECORD_SIZE;
+                if (this.channel.size() > end) {
+                    this.channel.truncate(end);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends one sample.
+     *
+     * @param time Time of the sample in milliseconds.
+     * @param pressure The pressure in hPa.
+     * @throws IOException If the file could not be written.
+     */
+    public void append(long time, double pressure) throws IOException
+    {
+        this.append(new long[] {time}, new double[] {pressure}, 0, 1);
+    }
+
+    /**
+     * Appends a range of samples.
+     *
+     * @param times Times of the samples in milliseconds.
+     * @param pressures The pressures in hPa.
+     * @param offset Index of the first sample to append.
+     * @param length Number of samples to append.
+     * @throws IOException If the file could not be written.
+     */
+    public void append(long[] times, double[] pressures, int offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, WRITE_CHUNK) * RECORD_SIZE);
+        long position = HEADER_SIZE + this.size * RECORD_SIZE;
+        for (int i = offset; i < offset + length; i++) {
+            buffer.putLong(times[i]).putDouble(pressures[i]);
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                position += this.writeFully(buffer, position);
+                buffer.clear();
+            }
+        }
+        buffer.flip();
+        this.writeFully(buffer, position);
+        this.size += length;
+        ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+        count.putLong(this.size).flip();
+        this.writeFully(count, COUNT_OFFSET);
+    }
+
+    /**
+     * Reads a range of samples through a memory-mapped region of the file.
+     *
+     * @param from Index of the first sample to read.
+     * @param times Array receiving the times, or null to skip them.
+     * @param pressures Array receiving the pressures.
+     * @param length Number of samples to read.
+     * @throws IOException If the file could not be read.
+     * @throws IndexOutOfBoundsException If the range is outside the file.
+     */
+    public void read(long from, long[] times, double[] pressures, int length) throws IOException
+    {
+        if (from < 0 || length < 0 || from + length > this.size) {
+            throw new IndexOutOfBoundsException("Range " + from + "+" + length + ", Size: " + this.size);
+        }
+        if (length == 0) {
+            return;
+        }
+        MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                HEADER_SIZE + from * RECORD_SIZE, (long) length * RECORD_SIZE);
+        for (int i = 0; i < length; i++) {
+            long time = buffer.getLong();
+            if (times != null) {
+                times[i] = time;
+            }
+            pressures[i] = buffer.getDouble();
+        }
+    }
+
+    /**
+     * Gets the number of samples in the file.
+     *
+     * @return The number of samples.
+     */
+    public long size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Removes all samples.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    public void clear() throws IOException
+    {
+        ByteBuffer count = ByteBuffer.allocate(Long.BYTES);
+        count.putLong(0).flip();
+        this.writeFully(count, COUNT_OFFSET);
+        this.channel.truncate(HEADER_SIZE);
+        this.size = 0;
+    }
+
+    /**
+     * Forces written samples to the storage device.
+     *
+     * @throws IOException If the file could not be synced.
+     */
+    public void force() throws IOException
+    {
+        this.channel.force(false);
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+
+    /**
+     * Validates the header and reads the sample count.
+     *
+     * @return The number of samples.
+     * @throws IOException If the header could not be read or is invalid.
+     */
+    private long readHeader() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (this.channel.read(header, header.position()) < 0) {
+                throw new IOException("Truncated pressure history header");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a pressure history file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported pressure history version " + version);
+        }
+        long count = header.getLong();
+        if (count < 0 || HEADER_SIZE + count * RECORD_SIZE > this.channel.size()) {
+            throw new IOException("Corrupted pressure history header");
+        }
+        return count;
+    }
+
+    /**
+     * Writes the whole buffer at the given position.
+     *
+     * @param buffer Buffer to write.
+     * @param position Byte position in the file.
+     * @return Number of bytes written.
+     * @throws IOException If the file could not be written.
+     */
+    private int writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += this.channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Numerical method advancing the pressure over one step of dp/dt = f(t, p).
+ * {@link PressureSolver} splits long intervals into sub-steps and calls the integrator for each of them.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface PressureIntegrator {
+
+    /**
+     * Advances the pressure over one step.
+     *
+     * @param rate Rate of change of the pressure.
+     * @param timeMin Time at the start of the step, in minutes.
+     * @param pressure The pressure at the start of the step, in hPa.
+     * @param stepMin Length of the step in minutes.
+     * @return The pressure at the end of the step, in hPa.
+     */
+    double step(PressureRate rate, double timeMin, double pressure, double stepMin);
+
+    /**
+     * Gets an integrator by name.
+     *
+     * @param name "euler", "rk4" or "adaptive", case-insensitive.
+     * @return The integrator.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    static PressureIntegrator forName(String name)
+    {
+        switch (name.trim().toLowerCase()) {
+            case "euler":
+                return new EulerIntegrator();
+            case "rk4":
+                return new RungeKuttaIntegrator();
+            case "adaptive":
+                return new AdaptiveIntegrator();
+            default:
+                throw new IllegalArgumentException("Unknown integrator " + name);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Pressure physics shared by the single-tank {@link Model}, the {@link PressureSolver}, the {@link FlowProfileReplay}
+ * and the multi-tank {@link SimulationEngine}.
+ * The array form is a plain counted loop over primitive arrays without branches,
+ * so the JIT compiler can vectorize it.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class PressureKernel {
+
+    /** Gas constant used in pressure calculations. */
+    public static final double GAS_CONSTANT = 8.314;
+
+    /**
+     * Utility class, no instances.
+     */
+    private PressureKernel()
+    {
+    }
+
+    /**
+     * Computes the gas conductivity factor of a tank.
+     *
+     * @param volume The volume of the tank in liters.
+     * @param temperature The temperature of the gas in Kelvin.
+     * @return The gas conductivity factor.
+     */
+    public static double gasConductivityFactor(double volume, double temperature)
+    {
+        return volume / (temperature * GAS_CONSTANT);
+    }
+
+    /**
+     * Computes the rate of change of the pressure of one tank with constant flows.
+     * An empty tank can't lose more gas, so the rate is 0 when the pressure is 0 and the outflow wins.
+     *
+     * @param pressure The current pressure.
+     * @param inflow The gas inflow rate.
+     * @param outflow The gas outflow rate.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @return The rate of change in hPa per minute.
+     */
+    public static double rate(double pressure, double inflow, double outflow, double gasConductivityFactor)
+    {
+        double rate = (inflow - outflow) / gasConductivityFactor;
+        return pressure <= 0 && rate < 0 ? 0 : rate;
+    }
+
+    /**
+     * Integrates the pressure of one tank over the elapsed time with constant flows.
+     *
+     * @param pressure The pressure at the start of the interval.
+     * @param inflow The gas inflow rate.
+     * @param outflow The gas outflow rate.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @param elapsedTimeMin The length of the interval in minutes.
+     * @return The pressure at the end of the interval, never below 0.
+     */
+    public static double nextPressure(double pressure, double inflow, double outflow,
+            double gasConductivityFactor, double elapsedTimeMin)
+    {
+        double result = pressure + ((inflow - outflow) / gasConductivityFactor) * elapsedTimeMin;
+        return Math.max(result, 0.0);
+    }
+
+    /**
+     * Integrates the pressure of the tanks in the index range over the elapsed time, in place.
+     *
+     * @param pressure Pressures of the tanks, updated in place.
+     * @param inflow Gas inflow rates of the tanks.
+     * @param outflow Gas outflow rates of the tanks.
+     * @param gasConductivityFactor Gas conductivity factors of the tanks.
+     * @param from First index, inclusive.
+     * @param to Last index, exclusive.
+     * @param elapsedTimeMin The length of the interval in minutes.
+     */
+    public static void step(double[] pressure, double[] inflow, double[] outflow, double[] gasConductivityFactor,
+            int from, int to, double elapsedTimeMin)
+    {
+        for (int i = from; i < to; i++) {
+            double result = pressure[i] + ((inflow[i] - outflow[i]) / gasConductivityFactor[i]) * elapsedTimeMin;
+            pressure[i] = Math.max(result, 0.0);
+        }
+    }
+
+    /**
+     * Counts tanks in the index range whose pressure exceeds their maximum.
+     *
+     * @param pressure Pressures of the tanks.
+     * @param maxPressure Maximum allowed pressures of the tanks.
+     * @param from First index, inclusive.
+     * @param to Last index, exclusive.
+     * @return Number of overflowing tanks.
+     */
+    public static int countOverflows(double[] pressure, double[] maxPressure, int from, int to)
+    {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            count += pressure[i] > maxPressure[i] ? 1 : 0;
+        }
+        return count;
+    }
+}
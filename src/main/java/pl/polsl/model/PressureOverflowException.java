@@ -9,10 +9,13 @@ package pl.polsl.model;
  * Extends the standard Exception class.
  * 
  * @author Jakub Krzywoń
- * @version 1.1
+ * @version 1.2
  */
 public class PressureOverflowException extends Exception {
     
+    /** Simulated time in milliseconds at which the pressure crossed the maximum, or -1 if unknown. */
+    private final long crossingTime;
+    
     /**
      * Constructor
      * Takes string and calls the contructor of superclass (Exception) with provided string
@@ -20,6 +23,27 @@ public class PressureOverflowException extends Exception {
      * @param message The error message describing the pressure overflow situation.
      */
     public PressureOverflowException(String message) {
+        this(message, -1);
+    }
+    
+    /**
+     * Constructor
+     * Takes string and the time at which the pressure crossed the maximum
+     * 
+     * @param message The error message describing the pressure overflow situation.
+     * @param crossingTime Simulated time in milliseconds at which the pressure crossed the maximum, or -1 if unknown.
+     */
+    public PressureOverflowException(String message, long crossingTime) {
         super(message);
+        this.crossingTime = crossingTime;
+    }
+    
+    /**
+     * Gets the time at which the pressure crossed the maximum.
+     * 
+     * @return Simulated time in milliseconds, or -1 if the pressure was already above the maximum.
+     */
+    public long getCrossingTime() {
+        return this.crossingTime;
     }
 }   
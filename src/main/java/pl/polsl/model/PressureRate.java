@@ -0,0 +1,25 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Rate of change of the tank pressure, the right-hand side of dp/dt = f(t, p)
+ * solved by a {@link PressureIntegrator}.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface PressureRate {
+
+    /**
+     * Computes the rate of change of the pressure.
+     *
+     * @param timeMin Time from the start of the interval, in minutes.
+     * @param pressure The pressure in hPa.
+     * @return The rate of change in hPa per minute.
+     */
+    double rate(double timeMin, double pressure);
+}
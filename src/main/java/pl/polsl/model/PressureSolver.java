@@ -0,0 +1,152 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Integrates the pressure over an interval of any length with a {@link PressureIntegrator}.
+ * Intervals longer than the maximum step are split into equal sub-steps, so a long idle gap
+ * is not covered by a single step. The number of sub-steps is capped at {@link #MAX_STEPS}, so the
+ * work stays bounded after any downtime; beyond that the sub-steps grow longer than the maximum step.
+ * With constant flows the pressure moves in a straight line, so
+ * {@link #solveConstantFlows} computes such long intervals exactly instead.
+ * When the pressure rises above the threshold inside a sub-step,
+ * the crossing time is found by bisection of that sub-step.
+ * The pressure never drops below 0.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureSolver {
+
+    /** Default maximum length of a sub-step, in minutes. */
+    public static final double DEFAULT_MAX_STEP_MIN = 1.0;
+
+    /** Maximum number of sub-steps of one interval. */
+    public static final long MAX_STEPS = 10000;
+
+    /** Precision of the crossing time, in minutes (1 ms). */
+    private static final double CROSSING_RESOLUTION_MIN = 1.0 / 60000;
+
+    /** Method advancing each sub-step. */
+    private final PressureIntegrator integrator;
+
+    /** Maximum length of a sub-step, in minutes. */
+    private final double maxStepMin;
+
+    /**
+     * Constructor
+     *
+     * @param integrator Method advancing each sub-step.
+     * @param maxStepMin Maximum length of a sub-step, in minutes.
+     */
+    public PressureSolver(PressureIntegrator integrator, double maxStepMin)
+    {
+        if (maxStepMin <= 0) {
+            throw new IllegalArgumentException("Maximum step must be positive");
+        }
+        this.integrator = integrator;
+        this.maxStepMin = maxStepMin;
+    }
+
+    /**
+     * Integrates the pressure over the interval.
+     *
+     * @param rate Rate of change of the pressure.
+     * @param pressure The pressure at the start of the interval, in hPa.
+     * @param durationMin Length of the interval in minutes.
+     * @param threshold Pressure whose first crossing from below is located, in hPa.
+     * @return The final pressure and the crossing time.
+     */
+    public IntegrationResult solve(PressureRate rate, double pressure, double durationMin, double threshold)
+    {
+        if (durationMin <= 0) {
+            return new IntegrationResult(pressure, -1);
+        }
+        long steps = Math.max(1, Math.min(MAX_STEPS, (long) Math.ceil(durationMin / this.maxStepMin)));
+        double stepMin = durationMin / steps;
+        double crossing = -1;
+        for (long i = 0; i < steps; i++) {
+            double time = i * stepMin;
+            double next = Math.max(this.integrator.step(rate, time, pressure, stepMin), 0.0);
+            if (crossing < 0 && pressure <= threshold && next > threshold) {
+                crossing = this.locateCrossing(rate, time, pressure, stepMin, threshold);
+            }
+            pressure = next;
+        }
+        return new IntegrationResult(pressure, crossing);
+    }
+
+    /**
+     * Integrates the pressure of a tank whose flows don't change during the interval.
+     * Intervals needing at most {@link #MAX_STEPS} sub-steps go through the integrator like any rate;
+     * longer ones, e.g. after a long downtime, use the closed form of the straight line,
+     * which is exact and takes constant time however long the interval is.
+     *
+     * @param inflow The gas inflow rate.
+     * @param outflow The gas outflow rate.
+     * @param gasConductivityFactor The gas conductivity factor of the tank.
+     * @param pressure The pressure at the start of the interval, in hPa.
+     * @param durationMin Length of the interval in minutes.
+     * @param threshold Pressure whose first crossing from below is located, in hPa.
+     * @return The final pressure and the crossing time.
+     */
+    public IntegrationResult solveConstantFlows(double inflow, double outflow, double gasConductivityFactor,
+            double pressure, double durationMin, double threshold)
+    {
+        if (durationMin / this.maxStepMin <= MAX_STEPS) {
+            return this.solve((time, current) -> PressureKernel.rate(current, inflow, outflow, gasConductivityFactor),
+                    pressure, durationMin, threshold);
+        }
+        double next = PressureKernel.nextPressure(pressure, inflow, outflow, gasConductivityFactor, durationMin);
+        double rate = (inflow - outflow) / gasConductivityFactor;
+        double crossing = pressure <= threshold && next > threshold ? (threshold - pressure) / rate : -1;
+        return new IntegrationResult(next, crossing);
+    }
+
+    /**
+     * Getter for integrator
+     *
+     * @return Method advancing each sub-step.
+     */
+    public PressureIntegrator getIntegrator()
+    {
+        return this.integrator;
+    }
+
+    /**
+     * Getter for maxStepMin
+     *
+     * @return Maximum length of a sub-step, in minutes.
+     */
+    public double getMaxStepMin()
+    {
+        return this.maxStepMin;
+    }
+
+    /**
+     * Bisects a sub-step in which the pressure rose above the threshold.
+     *
+     * @param rate Rate of change of the pressure.
+     * @param time Time at the start of the sub-step, in minutes.
+     * @param pressure The pressure at the start of the sub-step, at most the threshold.
+     * @param stepMin Length of the sub-step in minutes.
+     * @param threshold The crossed pressure.
+     * @return Time of the crossing from the start of the interval, in minutes.
+     */
+    private double locateCrossing(PressureRate rate, double time, double pressure, double stepMin, double threshold)
+    {
+        double low = 0;
+        double high = stepMin;
+        while (high - low > CROSSING_RESOLUTION_MIN) {
+            double middle = (low + high) / 2;
+            if (this.integrator.step(rate, time, pressure, middle) > threshold) {
+                high = middle;
+            } else {
+                low = middle;
+            }
+        }
+        return time + high;
+    }
+}
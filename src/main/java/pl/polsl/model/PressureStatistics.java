@@ -0,0 +1,385 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Running statistics of pressure samples, updated as each sample arrives.
+ * Keeps all-time count, Kahan-compensated sum, min, max and variance, and
+ * min, max and average over a sliding window of the newest samples.
+ * Window min and max are tracked with monotonic deques, so every query is O(1).
+ * All methods are synchronized.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureStatistics {
+
+    /** Number of samples seen since the last reset. */
+    private long count = 0;
+
+    /** Kahan-compensated sum of all samples. */
+    private final KahanSum sum = new KahanSum();
+
+    /** Smallest sample seen. */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /** Largest sample seen. */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /** Running mean used by Welford's variance algorithm. */
+    private double mean = 0;
+
+    /** Sum of squared differences from the mean (Welford). */
+    private double m2 = 0;
+
+    /** Sequence number of the oldest sample in the window. */
+    private long windowStart = 0;
+
+    /** Kahan-compensated sum of the samples in the window. */
+    private final KahanSum windowSum = new KahanSum();
+
+    /** Candidates for the window maximum, in decreasing order. */
+    private final MonotonicDeque windowMax;
+
+    /** Candidates for the window minimum, in increasing order. */
+    private final MonotonicDeque windowMin;
+
+    /**
+     * Constructor
+     *
+     * @param windowSize Maximum number of samples in the sliding window.
+     */
+    public PressureStatistics(int windowSize)
+    {
+        this.windowMax = new MonotonicDeque(windowSize, true);
+        this.windowMin = new MonotonicDeque(windowSize, false);
+    }
+
+    /**
+     * Adds a new sample to the all-time statistics and to the window.
+     * The caller is responsible for calling {@link #remove(double)} first when the window is full.
+     *
+     * @param value The pressure value.
+     */
+    public synchronized void add(double value)
+    {
+        long sequence = this.count++;
+        this.sum.add(value);
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+        double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (value - this.mean);
+
+        this.windowSum.add(value);
+        this.windowMax.push(sequence, value);
+        this.windowMin.push(sequence, value);
+    }
+
+    /**
+     * Removes the oldest sample from the window. All-time statistics are not affected.
+     *
+     * @param value The value of the oldest sample in the window.
+     */
+    public synchronized void remove(double value)
+    {
+        this.windowSum.add(-value);
+        this.windowMax.expire(this.windowStart);
+        this.windowMin.expire(this.windowStart);
+        this.windowStart++;
+    }
+
+    /**
+     * Replaces the window with the given samples, keeping the all-time statistics.
+     * Used when the samples were reordered after they were added, so the window expires them
+     * in their new order; the last sample must already have been added.
+     *
+     * @param window The samples in the window, oldest first.
+     */
+    public synchronized void rebuildWindow(double[] window)
+    {
+        this.windowStart = this.count - window.length;
+        this.windowSum.clear();
+        this.windowMax.clear();
+        this.windowMin.clear();
+        for (int i = 0; i < window.length; i++) {
+            this.windowSum.add(window[i]);
+            this.windowMax.push(this.windowStart + i, window[i]);
+            this.windowMin.push(this.windowStart + i, window[i]);
+        }
+    }
+
+    /**
+     * Resets all statistics.
+     */
+    public synchronized void clear()
+    {
+        this.count = 0;
+        this.sum.clear();
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        this.mean = 0;
+        this.m2 = 0;
+        this.windowStart = 0;
+        this.windowSum.clear();
+        this.windowMax.clear();
+        this.windowMin.clear();
+    }
+
+    /**
+     * Gets the number of samples seen since the last reset.
+     *
+     * @return The number of samples.
+     */
+    public synchronized long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Gets the sum of all samples.
+     *
+     * @return The compensated sum.
+     */
+    public synchronized double getSum()
+    {
+        return this.sum.value();
+    }
+
+    /**
+     * Gets the smallest sample seen.
+     *
+     * @return The minimum or -1 if no samples were seen.
+     */
+    public synchronized double getMin()
+    {
+        return this.count == 0 ? -1.0 : this.min;
+    }
+
+    /**
+     * Gets the largest sample seen.
+     *
+     * @return The maximum or -1 if no samples were seen.
+     */
+    public synchronized double getMax()
+    {
+        return this.count == 0 ? -1.0 : this.max;
+    }
+
+    /**
+     * Gets the mean of all samples.
+     *
+     * @return The mean or -1 if no samples were seen.
+     */
+    public synchronized double getAverage()
+    {
+        return this.count == 0 ? -1.0 : this.sum.value() / this.count;
+    }
+
+    /**
+     * Gets the population variance of all samples.
+     *
+     * @return The variance or -1 if no samples were seen.
+     */
+    public synchronized double getVariance()
+    {
+        return this.count == 0 ? -1.0 : this.m2 / this.count;
+    }
+
+    /**
+     * Gets the number of samples in the window.
+     *
+     * @return The window size.
+     */
+    public synchronized int getWindowCount()
+    {
+        return (int) (this.count - this.windowStart);
+    }
+
+    /**
+     * Gets the smallest sample in the window.
+     *
+     * @return The minimum or -1 if the window is empty.
+     */
+    public synchronized double getWindowMin()
+    {
+        return this.windowMin.isEmpty() ? -1.0 : this.windowMin.peek();
+    }
+
+    /**
+     * Gets the largest sample in the window.
+     *
+     * @return The maximum or -1 if the window is empty.
+     */
+    public synchronized double getWindowMax()
+    {
+        return this.windowMax.isEmpty() ? -1.0 : this.windowMax.peek();
+    }
+
+    /**
+     * Gets the mean of the samples in the window.
+     *
+     * @return The mean or -1 if the window is empty.
+     */
+    public synchronized double getWindowAverage()
+    {
+        int windowCount = this.getWindowCount();
+        return windowCount == 0 ? -1.0 : this.windowSum.value() / windowCount;
+    }
+
+    /**
+     * Sum with Kahan compensation of the rounding error.
+     */
+    private static final class KahanSum {
+
+        /** Running sum. */
+        private double sum = 0;
+
+        /** Compensation for lost low-order bits. */
+        private double compensation = 0;
+
+        /**
+         * Adds a value to the sum.
+         *
+         * @param value The value to add.
+         */
+        void add(double value)
+        {
+            double y = value - this.compensation;
+            double t = this.sum + y;
+            this.compensation = (t - this.sum) - y;
+            this.sum = t;
+        }
+
+        /**
+         * Gets the compensated sum.
+         *
+         * @return The sum.
+         */
+        double value()
+        {
+            return this.sum;
+        }
+
+        /**
+         * Resets the sum to zero.
+         */
+        void clear()
+        {
+            this.sum = 0;
+            this.compensation = 0;
+        }
+    }
+
+    /**
+     * Deque of (sequence, value) pairs kept monotonic, so its front is the window extreme.
+     * Backed by primitive ring buffers.
+     */
+    private static final class MonotonicDeque {
+
+        /** Sequence numbers of the candidates. */
+        private final long[] sequences;
+
+        /** Values of the candidates. */
+        private final double[] values;
+
+        /** True for a maximum deque, false for a minimum deque. */
+        private final boolean keepMax;
+
+        /** Index of the front element. */
+        private int head = 0;
+
+        /** Number of elements. */
+        private int size = 0;
+
+        /**
+         * Constructor
+         *
+         * @param capacity Maximum number of elements, equal to the window size.
+         * @param keepMax True to track the maximum, false to track the minimum.
+         */
+        MonotonicDeque(int capacity, boolean keepMax)
+        {
+            this.sequences = new long[capacity];
+            this.values = new double[capacity];
+            this.keepMax = keepMax;
+        }
+
+        /**
+         * Appends a sample, dropping the candidates it dominates.
+         *
+         * @param sequence Sequence number of the sample.
+         * @param value The sample value.
+         */
+        void push(long sequence, double value)
+        {
+            while (this.size > 0) {
+                double last = this.values[this.index(this.size - 1)];
+                if (this.keepMax ? last > value : last < value) {
+                    break;
+                }
+                this.size--;
+            }
+            int tail = this.index(this.size);
+            this.sequences[tail] = sequence;
+            this.values[tail] = value;
+            this.size++;
+        }
+
+        /**
+         * Drops the front element if it is the sample leaving the window.
+         *
+         * @param sequence Sequence number of the sample leaving the window.
+         */
+        void expire(long sequence)
+        {
+            if (this.size > 0 && this.sequences[this.head] == sequence) {
+                this.head = this.index(1);
+                this.size--;
+            }
+        }
+
+        /**
+         * Gets the value at the front of the deque.
+         *
+         * @return The window extreme.
+         */
+        double peek()
+        {
+            return this.values[this.head];
+        }
+
+        /**
+         * Checks whether the deque is empty.
+         *
+         * @return True if there are no elements.
+         */
+        boolean isEmpty()
+        {
+            return this.size == 0;
+        }
+
+        /**
+         * Removes all elements.
+         */
+        void clear()
+        {
+            this.head = 0;
+            this.size = 0;
+        }
+
+        /**
+         * Maps a logical position to an index in the ring buffers.
+         *
+         * @param i Logical position, 0 being the front.
+         * @return Array index.
+         */
+        private int index(int i)
+        {
+            int index = this.head + i;
+            return index < this.values.length ? index : index - this.values.length;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.sql.SQLException;
+
+/**
+ * Callback receiving the results of a {@link FlowProfileReplay} in batches.
+ * The arrays are reused for the next batch, so they must not be kept after the call returns.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ReplayBatchHandler {
+
+    /**
+     * Handles one batch of replayed events.
+     *
+     * @param times Simulated times of the events, in milliseconds.
+     * @param inflows Gas inflow rates set by the events.
+     * @param outflows Gas outflow rates set by the events.
+     * @param pressures Pressures at the times of the events, in hPa.
+     * @param count Number of valid entries in the arrays.
+     * @throws SQLException If the batch could not be written to the database.
+     */
+    void batch(long[] times, double[] inflows, double[] outflows, double[] pressures, int count) throws SQLException;
+}
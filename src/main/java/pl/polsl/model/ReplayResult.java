@@ -0,0 +1,123 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Summary of a {@link FlowProfileReplay}.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class ReplayResult {
+
+    /** Number of replayed events. */
+    private final long events;
+
+    /** Number of intervals between events in which the pressure rose above the maximum. */
+    private final long overflows;
+
+    /** Simulated time the pressure first rose above the maximum, or -1. */
+    private final long firstOverflowTime;
+
+    /** Highest pressure reached, in hPa. */
+    private final double peakPressure;
+
+    /** Pressure after the last event, in hPa. */
+    private final double finalPressure;
+
+    /** Simulated time of the last event, in milliseconds. */
+    private final long endTime;
+
+    /**
+     * Constructor
+     *
+     * @param events Number of replayed events.
+     * @param overflows Number of intervals in which the pressure rose above the maximum.
+     * @param firstOverflowTime Simulated time the pressure first rose above the maximum, or -1.
+     * @param peakPressure Highest pressure reached, in hPa.
+     * @param finalPressure Pressure after the last event, in hPa.
+     * @param endTime Simulated time of the last event, in milliseconds.
+     */
+    public ReplayResult(long events, long overflows, long firstOverflowTime, double peakPressure,
+            double finalPressure, long endTime)
+    {
+        this.events = events;
+        this.overflows = overflows;
+        this.firstOverflowTime = firstOverflowTime;
+        this.peakPressure = peakPressure;
+        this.finalPressure = finalPressure;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Getter for events
+     *
+     * @return Number of replayed events.
+     */
+    public long getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * Getter for overflows
+     *
+     * @return Number of intervals between events in which the pressure rose above the maximum.
+     */
+    public long getOverflows()
+    {
+        return this.overflows;
+    }
+
+    /**
+     * Getter for firstOverflowTime
+     *
+     * @return Simulated time the pressure first rose above the maximum, or -1 if it never did.
+     */
+    public long getFirstOverflowTime()
+    {
+        return this.firstOverflowTime;
+    }
+
+    /**
+     * Getter for peakPressure
+     *
+     * @return Highest pressure reached, in hPa.
+     */
+    public double getPeakPressure()
+    {
+        return this.peakPressure;
+    }
+
+    /**
+     * Getter for finalPressure
+     *
+     * @return Pressure after the last event, in hPa.
+     */
+    public double getFinalPressure()
+    {
+        return this.finalPressure;
+    }
+
+    /**
+     * Getter for endTime
+     *
+     * @return Simulated time of the last event, in milliseconds.
+     */
+    public long getEndTime()
+    {
+        return this.endTime;
+    }
+
+    /**
+     * Checks whether the pressure ever rose above the maximum.
+     *
+     * @return True if there was an overflow.
+     */
+    public boolean hasOverflowed()
+    {
+        return this.firstOverflowTime >= 0;
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Classic fourth-order Runge-Kutta method: four rate evaluations per step.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class RungeKuttaIntegrator implements PressureIntegrator {
+
+    @Override
+    public double step(PressureRate rate, double timeMin, double pressure, double stepMin)
+    {
+        double half = stepMin / 2;
+        double k1 = rate.rate(timeMin, pressure);
+        double k2 = rate.rate(timeMin + half, pressure + half * k1);
+        double k3 = rate.rate(timeMin + half, pressure + half * k2);
+        double k4 = rate.rate(timeMin + stepMin, pressure + stepMin * k3);
+        return pressure + stepMin / 6 * (k1 + 2 * k2 + 2 * k3 + k4);
+    }
+}
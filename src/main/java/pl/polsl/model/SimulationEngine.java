@@ -0,0 +1,410 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Simulation of many tanks addressed by ID, advanced together in one tick.
+ * Tank state is kept in a structure-of-arrays layout (pressure[], inflow[], outflow[], ...)
+ * so a tick is a {@link PressureKernel#step} loop over primitive arrays,
+ * split between fork/join workers for large registries.
+ * <p>
+ * Ticks and adding or removing tanks take the write lock. Reads and flow changes take the read lock,
+ * so they run concurrently with each other but never see a half-finished tick.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class SimulationEngine {
+
+    /** Number of tanks below which a tick chunk is not split further. */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    /** Initial capacity of the arrays. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Pool running the parallel ticks. */
+    private final ForkJoinPool pool;
+
+    /** Index of each tank in the arrays, by tank ID. */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /** Tank IDs by index. */
+    private String[] ids = new String[INITIAL_CAPACITY];
+
+    /** Pressures of the tanks, in hPa. */
+    private double[] pressure = new double[INITIAL_CAPACITY];
+
+    /** Gas inflow rates of the tanks. */
+    private double[] inflow = new double[INITIAL_CAPACITY];
+
+    /** Gas outflow rates of the tanks. */
+    private double[] outflow = new double[INITIAL_CAPACITY];
+
+    /** Gas conductivity factors of the tanks. */
+    private double[] gasConductivityFactor = new double[INITIAL_CAPACITY];
+
+    /** Maximum allowed pressures of the tanks, in hPa. */
+    private double[] maxPressure = new double[INITIAL_CAPACITY];
+
+    /** Number of registered tanks. */
+    private int size = 0;
+
+    /** Lock guarding the arrays. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor
+     * Runs parallel ticks in the common fork/join pool.
+     */
+    public SimulationEngine()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pool Pool running the parallel ticks.
+     */
+    public SimulationEngine(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Registers a tank with the parameters and current state of the given tank.
+     *
+     * @param id ID of the tank.
+     * @param tank Tank providing volume, temperature, maximum pressure, flows and pressure.
+     * @throws IllegalArgumentException If a tank with this ID is already registered.
+     */
+    public void addTank(String id, Tank tank)
+    {
+        TankState state = tank.getState();
+        this.lock.writeLock().lock();
+        try {
+            if (this.indexes.containsKey(id)) {
+                throw new IllegalArgumentException("Tank " + id + " is already registered");
+            }
+            if (this.size == this.pressure.length) {
+                this.grow();
+            }
+            int i = this.size++;
+            this.ids[i] = id;
+            this.pressure[i] = state.getPressure();
+            this.inflow[i] = state.getGasInflow();
+            this.outflow[i] = state.getGasOutflow();
+            this.gasConductivityFactor[i] = PressureKernel.gasConductivityFactor(tank.getVolume(), tank.getTemperature());
+            this.maxPressure[i] = tank.getMaxAllowedPressure();
+            this.indexes.put(id, i);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a tank. The last tank takes its place in the arrays.
+     *
+     * @param id ID of the tank.
+     * @return True if the tank was registered.
+     */
+    public boolean removeTank(String id)
+    {
+        this.lock.writeLock().lock();
+        try {
+            Integer removed = this.indexes.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            int i = removed;
+            int last = --this.size;
+            if (i != last) {
+                this.ids[i] = this.ids[last];
+                this.pressure[i] = this.pressure[last];
+                this.inflow[i] = this.inflow[last];
+                this.outflow[i] = this.outflow[last];
+                this.gasConductivityFactor[i] = this.gasConductivityFactor[last];
+                this.maxPressure[i] = this.maxPressure[last];
+                this.indexes.put(this.ids[i], i);
+            }
+            this.ids[last] = null;
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Advances every tank by the elapsed time.
+     *
+     * @param elapsedTimeMin The length of the tick in minutes.
+     * @return Number of tanks whose pressure exceeds their maximum after the tick.
+     */
+    public int tick(double elapsedTimeMin)
+    {
+        this.lock.writeLock().lock();
+        try {
+            if (this.size < PARALLEL_THRESHOLD) {
+                PressureKernel.step(this.pressure, this.inflow, this.outflow, this.gasConductivityFactor,
+                        0, this.size, elapsedTimeMin);
+                return PressureKernel.countOverflows(this.pressure, this.maxPressure, 0, this.size);
+            }
+            return this.pool.invoke(new TickTask(0, this.size, elapsedTimeMin));
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the IDs of tanks whose pressure exceeds their maximum.
+     *
+     * @return List of tank IDs.
+     */
+    public List<String> getOverflowingTanks()
+    {
+        this.lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < this.size; i++) {
+                if (this.pressure[i] > this.maxPressure[i]) {
+                    result.add(this.ids[i]);
+                }
+            }
+            return result;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of registered tanks.
+     *
+     * @return The number of tanks.
+     */
+    public int size()
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether a tank is registered.
+     *
+     * @param id ID of the tank.
+     * @return True if the tank is registered.
+     */
+    public boolean contains(String id)
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.indexes.containsKey(id);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the pressure of a tank.
+     *
+     * @param id ID of the tank.
+     * @return The pressure in hPa.
+     */
+    public double getPressure(String id)
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.pressure[this.indexOf(id)];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the gas inflow rate of a tank.
+     *
+     * @param id ID of the tank.
+     * @return The gas inflow rate.
+     */
+    public double getGasInflow(String id)
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.inflow[this.indexOf(id)];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the gas outflow rate of a tank.
+     *
+     * @param id ID of the tank.
+     * @return The gas outflow rate.
+     */
+    public double getGasOutflow(String id)
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.outflow[this.indexOf(id)];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum allowed pressure of a tank.
+     *
+     * @param id ID of the tank.
+     * @return The maximum allowed pressure in hPa.
+     */
+    public double getMaxAllowedPressure(String id)
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.maxPressure[this.indexOf(id)];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the gas inflow rate of a tank.
+     *
+     * @param id ID of the tank.
+     * @param value The new gas inflow rate.
+     */
+    public void setGasInflow(String id, double value)
+    {
+        this.lock.readLock().lock();
+        try {
+            this.inflow[this.indexOf(id)] = value;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the gas outflow rate of a tank.
+     *
+     * @param id ID of the tank.
+     * @param value The new gas outflow rate.
+     */
+    public void setGasOutflow(String id, double value)
+    {
+        this.lock.readLock().lock();
+        try {
+            this.outflow[this.indexOf(id)] = value;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the pressure of a tank.
+     *
+     * @param id ID of the tank.
+     * @param value The new pressure in hPa.
+     */
+    public void setPressure(String id, double value)
+    {
+        this.lock.readLock().lock();
+        try {
+            this.pressure[this.indexOf(id)] = value;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the array index of a tank.
+     *
+     * @param id ID of the tank.
+     * @return Index in the arrays.
+     * @throws IllegalArgumentException If no tank with this ID is registered.
+     */
+    private int indexOf(String id)
+    {
+        Integer index = this.indexes.get(id);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown tank " + id);
+        }
+        return index;
+    }
+
+    /**
+     * Doubles the capacity of the arrays.
+     */
+    private void grow()
+    {
+        int capacity = this.pressure.length * 2;
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.pressure = Arrays.copyOf(this.pressure, capacity);
+        this.inflow = Arrays.copyOf(this.inflow, capacity);
+        this.outflow = Arrays.copyOf(this.outflow, capacity);
+        this.gasConductivityFactor = Arrays.copyOf(this.gasConductivityFactor, capacity);
+        this.maxPressure = Arrays.copyOf(this.maxPressure, capacity);
+    }
+
+    /**
+     * Fork/join task advancing a range of tanks and counting overflows.
+     */
+    private final class TickTask extends RecursiveTask<Integer> {
+
+        /** Version of the serialized form, required of a Serializable task. */
+        private static final long serialVersionUID = 1L;
+
+        /** First index, inclusive. */
+        private final int from;
+
+        /** Last index, exclusive. */
+        private final int to;
+
+        /** The length of the tick in minutes. */
+        private final double elapsedTimeMin;
+
+        /**
+         * Constructor
+         *
+         * @param from First index, inclusive.
+         * @param to Last index, exclusive.
+         * @param elapsedTimeMin The length of the tick in minutes.
+         */
+        TickTask(int from, int to, double elapsedTimeMin)
+        {
+            this.from = from;
+            this.to = to;
+            this.elapsedTimeMin = elapsedTimeMin;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if (this.to - this.from <= PARALLEL_THRESHOLD) {
+                PressureKernel.step(pressure, inflow, outflow, gasConductivityFactor,
+                        this.from, this.to, this.elapsedTimeMin);
+                return PressureKernel.countOverflows(pressure, maxPressure, this.from, this.to);
+            }
+            int middle = (this.from + this.to) >>> 1;
+            TickTask left = new TickTask(this.from, middle, this.elapsedTimeMin);
+            left.fork();
+            int right = new TickTask(middle, this.to, this.elapsedTimeMin).compute();
+            return left.join() + right;
+        }
+    }
+}
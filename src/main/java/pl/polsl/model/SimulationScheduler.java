@@ -0,0 +1,235 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import pl.polsl.metrics.LatencyHistogram;
+import pl.polsl.metrics.MetricsRegistry;
+
+/**
+ * Background service advancing the {@link Model} in fixed time steps on a dedicated thread.
+ * Every tick integrates exactly one tick length of simulated time, so sampling doesn't depend
+ * on request traffic. After each tick the new {@link TankState} is published to the listeners;
+ * readers that don't listen get the same snapshot from {@link Model#getState()}.
+ * Tick durations and counts are recorded in the metrics of the Model.
+ * When given a {@link TankSessionManager}, every tick also advances the tanks of clients in memory,
+ * all together through its {@link SimulationEngine}; listeners receive the state of the Model only.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class SimulationScheduler implements AutoCloseable {
+
+    /** Model advanced by the ticks. */
+    private final Model model;
+
+    /** Tanks of clients advanced by the ticks, or null. */
+    private final TankSessionManager sessions;
+
+    /** Length of a tick in milliseconds. */
+    private final long tickMillis;
+
+    /** Thread running the ticks. */
+    private final ScheduledExecutorService executor;
+
+    /** Listeners receiving the state after every tick. */
+    private final List<Consumer<TankState>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Number of ticks run. */
+    private final AtomicLong tickCount = new AtomicLong();
+
+    /** Number of ticks that ended with pressure above the maximum. */
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /** Duration of the last tick, in nanoseconds. */
+    private volatile long lastTickNanos = 0;
+
+    /** Durations of the ticks. */
+    private final LatencyHistogram tickDurations;
+
+    /** Last error thrown by a tick or listener, or null. */
+    private volatile RuntimeException lastError = null;
+
+    /**
+     * Constructor
+     *
+     * @param model Model advanced by the ticks.
+     * @param tickMillis Length of a tick in milliseconds.
+     */
+    public SimulationScheduler(Model model, long tickMillis)
+    {
+        this(model, null, tickMillis);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param model Model advanced by the ticks.
+     * @param sessions Tanks of clients advanced by the ticks, or null.
+     * @param tickMillis Length of a tick in milliseconds.
+     */
+    public SimulationScheduler(Model model, TankSessionManager sessions, long tickMillis)
+    {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick length must be positive");
+        }
+        this.model = model;
+        this.sessions = sessions;
+        this.tickMillis = tickMillis;
+        MetricsRegistry metrics = model.getMetrics();
+        this.tickDurations = metrics.timer("gas_tank_simulation_tick_seconds", "Duration of simulation ticks, listeners included");
+        metrics.counter("gas_tank_simulation_ticks_total", "Simulation ticks run", this.tickCount::get);
+        metrics.counter("gas_tank_simulation_overflow_ticks_total", "Simulation ticks that ended above the maximum pressure",
+                this.overflowCount::get);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pressure-simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Aligns the model time with the wall clock and starts ticking at a fixed rate.
+     */
+    public void start()
+    {
+        this.model.startTime();
+        this.executor.scheduleAtFixedRate(this::tick, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops ticking and waits for a running tick to finish.
+     */
+    @Override
+    public void close()
+    {
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(this.tickMillis * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a listener receiving the state after every tick. Listeners run on the simulation thread
+     * and should return quickly.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Consumer<TankState> listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Consumer<TankState> listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Gets the tanks of clients advanced by the ticks.
+     *
+     * @return The session manager, or null if only the Model is advanced.
+     */
+    public TankSessionManager getSessions()
+    {
+        return this.sessions;
+    }
+
+    /**
+     * Gets the length of a tick.
+     *
+     * @return The tick length in milliseconds.
+     */
+    public long getTickMillis()
+    {
+        return this.tickMillis;
+    }
+
+    /**
+     * Gets the number of ticks run.
+     *
+     * @return The number of ticks.
+     */
+    public long getTickCount()
+    {
+        return this.tickCount.get();
+    }
+
+    /**
+     * Gets the number of ticks that ended with pressure above the maximum.
+     *
+     * @return The number of overflowing ticks.
+     */
+    public long getOverflowCount()
+    {
+        return this.overflowCount.get();
+    }
+
+    /**
+     * Gets the duration of the last tick.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getLastTickNanos()
+    {
+        return this.lastTickNanos;
+    }
+
+    /**
+     * Gets the last error thrown by a tick or listener.
+     *
+     * @return The error, or null.
+     */
+    public RuntimeException getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * Runs one tick. Never throws, because an exception would cancel the schedule.
+     */
+    private void tick()
+    {
+        long start = System.nanoTime();
+        try {
+            this.model.step(this.tickMillis);
+        } catch (PressureOverflowException e) {
+            this.overflowCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            this.lastError = e;
+        }
+        if (this.sessions != null) {
+            try {
+                this.sessions.tick(this.tickMillis);
+            } catch (RuntimeException e) {
+                this.lastError = e;
+            }
+        }
+        this.tickCount.incrementAndGet();
+        TankState state = this.model.getState();
+        for (Consumer<TankState> listener : this.listeners) {
+            try {
+                listener.accept(state);
+            } catch (RuntimeException e) {
+                this.lastError = e;
+            }
+        }
+        this.lastTickNanos = System.nanoTime() - start;
+        this.tickDurations.record(this.lastTickNanos);
+    }
+}
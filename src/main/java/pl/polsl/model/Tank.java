@@ -4,115 +4,164 @@
  */
 package pl.polsl.model;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Tank class representing a gas tank with specific properties.
- * 
+ * The changing part of the tank (flows and pressure) is kept in an immutable
+ * {@link TankState} that is replaced atomically, so the tank can be shared between threads.
+ *
  * @author Jakub Krzywoń
- * @version 1.1
+ * @version 1.2
  */
 public class Tank {
-    
-    /** The rate at which gas is flowing into the tank. */
-    private double gasInflow = 0;
-    
-    /** The rate at which gas is flowing out of the tank. */
-    private double gasOutflow = 0;
-    
-     /** The starting pressure inside the gas tank, measured in hPa. */
-    private double pressure = 1013.25;
-    
+
+    /** The starting pressure inside the gas tank, measured in hPa. */
+    private static final double STARTING_PRESSURE = 1013.25;
+
+    /** Current flows and pressure of the tank. */
+    private final AtomicReference<TankState> state;
+
     /** The volume of the gas tank, measured in liters. */
-    private final double volume = 5.84;
-    
+    private final double volume;
+
     /** The temperature of the gas inside the tank, measured in Kelvin. */
-    private final double temperature = 293;
-    
-    /** The maximum allowed pressure in the gas tank, calculated as 5 times the starting pressure */
-    private final double maxPressure = this.pressure * 5;
-    
+    private final double temperature;
+
+    /** The maximum allowed pressure in the gas tank, measured in hPa. */
+    private final double maxPressure;
+
+    /**
+     * Constructor
+     * Creates the default tank: 5.84 l at 293 K, starting at 1013.25 hPa,
+     * with the maximum allowed pressure 5 times the starting pressure.
+     */
+    public Tank()
+    {
+        this(5.84, 293, STARTING_PRESSURE, STARTING_PRESSURE * 5);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param volume The volume of the gas tank in liters.
+     * @param temperature The temperature of the gas in Kelvin.
+     * @param startingPressure The starting pressure in hPa.
+     * @param maxPressure The maximum allowed pressure in hPa.
+     */
+    public Tank(double volume, double temperature, double startingPressure, double maxPressure)
+    {
+        this.volume = volume;
+        this.temperature = temperature;
+        this.maxPressure = maxPressure;
+        this.state = new AtomicReference<>(new TankState(0, 0, startingPressure, System.currentTimeMillis()));
+    }
+
     /**
      * Setter for gasInflow
-     * 
+     *
      * @param gasInflow The gas inflow rate to set.
      */
     public void setGasInflow(Double gasInflow)
     {
-        this.gasInflow = gasInflow;
+        this.state.updateAndGet(current -> current.withGasInflow(gasInflow));
     }
-    
+
      /**
      * Setter for gasOutflow.
-     * 
+     *
      * @param gasOutflow The gas outflow rate to set.
      */
     public void setGasOutflow(Double gasOutflow)
     {
-        this.gasOutflow = gasOutflow;
+        this.state.updateAndGet(current -> current.withGasOutflow(gasOutflow));
     }
-    
+
     /**
      * Setter for pressure.
-     * 
+     *
      * @param pressure The gas pressure to set.
      */
     public void setPressure(double pressure)
     {
-        this.pressure = pressure;
+        this.state.updateAndGet(current -> current.withPressure(pressure));
     }
-    
+
+    /**
+     * Getter for the current state of the tank.
+     *
+     * @return Snapshot of flows and pressure.
+     */
+    public TankState getState()
+    {
+        return this.state.get();
+    }
+
+    /**
+     * Replaces the state of the tank if it wasn't changed since it was read.
+     *
+     * @param expected The state the new one was computed from.
+     * @param updated The new state.
+     * @return True if the state was replaced, false if another thread changed it first.
+     */
+    public boolean compareAndSetState(TankState expected, TankState updated)
+    {
+        return this.state.compareAndSet(expected, updated);
+    }
+
     /**
      * Getter for gasInflow
-     * 
+     *
      * @return The current gas inflow rate.
      */
     public double getGasInflow()
     {
-        return this.gasInflow;
+        return this.state.get().getGasInflow();
     }
-    
+
     /**
      * Getter for gasOutflow
-     * 
+     *
      * @return The current gas outflow rate.
      */
     public double getGasOutflow()
     {
-        return this.gasOutflow;
+        return this.state.get().getGasOutflow();
     }
-    
+
     /**
      * Getter for pressure
-     * 
+     *
      * @return The current pressure.
      */
     public double getPressure()
     {
-        return this.pressure;
+        return this.state.get().getPressure();
     }
-    
+
     /**
      * Getter for volume
-     * 
+     *
      * @return The volume.
      */
     public double getVolume()
     {
         return this.volume;
     }
-    
+
     /**
      * Getter for temperatur
-     * 
+     *
      * @return The temperature.
      */
     public double getTemperature()
     {
         return this.temperature;
     }
-    
+
     /**
      * Getter for maxPressure
-     * 
+     *
      * @return The maxPressure.
      */
     public double getMaxAllowedPressure()
@@ -0,0 +1,670 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import pl.polsl.metrics.MetricsRegistry;
+
+/**
+ * Append-only log of the state changes of a tank, so the state survives a restart.
+ * The application records only the shared Model in it.
+ * <p>
+ * Every change is appended as a fixed-size record holding the type of the change and the whole
+ * resulting state with its version, protected by a CRC-32. Appends only copy the record into a buffer
+ * and return; a single writer thread writes everything appended since its previous write to the current
+ * segment file in one sequential write and forces it to disk with one fsync, so under load many changes
+ * share one fsync (group commit) instead of paying a round trip each like per-row database inserts.
+ * Every {@code snapshotInterval} records, and on close, the newest state is written to a snapshot file
+ * (to a temporary file first, then moved atomically) naming the segment that follows it, and older
+ * segments are deleted, so the log never grows beyond one snapshot interval.
+ * <p>
+ * On open the snapshot is loaded and the segments after it are replayed; a torn record at the end of a
+ * segment, left by a crash, fails its CRC and ends that segment. Records carry whole states, so replaying
+ * takes the one with the highest version instead of applying changes one by one, and the order of
+ * concurrent appends doesn't matter. Versions restart with every run, so the recovered state is
+ * snapshotted before new records are appended and the segments replayed are always from one run.
+ * <p>
+ * An I/O error is not retried, since after a failed fsync it is unknown what reached the disk:
+ * the log stops writing, later records are dropped and {@link #sync()} reports the error.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class TankEventLog implements AutoCloseable {
+
+    /**
+     * Kind of state change recorded.
+     */
+    public enum Type {
+        /** The gas inflow was set. */
+        INFLOW,
+        /** The gas outflow was set. */
+        OUTFLOW,
+        /** The pressure was set. */
+        PRESSURE,
+        /** The pressure was integrated. */
+        UPDATE,
+        /** The integration time was reset. */
+        TIME,
+        /** The whole state was replaced. */
+        RESTORE
+    }
+
+    /** Default number of records between snapshots. */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10000;
+
+    /** Size of one record in bytes: type, version, time, inflow, outflow, pressure and CRC. */
+    public static final int RECORD_SIZE = 1 + Long.BYTES * 2 + Double.BYTES * 3 + Integer.BYTES;
+
+    /** Magic number at the start of a segment, "GTE1" in ASCII. */
+    private static final int SEGMENT_MAGIC = 0x47544531;
+
+    /** Magic number at the start of the snapshot, "GTP1" in ASCII. */
+    private static final int SNAPSHOT_MAGIC = 0x47545031;
+
+    /** Size of the snapshot in bytes: magic, next segment, state and CRC. */
+    private static final int SNAPSHOT_SIZE = Integer.BYTES + Long.BYTES * 2 + Double.BYTES * 3 + Integer.BYTES;
+
+    /** Name of the snapshot file. */
+    private static final String SNAPSHOT_FILE = "tank.snapshot";
+
+    /** Name of the file locked while the log is open. */
+    private static final String LOCK_FILE = "tank.lock";
+
+    /** Prefix of the segment file names, followed by the segment number. */
+    private static final String SEGMENT_PREFIX = "events-";
+
+    /** Suffix of the segment file names. */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Number of records waiting for the writer at which appends wait for it. */
+    private static final int MAX_PENDING_RECORDS = 4096;
+
+    /** Directory holding the snapshot and the segments. */
+    private final Path directory;
+
+    /** Number of records between snapshots. */
+    private final int snapshotInterval;
+
+    /** Channel of the lock file, locked while the log is open to keep other instances out of the directory. */
+    private final FileChannel lockChannel;
+
+    /** State recovered on open, or null if the directory held none. */
+    private final TankState recoveredState;
+
+    /** Number of records replayed on open. */
+    private final long replayedRecords;
+
+    /** Thread writing and forcing the batches. */
+    private final Thread writer;
+
+    /** Checksum of the records being appended. Guarded by this. */
+    private final CRC32 crc = new CRC32();
+
+    /** Records appended since the last batch was taken. Guarded by this. */
+    private ByteBuffer pending = ByteBuffer.allocate(MAX_PENDING_RECORDS * RECORD_SIZE);
+
+    /** Buffer the next batch is swapped into, null while the writer uses it. Guarded by this. */
+    private ByteBuffer spare = ByteBuffer.allocate(MAX_PENDING_RECORDS * RECORD_SIZE);
+
+    /** Number of records appended. Guarded by this. */
+    private long appendedSequence = 0;
+
+    /** Number of records handled by the writer, forced or dropped. Guarded by this. */
+    private long writtenSequence = 0;
+
+    /** Number of records appended since the last snapshot. Guarded by this. */
+    private long sinceSnapshot = 0;
+
+    /** State with the highest version appended in this run, or null. Guarded by this. */
+    private TankState latest = null;
+
+    /** False once the log was closed. Guarded by this. */
+    private boolean running = true;
+
+    /** Error that stopped the writer, or null. */
+    private volatile IOException lastError = null;
+
+    /** Segment the writer appends to. Used by the writer only once open. */
+    private FileChannel segment = null;
+
+    /** Number of the current segment. Used by the writer only once open. */
+    private long segmentNumber = 0;
+
+    /** Number of batches forced to disk. */
+    private final AtomicLong syncCount = new AtomicLong();
+
+    /** Number of snapshots written. */
+    private final AtomicLong snapshotCount = new AtomicLong();
+
+    /** Number of records lost to an I/O error. */
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    /**
+     * Constructor
+     * Uses the default snapshot interval.
+     *
+     * @param directory Directory holding the log, created if missing.
+     * @param metrics Registry receiving the record, fsync and snapshot counters.
+     * @throws IOException If the log could not be opened or recovered.
+     */
+    public TankEventLog(Path directory, MetricsRegistry metrics) throws IOException
+    {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL, metrics);
+    }
+
+    /**
+     * Constructor
+     * Recovers the state from the directory, snapshots it and starts the writer.
+     *
+     * @param directory Directory holding the log, created if missing.
+     * @param snapshotInterval Number of records between snapshots.
+     * @param metrics Registry receiving the record, fsync and snapshot counters.
+     * @throws IOException If the log could not be opened, is in use or its snapshot is damaged.
+     */
+    public TankEventLog(Path directory, int snapshotInterval, MetricsRegistry metrics) throws IOException
+    {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = this.lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Event log is already open: " + directory);
+            }
+            long[] replayed = new long[1];
+            this.recoveredState = this.recover(replayed);
+            this.replayedRecords = replayed[0];
+            if (this.recoveredState != null) {
+                this.snapshot(this.recoveredState);
+            } else {
+                this.segmentNumber++;
+                this.segment = this.openSegment(this.segmentNumber);
+                this.deleteSegmentsBefore(this.segmentNumber);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (this.segment != null) {
+                this.segment.close();
+            }
+            this.lockChannel.close();
+            throw e;
+        }
+        metrics.counter("gas_tank_event_log_records_total", "Tank state changes appended to the event log",
+                this::getAppendedRecords);
+        metrics.counter("gas_tank_event_log_syncs_total", "Batches of the event log forced to disk",
+                this.syncCount::get);
+        metrics.counter("gas_tank_event_log_snapshots_total", "Snapshots of the tank state written by the event log",
+                this.snapshotCount::get);
+        metrics.counter("gas_tank_event_log_dropped_records_total", "Event log records lost to an I/O error",
+                this.droppedRecords::get);
+        this.writer = new Thread(this::runWriter, "tank-event-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Gets the state recovered when the log was opened.
+     *
+     * @return The state, or null if the directory held no snapshot and no records.
+     */
+    public TankState getRecoveredState()
+    {
+        return this.recoveredState;
+    }
+
+    /**
+     * Gets the number of records replayed on top of the snapshot when the log was opened.
+     *
+     * @return The number of records.
+     */
+    public long getReplayedRecords()
+    {
+        return this.replayedRecords;
+    }
+
+    /**
+     * Appends a state change. Returns once the record is buffered; it reaches the disk with the next batch.
+     * Waits only while {@value #MAX_PENDING_RECORDS} records are already waiting for the writer.
+     * Records appended after the log was closed or stopped by an error are dropped.
+     *
+     * @param type Kind of the change.
+     * @param state The state after the change.
+     * @return Sequence number of the record, to pass to {@link #sync()}, or -1 if it was dropped.
+     */
+    public synchronized long append(Type type, TankState state)
+    {
+        boolean interrupted = false;
+        while (this.running && this.lastError == null && !this.pending.hasRemaining()) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (!this.running || this.lastError != null) {
+            if (this.running) {
+                this.droppedRecords.incrementAndGet();
+            }
+            return -1;
+        }
+        int start = this.pending.position();
+        this.pending.put((byte) type.ordinal())
+                .putLong(state.getVersion())
+                .putLong(state.getTime())
+                .putDouble(state.getGasInflow())
+                .putDouble(state.getGasOutflow())
+                .putDouble(state.getPressure());
+        ByteBuffer record = this.pending.duplicate();
+        record.position(start).limit(this.pending.position());
+        this.crc.reset();
+        this.crc.update(record);
+        this.pending.putInt((int) this.crc.getValue());
+        if (this.latest == null || state.getVersion() >= this.latest.getVersion()) {
+            this.latest = state;
+        }
+        this.sinceSnapshot++;
+        this.appendedSequence++;
+        if (start == 0) {
+            this.notifyAll();
+        }
+        return this.appendedSequence;
+    }
+
+    /**
+     * Waits until every record appended so far is on disk.
+     *
+     * @throws IOException If the log was stopped by an I/O error or closed before they were written.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public synchronized void sync() throws IOException, InterruptedException
+    {
+        long target = this.appendedSequence;
+        while (this.writtenSequence < target && this.lastError == null && this.writer.isAlive()) {
+            this.wait(100);
+        }
+        if (this.lastError != null) {
+            throw new IOException("Event log stopped after an I/O error", this.lastError);
+        }
+        if (this.writtenSequence < target) {
+            throw new IOException("Event log is closed");
+        }
+    }
+
+    /**
+     * Stops accepting records, writes the buffered ones, snapshots the newest state and stops the writer.
+     * Waits until the writer finishes.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this) {
+            this.running = false;
+            this.notifyAll();
+        }
+        boolean interrupted = false;
+        while (this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of records appended since the log was opened.
+     *
+     * @return The number of records.
+     */
+    public synchronized long getAppendedRecords()
+    {
+        return this.appendedSequence;
+    }
+
+    /**
+     * Gets the number of batches forced to disk, at most one per batch of appended records.
+     *
+     * @return The number of fsyncs.
+     */
+    public long getSyncCount()
+    {
+        return this.syncCount.get();
+    }
+
+    /**
+     * Gets the number of snapshots written, including the one written on open.
+     *
+     * @return The number of snapshots.
+     */
+    public long getSnapshotCount()
+    {
+        return this.snapshotCount.get();
+    }
+
+    /**
+     * Gets the number of records lost to an I/O error.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDroppedRecords()
+    {
+        return this.droppedRecords.get();
+    }
+
+    /**
+     * Gets the error that stopped the writer.
+     *
+     * @return The error, or null.
+     */
+    public IOException getLastError()
+    {
+        return this.lastError;
+    }
+
+    /**
+     * Body of the writer thread: takes everything appended since the previous batch, writes and forces it,
+     * and snapshots when the interval has passed; on close writes the rest and a final snapshot.
+     */
+    private void runWriter()
+    {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long end;
+                TankState snapshot = null;
+                synchronized (this) {
+                    while (this.running && this.pending.position() == 0) {
+                        try {
+                            this.wait();
+                        } catch (InterruptedException e) {
+                            // Only close stops the writer.
+                        }
+                    }
+                    if (this.pending.position() == 0) {
+                        break;
+                    }
+                    batch = this.pending;
+                    this.pending = this.spare;
+                    this.spare = null;
+                    end = this.appendedSequence;
+                    if (this.sinceSnapshot >= this.snapshotInterval) {
+                        snapshot = this.latest;
+                        this.sinceSnapshot = 0;
+                    }
+                    this.notifyAll();
+                }
+                try {
+                    if (this.lastError == null) {
+                        this.writeBatch(batch, snapshot);
+                    } else {
+                        this.droppedRecords.addAndGet(batch.position() / RECORD_SIZE);
+                    }
+                } catch (IOException e) {
+                    this.droppedRecords.addAndGet(batch.position() / RECORD_SIZE);
+                    this.lastError = e;
+                }
+                batch.clear();
+                synchronized (this) {
+                    this.spare = batch;
+                    this.writtenSequence = end;
+                    this.notifyAll();
+                }
+            }
+            TankState last;
+            synchronized (this) {
+                last = this.latest;
+            }
+            if (last != null && this.lastError == null) {
+                try {
+                    this.snapshot(last);
+                } catch (IOException e) {
+                    this.lastError = e;
+                }
+            }
+        } finally {
+            try {
+                this.segment.close();
+            } catch (IOException e) {
+                // The data was forced already; nothing is lost by a failed close.
+            }
+            try {
+                this.lockChannel.close();
+            } catch (IOException e) {
+                // Closing the channel releases the lock in any case.
+            }
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch to the current segment, forces it and writes the snapshot if one is due.
+     *
+     * @param batch The records, from 0 to the position of the buffer.
+     * @param snapshot State to snapshot after the batch, or null.
+     * @throws IOException If writing or forcing failed.
+     */
+    private void writeBatch(ByteBuffer batch, TankState snapshot) throws IOException
+    {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            this.segment.write(batch);
+        }
+        this.segment.force(false);
+        this.syncCount.incrementAndGet();
+        if (snapshot != null) {
+            this.snapshot(snapshot);
+        }
+    }
+
+    /**
+     * Writes the snapshot of a state, starts the next segment and deletes the segments the snapshot covers.
+     *
+     * @param state The state.
+     * @throws IOException If the snapshot or the segment could not be written.
+     */
+    private void snapshot(TankState state) throws IOException
+    {
+        long next = this.segmentNumber + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        buffer.putInt(SNAPSHOT_MAGIC)
+                .putLong(next)
+                .putLong(state.getTime())
+                .putDouble(state.getGasInflow())
+                .putDouble(state.getGasOutflow())
+                .putDouble(state.getPressure());
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue()).flip();
+        Path file = this.directory.resolve(SNAPSHOT_FILE);
+        Path temporary = this.directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel opened = this.openSegment(next);
+        if (this.segment != null) {
+            this.segment.close();
+        }
+        this.segment = opened;
+        this.segmentNumber = next;
+        this.deleteSegmentsBefore(next);
+        this.snapshotCount.incrementAndGet();
+    }
+
+    /**
+     * Loads the snapshot and replays the segments after it.
+     * Leaves the number of the highest segment in the directory in the segment number.
+     *
+     * @param replayed Receives the number of replayed records in its first element.
+     * @return The recovered state, or null if there is none.
+     * @throws IOException If the directory could not be read or the snapshot is damaged.
+     */
+    private TankState recover(long[] replayed) throws IOException
+    {
+        TankState state = null;
+        long first = 0;
+        Path file = this.directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(file)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.array(), 0, Math.max(buffer.limit() - Integer.BYTES, 0));
+            if (buffer.limit() != SNAPSHOT_SIZE || buffer.getInt() != SNAPSHOT_MAGIC
+                    || buffer.getInt(SNAPSHOT_SIZE - Integer.BYTES) != (int) checksum.getValue()) {
+                throw new IOException("Damaged tank snapshot: " + file);
+            }
+            first = buffer.getLong();
+            long time = buffer.getLong();
+            double inflow = buffer.getDouble();
+            double outflow = buffer.getDouble();
+            state = new TankState(inflow, outflow, buffer.getDouble(), time);
+            this.segmentNumber = first - 1;
+        }
+        TankState newest = null;
+        long newestVersion = Long.MIN_VALUE;
+        for (long number : this.listSegments()) {
+            this.segmentNumber = Math.max(this.segmentNumber, number);
+            if (number < first) {
+                continue;
+            }
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(this.segmentPath(number)));
+            if (records.remaining() < Integer.BYTES || records.getInt() != SEGMENT_MAGIC) {
+                continue;
+            }
+            CRC32 checksum = new CRC32();
+            while (records.remaining() >= RECORD_SIZE) {
+                int start = records.position();
+                checksum.reset();
+                checksum.update(records.array(), start, RECORD_SIZE - Integer.BYTES);
+                if (records.getInt(start + RECORD_SIZE - Integer.BYTES) != (int) checksum.getValue()) {
+                    break;
+                }
+                records.get();
+                long version = records.getLong();
+                long time = records.getLong();
+                double inflow = records.getDouble();
+                double outflow = records.getDouble();
+                double pressure = records.getDouble();
+                records.getInt();
+                replayed[0]++;
+                if (version >= newestVersion) {
+                    newestVersion = version;
+                    newest = new TankState(inflow, outflow, pressure, time);
+                }
+            }
+        }
+        return newest != null ? newest : state;
+    }
+
+    /**
+     * Lists the numbers of the segments in the directory.
+     *
+     * @return The numbers in ascending order.
+     * @throws IOException If the directory could not be read.
+     */
+    private List<Long> listSegments() throws IOException
+    {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment of this log.
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Creates a segment and writes its header.
+     *
+     * @param number Number of the segment.
+     * @return Channel positioned after the header.
+     * @throws IOException If the segment could not be created.
+     */
+    private FileChannel openSegment(long number) throws IOException
+    {
+        FileChannel channel = FileChannel.open(this.segmentPath(number), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            header.putInt(SEGMENT_MAGIC).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the segments with lower numbers.
+     *
+     * @param number Number of the first segment kept.
+     * @throws IOException If the directory could not be read or a segment deleted.
+     */
+    private void deleteSegmentsBefore(long number) throws IOException
+    {
+        for (long old : this.listSegments()) {
+            if (old < number) {
+                Files.deleteIfExists(this.segmentPath(old));
+            }
+        }
+    }
+
+    /**
+     * Gets the path of a segment.
+     *
+     * @param number Number of the segment.
+     * @return The path.
+     */
+    private Path segmentPath(long number)
+    {
+        return this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,671 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Tanks of individual clients, each a {@link Model} sharing the database resources of one shared Model.
+ * <p>
+ * At most maxSessions tanks are kept in memory, in a map ordered by last access. When a new tank
+ * doesn't fit, the least recently used one is evicted, and tanks not used for the idle timeout are
+ * evicted by a background sweep. An evicted tank is written to a snapshot file in the snapshot directory
+ * and restored from it, and the file deleted, the next time its id is used, so a client coming back
+ * within the snapshot lifetime gets the same tank. While a snapshot is being written the tank stays reachable,
+ * so a request arriving at that moment gets the live tank, not a stale snapshot.
+ * A tank still in its initial state has nothing worth restoring, so no snapshot is written for it,
+ * and the sweep deletes snapshots not restored within the snapshot lifetime, so clients that never
+ * come back don't fill the disk.
+ * Snapshots only move tanks out of memory and carry them over a clean shutdown; they are not a log,
+ * so a crash loses every change since a tank was last evicted.
+ * The tanks in memory are registered in a {@link SimulationEngine}, and a {@link SimulationScheduler}
+ * given the manager advances them all together on every tick with {@link #tick(long)}.
+ * They are not recorded in a {@link TankEventLog}, which serves the shared Model only.
+ * Snapshots are read outside the lock of the map: the first request for a tank not in memory leaves a
+ * placeholder that later requests for the same id wait on, while requests for other tanks go on.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class TankSessionManager implements AutoCloseable {
+
+    /** Tank ids accepted from clients; anything else could escape the snapshot directory. */
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /** Default time a snapshot is kept for its client to come back, in milliseconds: 30 days. */
+    public static final long DEFAULT_SNAPSHOT_TTL = 30L * 24 * 60 * 60 * 1000;
+
+    /** Magic number at the start of a snapshot file, "GTS1" in ASCII. */
+    private static final int SNAPSHOT_MAGIC = 0x47545331;
+
+    /** The Model whose database resources the tanks share. */
+    private final Model shared;
+
+    /** Maximum number of tanks kept in memory. */
+    private final int maxSessions;
+
+    /** Time after which an unused tank is evicted, in milliseconds. */
+    private final long idleTimeout;
+
+    /** Directory of the snapshot files. */
+    private final Path snapshotDirectory;
+
+    /** Maximum number of pressure samples kept in memory per tank. */
+    private final int historyCapacity;
+
+    /** Time a snapshot is kept after it was written, in milliseconds. */
+    private final long snapshotTtl;
+
+    /** Tanks in memory by id, least recently used first. Guarded by itself. */
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Evicted tanks whose snapshot is being written, by id. */
+    private final Map<String, Session> evicting = new ConcurrentHashMap<>();
+
+    /** Tanks being created or read from their snapshots, by id. Changed with the map locked. */
+    private final Map<String, CompletableFuture<Session>> loading = new ConcurrentHashMap<>();
+
+    /** Engine advancing the tanks in memory together, registered by id. */
+    private final SimulationEngine engine = new SimulationEngine();
+
+    /** Thread running the idle sweep. */
+    private final ScheduledExecutorService sweeper;
+
+    /** Number of evicted tanks. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Number of tanks restored from snapshots. */
+    private final AtomicLong restores = new AtomicLong();
+
+    /** Number of snapshots deleted because they outlived the snapshot lifetime. */
+    private final AtomicLong expiredSnapshots = new AtomicLong();
+
+    /** Number of tanks found above their maximum pressure after a tick. */
+    private final AtomicLong overflows = new AtomicLong();
+
+    /**
+     * Constructor
+     * Keeps snapshots for {@link #DEFAULT_SNAPSHOT_TTL}.
+     *
+     * @param shared The Model whose database resources the tanks share.
+     * @param maxSessions Maximum number of tanks kept in memory.
+     * @param idleTimeout Time after which an unused tank is evicted, in milliseconds.
+     * @param snapshotDirectory Directory of the snapshot files, created if missing.
+     * @param historyCapacity Maximum number of pressure samples kept in memory per tank.
+     * @throws IOException If the snapshot directory could not be created.
+     */
+    public TankSessionManager(Model shared, int maxSessions, long idleTimeout, Path snapshotDirectory,
+            int historyCapacity) throws IOException
+    {
+        this(shared, maxSessions, idleTimeout, snapshotDirectory, historyCapacity, DEFAULT_SNAPSHOT_TTL);
+    }
+
+    /**
+     * Constructor
+     * Starts the sweep evicting idle tanks and deleting expired snapshots, run every half of the idle timeout.
+     *
+     * @param shared The Model whose database resources the tanks share.
+     * @param maxSessions Maximum number of tanks kept in memory.
+     * @param idleTimeout Time after which an unused tank is evicted, in milliseconds.
+     * @param snapshotDirectory Directory of the snapshot files, created if missing.
+     * @param historyCapacity Maximum number of pressure samples kept in memory per tank.
+     * @param snapshotTtl Time a snapshot is kept for its client to come back, in milliseconds.
+     * @throws IOException If the snapshot directory could not be created.
+     */
+    public TankSessionManager(Model shared, int maxSessions, long idleTimeout, Path snapshotDirectory,
+            int historyCapacity, long snapshotTtl) throws IOException
+    {
+        if (maxSessions <= 0 || idleTimeout <= 0 || snapshotTtl <= 0) {
+            throw new IllegalArgumentException("Session limit, idle timeout and snapshot lifetime must be positive");
+        }
+        this.snapshotTtl = snapshotTtl;
+        this.shared = shared;
+        this.maxSessions = maxSessions;
+        this.idleTimeout = idleTimeout;
+        this.snapshotDirectory = Files.createDirectories(snapshotDirectory);
+        this.historyCapacity = historyCapacity;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tank-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeout / 2);
+        this.sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                long now = System.currentTimeMillis();
+                this.evictIdle(now);
+                this.deleteExpiredSnapshots(now);
+            } catch (RuntimeException e) {
+                // keep sweeping, the next run retries
+            }
+        }, 0, period, TimeUnit.MILLISECONDS);
+        shared.getMetrics().gauge("gas_tank_sessions", "Tanks of clients kept in memory.", this::size);
+        shared.getMetrics().counter("gas_tank_session_evictions_total", "Tanks of clients written to snapshots.",
+                this.evictions::get);
+        shared.getMetrics().counter("gas_tank_session_restores_total", "Tanks of clients restored from snapshots.",
+                this.restores::get);
+        shared.getMetrics().counter("gas_tank_session_snapshots_expired_total",
+                "Snapshots of tanks deleted because their client didn't come back in time.", this.expiredSnapshots::get);
+        shared.getMetrics().counter("gas_tank_session_overflows_total",
+                "Tanks of clients found above the maximum pressure after a simulation tick.", this.overflows::get);
+    }
+
+    /**
+     * Checks whether a tank id can be used.
+     *
+     * @param id The id, possibly null.
+     * @return True if the id is 1 to 64 letters, digits, '_' or '-'.
+     */
+    public static boolean isValidId(String id)
+    {
+        return id != null && VALID_ID.matcher(id).matches();
+    }
+
+    /**
+     * Gets the tank with the given id, restoring it from its snapshot or creating it when it is not in memory.
+     * May evict the least recently used tank. While another thread restores the same tank, waits for it.
+     *
+     * @param id Id of the tank, see {@link #isValidId(String)}.
+     * @return The Model of the tank.
+     * @throws IllegalArgumentException If the id is not valid.
+     * @throws UncheckedIOException If an existing snapshot could not be read or an evicted tank written.
+     */
+    public Model get(String id)
+    {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Invalid tank id");
+        }
+        while (true) {
+            Session session;
+            CompletableFuture<Session> pending = null;
+            boolean owner = false;
+            List<Session> evicted = null;
+            synchronized (this.sessions) {
+                session = this.sessions.get(id);
+                if (session == null) {
+                    session = this.evicting.get(id);
+                    if (session != null) {
+                        this.sessions.put(id, session);
+                        this.engine.addTank(id, session.model.getTank());
+                        evicted = this.removeOverflow();
+                    }
+                }
+                if (session != null) {
+                    session.lastAccess = System.currentTimeMillis();
+                } else {
+                    pending = this.loading.get(id);
+                    if (pending == null) {
+                        pending = new CompletableFuture<>();
+                        this.loading.put(id, pending);
+                        owner = true;
+                    }
+                }
+            }
+            if (session != null) {
+                if (evicted != null) {
+                    this.saveAll(evicted);
+                }
+                return session.model;
+            }
+            if (owner) {
+                return this.loadInto(id, pending);
+            }
+            try {
+                pending.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Restores or creates a tank outside the lock of the map and puts it in the map,
+     * completing the placeholder other requests for the tank wait on.
+     *
+     * @param id Id of the tank.
+     * @param pending Placeholder of the tank, left in the loading map by the caller.
+     * @return The Model of the tank.
+     * @throws UncheckedIOException If an existing snapshot could not be read or an evicted tank written.
+     */
+    private Model loadInto(String id, CompletableFuture<Session> pending)
+    {
+        Session session;
+        try {
+            session = new Session(id, this.load(id));
+        } catch (RuntimeException e) {
+            synchronized (this.sessions) {
+                this.loading.remove(id, pending);
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        List<Session> evicted;
+        synchronized (this.sessions) {
+            session.lastAccess = System.currentTimeMillis();
+            this.sessions.put(id, session);
+            this.engine.addTank(id, session.model.getTank());
+            this.loading.remove(id, pending);
+            evicted = this.removeOverflow();
+        }
+        pending.complete(session);
+        if (evicted != null) {
+            this.saveAll(evicted);
+        }
+        return session.model;
+    }
+
+    /**
+     * Gets the tank with the given id if it exists, in memory or as a snapshot, without creating one.
+     * Used by requests that only read, so they don't leave tanks behind.
+     *
+     * @param id Id of the tank, possibly invalid.
+     * @return The Model of the tank, or null if there is no such tank.
+     * @throws UncheckedIOException If an existing snapshot could not be read or an evicted tank written.
+     */
+    public Model find(String id)
+    {
+        if (!isValidId(id)) {
+            return null;
+        }
+        synchronized (this.sessions) {
+            if (!this.sessions.containsKey(id) && !this.evicting.containsKey(id) && !this.loading.containsKey(id)
+                    && !Files.exists(this.snapshotFile(id))) {
+                return null;
+            }
+        }
+        return this.get(id);
+    }
+
+    /**
+     * Deletes the snapshots written longer than the snapshot lifetime before the given time.
+     *
+     * @param now Current time in milliseconds.
+     * @return Number of deleted snapshots.
+     */
+    public int deleteExpiredSnapshots(long now)
+    {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.snapshotDirectory, "*.{tank,tmp}")) {
+            for (Path file : files) {
+                try {
+                    if (now - Files.getLastModifiedTime(file).toMillis() >= this.snapshotTtl
+                            && Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    // restored or replaced meanwhile, or unreadable; the next sweep looks again
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the tank snapshots", e);
+        }
+        this.expiredSnapshots.addAndGet(deleted);
+        return deleted;
+    }
+
+    /**
+     * Evicts the tanks not used since the idle timeout before the given time.
+     *
+     * @param now Current time in milliseconds.
+     * @return Number of evicted tanks.
+     * @throws UncheckedIOException If a snapshot could not be written.
+     */
+    public int evictIdle(long now)
+    {
+        List<Session> evicted = new ArrayList<>();
+        synchronized (this.sessions) {
+            Iterator<Session> iterator = this.sessions.values().iterator();
+            while (iterator.hasNext()) {
+                Session session = iterator.next();
+                if (now - session.lastAccess < this.idleTimeout) {
+                    break;
+                }
+                iterator.remove();
+                this.engine.removeTank(session.id);
+                this.evicting.put(session.id, session);
+                evicted.add(session);
+            }
+        }
+        this.saveAll(evicted);
+        return evicted.size();
+    }
+
+    /**
+     * Advances every tank in memory by the elapsed time: loads the states of the tanks into the engine,
+     * integrates them all in one {@link SimulationEngine#tick(double)} and applies the new pressures to the tanks.
+     * A tank whose state changed meanwhile is advanced by its own Model instead. A tank ticked for the first time
+     * is first brought up to the current time, since it may have been restored from an old snapshot.
+     * Called by the {@link SimulationScheduler} thread.
+     *
+     * @param elapsedMillis The length of the tick in milliseconds.
+     * @return Number of tanks above their maximum pressure after the tick.
+     */
+    public int tick(long elapsedMillis)
+    {
+        List<Session> ticked;
+        synchronized (this.sessions) {
+            ticked = new ArrayList<>(this.sessions.values());
+        }
+        TankState[] states = new TankState[ticked.size()];
+        for (int i = 0; i < states.length; i++) {
+            Session session = ticked.get(i);
+            if (!session.aligned) {
+                try {
+                    session.model.updatePressure();
+                } catch (PressureOverflowException e) {
+                    // recorded in the history; the tick below reports it if the tank stays above the maximum
+                }
+                session.aligned = true;
+            }
+            TankState state = session.model.getState();
+            try {
+                this.engine.setPressure(session.id, state.getPressure());
+                this.engine.setGasInflow(session.id, state.getGasInflow());
+                this.engine.setGasOutflow(session.id, state.getGasOutflow());
+            } catch (IllegalArgumentException e) {
+                continue; // evicted meanwhile
+            }
+            states[i] = state;
+        }
+        this.engine.tick((double) elapsedMillis / 60000);
+        int overflowing = 0;
+        for (int i = 0; i < states.length; i++) {
+            Session session = ticked.get(i);
+            if (states[i] == null) {
+                continue;
+            }
+            try {
+                double pressure = this.engine.getPressure(session.id);
+                if (!session.model.applyStep(states[i], pressure, elapsedMillis)) {
+                    session.model.step(elapsedMillis);
+                }
+            } catch (IllegalArgumentException e) {
+                // evicted meanwhile
+            } catch (PressureOverflowException e) {
+                overflowing++;
+            }
+        }
+        this.overflows.addAndGet(overflowing);
+        return overflowing;
+    }
+
+    /**
+     * Gets the number of tanks found above their maximum pressure after a tick.
+     *
+     * @return The number of overflows.
+     */
+    public long getOverflowCount()
+    {
+        return this.overflows.get();
+    }
+
+    /**
+     * Gets the number of tanks in memory.
+     *
+     * @return The number of tanks.
+     */
+    public int size()
+    {
+        synchronized (this.sessions) {
+            return this.sessions.size();
+        }
+    }
+
+    /**
+     * Gets the number of evicted tanks.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    /**
+     * Gets the number of tanks restored from snapshots.
+     *
+     * @return The number of restores.
+     */
+    public long getRestores()
+    {
+        return this.restores.get();
+    }
+
+    /**
+     * Stops the idle sweep and writes every tank in memory to its snapshot.
+     */
+    @Override
+    public void close()
+    {
+        this.sweeper.shutdownNow();
+        List<Session> all;
+        synchronized (this.sessions) {
+            all = new ArrayList<>(this.sessions.values());
+            this.sessions.clear();
+            for (Session session : all) {
+                this.engine.removeTank(session.id);
+                this.evicting.put(session.id, session);
+            }
+        }
+        this.saveAll(all);
+    }
+
+    /**
+     * Removes the least recently used tanks above the limit. Called with the map locked.
+     *
+     * @return The removed tanks, to be saved after unlocking.
+     */
+    private List<Session> removeOverflow()
+    {
+        List<Session> evicted = null;
+        Iterator<Session> iterator = this.sessions.values().iterator();
+        while (this.sessions.size() > this.maxSessions && iterator.hasNext()) {
+            Session session = iterator.next();
+            iterator.remove();
+            this.engine.removeTank(session.id);
+            this.evicting.put(session.id, session);
+            if (evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(session);
+        }
+        return evicted;
+    }
+
+    /**
+     * Writes evicted tanks to their snapshots and forgets them and their overflow predictions,
+     * unless one was taken back in meanwhile.
+     *
+     * @param evicted The evicted tanks.
+     * @throws UncheckedIOException If a snapshot could not be written; the other tanks are still saved.
+     */
+    private void saveAll(List<Session> evicted)
+    {
+        IOException failure = null;
+        for (Session session : evicted) {
+            try {
+                this.save(session);
+                this.evictions.incrementAndGet();
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                synchronized (this.sessions) {
+                    // while the tank is in evicting, get() takes it back instead of creating another one
+                    if (!this.sessions.containsKey(session.id)) {
+                        session.model.setOverflowPredictor(null, null);
+                    }
+                    this.evicting.remove(session.id, session);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Could not save an evicted tank", failure);
+        }
+    }
+
+    /**
+     * Writes a tank to its snapshot file: magic number, flows, pressure, time, sample count and samples.
+     * The file is written under a temporary name and then renamed, so a crash never leaves half a snapshot.
+     * A tank still in its initial state, never changed and without history, is not written.
+     *
+     * @param session The tank.
+     * @throws IOException If the file could not be written.
+     */
+    private void save(Session session) throws IOException
+    {
+        TankState state = session.model.getState();
+        PressureHistory history = session.model.getPressureHistoryStore();
+        long[] times;
+        double[] values;
+        synchronized (history) {
+            times = history.timesToArray();
+            values = history.toArray();
+        }
+        if (state.getVersion() == 0 && values.length == 0) {
+            return;
+        }
+        Path file = this.snapshotFile(session.id);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeDouble(state.getGasInflow());
+            out.writeDouble(state.getGasOutflow());
+            out.writeDouble(state.getPressure());
+            out.writeLong(state.getTime());
+            out.writeInt(values.length);
+            for (int i = 0; i < values.length; i++) {
+                out.writeLong(times[i]);
+                out.writeDouble(values[i]);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Creates the Model of a tank, restoring its snapshot if there is one, and registers it
+     * with the overflow predictor of the shared Model.
+     *
+     * @param id Id of the tank.
+     * @return The Model.
+     * @throws UncheckedIOException If the snapshot exists but could not be read.
+     */
+    private Model load(String id)
+    {
+        Model model = this.restore(id);
+        if (this.shared.getOverflowPredictor() != null) {
+            model.setOverflowPredictor(this.shared.getOverflowPredictor(), id);
+        }
+        return model;
+    }
+
+    /**
+     * Creates the Model of a tank from its snapshot, if there is one, deleting the file.
+     *
+     * @param id Id of the tank.
+     * @return The Model.
+     * @throws UncheckedIOException If the snapshot exists but could not be read.
+     */
+    private Model restore(String id)
+    {
+        Model model = new Model(this.shared, this.historyCapacity);
+        Path file = this.snapshotFile(id);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a tank snapshot: " + file);
+            }
+            double inflow = in.readDouble();
+            double outflow = in.readDouble();
+            double pressure = in.readDouble();
+            long time = in.readLong();
+            int count = in.readInt();
+            long[] times = new long[count];
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                times[i] = in.readLong();
+                values[i] = in.readDouble();
+            }
+            model.restoreState(new TankState(inflow, outflow, pressure, time));
+            model.getPressureHistoryStore().replace(times, values);
+        } catch (NoSuchFileException e) {
+            return model;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not restore tank " + id, e);
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // restored anyway, the next eviction overwrites the file
+        }
+        this.restores.incrementAndGet();
+        return model;
+    }
+
+    /**
+     * Gets the snapshot file of a tank.
+     *
+     * @param id A valid tank id.
+     * @return Path of the file.
+     */
+    private Path snapshotFile(String id)
+    {
+        return this.snapshotDirectory.resolve(id + ".tank");
+    }
+
+    /**
+     * A tank in memory with the time it was last used.
+     */
+    private static final class Session {
+
+        /** Id of the tank. */
+        private final String id;
+
+        /** The Model of the tank. */
+        private final Model model;
+
+        /** Time the tank was last used, in milliseconds. Written with the map locked. */
+        private volatile long lastAccess;
+
+        /** Whether a tick has brought the tank up to the current time. Used by the scheduler thread only. */
+        private boolean aligned;
+
+        /**
+         * Constructor
+         *
+         * @param id Id of the tank.
+         * @param model The Model of the tank.
+         */
+        Session(String id, Model model)
+        {
+            this.id = id;
+            this.model = model;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+/**
+ * Immutable snapshot of the changing state of a tank: gas flows, pressure
+ * and the time up to which the pressure was integrated.
+ * Every derived state gets the next version number, so clients can tell whether the state changed
+ * without comparing its values.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class TankState {
+
+    /** The rate at which gas is flowing into the tank. */
+    private final double gasInflow;
+
+    /** The rate at which gas is flowing out of the tank. */
+    private final double gasOutflow;
+
+    /** The pressure inside the gas tank, measured in hPa. */
+    private final double pressure;
+
+    /** Time up to which the pressure was integrated, in milliseconds. */
+    private final long time;
+
+    /** Number of changes since the first state. */
+    private final long version;
+
+    /**
+     * Constructor
+     *
+     * @param gasInflow The gas inflow rate.
+     * @param gasOutflow The gas outflow rate.
+     * @param pressure The gas pressure in hPa.
+     * @param time Time up to which the pressure was integrated, in milliseconds.
+     */
+    public TankState(double gasInflow, double gasOutflow, double pressure, long time)
+    {
+        this(gasInflow, gasOutflow, pressure, time, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param gasInflow The gas inflow rate.
+     * @param gasOutflow The gas outflow rate.
+     * @param pressure The gas pressure in hPa.
+     * @param time Time up to which the pressure was integrated, in milliseconds.
+     * @param version Number of changes since the first state.
+     */
+    private TankState(double gasInflow, double gasOutflow, double pressure, long time, long version)
+    {
+        this.gasInflow = gasInflow;
+        this.gasOutflow = gasOutflow;
+        this.pressure = pressure;
+        this.time = time;
+        this.version = version;
+    }
+
+    /**
+     * Getter for gasInflow
+     *
+     * @return The gas inflow rate.
+     */
+    public double getGasInflow()
+    {
+        return this.gasInflow;
+    }
+
+    /**
+     * Getter for gasOutflow
+     *
+     * @return The gas outflow rate.
+     */
+    public double getGasOutflow()
+    {
+        return this.gasOutflow;
+    }
+
+    /**
+     * Getter for pressure
+     *
+     * @return The gas pressure in hPa.
+     */
+    public double getPressure()
+    {
+        return this.pressure;
+    }
+
+    /**
+     * Getter for time
+     *
+     * @return Time up to which the pressure was integrated, in milliseconds.
+     */
+    public long getTime()
+    {
+        return this.time;
+    }
+
+    /**
+     * Getter for version
+     *
+     * @return Number of changes since the first state.
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * Creates a copy with a different inflow.
+     *
+     * @param gasInflow The new gas inflow rate.
+     * @return The new state.
+     */
+    public TankState withGasInflow(double gasInflow)
+    {
+        return new TankState(gasInflow, this.gasOutflow, this.pressure, this.time, this.version + 1);
+    }
+
+    /**
+     * Creates a copy with a different outflow.
+     *
+     * @param gasOutflow The new gas outflow rate.
+     * @return The new state.
+     */
+    public TankState withGasOutflow(double gasOutflow)
+    {
+        return new TankState(this.gasInflow, gasOutflow, this.pressure, this.time, this.version + 1);
+    }
+
+    /**
+     * Creates a copy with a different pressure.
+     *
+     * @param pressure The new gas pressure in hPa.
+     * @return The new state.
+     */
+    public TankState withPressure(double pressure)
+    {
+        return new TankState(this.gasInflow, this.gasOutflow, pressure, this.time, this.version + 1);
+    }
+
+    /**
+     * Creates a copy with a different pressure integrated up to the given time.
+     *
+     * @param pressure The new gas pressure in hPa.
+     * @param time Time up to which the pressure was integrated, in milliseconds.
+     * @return The new state.
+     */
+    public TankState withPressure(double pressure, long time)
+    {
+        return new TankState(this.gasInflow, this.gasOutflow, pressure, time, this.version + 1);
+    }
+
+    /**
+     * Creates a copy with a different integration time.
+     *
+     * @param time Time up to which the pressure was integrated, in milliseconds.
+     * @return The new state.
+     */
+    public TankState withTime(long time)
+    {
+        return new TankState(this.gasInflow, this.gasOutflow, this.pressure, time, this.version + 1);
+    }
+}
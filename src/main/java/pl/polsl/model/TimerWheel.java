@@ -0,0 +1,231 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: a ring of slots, each a doubly linked list of timeouts due in that slot
+ * in some revolution of the wheel.
+ * <p>
+ * Scheduling and cancelling are O(1) and allocate one node. {@link #advance(long, Consumer)} visits
+ * only the slots of the ticks passed since the previous call, at most one revolution, and fires the
+ * timeouts in them whose deadline has come; timeouts due in a later revolution stay in place.
+ * Deadlines are rounded up to whole ticks, so a timeout fires at most one tick late and never early.
+ * Instances are not thread-safe; the owner serializes calls.
+ *
+ * @param <T> Type of the task of a timeout.
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class TimerWheel<T> {
+
+    /** Length of a tick in milliseconds. */
+    private final long tickMillis;
+
+    /** First timeout of every slot, or null. */
+    private final Timeout<T>[] slots;
+
+    /** Mask turning a tick number into a slot index. */
+    private final int mask;
+
+    /** Last tick whose slot was processed. */
+    private long currentTick;
+
+    /** Number of scheduled timeouts. */
+    private int size = 0;
+
+    /**
+     * Constructor
+     *
+     * @param tickMillis Length of a tick in milliseconds.
+     * @param wheelSize Number of slots, rounded up to a power of two.
+     * @param startMillis Current time in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int wheelSize, long startMillis)
+    {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick length and wheel size must be positive");
+        }
+        int slotCount = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.slots = (Timeout<T>[]) new Timeout<?>[slotCount];
+        this.mask = slotCount - 1;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedules a task. A deadline in the past fires on the next advance.
+     *
+     * @param task The task.
+     * @param deadlineMillis Time at which the task is due, in milliseconds.
+     * @return The timeout, to cancel it.
+     */
+    public Timeout<T> schedule(T task, long deadlineMillis)
+    {
+        long tick = Math.max(ceilDiv(deadlineMillis, this.tickMillis), this.currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(task, deadlineMillis, tick);
+        int slot = (int) (tick & this.mask);
+        timeout.next = this.slots[slot];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        this.slots[slot] = timeout;
+        this.size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a timeout. Does nothing if it already fired or was cancelled.
+     *
+     * @param timeout The timeout.
+     */
+    public void cancel(Timeout<T> timeout)
+    {
+        if (timeout.tick < 0) {
+            return;
+        }
+        this.unlink(timeout);
+    }
+
+    /**
+     * Fires the timeouts due up to the given time, in order of their slots.
+     *
+     * @param nowMillis Current time in milliseconds.
+     * @param action Receives the task of every fired timeout.
+     * @return Number of fired timeouts.
+     */
+    public int advance(long nowMillis, Consumer<T> action)
+    {
+        long nowTick = Math.floorDiv(nowMillis, this.tickMillis);
+        long last = Math.min(nowTick, this.currentTick + this.slots.length);
+        int fired = 0;
+        for (long tick = this.currentTick + 1; tick <= last; tick++) {
+            Timeout<T> timeout = this.slots[(int) (tick & this.mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.tick <= nowTick) {
+                    this.unlink(timeout);
+                    fired++;
+                    action.accept(timeout.task);
+                }
+                timeout = next;
+            }
+        }
+        this.currentTick = Math.max(this.currentTick, nowTick);
+        return fired;
+    }
+
+    /**
+     * Gets the number of scheduled timeouts.
+     *
+     * @return The number of timeouts.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Removes a timeout from its slot and marks it done.
+     *
+     * @param timeout The scheduled timeout.
+     */
+    private void unlink(Timeout<T> timeout)
+    {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            this.slots[(int) (timeout.tick & this.mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.tick = -1;
+        this.size--;
+    }
+
+    /**
+     * Divides rounding towards positive infinity.
+     *
+     * @param value The dividend.
+     * @param divisor The positive divisor.
+     * @return The quotient rounded up.
+     */
+    private static long ceilDiv(long value, long divisor)
+    {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    /**
+     * A scheduled task.
+     *
+     * @param <T> Type of the task.
+     */
+    public static final class Timeout<T> {
+
+        /** The task. */
+        private final T task;
+
+        /** Time at which the task is due, in milliseconds. */
+        private final long deadline;
+
+        /** Tick in which the task fires, -1 once it fired or was cancelled. */
+        private long tick;
+
+        /** Previous timeout in the slot. */
+        private Timeout<T> previous;
+
+        /** Next timeout in the slot. */
+        private Timeout<T> next;
+
+        /**
+         * Constructor
+         *
+         * @param task The task.
+         * @param deadline Time at which the task is due, in milliseconds.
+         * @param tick Tick in which the task fires.
+         */
+        private Timeout(T task, long deadline, long tick)
+        {
+            this.task = task;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+
+        /**
+         * Gets the task.
+         *
+         * @return The task.
+         */
+        public T getTask()
+        {
+            return this.task;
+        }
+
+        /**
+         * Gets the time at which the task is due.
+         *
+         * @return The deadline in milliseconds.
+         */
+        public long getDeadline()
+        {
+            return this.deadline;
+        }
+
+        /**
+         * Checks whether the timeout is still waiting.
+         *
+         * @return True until it fires or is cancelled.
+         */
+        public boolean isPending()
+        {
+            return this.tick >= 0;
+        }
+    }
+}
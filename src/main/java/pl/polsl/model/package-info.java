@@ -8,5 +8,16 @@
  * It includes the {@link pl.polsl.model.Model} and {@link pl.polsl.model.Tank} classes.
  * The {@link pl.polsl.model.Model} class calculates gas pressure based on user input,
  * {@link pl.polsl.model.Tank} class holds tank properties.
+ * {@link pl.polsl.model.SimulationEngine} advances many tanks at once using the physics in
+ * {@link pl.polsl.model.PressureKernel}.
+ * {@link pl.polsl.model.PressureSolver} integrates the pressure over long intervals in sub-steps
+ * of a pluggable {@link pl.polsl.model.PressureIntegrator} and finds when it crosses the maximum.
+ * {@link pl.polsl.model.FlowProfileReplay} replays recorded flow set-points through the solver in simulated time.
+ * {@link pl.polsl.model.OverflowPredictor} computes when tanks overflow or run empty and delivers
+ * {@link pl.polsl.model.OverflowAlert}s ahead of time from a {@link pl.polsl.model.TimerWheel}.
+ * {@link pl.polsl.model.TankSessionManager} keeps a separate tank per client and snapshots idle ones to disk,
+ * without the durability of the event log.
+ * {@link pl.polsl.model.TankEventLog} records every change of the shared tank's state in an append-only log with
+ * periodic snapshots, from which the state is recovered after a restart.
  */
 package pl.polsl.model;
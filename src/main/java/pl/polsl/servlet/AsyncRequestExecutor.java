@@ -0,0 +1,332 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.servlet;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import pl.polsl.metrics.LatencyHistogram;
+import pl.polsl.metrics.MetricsRegistry;
+
+/**
+ * Bounded executor running servlet work off the container's request threads.
+ * A request is switched to asynchronous mode and its handler is queued; the container thread
+ * returns immediately. When all workers are busy and the queue is full the request is answered
+ * at once with 503 Service Unavailable and a Retry-After header, and a request not finished
+ * within the timeout gets 503 as well.
+ * <p>
+ * Handlers write to a {@link GuardedResponse}. The request is finished by whoever first sets the shared
+ * {@code finished} flag, holding the lock of that response: the worker when the handler returns, or the
+ * timeout, which also cancels the handler. Once finished, the handler can no longer write to the response,
+ * so a handler still running after a timeout can't corrupt a response that was completed or recycled.
+ * Errors thrown by handlers are logged, and the client gets a generic 500 page without their details.
+ * <p>
+ * Workers are virtual threads when the runtime provides them (Java 21 and newer),
+ * otherwise daemon platform threads. The worker count also bounds how many requests
+ * compete for the database connection pool at once.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class AsyncRequestExecutor implements AutoCloseable {
+
+    /** Default number of workers. */
+    public static final int DEFAULT_THREADS = 16;
+
+    /** Default number of requests waiting for a worker. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 200;
+
+    /** Default time a request may take, in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    /** Seconds a rejected client is asked to wait before retrying. */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /** Workers running the handlers. */
+    private final ThreadPoolExecutor executor;
+
+    /** Time a request may take, in milliseconds. */
+    private final long timeout;
+
+    /** Number of requests rejected because the executor was full. */
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /** Number of requests that timed out. */
+    private final AtomicLong timedOutRequests = new AtomicLong();
+
+    /** Metrics receiving the request latencies. */
+    private final MetricsRegistry metrics;
+
+    /**
+     * Work done for one request on a worker thread.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Handles the request.
+         *
+         * @param response Response to write to, which rejects writes once the request timed out.
+         * @return Path the request is dispatched to for rendering, or null if the response is complete.
+         * @throws ServletException in case of servlet handling issues
+         * @throws IOException in case of I/O operation issues
+         */
+        String handle(HttpServletResponse response) throws ServletException, IOException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param threads Number of workers.
+     * @param queueCapacity Number of requests waiting for a worker.
+     * @param timeout Time a request may take, in milliseconds.
+     * @param metrics Metrics receiving the request latencies and executor counters.
+     */
+    public AsyncRequestExecutor(int threads, int queueCapacity, long timeout, MetricsRegistry metrics)
+    {
+        this.timeout = timeout;
+        this.metrics = metrics;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), createThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        metrics.gauge("gas_tank_requests_queued", "Requests waiting for a worker", this::getQueuedRequests);
+        metrics.gauge("gas_tank_requests_active", "Requests being handled", this::getActiveRequests);
+        metrics.counter("gas_tank_requests_rejected_total", "Requests rejected because the executor was full",
+                this.rejectedRequests::get);
+        metrics.counter("gas_tank_requests_timed_out_total", "Requests that timed out", this.timedOutRequests::get);
+    }
+
+    /**
+     * Starts asynchronous processing of the request and queues the handler.
+     * Must be called on the container thread of a servlet supporting asynchronous processing.
+     *
+     * The time from this call until the handler finishes, queueing included, is recorded per action.
+     *
+     * @param request HTTP request
+     * @param response HTTP response
+     * @param action Name of the action, used as the metric label.
+     * @param handler Work done for the request.
+     * @throws IOException if the overload response could not be sent
+     */
+    public void execute(HttpServletRequest request, HttpServletResponse response, String action, Handler handler)
+            throws IOException
+    {
+        long start = System.nanoTime();
+        LatencyHistogram latency = this.metrics.timer("gas_tank_request_seconds",
+                "Latency of servlet actions from arrival to the end of the handler", "action", action);
+        AsyncContext context = request.startAsync(request, response);
+        context.setTimeout(this.timeout);
+        AtomicBoolean finished = new AtomicBoolean();
+        GuardedResponse guarded = new GuardedResponse(response, finished);
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                synchronized (guarded) {
+                    if (!finished.compareAndSet(false, true)) {
+                        return;
+                    }
+                    cancel(task);
+                    timedOutRequests.incrementAndGet();
+                    sendUnavailable(response, "Request timed out");
+                    context.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                synchronized (guarded) {
+                    finished.set(true);
+                }
+                cancel(task);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        try {
+            task.set(this.executor.submit(() -> {
+                this.run(context, guarded, finished, handler);
+                latency.recordSince(start);
+            }));
+        } catch (RejectedExecutionException e) {
+            synchronized (guarded) {
+                if (finished.compareAndSet(false, true)) {
+                    this.rejectedRequests.incrementAndGet();
+                    sendUnavailable(response, "Server is overloaded, try again later");
+                    context.complete();
+                }
+            }
+        }
+        if (finished.get()) {
+            cancel(task);
+        }
+    }
+
+    /**
+     * Gets the number of requests waiting for a worker.
+     *
+     * @return The queue length.
+     */
+    public int getQueuedRequests()
+    {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of requests being handled.
+     *
+     * @return The number of busy workers.
+     */
+    public int getActiveRequests()
+    {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of requests rejected because the executor was full.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejectedRequests()
+    {
+        return this.rejectedRequests.get();
+    }
+
+    /**
+     * Gets the number of requests that timed out.
+     *
+     * @return The number of timed out requests.
+     */
+    public long getTimedOutRequests()
+    {
+        return this.timedOutRequests.get();
+    }
+
+    /**
+     * Stops accepting requests and waits for running ones to finish.
+     */
+    @Override
+    public void close()
+    {
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the handler on a worker and finishes the request, unless it already timed out.
+     *
+     * @param context Asynchronous context of the request.
+     * @param guarded Response given to the handler, whose lock is held while finishing the request.
+     * @param finished Set by whoever finishes the request first.
+     * @param handler Work done for the request.
+     */
+    private void run(AsyncContext context, GuardedResponse guarded, AtomicBoolean finished, Handler handler)
+    {
+        if (finished.get()) {
+            return;
+        }
+        String path;
+        try {
+            path = handler.handle(guarded);
+        } catch (ServletException | IOException | RuntimeException e) {
+            synchronized (guarded) {
+                if (finished.compareAndSet(false, true)) {
+                    context.getRequest().getServletContext().log("Request failed", e);
+                    try {
+                        ((HttpServletResponse) context.getResponse())
+                                .sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Request failed");
+                    } catch (IOException | IllegalStateException ex) {
+                        // the response is already committed
+                    }
+                    context.complete();
+                }
+            }
+            return;
+        }
+        synchronized (guarded) {
+            if (finished.compareAndSet(false, true)) {
+                if (path != null) {
+                    context.dispatch(path);
+                } else {
+                    context.complete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the handler of a finished request, interrupting it if it is running.
+     *
+     * @param task Holder of the handler's future, empty until it was queued.
+     */
+    private static void cancel(AtomicReference<Future<?>> task)
+    {
+        Future<?> future = task.get();
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Answers with 503 Service Unavailable if nothing was sent yet.
+     *
+     * @param response HTTP response
+     * @param message Message of the error page.
+     * @throws IOException if the error could not be sent
+     */
+    private static void sendUnavailable(HttpServletResponse response, String message) throws IOException
+    {
+        if (!response.isCommitted()) {
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, message);
+        }
+    }
+
+    /**
+     * Creates a factory of virtual threads when the runtime supports them, of daemon platform threads otherwise.
+     *
+     * @return The thread factory.
+     */
+    private static ThreadFactory createThreadFactory()
+    {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "servlet-worker-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, "servlet-worker-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -6,8 +6,7 @@ package pl.polsl.servlet;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.Cookie;
@@ -16,51 +15,55 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import pl.polsl.model.Model;
 import pl.polsl.model.PressureOverflowException;
+import pl.polsl.view.ResponseCache;
 import pl.polsl.view.View;
 
 /**
  *Servlet handling requests related to calculations.
  *Manages model data and updates the view.
+ *Every client works on its own tank, found by {@link TankCookie}.
+ *Requests are handled asynchronously on the {@link AsyncRequestExecutor} workers
+ *and dispatched to index.jsp for rendering.
  * 
  * @author Jakub Krzywoń
  * @version 5.1
  */
 
-@WebServlet(name = "CalculationServlet", urlPatterns = {"/CalculationServlet"})
+@WebServlet(name = "CalculationServlet", urlPatterns = {"/CalculationServlet"}, asyncSupported = true)
 public class CalculationServlet extends HttpServlet {
-    /** Model object */
-    private Model model;
-    /** View object */
-    private View view; 
-    /** Random number generator */
-    private final Random random = new Random();
+
+    /** Message shown when saving to the database fails; the cause is logged, not shown */
+    private static final String DATABASE_ERROR = "Could not save the data, please try again later.";
+
+    /** Message shown when the pressure exceeds the maximum */
+    private static final String PRESSURE_OVERFLOW_ERROR = "Pressure exceeds maximum allowed value";
 
     /**
      * Handles the user's request to set the gas inflow.
      * 
      * @param request HTTP request
      * @param response HTTP response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      * @throws ServletException in case of servlet handling issues
      * @throws IOException in case of I/O operation issues
      */
-    private void handleSetInflow(HttpServletRequest request, HttpServletResponse response)
+    private void handleSetInflow(HttpServletRequest request, HttpServletResponse response, Model model, View view)
             throws ServletException, IOException {
         try {
             String inflowParameter = request.getParameter("inflow");
             double inflowValue = Double.parseDouble(inflowParameter);
-            this.updateModelPressure(request);
-            this.model.setGasInflow(inflowValue);
-            this.view.updateInflow(request);
-            saveCookie(response, "inflowCookie", String.valueOf(this.model.getGasInflow()));
+            this.updateModelPressure(request, model, view);
+            model.setGasInflow(inflowValue);
+            view.updateInflow(request);
+            saveCookie(response, "inflowCookie", String.valueOf(model.getGasInflow()));
         } catch (NumberFormatException e) {
-            this.handleErrorAndSaveToDatabase(request, "inflowError", "Please enter a valid inflow value.");
+            this.handleErrorAndSaveToDatabase(request, model, view, "inflowError", "Please enter a valid inflow value.");
         }
         try {
-            this.model.saveGasFlowToDatabase();
+            model.saveGasFlowToDatabase();
         } catch (SQLException ex) {
-            this.view.showError(request, "inflowError", ex.getMessage());
-        } finally {
-            request.getRequestDispatcher("index.jsp").forward(request, response);
+            this.showDatabaseError(request, view, "inflowError", ex);
         }
     }
     
@@ -69,21 +72,21 @@ public class CalculationServlet extends HttpServlet {
      * 
      * @param request HTTP request
      * @param response HTTP response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      * @throws ServletException in case of servlet handling issues
      * @throws IOException in case of I/O operation issues
      */
-    private void handleRandomInflow(HttpServletRequest request, HttpServletResponse response)
+    private void handleRandomInflow(HttpServletRequest request, HttpServletResponse response, Model model, View view)
             throws ServletException, IOException {
-        this.updateModelPressure(request);
-        this.model.setGasInflow(random.nextDouble(30));
-        this.view.updateInflow(request);
-        saveCookie(response, "inflowCookie", String.valueOf(this.model.getGasInflow()));
+        this.updateModelPressure(request, model, view);
+        model.setGasInflow(ThreadLocalRandom.current().nextDouble(30));
+        view.updateInflow(request);
+        saveCookie(response, "inflowCookie", String.valueOf(model.getGasInflow()));
         try {
-            this.model.saveGasFlowToDatabase();
+            model.saveGasFlowToDatabase();
         } catch (SQLException ex) {
-            this.view.showError(request, "inflowError", ex.getMessage());
-        } finally {
-            request.getRequestDispatcher("index.jsp").forward(request, response);
+            this.showDatabaseError(request, view, "inflowError", ex);
         }
     }
     
@@ -92,26 +95,26 @@ public class CalculationServlet extends HttpServlet {
      * 
      * @param request HTTP request
      * @param response HTTP response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      * @throws ServletException in case of servlet handling issues
      * @throws IOException in case of I/O operation issues
      */
-    private void handleSetOutflow(HttpServletRequest request, HttpServletResponse response)
+    private void handleSetOutflow(HttpServletRequest request, HttpServletResponse response, Model model, View view)
             throws ServletException, IOException {
         try {
             String outflowParameter = request.getParameter("outflow");
             double outflowValue = Double.parseDouble(outflowParameter);
-            this.updateModelPressure(request);
-            this.model.setGasOutflow(outflowValue);
-            this.view.updateOutflow(request);
-            saveCookie(response, "outflowCookie", String.valueOf(this.model.getGasOutflow()));
+            this.updateModelPressure(request, model, view);
+            model.setGasOutflow(outflowValue);
+            view.updateOutflow(request);
+            saveCookie(response, "outflowCookie", String.valueOf(model.getGasOutflow()));
         } catch (NumberFormatException e) {
-            this.handleErrorAndSaveToDatabase(request, "outflowError", "Please enter a valid outflow value.");
+            this.handleErrorAndSaveToDatabase(request, model, view, "outflowError", "Please enter a valid outflow value.");
         } try {
-            this.model.saveGasFlowToDatabase();
+            model.saveGasFlowToDatabase();
         } catch (SQLException ex) {
-            this.view.showError(request, "outflowError", ex.getMessage());
-        }finally {
-            request.getRequestDispatcher("index.jsp").forward(request, response);
+            this.showDatabaseError(request, view, "outflowError", ex);
         }
     }
     
@@ -120,21 +123,21 @@ public class CalculationServlet extends HttpServlet {
      * 
      * @param request HTTP request
      * @param response HTTP response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      * @throws ServletException in case of servlet handling issues
      * @throws IOException in case of I/O operation issues
      */
-    private void handleRandomOutflow(HttpServletRequest request, HttpServletResponse response)
+    private void handleRandomOutflow(HttpServletRequest request, HttpServletResponse response, Model model, View view)
             throws ServletException, IOException {
-        this.updateModelPressure(request);
-        this.model.setGasOutflow(random.nextDouble(30));
-        this.view.updateOutflow(request);
-        saveCookie(response, "outflowCookie", String.valueOf(this.model.getGasOutflow()));
+        this.updateModelPressure(request, model, view);
+        model.setGasOutflow(ThreadLocalRandom.current().nextDouble(30));
+        view.updateOutflow(request);
+        saveCookie(response, "outflowCookie", String.valueOf(model.getGasOutflow()));
         try {
-            this.model.saveGasFlowToDatabase();
+            model.saveGasFlowToDatabase();
         } catch (SQLException ex) {
-            this.view.showError(request, "outflowError", ex.getMessage());
-        } finally {
-            request.getRequestDispatcher("index.jsp").forward(request, response);
+            this.showDatabaseError(request, view, "outflowError", ex);
         }
     }
     
@@ -142,30 +145,40 @@ public class CalculationServlet extends HttpServlet {
      * Updates the model pressure data and shows it.
      *
      * @param request HTTP request
+     * @param response HTTP response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      */
-    private void handlePressureUpdate(HttpServletRequest request, HttpServletResponse response)
+    private void handlePressureUpdate(HttpServletRequest request, HttpServletResponse response, Model model, View view)
             throws ServletException, IOException {
-        this.updateModelPressure(request);
-        this.view.updatePressure(request);
+        this.updateModelPressure(request, model, view);
+        view.updatePressure(request);
         try {
-            this.model.saveGasFlowToDatabase();
+            model.saveGasFlowToDatabase();
         } catch (SQLException ex) {
-            this.view.showError(request, "pressureError", ex.getMessage());
-        } finally {
-            request.getRequestDispatcher("index.jsp").forward(request, response);
+            this.showDatabaseError(request, view, "pressureError", ex);
         }
     }
     
     /**
      * Updates the model by invoking updatePressure, and shows if there is PressureOverflow exception.
+     * When the simulation scheduler advances the model, only reads the latest state.
      * 
      * @param request HTTP request
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      */
-    private void updateModelPressure(HttpServletRequest request) {
+    private void updateModelPressure(HttpServletRequest request, Model model, View view) {
+        if (TankCookie.isScheduled(request, model)) {
+            if (model.getPressure() > model.getMaxAllowedPressure()) {
+                view.showError(request, "pressureError", PRESSURE_OVERFLOW_ERROR);
+            }
+            return;
+        }
         try {
-            this.model.updatePressure();
+            model.updatePressure();
         } catch (PressureOverflowException ex) {
-            this.view.showError(request, "pressureError", ex.getMessage());
+            view.showError(request, "pressureError", PRESSURE_OVERFLOW_ERROR);
         }
     }
 
@@ -173,20 +186,35 @@ public class CalculationServlet extends HttpServlet {
      * Common method to handle errors, display error messages, and save data to the database.
      *
      * @param request HTTP request
-     * @param response HTTP response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      * @param errorAttribute Name of the error attribute to set in the request
      * @param errorMessage Error message to display
      */
-    private void handleErrorAndSaveToDatabase(HttpServletRequest request,
+    private void handleErrorAndSaveToDatabase(HttpServletRequest request, Model model, View view,
             String errorAttribute, String errorMessage) throws ServletException, IOException {
-        this.view.showError(request, errorAttribute, errorMessage);
+        view.showError(request, errorAttribute, errorMessage);
         try {
-            this.model.saveGasFlowToDatabase();
+            model.saveGasFlowToDatabase();
         } catch (SQLException ex) {
-            this.view.showError(request, errorAttribute, ex.getMessage());
+            this.showDatabaseError(request, view, errorAttribute, ex);
         }
     }
     
+    /**
+     * Logs a database error and shows a generic message in its place, so the client never sees
+     * driver messages that may describe the schema or the server.
+     *
+     * @param request HTTP request
+     * @param view view of the client's tank
+     * @param errorAttribute Name of the error attribute to set in the request
+     * @param ex the database error
+     */
+    private void showDatabaseError(HttpServletRequest request, View view, String errorAttribute, SQLException ex) {
+        request.getServletContext().log("Could not save the gas flow to the database", ex);
+        view.showError(request, errorAttribute, DATABASE_ERROR);
+    }
+
     /**
      * Saves a key-value pair to a cookie and adds it to the HTTP response.
      *
@@ -201,24 +229,26 @@ public class CalculationServlet extends HttpServlet {
     }
     
      /**
-     * Loads values from cookies and sets inflow and outflow values.
+     * Loads values from cookies and sets inflow and outflow values of the client's tank.
      *
      * @param request HTTP request
+     * @param model model of the client's tank
+     * @param view view of the client's tank
      */
-    private void loadCookies(HttpServletRequest request) {
+    private void loadCookies(HttpServletRequest request, Model model, View view) {
         Cookie[] cookies = request.getCookies();
         if(cookies!=null) {
             for(Cookie cookie : cookies) {
                 switch (cookie.getName()) {
                     case "inflowCookie":
                         double inflowValue = Double.parseDouble(cookie.getValue());
-                        this.model.setGasInflow(inflowValue);
-                        this.view.updateInflow(request);
+                        model.setGasInflow(inflowValue);
+                        view.updateInflow(request);
                         break;
                     case "outflowCookie":
                         double outflowValue = Double.parseDouble(cookie.getValue());
-                        this.model.setGasOutflow(outflowValue);
-                        this.view.updateOutflow(request);
+                        model.setGasOutflow(outflowValue);
+                        view.updateOutflow(request);
                         break;
                 }
             }
@@ -238,37 +268,52 @@ public class CalculationServlet extends HttpServlet {
             throws ServletException, IOException {
         response.setContentType("text/html;charset=UTF-8");
         
-        if (Objects.isNull(request.getServletContext().getAttribute("Model"))) {
-            request.getServletContext().setAttribute("Model", new Model());
-        }
-        this.model = (Model) request.getServletContext().getAttribute("Model");
-        
-        if (Objects.isNull(request.getServletContext().getAttribute("View"))) {
-            request.getServletContext().setAttribute("View", new View(this.model));
-        }
-        this.view = (View) request.getServletContext().getAttribute("View");
-        this.loadCookies(request);
+        AsyncRequestExecutor executor = (AsyncRequestExecutor) request.getServletContext().getAttribute("AsyncRequestExecutor");
+        executor.execute(request, response, "Calculation." + request.getParameter("action"), guarded -> {
+            Model model = TankCookie.resolve(request, guarded, true);
+            View view = model == request.getServletContext().getAttribute("Model")
+                    ? (View) request.getServletContext().getAttribute("View")
+                    : new View(model, (ResponseCache) request.getServletContext().getAttribute("ResponseCache"));
+            return this.handleAction(request, guarded, model, view);
+        });
+    }
+    
+    /**
+     * Handles the requested action on a worker thread.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @param model model of the client's tank
+     * @param view view of the client's tank
+     * @return page rendering the result, or null if the action is unknown
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    private String handleAction(HttpServletRequest request, HttpServletResponse response, Model model, View view)
+            throws ServletException, IOException {
+        this.loadCookies(request, model, view);
        
         String action = request.getParameter("action");
         if (action != null) {
                 switch (action) {
                     case "setInflow":
-                        handleSetInflow(request, response);
-                        break;
+                        handleSetInflow(request, response, model, view);
+                        return "/index.jsp";
                     case "randomInflow":
-                        handleRandomInflow(request, response);
-                        break;
+                        handleRandomInflow(request, response, model, view);
+                        return "/index.jsp";
                     case "setOutflow":
-                        handleSetOutflow(request, response);
-                        break;
+                        handleSetOutflow(request, response, model, view);
+                        return "/index.jsp";
                     case "randomOutflow":
-                        handleRandomOutflow(request, response);
-                        break;
+                        handleRandomOutflow(request, response, model, view);
+                        return "/index.jsp";
                     case "updatePressure":
-                        handlePressureUpdate(request, response);
-                        break; 
+                        handlePressureUpdate(request, response, model, view);
+                        return "/index.jsp";
                 }
         }
+        return null;
     }
     
 
@@ -0,0 +1,279 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.servlet;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response handed to the handler of an asynchronous request, which stops touching the real response
+ * once the request is finished by someone else, e.g. answered with 503 after a timeout.
+ * Every write and every change of the status or headers checks the shared {@code finished} flag while
+ * holding the lock of this object, and whoever finishes the request sets the flag holding the same lock,
+ * so nothing reaches a response that was already completed and possibly recycled by the container.
+ * Writes after that fail with an IOException, other changes with an IllegalStateException.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+final class GuardedResponse extends HttpServletResponseWrapper {
+
+    /** Set by whoever finishes the request first. */
+    private final AtomicBoolean finished;
+
+    /** Stream handed out by getOutputStream, or null. */
+    private ServletOutputStream stream = null;
+
+    /** Writer handed out by getWriter, or null. */
+    private PrintWriter writer = null;
+
+    /**
+     * Action on the real response that may throw an IOException.
+     */
+    @FunctionalInterface
+    private interface Action {
+
+        /**
+         * Runs the action.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param response the real response
+     * @param finished flag set by whoever finishes the request first, shared with the executor
+     */
+    GuardedResponse(HttpServletResponse response, AtomicBoolean finished) {
+        super(response);
+        this.finished = finished;
+    }
+
+    /**
+     * Runs an action on the real response unless the request is finished.
+     *
+     * @param action the action
+     * @throws IOException if the action failed
+     */
+    private synchronized void guardIO(Action action) throws IOException {
+        if (this.finished.get()) {
+            throw new IllegalStateException("Request already finished");
+        }
+        action.run();
+    }
+
+    /**
+     * Runs an action that can't throw an IOException on the real response unless the request is finished.
+     *
+     * @param action the action
+     */
+    private synchronized void guard(Runnable action) {
+        if (this.finished.get()) {
+            throw new IllegalStateException("Request already finished");
+        }
+        action.run();
+    }
+
+    @Override
+    public synchronized ServletOutputStream getOutputStream() throws IOException {
+        if (this.stream == null) {
+            if (this.finished.get()) {
+                throw new IOException("Request already finished");
+            }
+            this.stream = new GuardedOutputStream(super.getOutputStream());
+        }
+        return this.stream;
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+        if (this.writer == null) {
+            this.writer = new PrintWriter(new OutputStreamWriter(this.getOutputStream(), this.getCharacterEncoding()));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        this.guard(() -> super.setStatus(status));
+    }
+
+    @Override
+    public void sendError(int status) throws IOException {
+        this.guardIO(() -> super.sendError(status));
+    }
+
+    @Override
+    public void sendError(int status, String message) throws IOException {
+        this.guardIO(() -> super.sendError(status, message));
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        this.guardIO(() -> super.sendRedirect(location));
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        this.guard(() -> super.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        this.guard(() -> super.addHeader(name, value));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        this.guard(() -> super.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        this.guard(() -> super.addIntHeader(name, value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        this.guard(() -> super.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        this.guard(() -> super.addDateHeader(name, date));
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        this.guard(() -> super.addCookie(cookie));
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.guard(() -> super.setContentType(type));
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        this.guard(() -> super.setCharacterEncoding(charset));
+    }
+
+    @Override
+    public void setContentLength(int length) {
+        this.guard(() -> super.setContentLength(length));
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+        this.guard(() -> super.setContentLengthLong(length));
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        this.guard(() -> super.setLocale(locale));
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        this.guard(() -> super.setBufferSize(size));
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        this.guardIO(() -> super.flushBuffer());
+    }
+
+    @Override
+    public void resetBuffer() {
+        this.guard(() -> super.resetBuffer());
+    }
+
+    @Override
+    public void reset() {
+        this.guard(() -> super.reset());
+    }
+
+    /**
+     * Output stream writing to the real response only while the request isn't finished.
+     */
+    private final class GuardedOutputStream extends ServletOutputStream {
+
+        /** Stream of the real response. */
+        private final ServletOutputStream out;
+
+        /**
+         * Constructor
+         *
+         * @param out stream of the real response
+         */
+        GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Fails if the request is finished. Called holding the lock of the response.
+         *
+         * @throws IOException if the request is finished
+         */
+        private void checkOpen() throws IOException {
+            if (GuardedResponse.this.finished.get()) {
+                throw new IOException("Request already finished");
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (GuardedResponse.this) {
+                this.checkOpen();
+                this.out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (GuardedResponse.this) {
+                this.checkOpen();
+                this.out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (GuardedResponse.this) {
+                this.checkOpen();
+                this.out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (GuardedResponse.this) {
+                this.checkOpen();
+                this.out.close();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            this.out.setWriteListener(listener);
+        }
+    }
+}
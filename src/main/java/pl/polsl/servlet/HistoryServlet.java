@@ -5,28 +5,33 @@
 package pl.polsl.servlet;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Objects;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import pl.polsl.model.Model;
+import pl.polsl.view.HtmlWriter;
+import pl.polsl.view.ResponseCache;
 import pl.polsl.view.View;
 
 /**
  * Servlet responsible for handling history-related requests.
  * Manages the model data and updates the associated view.
+ * The history shown is that of the client's own tank, found by {@link TankCookie}.
+ * Pages are written asynchronously on the {@link AsyncRequestExecutor} workers.
  *
  * @author Jakub Krzywoń
  * @version 5.1
  */
-@WebServlet(name = "HistoryServlet", urlPatterns = {"/HistoryServlet"})
+@WebServlet(name = "HistoryServlet", urlPatterns = {"/HistoryServlet"}, asyncSupported = true)
 public class HistoryServlet extends HttpServlet {
 
-    private Model model;
-    private View view; 
+    /** Number of database rows shown on one page when not given in the request */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    
+    /** Largest number of database rows shown on one page */
+    private static final int MAX_PAGE_SIZE = 1000;
 
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
@@ -41,38 +46,73 @@ public class HistoryServlet extends HttpServlet {
             throws ServletException, IOException {
         response.setContentType("text/html;charset=UTF-8");
         
-        if (Objects.isNull(request.getServletContext().getAttribute("Model"))) {
-            request.getServletContext().setAttribute("Model", new Model());
-        }
-        
-        this.model = (Model) request.getServletContext().getAttribute("Model");
-        if (Objects.isNull(request.getServletContext().getAttribute("View"))) {
-            request.getServletContext().setAttribute("View", new View(this.model));
-        }
-        this.view = (View) request.getServletContext().getAttribute("View");
+        AsyncRequestExecutor executor = (AsyncRequestExecutor) request.getServletContext().getAttribute("AsyncRequestExecutor");
+        executor.execute(request, response, "History." + request.getParameter("action"), guarded -> {
+            Model model = TankCookie.resolve(request, guarded, false);
+            View view = model == request.getServletContext().getAttribute("Model")
+                    ? (View) request.getServletContext().getAttribute("View")
+                    : new View(model, (ResponseCache) request.getServletContext().getAttribute("ResponseCache"));
+            this.handleAction(request, guarded, view);
+            return null;
+        });
+    }
 
+    /**
+     * Writes the page of the requested action on a worker thread.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @param view view of the client's tank
+     * @throws IOException if an I/O error occurs
+     */
+    private void handleAction(HttpServletRequest request, HttpServletResponse response, View view)
+            throws IOException {
         String action = request.getParameter("action");
         if (action != null) {
-            PrintWriter out = response.getWriter();
+            HtmlWriter out = new HtmlWriter(response.getOutputStream());
             view.printHtmlTemplateStart(out);
             switch (action) {
                 case "ShowHistory":
                     view.showHistory(out);
                     break;
                 case "ShowMaxPressure":
-                    this.view.showMaxPressure(out);
+                    view.showMaxPressure(out);
                     break;
                 case "ShowMinPressure":
-                    this.view.showMinPressure(out);
+                    view.showMinPressure(out);
                     break;  
                 case "ShowAvgPressure":
-                    this.view.showAvgPressure(out);
+                    view.showAvgPressure(out);
                     break;
                 case "ShowDatabase":
-                    this.view.showDatabase(out);
+                    int pageSize = Math.min(Math.max(this.getIntParameter(request, "pageSize", DEFAULT_PAGE_SIZE), 1),
+                            MAX_PAGE_SIZE);
+                    view.showDatabase(request, out, this.getIntParameter(request, "gasFlowAfter", 0),
+                            this.getIntParameter(request, "pressureHistoryAfter", 0), pageSize);
                     break;
             }
             view.printHtmlTemplateEnd(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads an integer request parameter.
+     *
+     * @param request HTTP request
+     * @param name parameter name
+     * @param defaultValue value used when the parameter is missing or invalid
+     * @return the parameter value
+     */
+    private int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
         }
     }
 
@@ -0,0 +1,243 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import pl.polsl.model.Model;
+import pl.polsl.model.OverflowAlert;
+import pl.polsl.model.OverflowPredictor;
+import pl.polsl.model.PressureIntegrator;
+import pl.polsl.model.PressureSolver;
+import pl.polsl.model.SimulationScheduler;
+import pl.polsl.model.TankEventLog;
+import pl.polsl.model.TankSessionManager;
+import pl.polsl.view.ResponseCache;
+import pl.polsl.view.View;
+
+/**
+ * Listener creating the shared Model and View when the application starts
+ * and closing the Model when the application stops,
+ * so that data queued for the database is written before shutdown.
+ * Creating them here, once, means servlets never race to initialize them.
+ * When the {@code simulationTickMillis} context parameter is positive, a {@link SimulationScheduler}
+ * advancing the Model and the tanks of clients in fixed ticks is started as well and stored under "SimulationScheduler".
+ * Servlet work runs on an {@link AsyncRequestExecutor} stored under "AsyncRequestExecutor",
+ * sized by the {@code requestThreads}, {@code requestQueueCapacity} and {@code requestTimeoutMillis} context parameters.
+ * The {@code pressureIntegrator} context parameter selects the numerical method ("euler", "rk4" or "adaptive").
+ * Rendered history rows are cached in the {@link ResponseCache} stored under "ResponseCache", shared by all Views.
+ * The metrics of the Model, which the executor and the scheduler record into as well, are stored under "MetricsRegistry".
+ * Startup fails when the database can't be reached or migrated, unless the {@code requireDatabase}
+ * context parameter is "false", in which case the Model runs in memory only.
+ * When the {@code tankSessions} context parameter is positive, each client gets its own tank from the
+ * {@link TankSessionManager} stored under "TankSessionManager", bounded by {@code tankSessions},
+ * {@code tankSessionIdleMillis} and {@code tankSessionHistory}, with evicted tanks snapshotted to the container's
+ * temporary directory and the snapshots deleted after {@code tankSnapshotTtlMillis}. Client tanks are off by default:
+ * the servlets, the scheduler and the overflow predictor serve them, but the REST resources, the pressure stream
+ * and the event log serve the shared tank only.
+ * An {@link OverflowPredictor} stored under "OverflowPredictor" logs every tank predicted to overflow
+ * or run empty, {@code overflowWarningMillis} before it happens.
+ * Every change of the shared tank is recorded in the {@link TankEventLog} stored under "TankEventLog",
+ * kept in the {@code eventLogDirectory} context parameter or the container's temporary directory and
+ * snapshotted every {@code eventLogSnapshotInterval} records, and the tank resumes from it on the next start.
+ * <p>
+ * Only the shared tank is advanced by the scheduler, served by the REST resources and the pressure stream,
+ * and recorded in the event log. Client tanks advance on their own requests and are written to disk only
+ * when evicted or on a clean shutdown, so a crash loses their changes since then.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+@WebListener
+public class ModelContextListener implements ServletContextListener {
+
+    /** Number of client tanks kept in memory when not given in the context parameters; 0 shares one tank */
+    private static final long DEFAULT_TANK_SESSIONS = 0;
+
+    /** Time in milliseconds after which an unused client tank is evicted, when not given in the context parameters */
+    private static final long DEFAULT_TANK_SESSION_IDLE = 30 * 60 * 1000;
+
+    /** Number of pressure samples kept in memory per client tank when not given in the context parameters */
+    private static final long DEFAULT_TANK_SESSION_HISTORY = 1024;
+
+    /** Time in milliseconds a client tank snapshot is kept when not given in the context parameters */
+    private static final long DEFAULT_TANK_SNAPSHOT_TTL = TankSessionManager.DEFAULT_SNAPSHOT_TTL;
+
+    /** Time in milliseconds before a predicted overflow at which it is reported, when not given in the context parameters */
+    private static final long DEFAULT_OVERFLOW_WARNING = 60 * 1000;
+
+    /** Id of the shared tank in overflow alerts, not a valid client tank id */
+    private static final String SHARED_TANK_ID = "(shared)";
+
+    /**
+     * Stores a new Model and its View in the servlet context and starts the simulation scheduler.
+     *
+     * @param event Event describing the initialized context.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        Model model = new Model();
+        if (model.getDatabaseError() != null && !"false".equalsIgnoreCase(context.getInitParameter("requireDatabase"))) {
+            model.close();
+            throw new IllegalStateException("Database is unavailable, the application can't start: "
+                    + model.getDatabaseError().getMessage(), model.getDatabaseError());
+        }
+        context.setAttribute("Model", model);
+        context.setAttribute("MetricsRegistry", model.getMetrics());
+        ResponseCache cache = new ResponseCache(ResponseCache.DEFAULT_MAX_PAGES, model.getMetrics());
+        context.setAttribute("ResponseCache", cache);
+        context.setAttribute("View", new View(model, cache));
+
+        Object tempDir = context.getAttribute(ServletContext.TEMPDIR);
+        Path temporary = tempDir instanceof File ? ((File) tempDir).toPath() : Paths.get(System.getProperty("java.io.tmpdir"));
+        String logParameter = context.getInitParameter("eventLogDirectory");
+        Path logDirectory = logParameter == null || logParameter.trim().isEmpty()
+                ? temporary.resolve("tank-events") : Paths.get(logParameter.trim());
+        try {
+            TankEventLog log = new TankEventLog(logDirectory, (int) getLongParameter(context,
+                    "eventLogSnapshotInterval", TankEventLog.DEFAULT_SNAPSHOT_INTERVAL), model.getMetrics());
+            model.setEventLog(log);
+            context.setAttribute("TankEventLog", log);
+            if (log.getRecoveredState() != null) {
+                context.log("Tank state recovered from " + logDirectory + " after replaying "
+                        + log.getReplayedRecords() + " records");
+            }
+        } catch (IOException e) {
+            context.log("Could not open the event log in " + logDirectory + ", the tank state is lost on restart", e);
+        }
+
+        String integrator = context.getInitParameter("pressureIntegrator");
+        if (integrator != null) {
+            try {
+                model.setSolver(new PressureSolver(PressureIntegrator.forName(integrator), PressureSolver.DEFAULT_MAX_STEP_MIN));
+            } catch (IllegalArgumentException e) {
+                context.log("Invalid pressureIntegrator: " + integrator + ", using " + model.getSolver().getIntegrator().getClass().getSimpleName());
+            }
+        }
+
+        context.setAttribute("AsyncRequestExecutor", new AsyncRequestExecutor(
+                (int) getLongParameter(context, "requestThreads", AsyncRequestExecutor.DEFAULT_THREADS),
+                (int) getLongParameter(context, "requestQueueCapacity", AsyncRequestExecutor.DEFAULT_QUEUE_CAPACITY),
+                getLongParameter(context, "requestTimeoutMillis", AsyncRequestExecutor.DEFAULT_TIMEOUT),
+                model.getMetrics()));
+
+        OverflowPredictor predictor = new OverflowPredictor(
+                getLongParameter(context, "overflowWarningMillis", DEFAULT_OVERFLOW_WARNING), model.getMetrics());
+        predictor.addListener(alert -> context.log("Tank " + alert.getTankId() + " predicted to reach "
+                + (alert.getKind() == OverflowAlert.Kind.OVERFLOW ? "maximum pressure" : "empty")
+                + " at " + new Date(alert.getCrossingTime())));
+        model.setOverflowPredictor(predictor, SHARED_TANK_ID);
+        context.setAttribute("OverflowPredictor", predictor);
+        predictor.start();
+
+        TankSessionManager sessions = null;
+        int tankSessions = (int) getLongParameter(context, "tankSessions", DEFAULT_TANK_SESSIONS);
+        if (tankSessions > 0) {
+            Path snapshots = temporary.resolve("tank-sessions");
+            try {
+                sessions = new TankSessionManager(model, tankSessions,
+                        getLongParameter(context, "tankSessionIdleMillis", DEFAULT_TANK_SESSION_IDLE),
+                        snapshots,
+                        (int) getLongParameter(context, "tankSessionHistory", DEFAULT_TANK_SESSION_HISTORY),
+                        getLongParameter(context, "tankSnapshotTtlMillis", DEFAULT_TANK_SNAPSHOT_TTL));
+                context.setAttribute("TankSessionManager", sessions);
+            } catch (IOException e) {
+                context.log("Could not create " + snapshots + ", all clients share one tank", e);
+            }
+        }
+
+        long tickMillis = 0;
+        String tickParameter = context.getInitParameter("simulationTickMillis");
+        if (tickParameter != null) {
+            try {
+                tickMillis = Long.parseLong(tickParameter.trim());
+            } catch (NumberFormatException e) {
+                context.log("Invalid simulationTickMillis: " + tickParameter + ", simulation runs on requests");
+            }
+        }
+        if (tickMillis > 0) {
+            SimulationScheduler scheduler = new SimulationScheduler(model, sessions, tickMillis);
+            context.setAttribute("SimulationScheduler", scheduler);
+            scheduler.start();
+        }
+    }
+
+    /**
+     * Closes the live pressure stream, waits for running requests, stops the simulation scheduler,
+     * snapshots the client tanks, stops the overflow predictor, closes the event log
+     * and closes the Model stored in the servlet context, if any.
+     *
+     * @param event Event describing the destroyed context.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        Object broadcaster = event.getServletContext().getAttribute("PressureBroadcaster");
+        if (broadcaster instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) broadcaster).close();
+            } catch (Exception e) {
+                event.getServletContext().log("Could not close the pressure stream", e);
+            }
+        }
+        Object executor = event.getServletContext().getAttribute("AsyncRequestExecutor");
+        if (executor instanceof AsyncRequestExecutor) {
+            ((AsyncRequestExecutor) executor).close();
+        }
+        Object scheduler = event.getServletContext().getAttribute("SimulationScheduler");
+        if (scheduler instanceof SimulationScheduler) {
+            ((SimulationScheduler) scheduler).close();
+        }
+        Object sessions = event.getServletContext().getAttribute("TankSessionManager");
+        if (sessions instanceof TankSessionManager) {
+            try {
+                ((TankSessionManager) sessions).close();
+            } catch (RuntimeException e) {
+                event.getServletContext().log("Could not snapshot the client tanks", e);
+            }
+        }
+        Object predictor = event.getServletContext().getAttribute("OverflowPredictor");
+        if (predictor instanceof OverflowPredictor) {
+            ((OverflowPredictor) predictor).close();
+        }
+        Object log = event.getServletContext().getAttribute("TankEventLog");
+        if (log instanceof TankEventLog) {
+            ((TankEventLog) log).close();
+        }
+        Object model = event.getServletContext().getAttribute("Model");
+        if (model instanceof Model) {
+            ((Model) model).close();
+        }
+    }
+
+    /**
+     * Reads a positive number from the context parameters.
+     *
+     * @param context The servlet context.
+     * @param name Name of the parameter.
+     * @param defaultValue Value used when the parameter is missing or invalid.
+     * @return The parameter value.
+     */
+    private static long getLongParameter(ServletContext context, String name, long defaultValue) {
+        String value = context.getInitParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long result = Long.parseLong(value.trim());
+            return result > 0 ? result : defaultValue;
+        } catch (NumberFormatException e) {
+            context.log("Invalid " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.servlet;
+
+import java.util.UUID;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import pl.polsl.model.Model;
+import pl.polsl.model.SimulationScheduler;
+import pl.polsl.model.TankSessionManager;
+
+/**
+ * Finds the tank of the client sending a request.
+ * The tank id is kept in the "tankId" cookie; a client without a valid one gets a new random id
+ * when its request changes the tank. Requests that only read never create a tank, so they leave
+ * nothing in memory or on disk; without a tank they see a blank one that isn't kept.
+ * The tanks of clients are reachable only through the servlets; the REST resources, the pressure stream
+ * and the event log all work on the shared Model. The simulation scheduler advances both.
+ * Without a {@link TankSessionManager} in the servlet context every client uses the shared Model.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+final class TankCookie {
+
+    /** Name of the cookie holding the tank id */
+    static final String NAME = "tankId";
+
+    /** Lifetime of the cookie in seconds */
+    private static final int MAX_AGE = 60 * 60 * 24 * 30;
+
+    /**
+     * Constructor
+     * Not used, the class has only static methods.
+     */
+    private TankCookie() {
+    }
+
+    /** Number of pressure samples kept by the blank tank shown to a reading client without a tank */
+    private static final int BLANK_HISTORY = 1;
+
+    /**
+     * Gets the Model of the client's tank.
+     * When the request changes the tank, a client without a valid id gets a new tank and the cookie;
+     * otherwise only an existing tank is returned, and a client without one gets a blank Model that isn't kept.
+     * Called on an {@link AsyncRequestExecutor} worker, since restoring the tank may read its snapshot from disk.
+     *
+     * @param request HTTP request
+     * @param response HTTP response
+     * @param create whether the request changes the tank, so a missing one is created
+     * @return the client's Model, or the shared one when tanks aren't separated
+     */
+    static Model resolve(HttpServletRequest request, HttpServletResponse response, boolean create) {
+        Model shared = (Model) request.getServletContext().getAttribute("Model");
+        Object manager = request.getServletContext().getAttribute("TankSessionManager");
+        if (!(manager instanceof TankSessionManager)) {
+            return shared;
+        }
+        String id = null;
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (NAME.equals(cookie.getName()) && TankSessionManager.isValidId(cookie.getValue())) {
+                    id = cookie.getValue();
+                }
+            }
+        }
+        if (!create) {
+            Model model = ((TankSessionManager) manager).find(id);
+            return model != null ? model : new Model(shared, BLANK_HISTORY);
+        }
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            Cookie cookie = new Cookie(NAME, id);
+            cookie.setMaxAge(MAX_AGE);
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        return ((TankSessionManager) manager).get(id);
+    }
+
+    /**
+     * Checks whether the simulation scheduler advances the given Model, so requests must not.
+     * The scheduler advances the shared Model and, when it was given the session manager, the tanks of clients.
+     *
+     * @param request HTTP request
+     * @param model the Model used by the request
+     * @return true if the scheduler advances the Model
+     */
+    static boolean isScheduled(HttpServletRequest request, Model model) {
+        Object scheduler = request.getServletContext().getAttribute("SimulationScheduler");
+        if (!(scheduler instanceof SimulationScheduler)) {
+            return false;
+        }
+        return model == request.getServletContext().getAttribute("Model")
+                || ((SimulationScheduler) scheduler).getSessions() != null;
+    }
+}
@@ -8,5 +8,9 @@
  * The package includes CalculationServlet, responsible for gas calculation and user interactions,
  * and HistoryServlet, handling historical data display for gas pressure calculations.
  * These servlets work with the Model and View components to process requests and maintain application state.
+ * {@link pl.polsl.servlet.ModelContextListener} closes the shared Model when the application stops.
+ * Each client works on its own tank, identified by the "tankId" cookie and kept by a
+ * {@link pl.polsl.model.TankSessionManager}; these tanks are seen only through the servlets,
+ * while the REST resources and the pressure stream serve the shared tank.
  */
 package pl.polsl.servlet;
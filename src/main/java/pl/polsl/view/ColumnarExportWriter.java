@@ -0,0 +1,133 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes exported history in a columnar binary format, similar in spirit to Parquet row groups.
+ * <p>
+ * The stream starts with the magic number "GPHC" and the format version (ints). It is followed by
+ * row groups of up to {@value #ROW_GROUP_SIZE} rows, each an int row count and then every column
+ * stored contiguously: ids (int), times in milliseconds (long), pressures (double),
+ * calculation ids (int), inflows (double) and outflows (double). The stream ends with a row count of 0
+ * and the total number of rows (long). All numbers are big-endian.
+ * Only one row group is buffered at a time, so memory use is constant.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ColumnarExportWriter implements HistoryExportWriter {
+
+    /** Magic number at the start of the stream, "GPHC" in ASCII. */
+    public static final int MAGIC = 0x47504843;
+
+    /** Version of the format. */
+    public static final int VERSION = 1;
+
+    /** Maximum number of rows in a row group. */
+    public static final int ROW_GROUP_SIZE = 8192;
+
+    /** Output of the numbers. */
+    private final DataOutputStream out;
+
+    /** Ids of the buffered rows. */
+    private final int[] ids = new int[ROW_GROUP_SIZE];
+
+    /** Times of the buffered rows. */
+    private final long[] times = new long[ROW_GROUP_SIZE];
+
+    /** Pressures of the buffered rows. */
+    private final double[] pressures = new double[ROW_GROUP_SIZE];
+
+    /** Calculation ids of the buffered rows. */
+    private final int[] calculationIds = new int[ROW_GROUP_SIZE];
+
+    /** Inflows of the buffered rows. */
+    private final double[] inflows = new double[ROW_GROUP_SIZE];
+
+    /** Outflows of the buffered rows. */
+    private final double[] outflows = new double[ROW_GROUP_SIZE];
+
+    /** Number of buffered rows. */
+    private int size = 0;
+
+    /** Number of rows written. */
+    private long total = 0;
+
+    /**
+     * Constructor
+     * Writes the start of the stream.
+     *
+     * @param out Stream receiving the output.
+     * @throws IOException If the start could not be written.
+     */
+    public ColumnarExportWriter(OutputStream out) throws IOException
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, HtmlWriter.DEFAULT_BUFFER_SIZE));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    @Override
+    public void writeRow(int id, double pressure, long time, int calculationId, double inflow, double outflow)
+            throws IOException
+    {
+        this.ids[this.size] = id;
+        this.times[this.size] = time;
+        this.pressures[this.size] = pressure;
+        this.calculationIds[this.size] = calculationId;
+        this.inflows[this.size] = inflow;
+        this.outflows[this.size] = outflow;
+        if (++this.size == ROW_GROUP_SIZE) {
+            this.writeRowGroup();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException
+    {
+        this.writeRowGroup();
+        this.out.writeInt(0);
+        this.out.writeLong(this.total);
+        this.out.flush();
+    }
+
+    /**
+     * Writes the buffered rows as one row group.
+     *
+     * @throws IOException If the output could not be written.
+     */
+    private void writeRowGroup() throws IOException
+    {
+        if (this.size == 0) {
+            return;
+        }
+        this.out.writeInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            this.out.writeInt(this.ids[i]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.out.writeLong(this.times[i]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.out.writeDouble(this.pressures[i]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.out.writeInt(this.calculationIds[i]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.out.writeDouble(this.inflows[i]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.out.writeDouble(this.outflows[i]);
+        }
+        this.total += this.size;
+        this.size = 0;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+/**
+ * Writes exported history as CSV with a header line. Times are ISO-8601 instants in UTC,
+ * unknown flows are empty fields.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class CsvExportWriter implements HistoryExportWriter {
+
+    /** Header line. */
+    private static final byte[] HEADER = HtmlWriter.fragment("id,pressure,history_time,calculation_id,inflow,outflow\n");
+
+    /** Field separator. */
+    private static final byte[] COMMA = HtmlWriter.fragment(",");
+
+    /** Line separator. */
+    private static final byte[] NEW_LINE = HtmlWriter.fragment("\n");
+
+    /** Buffered writer of the output. Fields contain no characters HTML would escape. */
+    private final HtmlWriter out;
+
+    /**
+     * Constructor
+     * Writes the header line.
+     *
+     * @param out Stream receiving the output.
+     * @throws IOException If the header could not be written.
+     */
+    public CsvExportWriter(OutputStream out) throws IOException
+    {
+        this.out = new HtmlWriter(out);
+        this.out.write(HEADER);
+    }
+
+    @Override
+    public void writeRow(int id, double pressure, long time, int calculationId, double inflow, double outflow)
+            throws IOException
+    {
+        this.out.write(id).write(COMMA).write(pressure).write(COMMA)
+                .writeText(Instant.ofEpochMilli(time).toString()).write(COMMA)
+                .write(calculationId).write(COMMA);
+        if (!Double.isNaN(inflow)) {
+            this.out.write(inflow);
+        }
+        this.out.write(COMMA);
+        if (!Double.isNaN(outflow)) {
+            this.out.write(outflow);
+        }
+        this.out.write(NEW_LINE);
+    }
+
+    @Override
+    public void finish() throws IOException
+    {
+        this.out.flush();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Formats of the history export.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public enum ExportFormat {
+
+    /** Comma-separated values with a header line. */
+    CSV("csv", "text/csv"),
+
+    /** One JSON object per line. */
+    JSONL("jsonl", "application/x-ndjson"),
+
+    /** Binary column chunks, see {@link ColumnarExportWriter}. */
+    COLUMNAR("gphc", "application/octet-stream");
+
+    /** File name extension. */
+    private final String extension;
+
+    /** Media type of the uncompressed output. */
+    private final String mediaType;
+
+    /**
+     * Constructor
+     *
+     * @param extension File name extension.
+     * @param mediaType Media type of the uncompressed output.
+     */
+    ExportFormat(String extension, String mediaType)
+    {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Getter for extension
+     *
+     * @return File name extension.
+     */
+    public String getExtension()
+    {
+        return this.extension;
+    }
+
+    /**
+     * Getter for mediaType
+     *
+     * @return Media type of the uncompressed output.
+     */
+    public String getMediaType()
+    {
+        return this.mediaType;
+    }
+
+    /**
+     * Creates a writer of this format.
+     *
+     * @param out Stream receiving the output.
+     * @return The writer.
+     * @throws IOException If the start of the document could not be written.
+     */
+    public HistoryExportWriter createWriter(OutputStream out) throws IOException
+    {
+        switch (this) {
+            case CSV:
+                return new CsvExportWriter(out);
+            case JSONL:
+                return new JsonLinesExportWriter(out);
+            default:
+                return new ColumnarExportWriter(out);
+        }
+    }
+
+    /**
+     * Gets a format by name or extension.
+     *
+     * @param name "csv", "jsonl" or "columnar", case-insensitive.
+     * @return The format.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    public static ExportFormat forName(String name)
+    {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown export format " + name);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.IOException;
+
+/**
+ * Writer of exported history rows in one {@link ExportFormat}.
+ * Rows are written as they arrive, so memory use doesn't depend on the number of rows.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public interface HistoryExportWriter {
+
+    /**
+     * Writes one row.
+     *
+     * @param id PressureHistory row id.
+     * @param pressure Gas pressure.
+     * @param time Time the pressure was recorded, in milliseconds.
+     * @param calculationId Id of the related GasFlow row, 0 if there is none.
+     * @param inflow Gas inflow rate, NaN if unknown.
+     * @param outflow Gas outflow rate, NaN if unknown.
+     * @throws IOException If the output could not be written.
+     */
+    void writeRow(int id, double pressure, long time, int calculationId, double inflow, double outflow)
+            throws IOException;
+
+    /**
+     * Writes buffered rows and the end of the document and flushes the output. The output is not closed.
+     *
+     * @throws IOException If the output could not be written.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,247 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered UTF-8 HTML writer streaming to an output stream in large chunks.
+ * Static markup is encoded to bytes once with {@link #fragment(String)} and copied as is.
+ * Numbers are formatted straight into the buffer through a reused builder, so writing a cell
+ * allocates nothing, and text is HTML-escaped as it is encoded.
+ * Instances are not thread-safe.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class HtmlWriter {
+
+    /** Default size of the buffer in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 32768;
+
+    /** Stream receiving the output. */
+    private final OutputStream out;
+
+    /** Bytes waiting to be written. */
+    private final byte[] buffer;
+
+    /** Number of bytes in the buffer. */
+    private int count = 0;
+
+    /** Builder reused to format numbers. */
+    private final StringBuilder number = new StringBuilder(32);
+
+    /**
+     * Constructor
+     * Uses a buffer of the default size.
+     *
+     * @param out Stream receiving the output.
+     */
+    public HtmlWriter(OutputStream out)
+    {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param out Stream receiving the output.
+     * @param bufferSize Size of the buffer in bytes, at least 16.
+     */
+    public HtmlWriter(OutputStream out, int bufferSize)
+    {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Encodes static markup once, to be written with {@link #write(byte[])}.
+     * The markup is not escaped.
+     *
+     * @param markup The markup.
+     * @return The markup in UTF-8.
+     */
+    public static byte[] fragment(String markup)
+    {
+        return markup.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a pre-encoded fragment.
+     *
+     * @param fragment The fragment from {@link #fragment(String)}.
+     * @return This writer.
+     * @throws IOException If the stream could not be written.
+     */
+    public HtmlWriter write(byte[] fragment) throws IOException
+    {
+        return this.write(fragment, 0, fragment.length);
+    }
+
+    /**
+     * Writes a part of pre-encoded markup, e.g. rows rendered earlier.
+     *
+     * @param bytes The markup in UTF-8.
+     * @param offset Index of the first byte to write.
+     * @param length Number of bytes to write.
+     * @return This writer.
+     * @throws IOException If the stream could not be written.
+     */
+    public HtmlWriter write(byte[] bytes, int offset, int length) throws IOException
+    {
+        if (length > this.buffer.length - this.count) {
+            this.flushBuffer();
+            if (length > this.buffer.length) {
+                this.out.write(bytes, offset, length);
+                return this;
+            }
+        }
+        System.arraycopy(bytes, offset, this.buffer, this.count, length);
+        this.count += length;
+        return this;
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value The number.
+     * @return This writer.
+     * @throws IOException If the stream could not be written.
+     */
+    public HtmlWriter write(long value) throws IOException
+    {
+        this.number.setLength(0);
+        this.number.append(value);
+        return this.writeAscii(this.number);
+    }
+
+    /**
+     * Writes a floating-point number in the format of {@link Double#toString(double)}.
+     *
+     * @param value The number.
+     * @return This writer.
+     * @throws IOException If the stream could not be written.
+     */
+    public HtmlWriter write(double value) throws IOException
+    {
+        this.number.setLength(0);
+        this.number.append(value);
+        return this.writeAscii(this.number);
+    }
+
+    /**
+     * Writes text, escaping the characters with a meaning in HTML.
+     *
+     * @param text The text, null is written as "null".
+     * @return This writer.
+     * @throws IOException If the stream could not be written.
+     */
+    public HtmlWriter writeText(CharSequence text) throws IOException
+    {
+        if (text == null) {
+            text = "null";
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    this.writeAscii("&amp;");
+                    break;
+                case '<':
+                    this.writeAscii("&lt;");
+                    break;
+                case '>':
+                    this.writeAscii("&gt;");
+                    break;
+                case '"':
+                    this.writeAscii("&quot;");
+                    break;
+                case '\'':
+                    this.writeAscii("&#39;");
+                    break;
+                default:
+                    if (c < 0x80) {
+                        this.ensure(1);
+                        this.buffer[this.count++] = (byte) c;
+                    } else if (c < 0x800) {
+                        this.ensure(2);
+                        this.buffer[this.count++] = (byte) (0xC0 | (c >> 6));
+                        this.buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                            && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                        this.ensure(4);
+                        this.buffer[this.count++] = (byte) (0xF0 | (codePoint >> 18));
+                        this.buffer[this.count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        this.buffer[this.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        this.buffer[this.count++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        this.writeAscii("?");
+                    } else {
+                        this.ensure(3);
+                        this.buffer[this.count++] = (byte) (0xE0 | (c >> 12));
+                        this.buffer[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        this.buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+                    }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream and flushes it.
+     *
+     * @throws IOException If the stream could not be written.
+     */
+    public void flush() throws IOException
+    {
+        this.flushBuffer();
+        this.out.flush();
+    }
+
+    /**
+     * Writes ASCII characters without escaping.
+     *
+     * @param text The characters, all below 0x80.
+     * @return This writer.
+     * @throws IOException If the stream could not be written.
+     */
+    private HtmlWriter writeAscii(CharSequence text) throws IOException
+    {
+        this.ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            this.buffer[this.count++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Makes room for the given number of bytes, writing the buffer to the stream if needed.
+     *
+     * @param length Number of bytes about to be added, at most the buffer size.
+     * @throws IOException If the stream could not be written.
+     */
+    private void ensure(int length) throws IOException
+    {
+        if (length > this.buffer.length - this.count) {
+            this.flushBuffer();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     *
+     * @throws IOException If the stream could not be written.
+     */
+    private void flushBuffer() throws IOException
+    {
+        if (this.count > 0) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+/**
+ * Writes exported history as JSON Lines, one object per row.
+ * Times are ISO-8601 instants in UTC, unknown flows are null.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class JsonLinesExportWriter implements HistoryExportWriter {
+
+    /** Start of a row up to the id. */
+    private static final byte[] ID = HtmlWriter.fragment("{\"id\":");
+
+    /** Name of the pressure field. */
+    private static final byte[] PRESSURE = HtmlWriter.fragment(",\"pressure\":");
+
+    /** Name of the time field and the opening quote. */
+    private static final byte[] HISTORY_TIME = HtmlWriter.fragment(",\"historyTime\":\"");
+
+    /** Closing quote of the time and name of the calculation id field. */
+    private static final byte[] CALCULATION_ID = HtmlWriter.fragment("\",\"calculationId\":");
+
+    /** Name of the inflow field. */
+    private static final byte[] INFLOW = HtmlWriter.fragment(",\"inflow\":");
+
+    /** Name of the outflow field. */
+    private static final byte[] OUTFLOW = HtmlWriter.fragment(",\"outflow\":");
+
+    /** JSON null. */
+    private static final byte[] NULL = HtmlWriter.fragment("null");
+
+    /** End of a row. */
+    private static final byte[] END = HtmlWriter.fragment("}\n");
+
+    /** Buffered writer of the output. Values contain no characters HTML would escape. */
+    private final HtmlWriter out;
+
+    /**
+     * Constructor
+     *
+     * @param out Stream receiving the output.
+     */
+    public JsonLinesExportWriter(OutputStream out)
+    {
+        this.out = new HtmlWriter(out);
+    }
+
+    @Override
+    public void writeRow(int id, double pressure, long time, int calculationId, double inflow, double outflow)
+            throws IOException
+    {
+        this.out.write(ID).write(id).write(PRESSURE);
+        this.writeNumber(pressure);
+        this.out.write(HISTORY_TIME).writeText(Instant.ofEpochMilli(time).toString())
+                .write(CALCULATION_ID).write(calculationId).write(INFLOW);
+        this.writeNumber(inflow);
+        this.out.write(OUTFLOW);
+        this.writeNumber(outflow);
+        this.out.write(END);
+    }
+
+    @Override
+    public void finish() throws IOException
+    {
+        this.out.flush();
+    }
+
+    /**
+     * Writes a number, or null if it is not finite.
+     *
+     * @param value The number.
+     * @throws IOException If the output could not be written.
+     */
+    private void writeNumber(double value) throws IOException
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            this.out.write(NULL);
+        } else {
+            this.out.write(value);
+        }
+    }
+}
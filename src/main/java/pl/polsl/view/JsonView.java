@@ -0,0 +1,149 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import pl.polsl.model.PressureHistory;
+import pl.polsl.model.PressureStatistics;
+import pl.polsl.model.TankState;
+
+/**
+ * Renders tank state, statistics and history as JSON for the REST API.
+ * Numbers that JSON can't represent (NaN, infinities) are written as null.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public final class JsonView {
+
+    /**
+     * Utility class, no instances.
+     */
+    private JsonView()
+    {
+    }
+
+    /**
+     * Renders the state of the tank.
+     *
+     * @param state Snapshot of flows and pressure.
+     * @param maxAllowedPressure The maximum allowed pressure in hPa.
+     * @return JSON object.
+     */
+    public static String state(TankState state, double maxAllowedPressure)
+    {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"pressure\":");
+        appendNumber(json, state.getPressure());
+        json.append(",\"gasInflow\":");
+        appendNumber(json, state.getGasInflow());
+        json.append(",\"gasOutflow\":");
+        appendNumber(json, state.getGasOutflow());
+        json.append(",\"maxAllowedPressure\":");
+        appendNumber(json, maxAllowedPressure);
+        json.append(",\"time\":").append(state.getTime());
+        json.append(",\"version\":").append(state.getVersion());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Renders the statistics of the stored history and of all samples ever recorded.
+     *
+     * @param statistics The statistics.
+     * @return JSON object.
+     */
+    public static String statistics(PressureStatistics statistics)
+    {
+        StringBuilder json = new StringBuilder(256);
+        synchronized (statistics) {
+            json.append("{\"window\":{\"count\":").append(statistics.getWindowCount());
+            json.append(",\"min\":");
+            appendNumber(json, statistics.getWindowMin());
+            json.append(",\"max\":");
+            appendNumber(json, statistics.getWindowMax());
+            json.append(",\"average\":");
+            appendNumber(json, statistics.getWindowAverage());
+            json.append("},\"total\":{\"count\":").append(statistics.getCount());
+            json.append(",\"min\":");
+            appendNumber(json, statistics.getMin());
+            json.append(",\"max\":");
+            appendNumber(json, statistics.getMax());
+            json.append(",\"average\":");
+            appendNumber(json, statistics.getAverage());
+            json.append(",\"variance\":");
+            appendNumber(json, statistics.getVariance());
+            json.append("}}");
+        }
+        return json.toString();
+    }
+
+    /**
+     * Renders a page of the stored history, oldest sample first.
+     *
+     * @param history The history.
+     * @param offset Position of the first sample of the page.
+     * @param limit Maximum number of samples on the page.
+     * @return JSON object with the samples and the offset of the next page, or null on the last page.
+     */
+    public static String history(PressureHistory history, int offset, int limit)
+    {
+        return history(history, offset, limit, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Renders a page of the stored samples taken in a time range, oldest sample first.
+     * The range is located by a binary search over the sample times.
+     *
+     * @param history The history.
+     * @param offset Position of the first sample of the page; pages never start before the range.
+     * @param limit Maximum number of samples on the page.
+     * @param fromTime Start of the time range in milliseconds, inclusive.
+     * @param toTime End of the time range in milliseconds, exclusive.
+     * @return JSON object with the samples and the offset of the next page, or null on the last page of the range.
+     */
+    public static String history(PressureHistory history, int offset, int limit, long fromTime, long toTime)
+    {
+        synchronized (history) {
+            int size = history.size();
+            int first = history.firstIndexAt(fromTime);
+            int end = Math.max(first, history.firstIndexAt(toTime));
+            int from = Math.min(Math.max(offset, first), end);
+            int to = (int) Math.min((long) from + Math.max(limit, 0), end);
+            StringBuilder json = new StringBuilder(64 + (to - from) * 48);
+            json.append("{\"offset\":").append(from);
+            json.append(",\"size\":").append(size);
+            json.append(",\"next\":");
+            if (to < end) {
+                json.append(to);
+            } else {
+                json.append("null");
+            }
+            json.append(",\"samples\":[");
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    json.append(',');
+                }
+                json.append("{\"time\":").append(history.getTime(i)).append(",\"pressure\":");
+                appendNumber(json, history.get(i));
+                json.append('}');
+            }
+            return json.append("]}").toString();
+        }
+    }
+
+    /**
+     * Appends a number, or null if it is not finite.
+     *
+     * @param json Builder of the document.
+     * @param value The number.
+     */
+    private static void appendNumber(StringBuilder json, double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Table rows rendered once and written again on later requests.
+ * Rows are appended at the end through {@link #writer()} and dropped from the front, so a rendering
+ * can follow a bounded history without rendering the kept rows again.
+ * <p>
+ * Bytes once written are never overwritten: appending writes only after the last row, and making room
+ * copies the live rows into a new array. A {@link #snapshot()} taken with the rows locked can therefore
+ * be written to a slow client after unlocking while other threads append.
+ * Instances are not thread-safe; callers lock them while changing them.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+final class RenderedRows extends OutputStream {
+
+    /** Initial size of the byte array. */
+    private static final int INITIAL_SIZE = 1024;
+
+    /** Rendered bytes; the rows are between start and end. */
+    private byte[] bytes = new byte[INITIAL_SIZE];
+
+    /** Index of the first byte of the oldest row. */
+    private int start = 0;
+
+    /** Index after the last byte of the newest row. */
+    private int end = 0;
+
+    /** Indexes after the last byte of each row, the oldest at firstRow. */
+    private int[] rowEnds = new int[64];
+
+    /** Position of the oldest row in rowEnds. */
+    private int firstRow = 0;
+
+    /** Number of rows. */
+    private int rowCount = 0;
+
+    /** Writer rendering into these rows. */
+    private final HtmlWriter writer = new HtmlWriter(this, 256);
+
+    /**
+     * Gets the writer rendering new rows; call {@link #endRow()} after each row.
+     *
+     * @return The writer.
+     */
+    HtmlWriter writer()
+    {
+        return this.writer;
+    }
+
+    /**
+     * Ends the row rendered since the previous one.
+     *
+     * @throws IOException Never, the rows are in memory.
+     */
+    void endRow() throws IOException
+    {
+        this.writer.flush();
+        if (this.firstRow + this.rowCount == this.rowEnds.length) {
+            if (this.firstRow > this.rowEnds.length / 2) {
+                System.arraycopy(this.rowEnds, this.firstRow, this.rowEnds, 0, this.rowCount);
+                this.firstRow = 0;
+            } else {
+                this.rowEnds = Arrays.copyOf(this.rowEnds, this.rowEnds.length * 2);
+            }
+        }
+        this.rowEnds[this.firstRow + this.rowCount++] = this.end;
+    }
+
+    /**
+     * Drops the oldest rows.
+     *
+     * @param count Number of rows to drop; all rows if larger than their number.
+     */
+    void dropRows(long count)
+    {
+        int dropped = (int) Math.min(Math.max(count, 0), this.rowCount);
+        if (dropped == 0) {
+            return;
+        }
+        this.start = this.rowEnds[this.firstRow + dropped - 1];
+        this.firstRow += dropped;
+        this.rowCount -= dropped;
+    }
+
+    /**
+     * Drops all rows.
+     */
+    void clear()
+    {
+        this.dropRows(this.rowCount);
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return The number of rows.
+     */
+    int rows()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * Gets the current rows, valid for writing even after more rows were appended or dropped.
+     *
+     * @return Buffer over the rendered bytes, not to be changed.
+     */
+    ByteBuffer snapshot()
+    {
+        return ByteBuffer.wrap(this.bytes, this.start, this.end - this.start);
+    }
+
+    /**
+     * Writes a snapshot of rendered rows.
+     *
+     * @param out The writer of the response.
+     * @param rows Snapshot from {@link #snapshot()}.
+     * @throws IOException If the response could not be written.
+     */
+    static void writeTo(HtmlWriter out, ByteBuffer rows) throws IOException
+    {
+        out.write(rows.array(), rows.arrayOffset() + rows.position(), rows.remaining());
+    }
+
+    /**
+     * Appends a byte of the row being rendered.
+     *
+     * @param b The byte.
+     */
+    @Override
+    public void write(int b)
+    {
+        this.ensure(1);
+        this.bytes[this.end++] = (byte) b;
+    }
+
+    /**
+     * Appends bytes of the row being rendered.
+     *
+     * @param b The bytes.
+     * @param offset Index of the first byte.
+     * @param length Number of bytes.
+     */
+    @Override
+    public void write(byte[] b, int offset, int length)
+    {
+        this.ensure(length);
+        System.arraycopy(b, offset, this.bytes, this.end, length);
+        this.end += length;
+    }
+
+    /**
+     * Makes room after the last row, moving the live rows into a new array when the current one is full.
+     *
+     * @param length Number of bytes about to be appended.
+     */
+    private void ensure(int length)
+    {
+        if (this.end + length <= this.bytes.length) {
+            return;
+        }
+        int live = this.end - this.start;
+        byte[] moved = new byte[Math.max(INITIAL_SIZE, Math.max(this.bytes.length, (live + length) * 2))];
+        System.arraycopy(this.bytes, this.start, moved, 0, live);
+        for (int i = 0; i < this.rowCount; i++) {
+            this.rowEnds[this.firstRow + i] -= this.start;
+        }
+        this.bytes = moved;
+        this.end = live;
+        this.start = 0;
+    }
+}
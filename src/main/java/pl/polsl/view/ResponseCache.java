@@ -0,0 +1,259 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import pl.polsl.metrics.MetricsRegistry;
+import pl.polsl.model.PressureHistory;
+
+/**
+ * Rendered table rows of the history pages, shared by the {@link View}s of one application.
+ * <p>
+ * The rows of an in-memory history are kept until the history is garbage collected and are valid
+ * while its {@link PressureHistory#getVersion() version} is unchanged. After new samples only those
+ * are rendered and appended, and evicted ones dropped; only a rewrite of the history renders it again.
+ * Database pages are kept for the {@value #DEFAULT_MAX_PAGES} most recently shown cursors and are
+ * valid while the database version of the Model is unchanged. Rows never change once written,
+ * so a page that wasn't full is completed by reading only the rows after its last one.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ResponseCache {
+
+    /** Default number of database pages kept. */
+    public static final int DEFAULT_MAX_PAGES = 64;
+
+    /** Rendered history rows by history. Guarded by itself. */
+    private final Map<PressureHistory, HistoryRows> histories = new WeakHashMap<>();
+
+    /** Rendered database pages by cursor, least recently used first. Guarded by itself. */
+    private final Map<PageKey, DatabasePage> pages;
+
+    /** Number of renderings served without changes. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Number of renderings extended with new rows only. */
+    private final LongAdder updates = new LongAdder();
+
+    /** Number of renderings built from scratch. */
+    private final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * Constructor
+     * Keeps the default number of database pages and registers no metrics.
+     */
+    public ResponseCache()
+    {
+        this(DEFAULT_MAX_PAGES, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxPages Maximum number of database pages kept.
+     * @param metrics Registry receiving the hit, update and rebuild counters, or null.
+     */
+    public ResponseCache(int maxPages, MetricsRegistry metrics)
+    {
+        this.pages = new LinkedHashMap<PageKey, DatabasePage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PageKey, DatabasePage> eldest) {
+                return this.size() > maxPages;
+            }
+        };
+        if (metrics != null) {
+            metrics.counter("gas_tank_response_cache_hits_total",
+                    "History page renderings served from memory unchanged.", this.hits::sum);
+            metrics.counter("gas_tank_response_cache_updates_total",
+                    "History page renderings extended with new rows only.", this.updates::sum);
+            metrics.counter("gas_tank_response_cache_rebuilds_total",
+                    "History page renderings built from scratch.", this.rebuilds::sum);
+        }
+    }
+
+    /**
+     * Gets the number of renderings served without changes.
+     *
+     * @return The number of hits.
+     */
+    public long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * Gets the number of renderings extended with new rows only.
+     *
+     * @return The number of updates.
+     */
+    public long getUpdates()
+    {
+        return this.updates.sum();
+    }
+
+    /**
+     * Gets the number of renderings built from scratch.
+     *
+     * @return The number of rebuilds.
+     */
+    public long getRebuilds()
+    {
+        return this.rebuilds.sum();
+    }
+
+    /**
+     * Gets or creates the rendered rows of a history.
+     *
+     * @param history The history.
+     * @return The rows, to be locked while used.
+     */
+    HistoryRows history(PressureHistory history)
+    {
+        synchronized (this.histories) {
+            return this.histories.computeIfAbsent(history, key -> new HistoryRows());
+        }
+    }
+
+    /**
+     * Gets or creates a rendered database page.
+     *
+     * @param gasFlowAfter Id of the last GasFlow row before the page.
+     * @param pressureHistoryAfter Id of the last PressureHistory row before the page.
+     * @param pageSize Maximum number of rows of each table.
+     * @return The page, to be locked while used.
+     */
+    DatabasePage page(int gasFlowAfter, int pressureHistoryAfter, int pageSize)
+    {
+        PageKey key = new PageKey(gasFlowAfter, pressureHistoryAfter, pageSize);
+        synchronized (this.pages) {
+            return this.pages.computeIfAbsent(key, k -> new DatabasePage(gasFlowAfter, pressureHistoryAfter));
+        }
+    }
+
+    /**
+     * Counts a rendering served without changes.
+     */
+    void countHit()
+    {
+        this.hits.increment();
+    }
+
+    /**
+     * Counts a rendering extended with new rows.
+     */
+    void countUpdate()
+    {
+        this.updates.increment();
+    }
+
+    /**
+     * Counts a rendering built from scratch.
+     */
+    void countRebuild()
+    {
+        this.rebuilds.increment();
+    }
+
+    /**
+     * Rendered rows of an in-memory history and the state of the history they show.
+     */
+    static final class HistoryRows {
+
+        /** The rendered rows. */
+        final RenderedRows rows = new RenderedRows();
+
+        /** Version of the history when last rendered, -1 before the first rendering. */
+        long version = -1;
+
+        /** Rewrite count of the history when last rendered. */
+        long rewrites = -1;
+
+        /** Sequence number of the first sample not rendered yet. */
+        long sequence = 0;
+    }
+
+    /**
+     * Rendered page of both database tables.
+     */
+    static final class DatabasePage {
+
+        /** Rendered GasFlow rows. */
+        final RenderedRows gasFlowRows = new RenderedRows();
+
+        /** Rendered PressureHistory rows. */
+        final RenderedRows pressureHistoryRows = new RenderedRows();
+
+        /** Id of the last rendered GasFlow row, or of the row before the page. */
+        int gasFlowLast;
+
+        /** Id of the last rendered PressureHistory row, or of the row before the page. */
+        int pressureHistoryLast;
+
+        /** Database version when last completed, -1 before the first reading. */
+        long version = -1;
+
+        /**
+         * Constructor
+         *
+         * @param gasFlowAfter Id of the last GasFlow row before the page.
+         * @param pressureHistoryAfter Id of the last PressureHistory row before the page.
+         */
+        DatabasePage(int gasFlowAfter, int pressureHistoryAfter)
+        {
+            this.gasFlowLast = gasFlowAfter;
+            this.pressureHistoryLast = pressureHistoryAfter;
+        }
+    }
+
+    /**
+     * Cursor of a database page.
+     */
+    private static final class PageKey {
+
+        /** Id of the last GasFlow row before the page. */
+        private final int gasFlowAfter;
+
+        /** Id of the last PressureHistory row before the page. */
+        private final int pressureHistoryAfter;
+
+        /** Maximum number of rows of each table. */
+        private final int pageSize;
+
+        /**
+         * Constructor
+         *
+         * @param gasFlowAfter Id of the last GasFlow row before the page.
+         * @param pressureHistoryAfter Id of the last PressureHistory row before the page.
+         * @param pageSize Maximum number of rows of each table.
+         */
+        PageKey(int gasFlowAfter, int pressureHistoryAfter, int pageSize)
+        {
+            this.gasFlowAfter = gasFlowAfter;
+            this.pressureHistoryAfter = pressureHistoryAfter;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof PageKey)) {
+                return false;
+            }
+            PageKey key = (PageKey) other;
+            return this.gasFlowAfter == key.gasFlowAfter && this.pressureHistoryAfter == key.pressureHistoryAfter
+                    && this.pageSize == key.pageSize;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (this.gasFlowAfter * 31 + this.pressureHistoryAfter) * 31 + this.pageSize;
+        }
+    }
+}
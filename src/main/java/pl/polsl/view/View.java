@@ -4,11 +4,13 @@
  */
 package pl.polsl.view;
 
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
-import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import pl.polsl.model.Model;
+import pl.polsl.model.PressureHistory;
 
 /**
  *
@@ -16,15 +18,99 @@ import pl.polsl.model.Model;
  * @version 5.1
  */
 public class View {
+    
+    /** Start of the HTML page. */
+    private static final byte[] TEMPLATE_START = HtmlWriter.fragment(
+            "<!DOCTYPE html>\n<html>\n<head>\n<title>History</title>\n</head>\n<body>\n");
+    
+    /** End of the HTML page. */
+    private static final byte[] TEMPLATE_END = HtmlWriter.fragment("</body>\n</html>\n");
+
+    /** Message shown instead of a table that couldn't be read; the cause is logged, not shown */
+    private static final String DATABASE_ERROR = "Could not read the database, please try again later.";
+    
+    /** Start of the in-memory history table. */
+    private static final byte[] HISTORY_TABLE_START = HtmlWriter.fragment(
+            "<table>\n<thead><tr><th>Pressure History</th></tr></thead>\n<tbody>\n");
+    
+    /** Start of the GasFlow table. */
+    private static final byte[] GAS_FLOW_TABLE_START = HtmlWriter.fragment(
+            "<table border='1'>\n<thead><tr><th>ID</th><th>Inflow</th><th>Outflow</th></tr></thead>\n<tbody>\n");
+    
+    /** Start of the PressureHistory table. */
+    private static final byte[] PRESSURE_HISTORY_TABLE_START = HtmlWriter.fragment("<table border='1'>\n"
+            + "<thead><tr><th>ID</th><th>Pressure</th><th>History Time</th><th>Calculation ID</th></tr></thead>\n"
+            + "<tbody>\n");
+    
+    /** End of a table. */
+    private static final byte[] TABLE_END = HtmlWriter.fragment("</tbody>\n</table>\n");
+    
+    /** Start of a table row and its first cell. */
+    private static final byte[] ROW_START = HtmlWriter.fragment("<tr><td>");
+    
+    /** Boundary between two cells. */
+    private static final byte[] CELL_BREAK = HtmlWriter.fragment("</td><td>");
+    
+    /** End of the last cell and its row. */
+    private static final byte[] ROW_END = HtmlWriter.fragment("</td></tr>\n");
+    
+    /** Start of the container of the database tables. */
+    private static final byte[] FLEX_START = HtmlWriter.fragment("<div style='display:flex;'>\n");
+    
+    /** Space between the database tables. */
+    private static final byte[] FLEX_SPACER = HtmlWriter.fragment("<div style='margin-left:20px;'></div>\n");
+    
+    /** End of a div. */
+    private static final byte[] DIV_END = HtmlWriter.fragment("</div>\n");
+    
+    /** Link to the next database page, up to the GasFlow cursor. */
+    private static final byte[] NEXT_PAGE_START = HtmlWriter.fragment(
+            "<a href='HistoryServlet?action=ShowDatabase&amp;gasFlowAfter=");
+    
+    /** Link to the next database page, up to the PressureHistory cursor. */
+    private static final byte[] NEXT_PAGE_PRESSURE_HISTORY_AFTER = HtmlWriter.fragment("&amp;pressureHistoryAfter=");
+    
+    /** Link to the next database page, up to the page size. */
+    private static final byte[] NEXT_PAGE_SIZE = HtmlWriter.fragment("&amp;pageSize=");
+    
+    /** End of the link to the next database page. */
+    private static final byte[] NEXT_PAGE_END = HtmlWriter.fragment("'>Next page</a>\n");
+    
+    /** Label of the average pressure. */
+    private static final byte[] AVERAGE_PRESSURE = HtmlWriter.fragment("Average pressure: ");
+    
+    /** Label of the minimum pressure. */
+    private static final byte[] MIN_PRESSURE = HtmlWriter.fragment("Minimal pressure: ");
+    
+    /** Label of the maximum pressure. */
+    private static final byte[] MAX_PRESSURE = HtmlWriter.fragment("Max pressure: ");
+    
+    /** End of a line. */
+    private static final byte[] LINE_END = HtmlWriter.fragment("\n");
+    
     private final Model model;
+    
+    /** Rendered rows of the history pages, reused while the data is unchanged. */
+    private final ResponseCache cache;
      
     /**
-     * Constructs a View object with the specified Model.
+     * Constructs a View object with the specified Model and its own response cache.
      *
      * @param model The Model object to be associated with the View.
      */
     public View(Model model) {
+        this(model, new ResponseCache());
+    }
+    
+    /**
+     * Constructs a View object with the specified Model and a response cache shared with other Views.
+     *
+     * @param model The Model object to be associated with the View.
+     * @param cache The cache of rendered rows.
+     */
+    public View(Model model, ResponseCache cache) {
         this.model = model;
+        this.cache = cache;
     }
     
      /**
@@ -60,69 +146,141 @@ public class View {
    }
 
    /**
-    * Displays both GasFlow and PressureHistory tables in a div with flex display.
+    * Displays one page of both GasFlow and PressureHistory tables in a div with flex display,
+    * followed by a link to the next page.
+    * Rows are rendered once and reused while the database version is unchanged; after new writes
+    * only the rows added since are read, and only while the page isn't full.
+    * A table that can't be read shows a generic message; the error itself is only logged.
     *
-    * @param out PrintWriter to write HTML content to the response.
+    * @param request HTTP request, used to log database errors.
+    * @param out HtmlWriter streaming the HTML content to the response.
+    * @param gasFlowAfter Id of the last GasFlow row shown on the previous page, 0 for the first page.
+    * @param pressureHistoryAfter Id of the last PressureHistory row shown on the previous page, 0 for the first page.
+    * @param pageSize Maximum number of rows of each table on the page.
+    * @throws IOException If the response could not be written.
     */
-   public void showDatabase(PrintWriter out) {
-       out.println("<div style='display:flex;'>");
-       this.showGasFlowTable(out);
-       out.println("<div style='margin-left:20px;'></div>");
-       this.showPressureHistoryTable(out);
-       out.println("</div>");
+   public void showDatabase(HttpServletRequest request, HtmlWriter out, int gasFlowAfter, int pressureHistoryAfter, int pageSize) throws IOException {
+       ResponseCache.DatabasePage page = this.cache.page(gasFlowAfter, pressureHistoryAfter, pageSize);
+       ByteBuffer gasFlowRows;
+       ByteBuffer pressureHistoryRows;
+       int gasFlowLast;
+       int pressureHistoryLast;
+       String gasFlowError = null;
+       String pressureHistoryError = null;
+       synchronized (page) {
+           long version = model.getDatabaseVersion();
+           if (version == page.version) {
+               this.cache.countHit();
+           } else {
+               if (page.version < 0) {
+                   this.cache.countRebuild();
+               } else {
+                   this.cache.countUpdate();
+               }
+               try {
+                   page.gasFlowLast = this.appendGasFlowRows(page.gasFlowRows, page.gasFlowLast,
+                           pageSize - page.gasFlowRows.rows());
+               } catch (SQLException ex) {
+                   request.getServletContext().log("Could not read GasFlow rows", ex);
+                   gasFlowError = DATABASE_ERROR;
+               }
+               try {
+                   page.pressureHistoryLast = this.appendPressureHistoryRows(page.pressureHistoryRows,
+                           page.pressureHistoryLast, pageSize - page.pressureHistoryRows.rows());
+               } catch (SQLException ex) {
+                   request.getServletContext().log("Could not read PressureHistory rows", ex);
+                   pressureHistoryError = DATABASE_ERROR;
+               }
+               if (gasFlowError == null && pressureHistoryError == null) {
+                   page.version = version;
+               }
+           }
+           gasFlowRows = page.gasFlowRows.snapshot();
+           pressureHistoryRows = page.pressureHistoryRows.snapshot();
+           gasFlowLast = page.gasFlowLast;
+           pressureHistoryLast = page.pressureHistoryLast;
+       }
+       out.write(FLEX_START).write(GAS_FLOW_TABLE_START);
+       RenderedRows.writeTo(out, gasFlowRows);
+       if (gasFlowError != null) {
+           out.writeText(gasFlowError);
+       }
+       out.write(TABLE_END);
+       out.write(FLEX_SPACER).write(PRESSURE_HISTORY_TABLE_START);
+       RenderedRows.writeTo(out, pressureHistoryRows);
+       if (pressureHistoryError != null) {
+           out.writeText(pressureHistoryError);
+       }
+       out.write(TABLE_END);
+       out.write(DIV_END);
+       if (gasFlowLast != gasFlowAfter || pressureHistoryLast != pressureHistoryAfter) {
+           out.write(NEXT_PAGE_START).write(gasFlowLast)
+                   .write(NEXT_PAGE_PRESSURE_HISTORY_AFTER).write(pressureHistoryLast)
+                   .write(NEXT_PAGE_SIZE).write(pageSize)
+                   .write(NEXT_PAGE_END);
+       }
    }
 
    /**
-    * Displays the GasFlow table.
+    * Renders GasFlow rows read from the database after the given id.
     *
-    * @param out PrintWriter to write HTML content to the response.
+    * @param rows Rows to append to.
+    * @param afterId Id of the last row already rendered.
+    * @param limit Maximum number of rows to read; nothing is read if not positive.
+    * @return Id of the last row rendered.
+    * @throws SQLException If the rows could not be read.
     */
-   private void showGasFlowTable(PrintWriter out) {
+   private int appendGasFlowRows(RenderedRows rows, int afterId, int limit) throws SQLException {
+       if (limit <= 0) {
+           return afterId;
+       }
+       HtmlWriter out = rows.writer();
        try {
-           List<List<Object>> gasFlowDataList = model.getGasFlowDataFromDatabase();
-           out.println("<table border='1'>");
-           out.println("<thead><tr><th>ID</th><th>Inflow</th><th>Outflow</th></tr></thead>");
-           out.println("<tbody>");
-
-           for (List<Object> row : gasFlowDataList) {
-               out.println("<tr>");
-               for (Object value : row) {
-                   out.println("<td>" + value + "</td>");
+           return model.readGasFlowFromDatabase(afterId, limit, (id, inflow, outflow) -> {
+               try {
+                   out.write(ROW_START).write(id)
+                           .write(CELL_BREAK).write(inflow)
+                           .write(CELL_BREAK).write(outflow)
+                           .write(ROW_END);
+                   rows.endRow();
+               } catch (IOException e) {
+                   throw new UncheckedIOException(e);
                }
-               out.println("</tr>");
-           }
-
-           out.println("</tbody>");
-           out.println("</table>");
-       } catch (SQLException ex) {
-           out.println(ex.getMessage());
+           });
+       } catch (UncheckedIOException ex) {
+           throw new IllegalStateException("Rows in memory could not be written", ex);
        }
    }
 
    /**
-    * Displays the PressureHistory table.
+    * Renders PressureHistory rows read from the database after the given id.
     *
-    * @param out PrintWriter to write HTML content to the response.
+    * @param rows Rows to append to.
+    * @param afterId Id of the last row already rendered.
+    * @param limit Maximum number of rows to read; nothing is read if not positive.
+    * @return Id of the last row rendered.
+    * @throws SQLException If the rows could not be read.
     */
-   private void showPressureHistoryTable(PrintWriter out) {
+   private int appendPressureHistoryRows(RenderedRows rows, int afterId, int limit) throws SQLException {
+       if (limit <= 0) {
+           return afterId;
+       }
+       HtmlWriter out = rows.writer();
        try {
-           List<List<Object>> pressureHistoryDataList = model.getPressureHistoryDataFromDatabase();
-           out.println("<table border='1'>");
-           out.println("<thead><tr><th>ID</th><th>Pressure</th><th>History Time</th><th>Calculation ID</th></tr></thead>");
-           out.println("<tbody>");
-
-           for (List<Object> row : pressureHistoryDataList) {
-               out.println("<tr>");
-               for (Object value : row) {
-                   out.println("<td>" + value + "</td>");
+           return model.readPressureHistoryFromDatabase(afterId, limit, (id, pressure, historyTime, calculationId) -> {
+               try {
+                   out.write(ROW_START).write(id)
+                           .write(CELL_BREAK).write(pressure)
+                           .write(CELL_BREAK).writeText(historyTime == null ? null : historyTime.toString())
+                           .write(CELL_BREAK).write(calculationId)
+                           .write(ROW_END);
+                   rows.endRow();
+               } catch (IOException e) {
+                   throw new UncheckedIOException(e);
                }
-               out.println("</tr>");
-           }
-
-           out.println("</tbody>");
-           out.println("</table>");
-       } catch (SQLException ex) {
-           out.println(ex.getMessage());
+           });
+       } catch (UncheckedIOException ex) {
+           throw new IllegalStateException("Rows in memory could not be written", ex);
        }
    }
 
@@ -139,71 +297,116 @@ public class View {
     }
     
     /**
-     * Prints the start of the HTML template to the provided PrintWriter.
+     * Prints the start of the HTML template to the provided HtmlWriter.
      *
-     * @param out The PrintWriter to which the HTML template start is written.
+     * @param out The HtmlWriter to which the HTML template start is written.
+     * @throws IOException If the response could not be written.
      */
-    public void printHtmlTemplateStart(PrintWriter out) {
-        out.println("<!DOCTYPE html>");
-        out.println("<html>");
-        out.println("<head>");
-        out.println("<title>History</title>");
-        out.println("</head>");
-        out.println("<body>");
+    public void printHtmlTemplateStart(HtmlWriter out) throws IOException {
+        out.write(TEMPLATE_START);
     }
     
      /**
-     * Prints the end of the HTML template to the provided PrintWriter.
+     * Prints the end of the HTML template to the provided HtmlWriter.
      *
-     * @param out The PrintWriter to which the HTML template end is written.
+     * @param out The HtmlWriter to which the HTML template end is written.
+     * @throws IOException If the response could not be written.
      */
-    public void printHtmlTemplateEnd(PrintWriter out) {
-        out.println("</body>");
-        out.println("</html>");
+    public void printHtmlTemplateEnd(HtmlWriter out) throws IOException {
+        out.write(TEMPLATE_END);
     }
     
     /**
-     * Displays the pressure history in a table format using the provided PrintWriter.
+     * Displays the pressure history in a table format using the provided HtmlWriter.
+     * Rows are rendered once and reused while the history is unchanged; after new samples
+     * only those are rendered and evicted ones dropped.
      *
-     * @param out The PrintWriter to which the pressure history is written.
+     * @param out The HtmlWriter to which the pressure history is written.
+     * @throws IOException If the response could not be written.
      */
-    public void showHistory(PrintWriter out) {
-        out.println("<table>");
-        out.println("<thead><tr><th>Pressure History</th></tr></thead>");
-        out.println("<tbody>");
-
-        model.getPressureHistory().forEach(pressure -> {
-            out.println("<tr><td>" + pressure + "</td></tr>");
-        });
-
-        out.println("</tbody>");
-        out.println("</table>");
+    public void showHistory(HtmlWriter out) throws IOException {
+        PressureHistory history = model.getPressureHistoryStore();
+        ResponseCache.HistoryRows cached = this.cache.history(history);
+        ByteBuffer rows;
+        synchronized (cached) {
+            this.updateHistoryRows(cached, history);
+            rows = cached.rows.snapshot();
+        }
+        out.write(HISTORY_TABLE_START);
+        RenderedRows.writeTo(out, rows);
+        out.write(TABLE_END);
+    }
+    
+    /**
+     * Brings the rendered rows of a history up to date, rendering only samples added since the last time
+     * unless the history was rewritten.
+     *
+     * @param cached The rendered rows, locked by the caller.
+     * @param history The history.
+     * @throws IOException Never, the rows are in memory.
+     */
+    private void updateHistoryRows(ResponseCache.HistoryRows cached, PressureHistory history) throws IOException {
+        long version;
+        long rewrites;
+        long sequence;
+        long firstSequence;
+        double[] added;
+        synchronized (history) {
+            version = history.getVersion();
+            if (version == cached.version) {
+                this.cache.countHit();
+                return;
+            }
+            rewrites = history.getRewriteCount();
+            sequence = history.getSequence();
+            firstSequence = sequence - history.size();
+            if (rewrites != cached.rewrites) {
+                cached.rows.clear();
+                cached.sequence = firstSequence;
+                this.cache.countRebuild();
+            } else {
+                this.cache.countUpdate();
+            }
+            added = history.toArraySince(cached.sequence);
+        }
+        cached.rows.dropRows(firstSequence - (cached.sequence - cached.rows.rows()));
+        HtmlWriter rows = cached.rows.writer();
+        for (double pressure : added) {
+            rows.write(ROW_START).write(pressure).write(ROW_END);
+            cached.rows.endRow();
+        }
+        cached.version = version;
+        cached.rewrites = rewrites;
+        cached.sequence = sequence;
     }
     
     /**
-     * Displays the average pressure using the provided PrintWriter.
+     * Displays the average pressure using the provided HtmlWriter.
      *
-     * @param out The PrintWriter to which the average pressure is written.
+     * @param out The HtmlWriter to which the average pressure is written.
+     * @throws IOException If the response could not be written.
      */
-    public void showAvgPressure(PrintWriter out) {
-        out.println("Average pressure: " + this.model.getAveragePressure());
+    public void showAvgPressure(HtmlWriter out) throws IOException {
+        out.write(AVERAGE_PRESSURE).write(this.model.getAveragePressure()).write(LINE_END);
     }
     
     /**
-     * Displays the minimum pressure using the provided PrintWriter.
+     * Displays the minimum pressure using the provided HtmlWriter.
      *
-     * @param out The PrintWriter to which the minimum pressure is written.
+     * @param out The HtmlWriter to which the minimum pressure is written.
+     * @throws IOException If the response could not be written.
      */
-    public void showMinPressure(PrintWriter out) {
-        out.println("Minimal pressure: " + this.model.getMinPressure());
+    public void showMinPressure(HtmlWriter out) throws IOException {
+        out.write(MIN_PRESSURE).write(this.model.getMinPressure()).write(LINE_END);
     }
     
     /**
-     * Displays the maximum  pressure using the provided PrintWriter.
+     * Displays the maximum  pressure using the provided HtmlWriter.
      *
-     * @param out The PrintWriter to which the maximum pressure is written.
+     * @param out The HtmlWriter to which the maximum pressure is written.
+     * @throws IOException If the response could not be written.
      */
-    public void showMaxPressure(PrintWriter out) {
-        out.println("Max pressure: " + this.model.getMaxPressure());
+    public void showMaxPressure(HtmlWriter out) throws IOException {
+        out.write(MAX_PRESSURE).write(this.model.getMaxPressure()).write(LINE_END);
     }
 }
@@ -5,5 +5,9 @@
 /**
  * The view package contain class {@link pl.polsl.view.View}
  * The {@link pl.polsl.view.View} class is responsible for user interface and output.s
+ * The {@link pl.polsl.view.JsonView} class renders the same data as JSON for the REST API.
+ * The {@link pl.polsl.view.HistoryExportWriter} implementations write the bulk history export
+ * in each {@link pl.polsl.view.ExportFormat}.
+ * The {@link pl.polsl.view.ResponseCache} keeps rendered history rows so unchanged pages aren't rendered again.
  */ 
 package pl.polsl.view;
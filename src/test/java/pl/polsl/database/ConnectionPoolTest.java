@@ -0,0 +1,122 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConnectionPool class, run against an in-memory Derby database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ConnectionPoolTest {
+
+    /** URL of the in-memory test database. */
+    private static final String URL = "jdbc:derby:memory:poolTest;create=true";
+
+    /**
+     * Tests that returned connections and their prepared statements are reused.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testReusesConnectionsAndStatements() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool(URL, "app", "app", 2, 1000, 30000)) {
+            try (Connection connection = pool.getConnection();
+                    PreparedStatement statement = connection.prepareStatement("VALUES 1")) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    assertTrue(resultSet.next(), "Query should return a row");
+                }
+            }
+            try (Connection connection = pool.getConnection();
+                    PreparedStatement statement = connection.prepareStatement("VALUES 1")) {
+                assertEquals(1, pool.getPreparedStatements(), "Prepared statement was not cached");
+            }
+            assertEquals(1, pool.getOpenConnections(), "Returned connection was not reused");
+        }
+    }
+
+    /**
+     * Tests that borrowing fails once every connection is in use.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testBoundedSize() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool(URL, "app", "app", 1, 50, 30000);
+                Connection connection = pool.getConnection()) {
+            assertThrows(SQLException.class, pool::getConnection, "Pool should not open more connections than its size");
+        }
+    }
+
+    /**
+     * Tests that a connection returned in the middle of a transaction is rolled back and reset.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testResetsReturnedConnection() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool(URL, "app", "app", 1, 1000, 30000)) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE PoolReset (id INT)");
+                connection.setAutoCommit(false);
+                statement.executeUpdate("INSERT INTO PoolReset VALUES (1)");
+            }
+            try (Connection connection = pool.getConnection();
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM PoolReset")) {
+                assertTrue(connection.getAutoCommit(), "Auto-commit was not restored");
+                resultSet.next();
+                assertEquals(0, resultSet.getInt(1), "Unfinished transaction was not rolled back");
+                statement.executeUpdate("DROP TABLE PoolReset");
+            }
+        }
+    }
+
+    /**
+     * Tests that closing a statement or returning its connection closes the result sets left open,
+     * and that handles can't be unwrapped to the physical connection or statement.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testClosesLeftoverResultSets() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool(URL, "app", "app", 1, 1000, 30000)) {
+            ResultSet leftByStatement;
+            ResultSet leftByConnection;
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement statement = connection.prepareStatement("VALUES 1");
+                leftByStatement = statement.executeQuery();
+                statement.close();
+                assertTrue(leftByStatement.isClosed(), "Closing the statement should close its result set");
+                assertThrows(SQLException.class, statement::executeQuery, "Closed handle should not be usable");
+
+                leftByConnection = connection.prepareStatement("VALUES 2").executeQuery();
+                assertThrows(SQLException.class, () -> connection.unwrap(Connection.class),
+                        "Connection handle should not be unwrapped");
+                assertFalse(connection.isWrapperFor(Connection.class), "Connection handle should not be a wrapper");
+            }
+            assertTrue(leftByConnection.isClosed(), "Returning the connection should close open result sets");
+            try (Connection connection = pool.getConnection();
+                    PreparedStatement statement = connection.prepareStatement("VALUES 2");
+                    ResultSet resultSet = statement.executeQuery()) {
+                assertTrue(resultSet.next(), "Cached statement should still work for the next borrower");
+                assertThrows(SQLException.class, () -> statement.unwrap(PreparedStatement.class),
+                        "Statement handle should not be unwrapped");
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HistoryReader class, run against an in-memory Derby database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class HistoryReaderTest {
+
+    /**
+     * Tests that keyset pagination walks the whole table page by page.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testKeysetPagination() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:historyReaderTest;create=true", "app", "app")) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE GasFlow "
+                    + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+                statement.executeUpdate("INSERT INTO GasFlow (inflow, outflow) VALUES (1, 0), (2, 0), (3, 0), (4, 0), (5, 0)");
+            }
+            HistoryReader reader = new HistoryReader(pool, 2);
+            List<Double> inflows = new ArrayList<>();
+            int cursor = reader.readGasFlow(0, 2, (id, inflow, outflow) -> inflows.add(inflow));
+            assertEquals(2, cursor, "Cursor should point at the last row of the first page");
+            cursor = reader.readGasFlow(cursor, 2, (id, inflow, outflow) -> inflows.add(inflow));
+            cursor = reader.readGasFlow(cursor, 2, (id, inflow, outflow) -> inflows.add(inflow));
+            assertEquals(cursor, reader.readGasFlow(cursor, 2, (id, inflow, outflow) -> fail("No rows expected")),
+                    "Cursor should not move past the end of the table");
+            assertEquals(Arrays.asList(1.0, 2.0, 3.0, 4.0, 5.0), inflows, "Pages don't cover the table in order");
+        }
+    }
+
+    /**
+     * Tests that the joined export query honours id and time ranges and reports missing flows as NaN.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testJoinedHistoryRanges() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:joinedHistoryTest;create=true", "app", "app")) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE GasFlow "
+                    + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+                statement.executeUpdate("CREATE TABLE PressureHistory (id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, "
+                    + "pressure DOUBLE, history_time TIMESTAMP, calculation_id INT)");
+                statement.executeUpdate("INSERT INTO GasFlow (inflow, outflow) VALUES (1, 2)");
+                statement.executeUpdate("INSERT INTO PressureHistory (pressure, history_time, calculation_id) VALUES "
+                    + "(10, {ts '2024-01-01 00:00:00'}, 1), (11, {ts '2024-01-02 00:00:00'}, 7), "
+                    + "(12, {ts '2024-01-03 00:00:00'}, 1), (13, {ts '2024-01-04 00:00:00'}, 1)");
+            }
+            HistoryReader reader = new HistoryReader(pool, 2);
+            List<Double> pressures = new ArrayList<>();
+            List<Double> inflows = new ArrayList<>();
+            long from = Timestamp.valueOf("2024-01-02 00:00:00").getTime();
+            long count = reader.readJoinedHistory(0, 3, from, HistoryReader.MAX_TIME,
+                    (id, pressure, historyTime, calculationId, inflow, outflow) -> {
+                        pressures.add(pressure);
+                        inflows.add(inflow);
+                    });
+            assertEquals(2, count, "Wrong number of rows in the range");
+            assertEquals(Arrays.asList(11.0, 12.0), pressures, "Range should skip early and high-id rows");
+            assertTrue(Double.isNaN(inflows.get(0)), "Missing GasFlow row should give NaN");
+            assertEquals(1.0, inflows.get(1), "Joined inflow is wrong");
+        }
+    }
+
+    /**
+     * Tests that an export longer than one page reads every row in order and returns the connection
+     * to the pool before the handler sees the rows.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testJoinedHistoryPages() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:pagedExportTest;create=true", "app", "app")) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE GasFlow "
+                    + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+                statement.executeUpdate("CREATE TABLE PressureHistory (id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, "
+                    + "pressure DOUBLE, history_time TIMESTAMP, calculation_id INT)");
+                for (int i = 0; i < 2 * HistoryReader.EXPORT_PAGE_SIZE + 1; i++) {
+                    statement.addBatch("INSERT INTO PressureHistory (pressure, history_time) VALUES ("
+                        + i + ", {ts '2024-01-01 00:00:00'})");
+                }
+                statement.executeBatch();
+            }
+            HistoryReader reader = new HistoryReader(pool, 100);
+            List<Integer> ids = new ArrayList<>();
+            long count = reader.readJoinedHistory(0, Integer.MAX_VALUE, 0, HistoryReader.MAX_TIME,
+                    (id, pressure, historyTime, calculationId, inflow, outflow) -> {
+                        assertEquals(pool.getOpenConnections(), pool.getIdleConnections(),
+                                "Connection should be back in the pool while rows are handled");
+                        ids.add(id);
+                    });
+            assertEquals(2 * HistoryReader.EXPORT_PAGE_SIZE + 1, count, "Wrong number of exported rows");
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i) > ids.get(i - 1), "Rows should come in id order without repeats");
+            }
+        }
+    }
+
+    /**
+     * Tests the time-range and calculation queries.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testTimeAndCalculationQueries() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:indexedHistoryTest;create=true", "app", "app")) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE PressureHistory (id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, "
+                    + "pressure DOUBLE, history_time TIMESTAMP, calculation_id INT)");
+                statement.executeUpdate("CREATE INDEX PressureHistoryTimeIdx ON PressureHistory (history_time, id)");
+                statement.executeUpdate("INSERT INTO PressureHistory (pressure, history_time, calculation_id) VALUES "
+                    + "(10, {ts '2024-01-03 00:00:00'}, 1), (11, {ts '2024-01-01 00:00:00'}, 2), "
+                    + "(12, {ts '2024-01-02 00:00:00'}, 1), (13, {ts '2024-01-04 00:00:00'}, 2)");
+            }
+            HistoryReader reader = new HistoryReader(pool, 2);
+            List<Double> pressures = new ArrayList<>();
+            long from = Timestamp.valueOf("2024-01-01 00:00:00").getTime();
+            long to = Timestamp.valueOf("2024-01-04 00:00:00").getTime();
+            HistoryTimeKey key = reader.readPressureHistoryByTime(from, to, null, 10,
+                    (id, pressure, historyTime, calculationId) -> pressures.add(pressure));
+            assertNull(key, "Whole range in one page shouldn't return a continuation key");
+            assertEquals(Arrays.asList(11.0, 12.0, 10.0), pressures, "Rows should come in time order");
+
+            pressures.clear();
+            key = reader.readPressureHistoryByTime(from, to, null, 2,
+                    (id, pressure, historyTime, calculationId) -> pressures.add(pressure));
+            assertNotNull(key, "Full page should return a continuation key");
+            assertEquals(Timestamp.valueOf("2024-01-02 00:00:00").getTime(), key.getTime(), "Key should be the last row");
+            key = reader.readPressureHistoryByTime(from, to, key, 2,
+                    (id, pressure, historyTime, calculationId) -> pressures.add(pressure));
+            assertNull(key, "Last page shouldn't return a continuation key");
+            assertEquals(Arrays.asList(11.0, 12.0, 10.0), pressures, "Pages should continue after the key");
+
+            pressures.clear();
+            reader.readPressureHistoryByCalculation(2, (id, pressure, historyTime, calculationId) -> pressures.add(pressure));
+            assertEquals(Arrays.asList(11.0, 13.0), pressures, "Wrong rows of the calculation");
+        }
+    }
+}
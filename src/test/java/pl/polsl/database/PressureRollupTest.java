@@ -0,0 +1,166 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PressureRollup class, run against an in-memory Derby database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureRollupTest {
+
+    /**
+     * Tests that batches written by the queue are merged into the existing buckets
+     * and that the resolution is picked from the length of the range.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testIncrementalRollups() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:rollupTest;create=true", "app", "app")) {
+            try (Connection connection = pool.getConnection()) {
+                SchemaMigrator.migrate(connection);
+            }
+
+            long hour = 3600000L * 100000;
+            WriteBehindQueue queue = new WriteBehindQueue(pool, 1000, 3, 50, 1000, true);
+            for (int minute = 0; minute < 120; minute++) {
+                for (int second = 0; second < 60; second += 30) {
+                    queue.submit(new GasFlowRecord(0, 0, minute + second / 30, hour + minute * 60000L + second * 1000L));
+                }
+            }
+            queue.close();
+            assertEquals(240, queue.getWrittenRecords(), "Not every record was written");
+
+            PressureRollup rollup = new PressureRollup(pool);
+            List<double[]> minutes = new ArrayList<>();
+            RollupResolution resolution = rollup.read(hour, hour + 10 * 60000L, 100,
+                    (start, min, max, average, count, last) -> minutes.add(new double[]{min, max, average, count, last}));
+            assertEquals(RollupResolution.MINUTE, resolution, "Short range should use minute buckets");
+            assertEquals(10, minutes.size(), "Wrong number of minute buckets");
+            assertArrayEquals(new double[]{3, 4, 3.5, 2, 4}, minutes.get(3), "Wrong aggregate of a minute merged across batches");
+
+            List<double[]> hours = new ArrayList<>();
+            resolution = rollup.read(hour, hour + 2 * 3600000L, 100,
+                    (start, min, max, average, count, last) -> hours.add(new double[]{min, max, average, count, last}));
+            assertEquals(RollupResolution.HOUR, resolution, "Two hours in 100 buckets should use hour buckets");
+            assertEquals(2, hours.size(), "Wrong number of hour buckets");
+            assertArrayEquals(new double[]{0, 60, 30, 120, 60}, hours.get(0), "Wrong aggregate of the first hour");
+        }
+    }
+
+    /**
+     * Tests that migrating a database with history written before the rollup tables existed
+     * fills the rollups from it.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testBackfillFromExistingHistory() throws SQLException
+    {
+        long hour = 3600000L * 200000;
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:rollupBackfillTest;create=true", "app", "app")) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE GasFlow "
+                    + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+                statement.executeUpdate("CREATE TABLE PressureHistory "
+                    + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, pressure DOUBLE,"
+                    + "history_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, calculation_id INT,"
+                    + "FOREIGN KEY (calculation_id) REFERENCES GasFlow(id))");
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO PressureHistory (pressure, history_time) VALUES (?, ?)")) {
+                    for (int minute = 0; minute < 90; minute++) {
+                        insert.setDouble(1, minute);
+                        insert.setTimestamp(2, new Timestamp(hour + minute * 60000L));
+                        insert.executeUpdate();
+                    }
+                }
+                assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.migrate(connection), "Schema should be migrated");
+            }
+
+            PressureRollup rollup = new PressureRollup(pool);
+            List<double[]> minutes = new ArrayList<>();
+            rollup.read(RollupResolution.MINUTE, hour, hour + 2 * 3600000L,
+                    (start, min, max, average, count, last) -> minutes.add(new double[]{min, max, average, count, last}));
+            assertEquals(90, minutes.size(), "Every minute with history should be backfilled");
+            List<double[]> hours = new ArrayList<>();
+            rollup.read(RollupResolution.HOUR, hour, hour + 2 * 3600000L,
+                    (start, min, max, average, count, last) -> hours.add(new double[]{min, max, average, count, last}));
+            assertEquals(2, hours.size(), "Wrong number of backfilled hour buckets");
+            assertArrayEquals(new double[]{0, 59, 29.5, 60, 59}, hours.get(0), "Wrong backfilled first hour");
+            assertArrayEquals(new double[]{60, 89, 74.5, 30, 89}, hours.get(1), "Wrong backfilled second hour");
+        }
+    }
+
+    /**
+     * Tests that the backfill commits day by day and, run again after more history arrived,
+     * recomputes the last filled day and adds the new ones without touching the earlier days.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testBackfillResumesFromLastDay() throws SQLException
+    {
+        long day = 86400000L * 20000;
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:rollupResumeTest;create=true", "app", "app");
+                Connection connection = pool.getConnection()) {
+            SchemaMigrator.migrate(connection);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO PressureHistory (pressure, history_time) VALUES (?, ?)")) {
+                insertSamples(insert, day, 3);
+                insertSamples(insert, day + 2 * 86400000L, 3);
+                connection.setAutoCommit(false);
+                PressureRollup.backfill(connection);
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("UPDATE PressureRollupDay SET sample_count = 99 WHERE bucket_start = "
+                            + "TIMESTAMP('" + new Timestamp(day) + "')");
+                }
+                insertSamples(insert, day + 2 * 86400000L + 3600000L, 2);
+                insertSamples(insert, day + 5 * 86400000L, 4);
+                connection.setAutoCommit(false);
+                PressureRollup.backfill(connection);
+                connection.setAutoCommit(true);
+            }
+
+            List<double[]> days = new ArrayList<>();
+            new PressureRollup(pool).read(RollupResolution.DAY, day, day + 10 * 86400000L,
+                    (start, min, max, average, count, last) -> days.add(new double[]{count}));
+            assertEquals(3, days.size(), "Days without history shouldn't get buckets");
+            assertEquals(99, days.get(0)[0], "Days before the last filled one shouldn't be recomputed");
+            assertEquals(5, days.get(1)[0], "Last filled day should be recomputed with its new rows");
+            assertEquals(4, days.get(2)[0], "New day should be filled");
+        }
+    }
+
+    /**
+     * Inserts PressureHistory rows one minute apart.
+     *
+     * @param insert Statement inserting a pressure and a time.
+     * @param start Time of the first row in milliseconds.
+     * @param count Number of rows.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static void insertSamples(PreparedStatement insert, long start, int count) throws SQLException
+    {
+        for (int i = 0; i < count; i++) {
+            insert.setDouble(1, i);
+            insert.setTimestamp(2, new Timestamp(start + i * 60000L));
+            insert.executeUpdate();
+        }
+    }
+}
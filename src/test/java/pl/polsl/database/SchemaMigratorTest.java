@@ -0,0 +1,73 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SchemaMigrator class, run against in-memory Derby databases.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class SchemaMigratorTest {
+
+    /**
+     * Tests that a database created before versioning is brought up to date, and that a second
+     * migration of the same URL is served from the cache without a connection.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testMigratesLegacyDatabaseOnce() throws SQLException
+    {
+        String url = "jdbc:derby:memory:schemaMigratorTest;create=true";
+        try (ConnectionPool pool = new ConnectionPool(url, "app", "app")) {
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE GasFlow "
+                    + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+                statement.executeUpdate("INSERT INTO GasFlow (inflow, outflow) VALUES (1, 2)");
+            }
+            assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.migrate(url, pool), "Schema should be migrated");
+
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM GasFlow")) {
+                    resultSet.next();
+                    assertEquals(1, resultSet.getInt(1), "Existing rows should survive the migration");
+                }
+                statement.executeUpdate("INSERT INTO PressureHistory (pressure, calculation_id) VALUES (1013.25, 1)");
+                try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM SchemaVersion")) {
+                    resultSet.next();
+                    assertEquals(SchemaMigrator.CURRENT_VERSION, resultSet.getInt(1), "Every migration should be recorded");
+                }
+                assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.migrate(connection),
+                        "Migrating an up-to-date schema should change nothing");
+            }
+
+            AtomicInteger connections = new AtomicInteger();
+            assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.migrate(url, () -> {
+                connections.incrementAndGet();
+                return pool.getConnection();
+            }), "Cached version is wrong");
+            assertEquals(0, connections.get(), "Cached migration should not connect");
+        }
+    }
+
+    /**
+     * Tests that an unreachable database is reported instead of being hidden.
+     */
+    @Test
+    public void testUnreachableDatabaseFails()
+    {
+        assertThrows(SQLException.class, () -> SchemaMigrator.migrate("jdbc:derby:memory:missingDatabase",
+                () -> { throw new SQLException("Connection refused"); }), "Unreachable database should fail");
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for WriteBehindQueue class, run against an in-memory Derby database.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class WriteBehindQueueTest {
+
+    /**
+     * Tests that every queued record is written with its PressureHistory row
+     * pointing at the matching GasFlow row once the queue is closed.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testFlushesOnClose() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:writeBehindTest;create=true", "app", "app")) {
+            createTables(pool);
+
+            WriteBehindQueue queue = new WriteBehindQueue(pool, 100, 4, 50, 100);
+            for (int i = 0; i < 10; i++) {
+                queue.submit(new GasFlowRecord(i, 0, 1000 + i, System.currentTimeMillis()));
+            }
+            queue.close();
+            assertEquals(10, queue.getWrittenRecords(), "Not every record was written on close");
+            assertThrows(SQLException.class,
+                    () -> queue.submit(new GasFlowRecord(0, 0, 0, 0)), "Closed queue should reject records");
+
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT g.inflow, p.pressure FROM PressureHistory p "
+                            + "JOIN GasFlow g ON p.calculation_id = g.id ORDER BY p.id")) {
+                int rows = 0;
+                while (resultSet.next()) {
+                    assertEquals(resultSet.getDouble(1) + 1000, resultSet.getDouble(2), "Row linked to wrong GasFlow");
+                    rows++;
+                }
+                assertEquals(10, rows, "Wrong number of joined rows");
+            }
+        }
+    }
+
+    /**
+     * Tests that two queues writing to the same tables at once link every PressureHistory row
+     * to its own GasFlow row, with no table lock keeping them apart.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testConcurrentQueuesLinkOwnRows() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:writeBehindConcurrentTest;create=true", "app", "app")) {
+            createTables(pool);
+            WriteBehindQueue first = new WriteBehindQueue(pool, 100, 4, 10, 1000);
+            WriteBehindQueue second = new WriteBehindQueue(pool, 100, 4, 10, 1000);
+            for (int i = 0; i < 40; i++) {
+                first.submit(new GasFlowRecord(i, 0, 1000 + i, System.currentTimeMillis()));
+                second.submit(new GasFlowRecord(100 + i, 0, 1100 + i, System.currentTimeMillis()));
+            }
+            first.close();
+            second.close();
+
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT g.inflow, p.pressure FROM PressureHistory p "
+                            + "JOIN GasFlow g ON p.calculation_id = g.id")) {
+                int rows = 0;
+                while (resultSet.next()) {
+                    assertEquals(resultSet.getDouble(1) + 1000, resultSet.getDouble(2), "Row linked to wrong GasFlow");
+                    rows++;
+                }
+                assertEquals(80, rows, "Wrong number of joined rows");
+            }
+        }
+    }
+
+    /**
+     * Tests that flush returns once the records submitted before it are written, while the queue stays open.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testFlushWaitsForSubmittedRecords() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:writeBehindFlushTest;create=true", "app", "app")) {
+            createTables(pool);
+            try (WriteBehindQueue queue = new WriteBehindQueue(pool, 100, 4, 50, 100)) {
+                for (int i = 0; i < 10; i++) {
+                    queue.submit(new GasFlowRecord(i, 0, 1000 + i, System.currentTimeMillis()), 1000);
+                }
+                queue.flush();
+                assertEquals(10, queue.getWrittenRecords(), "Flush returned before the records were written");
+                queue.flush();
+            }
+        }
+    }
+
+    /**
+     * Tests that a batch the database rejects for its data is dropped at once
+     * instead of blocking the records queued behind it.
+     *
+     * @throws SQLException If an SQL exception occurs.
+     */
+    @Test
+    public void testRejectedBatchIsDropped() throws SQLException
+    {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:writeBehindRejectTest;create=true", "app", "app")) {
+            createTables(pool);
+            try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE PressureHistory ADD CONSTRAINT pressure_limit CHECK (pressure < 5000)");
+            }
+            try (WriteBehindQueue queue = new WriteBehindQueue(pool, 100, 1, 10, 100)) {
+                long start = System.currentTimeMillis();
+                queue.submit(new GasFlowRecord(1, 0, 9000, start));
+                queue.submit(new GasFlowRecord(2, 0, 1000, start));
+                assertThrows(SQLException.class, queue::flush, "Flush should report the dropped record");
+                assertEquals(1, queue.getDroppedRecords(), "Rejected record should be dropped");
+                assertEquals(1, queue.getWrittenRecords(), "Record behind the rejected one should be written");
+                assertTrue(System.currentTimeMillis() - start < 5000, "Rejected batch shouldn't be retried");
+            }
+        }
+    }
+
+    /**
+     * Creates the GasFlow and PressureHistory tables.
+     *
+     * @param pool Pool of connections to the database.
+     * @throws SQLException If an SQL exception occurs.
+     */
+    private static void createTables(ConnectionPool pool) throws SQLException
+    {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE GasFlow "
+                + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, inflow DOUBLE, outflow DOUBLE)");
+            statement.executeUpdate("CREATE TABLE PressureHistory "
+                + "(id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY, pressure DOUBLE,"
+                + "history_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, calculation_id INT,"
+                + "FOREIGN KEY (calculation_id) REFERENCES GasFlow(id))");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.metrics;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that the buckets cover every value without gaps and stay within 1/16 of their values.
+     */
+    @Test
+    public void testBucketsAreContiguous()
+    {
+        assertEquals(0, LatencyHistogram.lowerBound(0), "First bucket should start at 0");
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            assertEquals(LatencyHistogram.upperBound(i - 1) + 1, lower, "Gap before bucket " + i);
+            assertEquals(i, LatencyHistogram.bucketOf(lower), "Lower bound of bucket " + i + " maps elsewhere");
+            assertTrue(LatencyHistogram.upperBound(i) - lower <= Math.max(0, lower / LatencyHistogram.SUB_BUCKETS),
+                    "Bucket " + i + " is too wide");
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE), "Largest value has no bucket");
+    }
+
+    /**
+     * Tests quantiles of uniformly spread latencies.
+     */
+    @Test
+    public void testQuantiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100000, histogram.getCount(), "Wrong count");
+        assertEquals(100000000L, histogram.getMax(), "Wrong maximum");
+        assertEquals(50000000, histogram.getValueAtQuantile(0.5), 50000000 / 16.0, "Median is off by more than a bucket");
+        assertEquals(99000000, histogram.getValueAtQuantile(0.99), 99000000 / 16.0, "99th percentile is off by more than a bucket");
+        assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.5), "Empty histogram should give 0");
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.metrics;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MetricsRegistry class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class MetricsRegistryTest {
+
+    /**
+     * Tests the Prometheus text of counters, gauges and labelled summaries.
+     */
+    @Test
+    public void testPrometheusText()
+    {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("events_total", "Events").add(3);
+        metrics.gauge("pressure_hpa", "Pressure", () -> 1013.25);
+        metrics.timer("call_seconds", "Calls", "operation", "save").record(2000000);
+        assertSame(metrics.timer("call_seconds", "Calls", "operation", "save"),
+                metrics.timer("call_seconds", "Calls", "operation", "save"), "Series should be reused");
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text.contains("# TYPE events_total counter\nevents_total 3\n"), "Wrong counter:\n" + text);
+        assertTrue(text.contains("# TYPE pressure_hpa gauge\npressure_hpa 1013.25\n"), "Wrong gauge:\n" + text);
+        assertTrue(text.contains("# TYPE call_seconds summary\n"), "Missing summary type:\n" + text);
+        assertTrue(text.contains("call_seconds_count{operation=\"save\"} 1\n"), "Wrong summary count:\n" + text);
+        assertTrue(text.contains("call_seconds{operation=\"save\",quantile=\"0.5\"} 0.0019"), "Wrong quantile:\n" + text);
+    }
+
+    /**
+     * Tests that label values above the limit share one series.
+     */
+    @Test
+    public void testLabelValuesAreCapped()
+    {
+        MetricsRegistry metrics = new MetricsRegistry();
+        for (int i = 0; i < MetricsRegistry.MAX_LABEL_VALUES + 10; i++) {
+            metrics.counter("requests_total", "Requests", "action", "action" + i).increment();
+        }
+        assertTrue(metrics.toPrometheusText().contains("requests_total{action=\"other\"} 10\n"),
+                "Extra label values should be counted together");
+    }
+}
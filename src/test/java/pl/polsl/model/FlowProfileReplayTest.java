@@ -0,0 +1,73 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FlowProfileReplay class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class FlowProfileReplayTest {
+
+    /**
+     * Tests that the profile drives the pressure in simulated time, finds the overflow
+     * and hands the results over in batches.
+     *
+     * @throws IOException If the profile could not be read.
+     * @throws SQLException Never, the handler doesn't write to a database.
+     */
+    @Test
+    public void testReplayInSimulatedTime() throws IOException, SQLException
+    {
+        String profile = "time,inflow,outflow\n"
+                + "# start filling\n"
+                + "0,10,0\n"
+                + "360000,20,0\n"
+                + "\n"
+                + "540000,0,5\n";
+        FlowProfileReplay replay = new FlowProfileReplay(new PressureSolver(new EulerIntegrator(), 1), 1, 100, 2);
+        List<Integer> batchSizes = new ArrayList<>();
+        List<Double> pressures = new ArrayList<>();
+        ReplayResult result = replay.replay(new BufferedReader(new StringReader(profile)), 0,
+                (times, inflows, outflows, values, count) -> {
+                    batchSizes.add(count);
+                    for (int i = 0; i < count; i++) {
+                        pressures.add(values[i]);
+                    }
+                });
+
+        assertEquals(Arrays.asList(2, 1), batchSizes, "Events should be handed over in batches");
+        assertEquals(Arrays.asList(0.0, 60.0, 120.0), pressures, "Wrong pressures at the events");
+        assertEquals(3, result.getEvents(), "Wrong number of events");
+        assertEquals(1, result.getOverflows(), "Wrong number of overflowing intervals");
+        assertEquals(480000, result.getFirstOverflowTime(), 1, "Overflow should happen 2 minutes after the second event");
+        assertEquals(120, result.getPeakPressure(), 1e-9, "Wrong peak pressure");
+        assertEquals(540000, result.getEndTime(), "End time should come from the profile");
+    }
+
+    /**
+     * Tests that a profile going back in time is rejected with its line number.
+     */
+    @Test
+    public void testRejectsTimeTravel()
+    {
+        FlowProfileReplay replay = new FlowProfileReplay(new PressureSolver(new EulerIntegrator(), 1), 1, 100, 16);
+        IOException e = assertThrows(IOException.class, () -> replay.replay(
+                new BufferedReader(new StringReader("1000,1,0\n500,1,0\n")), 0,
+                (times, inflows, outflows, values, count) -> { }));
+        assertTrue(e.getMessage().contains("line 2"), "Error should name the line");
+    }
+}
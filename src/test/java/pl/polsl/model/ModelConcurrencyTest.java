@@ -0,0 +1,89 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-threaded stress test for Model class.
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ModelConcurrencyTest {
+
+    /** Number of threads updating the pressure. */
+    private static final int WRITERS = 8;
+
+    /** Number of pressure updates made by each writer. */
+    private static final int UPDATES_PER_WRITER = 20000;
+
+    /**
+     * Tests that concurrent pressure updates integrate every time interval exactly once,
+     * record every update in the history, and that concurrent readers never fail.
+     *
+     * @throws Exception If a worker thread fails.
+     */
+    @Test
+    public void testConcurrentPressureIntegration() throws Exception
+    {
+        Model model = new Model(WRITERS * UPDATES_PER_WRITER, null);
+        model.setGasInflow(1.0);
+        model.startTime();
+        TankState start = model.getState();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int i = 0; i < WRITERS; i++) {
+                writers.add(executor.submit(() -> {
+                    startSignal.await();
+                    for (int j = 0; j < UPDATES_PER_WRITER; j++) {
+                        model.updatePressure();
+                    }
+                    return null;
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                startSignal.await();
+                while (writing.get()) {
+                    model.getMaxPressure();
+                    model.getAveragePressure();
+                    for (double pressure : model.getPressureHistory()) {
+                        assertTrue(pressure >= start.getPressure(), "History contains a value from before the start");
+                    }
+                }
+                return null;
+            });
+
+            startSignal.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            reader.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        TankState end = model.getState();
+        double expected = start.getPressure()
+                + (1.0 / model.getGasConductivityFactor()) * (end.getTime() - start.getTime()) / 60000;
+        assertEquals(expected, end.getPressure(), 1e-6, "Concurrent updates lost or repeated some time intervals");
+        assertEquals(WRITERS * UPDATES_PER_WRITER, model.getPressureHistory().size(), "Some history updates were lost");
+        assertEquals(end.getPressure(), model.getMaxPressure(), 1e-9, "Max pressure should be the last integrated value");
+    }
+}
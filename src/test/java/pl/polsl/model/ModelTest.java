@@ -4,6 +4,9 @@
  */
 package pl.polsl.model;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.stream.Stream;
@@ -156,7 +159,28 @@ public class ModelTest {
         String fileName = "testPressureHistory.csv"; // You can use any file extension
         model.savePressureHistory(fileName);
         model.readPressureHistory(fileName);
-        assertEquals(testPressureHistory, model.getPressureHistory(), "After saving and reading pressure history is not the same");
+        ArrayList<Double> expected = new ArrayList<>(testPressureHistory);
+        expected.addAll(testPressureHistory);
+        assertEquals(expected, model.getPressureHistory(), "Reading should append the saved values to the stored ones");
 }
 
+    /**
+     * Tests that closing the Model writes evicted samples still buffered to the spill file.
+     *
+     * @throws IOException If the spill file can't be created or read.
+     */
+    @Test
+    public void testCloseFlushesSpill() throws IOException
+    {
+        File spillFile = File.createTempFile("modelSpill", ".txt");
+        spillFile.deleteOnExit();
+        model = new Model(2, spillFile.getPath());
+        model.getPressureHistoryStore().add(1000L, 1.0);
+        model.getPressureHistoryStore().add(2000L, 2.0);
+        model.getPressureHistoryStore().add(3000L, 3.0);
+        assertEquals(0, Files.size(spillFile.toPath()), "Evicted sample shouldn't be written before the chunk is full");
+        model.close();
+        assertEquals(Arrays.asList("1.0"), Files.readAllLines(spillFile.toPath()), "Closing didn't write the spill buffer");
+    }
+
 }
\ No newline at end of file
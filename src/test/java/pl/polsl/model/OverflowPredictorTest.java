@@ -0,0 +1,103 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.*;
+import pl.polsl.metrics.MetricsRegistry;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for OverflowPredictor and TimerWheel classes
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class OverflowPredictorTest {
+
+    /**
+     * Tests that the wheel fires timeouts in their tick, never early, across revolutions and after cancelling.
+     */
+    @Test
+    public void testTimerWheel()
+    {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 8, 0);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule("soon", 25);
+        wheel.schedule("next revolution", 125);
+        TimerWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 25);
+        wheel.schedule("late", 1000);
+        wheel.cancel(cancelled);
+        assertFalse(cancelled.isPending(), "Cancelled timeout shouldn't be pending");
+
+        assertEquals(0, wheel.advance(29, fired::add), "Timeout fired before its deadline");
+        assertEquals(1, wheel.advance(30, fired::add), "Due timeout didn't fire");
+        assertEquals(0, wheel.advance(110, fired::add), "Timeout of the next revolution fired early");
+        assertEquals(1, wheel.advance(130, fired::add), "Timeout of the next revolution didn't fire");
+        assertEquals(1, wheel.advance(5000, fired::add), "Timeout passed in a long jump didn't fire");
+        assertEquals(Arrays.asList("soon", "next revolution", "late"), fired, "Wrong fired timeouts");
+        assertEquals(0, wheel.size(), "No timeout should be left");
+    }
+
+    /**
+     * Tests the closed-form times to overflow and to empty.
+     */
+    @Test
+    public void testTimeToCrossing()
+    {
+        double factor = 2.0;
+        TankState rising = new TankState(5.0, 1.0, 100.0, 0);
+        assertEquals(450.0, OverflowPredictor.minutesToOverflow(rising, factor, 1000.0), 1e-9, "Wrong time to overflow");
+        assertEquals(Double.POSITIVE_INFINITY, OverflowPredictor.minutesToEmpty(rising, factor), "Rising tank can't empty");
+
+        TankState falling = new TankState(1.0, 3.0, 100.0, 0);
+        assertEquals(100.0, OverflowPredictor.minutesToEmpty(falling, factor), 1e-9, "Wrong time to empty");
+        OverflowAlert alert = OverflowPredictor.predict("t", falling, factor, 1000.0);
+        assertEquals(OverflowAlert.Kind.EMPTY, alert.getKind(), "Falling tank should be predicted empty");
+        assertEquals(6000000L, alert.getCrossingTime(), "Wrong predicted crossing time");
+        assertNull(OverflowPredictor.predict("t", new TankState(2.0, 2.0, 100.0, 0), factor, 1000.0),
+                "Balanced flows shouldn't predict anything");
+    }
+
+    /**
+     * Tests that a Model reports flow changes, a new prediction replaces the pending one,
+     * and the alert arrives the warning lead before the crossing.
+     */
+    @Test
+    public void testAlertBeforeOverflow()
+    {
+        Model model = new Model(16, null);
+        try (OverflowPredictor predictor = new OverflowPredictor(1000, 10, 64, new MetricsRegistry())) {
+            List<OverflowAlert> alerts = new ArrayList<>();
+            predictor.addListener(alerts::add);
+            model.setOverflowPredictor(predictor, "tank");
+            assertEquals(0, predictor.getPendingCount(), "Tank without flows shouldn't have an alert");
+
+            model.setGasInflow(10.0);
+            assertEquals(1, predictor.getPendingCount(), "Rising tank should have an alert");
+
+            model.setGasOutflow(4.0);
+            assertEquals(1, predictor.getPendingCount(), "New prediction should replace the pending one");
+            TankState state = model.getState();
+            long crossing = state.getTime() + Math.round(OverflowPredictor.minutesToOverflow(
+                    state, model.getGasConductivityFactor(), model.getMaxAllowedPressure()) * 60000);
+
+            assertEquals(0, predictor.advance(crossing - 1100), "Alert delivered before the warning lead");
+            assertEquals(1, predictor.advance(crossing - 990), "Alert not delivered at the warning lead");
+            assertEquals(1, alerts.size(), "Exactly one alert should be delivered");
+            assertEquals("tank", alerts.get(0).getTankId(), "Wrong tank in the alert");
+            assertEquals(OverflowAlert.Kind.OVERFLOW, alerts.get(0).getKind(), "Wrong kind of alert");
+            assertEquals(crossing, alerts.get(0).getCrossingTime(), "Wrong crossing time in the alert");
+
+            model.setGasOutflow(20.0);
+            model.setOverflowPredictor(null, null);
+            assertEquals(0, predictor.getPendingCount(), "Unregistered tank should have no alert");
+        } finally {
+            model.close();
+        }
+    }
+}
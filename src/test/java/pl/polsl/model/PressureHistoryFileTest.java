@@ -0,0 +1,110 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PressureHistoryFile class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureHistoryFileTest {
+
+    /**
+     * Tests that appended samples survive reopening and any range can be read back.
+     *
+     * @throws IOException If the file could not be used.
+     */
+    @Test
+    public void testAppendAndReadRange() throws IOException
+    {
+        Path path = this.createTempFile(".bin");
+        try (PressureHistoryFile file = new PressureHistoryFile(path)) {
+            file.append(new long[]{10, 20, 30}, new double[]{1.0, 2.0, 3.0}, 0, 3);
+            file.append(40, 4.0);
+        }
+        try (PressureHistoryFile file = new PressureHistoryFile(path)) {
+            assertEquals(4, file.size(), "Wrong number of samples after reopening");
+            long[] times = new long[2];
+            double[] pressures = new double[2];
+            file.read(1, times, pressures, 2);
+            assertArrayEquals(new long[]{20, 30}, times, "Wrong times of the range");
+            assertArrayEquals(new double[]{2.0, 3.0}, pressures, "Wrong pressures of the range");
+            assertThrows(IndexOutOfBoundsException.class, () -> file.read(3, null, new double[2], 2),
+                    "Reading past the end should fail");
+        }
+    }
+
+    /**
+     * Tests that a record written without updating the count is discarded on open.
+     *
+     * @throws IOException If the file could not be used.
+     */
+    @Test
+    public void testDiscardsTornAppend() throws IOException
+    {
+        Path path = this.createTempFile(".bin");
+        try (PressureHistoryFile file = new PressureHistoryFile(path)) {
+            file.append(10, 1.0);
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            raw.seek(raw.length());
+            raw.write(new byte[PressureHistoryFile.RECORD_SIZE - 3]);
+        }
+        try (PressureHistoryFile file = new PressureHistoryFile(path)) {
+            assertEquals(1, file.size(), "Torn record should be ignored");
+            file.append(20, 2.0);
+            double[] pressures = new double[2];
+            file.read(0, null, pressures, 2);
+            assertArrayEquals(new double[]{1.0, 2.0}, pressures, "Append after a torn record is misplaced");
+        }
+    }
+
+    /**
+     * Tests converting a text history and reading it into the Model.
+     *
+     * @throws IOException If a file could not be used.
+     */
+    @Test
+    public void testConvertTextHistory() throws IOException
+    {
+        Path text = this.createTempFile(".txt");
+        Path binary = this.createTempFile(".bin");
+        Files.write(text, Arrays.asList("1.5", "2.5", "3.5"), StandardCharsets.UTF_8);
+        assertEquals(3, PressureHistoryConverter.convert(text, binary), "Wrong number of converted samples");
+
+        Model model = new Model(2, null);
+        try {
+            model.readPressureHistoryBinary(binary.toString());
+            assertEquals(Arrays.asList(2.5, 3.5), model.getPressureHistory(), "Only the newest samples should be read");
+        } finally {
+            model.close();
+        }
+    }
+
+    /**
+     * Creates a temporary file deleted when the tests end.
+     *
+     * @param suffix Suffix of the file name.
+     * @return Path of the file.
+     * @throws IOException If the file could not be created.
+     */
+    private Path createTempFile(String suffix) throws IOException
+    {
+        File file = File.createTempFile("pressureHistoryFile", suffix);
+        file.deleteOnExit();
+        return file.toPath();
+    }
+}
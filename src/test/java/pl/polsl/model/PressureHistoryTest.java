@@ -0,0 +1,131 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PressureHistory class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureHistoryTest {
+
+    /**
+     * Tests that the oldest samples are evicted when capacity is exceeded.
+     */
+    @Test
+    public void testEvictsOldestSamples()
+    {
+        PressureHistory history = new PressureHistory(3);
+        history.addAll(new double[]{1.0, 2.0, 3.0, 4.0, 5.0});
+        assertEquals(3, history.size(), "History should not grow above its capacity");
+        assertArrayEquals(new double[]{3.0, 4.0, 5.0}, history.toArray(), "Oldest samples should be evicted first");
+        assertEquals(Arrays.asList(3.0, 4.0, 5.0), history.asList(), "List view doesn't match stored samples");
+    }
+
+    /**
+     * Tests that evicted samples are appended to the spill file.
+     *
+     * @throws IOException If the spill file could not be read.
+     */
+    @Test
+    public void testSpillsEvictedSamples() throws IOException
+    {
+        File spillFile = File.createTempFile("pressureSpill", ".txt");
+        spillFile.deleteOnExit();
+        PressureHistory history = new PressureHistory(2, spillFile.getPath());
+        history.addAll(new double[]{1.0, 2.0, 3.0, 4.0});
+        history.flushSpill();
+        List<String> lines = Files.readAllLines(spillFile.toPath());
+        assertEquals(Arrays.asList("1.0", "2.0"), lines, "Evicted samples were not written to the spill file");
+    }
+
+    /**
+     * Tests that a spill file that can't be written doesn't fail or corrupt appends:
+     * the ring and statistics stay consistent and the dropped samples are counted.
+     *
+     * @throws IOException If the temporary directory can't be created.
+     */
+    @Test
+    public void testUnwritableSpillFileDropsSamples() throws IOException
+    {
+        File directory = Files.createTempDirectory("pressureSpill").toFile();
+        directory.deleteOnExit();
+        PressureHistory history = new PressureHistory(2, directory.getPath());
+        for (int i = 0; i < 2 * 1024 + 3; i++) {
+            history.add(i, i);
+        }
+        assertEquals(2 * 1024, history.getLostSpillCount(), "Every full chunk that failed should be counted");
+        assertArrayEquals(new double[]{2 * 1024 + 1, 2 * 1024 + 2}, history.toArray(), "Ring doesn't hold the newest samples");
+        assertEquals(2 * 1024 + 3, history.getSequence(), "Every append should get a sequence number");
+        assertEquals(2 * 1024 + 2, history.getStatistics().getWindowMax(), 1e-9, "Statistics don't match the samples");
+    }
+
+    /**
+     * Tests the binary search over sample times after the ring wraps and after an out-of-order sample.
+     */
+    @Test
+    public void testTimeIndex()
+    {
+        PressureHistory history = new PressureHistory(4);
+        history.addAll(new long[]{10, 20, 30, 40, 50}, new double[]{1.0, 2.0, 3.0, 4.0, 5.0});
+        history.add(35, 3.5);
+        assertArrayEquals(new long[]{30, 35, 40, 50}, history.timesToArray(), "Times should stay sorted");
+        assertArrayEquals(new double[]{3.0, 3.5, 4.0, 5.0}, history.toArray(), "Samples should move with their times");
+        assertEquals(1, history.firstIndexAt(31), "Wrong first sample at a time between samples");
+        assertEquals(2, history.firstIndexAt(40), "Wrong first sample at an exact time");
+        assertEquals(4, history.firstIndexAt(60), "Time after every sample should give the size");
+        assertEquals(2, history.countBetween(35, 50), "Wrong number of samples in the range");
+    }
+
+    /**
+     * Tests that appends get consecutive sequence numbers and only other changes count as rewrites.
+     */
+    @Test
+    public void testSequenceAndRewrites()
+    {
+        PressureHistory history = new PressureHistory(3);
+        history.addAll(new long[]{10, 20, 30, 40}, new double[]{1.0, 2.0, 3.0, 4.0});
+        assertEquals(4, history.getSequence(), "Every append should take a sequence number");
+        assertEquals(0, history.getRewriteCount(), "Appends in time order aren't rewrites");
+        assertArrayEquals(new double[]{3.0, 4.0}, history.toArraySince(2), "Wrong samples since a sequence number");
+        assertArrayEquals(new double[]{2.0, 3.0, 4.0}, history.toArraySince(0), "Evicted samples can't be returned");
+        assertEquals(0, history.toArraySince(4).length, "No sample should be newer than the sequence");
+
+        history.add(35, 3.5);
+        assertEquals(1, history.getRewriteCount(), "Sample inserted before a later one is a rewrite");
+        history.clear();
+        assertEquals(2, history.getRewriteCount(), "Clearing is a rewrite");
+    }
+
+    /**
+     * Tests that the window statistics expire samples in their stored order after a sample
+     * arrived out of time order.
+     */
+    @Test
+    public void testWindowAfterReordering()
+    {
+        PressureHistory history = new PressureHistory(3);
+        history.add(1000L, 5.0);
+        history.add(3000L, 1.0);
+        history.add(2000L, 9.0);
+        history.add(4000L, 2.0);
+        assertEquals(9.0, history.getStatistics().getWindowMax(), "Reordered sample should still be in the window");
+        history.add(5000L, 3.0);
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0}, history.toArray(), "Wrong samples after eviction");
+        assertEquals(3.0, history.getStatistics().getWindowMax(), "Evicted sample is still the window maximum");
+        assertEquals(1.0, history.getStatistics().getWindowMin(), "Stored sample dropped from the window minimum");
+        assertEquals(2.0, history.getStatistics().getWindowAverage(), "Wrong window average");
+        assertEquals(5, history.getStatistics().getCount(), "All-time count shouldn't change when rebuilding");
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PressureSolver class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureSolverTest {
+
+    /**
+     * Tests the integrators against the exact solution of a tank whose outflow grows with pressure,
+     * dp/dt = 10 - 0.5 p, over a gap much longer than one sub-step.
+     *
+     * @param name Name of the integrator.
+     * @param tolerance Allowed absolute error in hPa.
+     */
+    @ParameterizedTest
+    @CsvSource({"euler, 1e-1", "rk4, 1e-6", "adaptive, 1e-6"})
+    public void testAccuracy(String name, double tolerance)
+    {
+        PressureSolver solver = new PressureSolver(PressureIntegrator.forName(name), 0.1);
+        IntegrationResult result = solver.solve((time, pressure) -> 10 - 0.5 * pressure, 100, 30, Double.MAX_VALUE);
+        double exact = 20 + 80 * Math.exp(-0.5 * 30);
+        assertEquals(exact, result.getPressure(), tolerance, name + " is not accurate enough");
+        assertFalse(result.hasCrossed(), "Unreachable threshold was crossed");
+    }
+
+    /**
+     * Tests that the crossing of the threshold is found inside a long sub-step, not at its end.
+     */
+    @Test
+    public void testCrossingTime()
+    {
+        PressureSolver solver = new PressureSolver(new EulerIntegrator(), 60);
+        IntegrationResult result = solver.solve((time, pressure) -> 2, 100, 120, 150);
+        assertEquals(340, result.getPressure(), 1e-9, "Wrong final pressure");
+        assertEquals(25, result.getCrossingTimeMin(), 1.0 / 60000, "Wrong crossing time");
+    }
+
+    /**
+     * Tests that an interval needing more than the maximum number of sub-steps stays bounded:
+     * any rate is integrated in longer sub-steps, and constant flows use the exact closed form.
+     */
+    @Test
+    public void testLongGapIsBounded()
+    {
+        PressureSolver solver = new PressureSolver(new EulerIntegrator(), 1.0);
+        double years = 1e9;
+        IntegrationResult capped = solver.solve((time, pressure) -> 2, 100, years, Double.MAX_VALUE);
+        assertEquals(100 + 2 * years, capped.getPressure(), 1e-3, "Wrong pressure with capped sub-steps");
+
+        IntegrationResult closed = solver.solveConstantFlows(3, 1, 2, 100, years, 1e6);
+        assertEquals(100 + years, closed.getPressure(), 1e-3, "Wrong closed-form pressure");
+        assertEquals(1e6 - 100, closed.getCrossingTimeMin(), 1e-9, "Wrong closed-form crossing time");
+
+        IntegrationResult draining = solver.solveConstantFlows(0, 1, 2, 100, years, 1e6);
+        assertEquals(0, draining.getPressure(), "Pressure should stop at 0");
+        assertFalse(draining.hasCrossed(), "Draining tank shouldn't cross the threshold");
+
+        IntegrationResult shortGap = solver.solveConstantFlows(3, 1, 2, 100, 120, 150);
+        assertEquals(220, shortGap.getPressure(), 1e-9, "Wrong pressure through the integrator");
+        assertEquals(50, shortGap.getCrossingTimeMin(), 1.0 / 60000, "Wrong crossing time through the integrator");
+    }
+
+    /**
+     * Tests that the Model reports the simulated time of the crossing after a long idle gap.
+     */
+    @Test
+    public void testModelReportsCrossingTime()
+    {
+        Model model = new Model();
+        try {
+            long start = model.getState().getTime();
+            double rate = 100.0;
+            model.setGasInflow(rate * model.getGasConductivityFactor());
+            double remaining = model.getMaxAllowedPressure() - model.getPressure();
+            PressureOverflowException exception = assertThrows(PressureOverflowException.class,
+                    () -> model.step(3600000L * 24), "Overflow should be reported");
+            long expected = start + Math.round(remaining / rate * 60000);
+            assertEquals(expected, exception.getCrossingTime(), 1, "Wrong crossing time");
+        } finally {
+            model.close();
+        }
+    }
+}
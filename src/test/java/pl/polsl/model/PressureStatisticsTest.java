@@ -0,0 +1,50 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PressureStatistics class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class PressureStatisticsTest {
+
+    /**
+     * Tests that window statistics follow the samples kept in a full history
+     * while all-time statistics keep every sample.
+     */
+    @Test
+    public void testSlidingWindow()
+    {
+        PressureHistory history = new PressureHistory(3);
+        history.addAll(new double[]{5.0, 1.0, 4.0, 2.0, 3.0});
+        PressureStatistics statistics = history.getStatistics();
+
+        assertEquals(4.0, statistics.getWindowMax(), "Window max should ignore evicted samples");
+        assertEquals(2.0, statistics.getWindowMin(), "Window min should ignore evicted samples");
+        assertEquals(3.0, statistics.getWindowAverage(), 1e-12, "Window average should ignore evicted samples");
+        assertEquals(5.0, statistics.getMax(), "All-time max should include evicted samples");
+        assertEquals(1.0, statistics.getMin(), "All-time min should include evicted samples");
+        assertEquals(2.0, statistics.getVariance(), 1e-12, "Wrong variance of (5,1,4,2,3)");
+    }
+
+    /**
+     * Tests that the compensated sum doesn't lose small values added to a large one.
+     */
+    @Test
+    public void testCompensatedSum()
+    {
+        PressureStatistics statistics = new PressureStatistics(16);
+        statistics.add(1e16);
+        for (int i = 0; i < 10; i++) {
+            statistics.add(1.0);
+        }
+        assertEquals(1e16 + 10, statistics.getSum(), "Sum lost precision");
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SimulationEngine class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class SimulationEngineTest {
+
+    /**
+     * Tests that a parallel tick over many tanks gives the same pressures as the scalar kernel
+     * and counts overflowing tanks.
+     */
+    @Test
+    public void testParallelTickMatchesKernel()
+    {
+        int tanks = 20000;
+        SimulationEngine engine = new SimulationEngine();
+        for (int i = 0; i < tanks; i++) {
+            Tank tank = new Tank(5 + i % 7, 280 + i % 30, 1000, 1010);
+            tank.setGasInflow((double) (i % 11));
+            tank.setGasOutflow((double) (i % 5));
+            engine.addTank("tank" + i, tank);
+        }
+
+        int overflows = engine.tick(0.01);
+
+        int expectedOverflows = 0;
+        for (int i = 0; i < tanks; i++) {
+            double expected = PressureKernel.nextPressure(1000, i % 11, i % 5,
+                    PressureKernel.gasConductivityFactor(5 + i % 7, 280 + i % 30), 0.01);
+            assertEquals(expected, engine.getPressure("tank" + i), "Wrong pressure of tank" + i);
+            if (expected > 1010) {
+                expectedOverflows++;
+            }
+        }
+        assertEquals(expectedOverflows, overflows, "Wrong number of overflowing tanks");
+        assertEquals(expectedOverflows, engine.getOverflowingTanks().size(), "Wrong list of overflowing tanks");
+    }
+
+    /**
+     * Tests that removing a tank keeps the other tanks addressable by ID.
+     */
+    @Test
+    public void testRemoveTank()
+    {
+        SimulationEngine engine = new SimulationEngine();
+        engine.addTank("a", new Tank(5, 290, 1, 10));
+        engine.addTank("b", new Tank(5, 290, 2, 10));
+        engine.addTank("c", new Tank(5, 290, 3, 10));
+        assertTrue(engine.removeTank("a"), "Registered tank should be removed");
+        assertFalse(engine.contains("a"), "Removed tank is still registered");
+        assertEquals(2, engine.size(), "Wrong number of tanks after removal");
+        assertEquals(3, engine.getPressure("c"), "Moved tank lost its state");
+        assertEquals(2, engine.getPressure("b"), "Other tank lost its state");
+    }
+}
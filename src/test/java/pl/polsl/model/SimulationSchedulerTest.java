@@ -0,0 +1,54 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SimulationScheduler class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class SimulationSchedulerTest {
+
+    /**
+     * Tests that every tick advances simulated time by exactly one tick length
+     * and publishes the new state to listeners.
+     *
+     * @throws InterruptedException If interrupted while waiting for ticks.
+     */
+    @Test
+    public void testFixedStepTicks() throws InterruptedException
+    {
+        Model model = new Model();
+        model.setGasInflow(1.0);
+        List<TankState> states = new CopyOnWriteArrayList<>();
+        CountDownLatch ticks = new CountDownLatch(5);
+        try (SimulationScheduler scheduler = new SimulationScheduler(model, 10)) {
+            scheduler.addListener(state -> {
+                states.add(state);
+                ticks.countDown();
+            });
+            scheduler.start();
+            assertTrue(ticks.await(5, TimeUnit.SECONDS), "Scheduler didn't publish five ticks");
+            scheduler.close();
+
+            double change = (1.0 / model.getGasConductivityFactor()) * 10 / 60000.0;
+            for (int i = 1; i < states.size(); i++) {
+                assertEquals(10, states.get(i).getTime() - states.get(i - 1).getTime(), "Tick didn't advance time by a fixed step");
+                assertEquals(states.get(i - 1).getPressure() + change, states.get(i).getPressure(), 1e-9, "Wrong pressure after a tick");
+            }
+            assertEquals(scheduler.getTickCount(), model.getPressureHistory().size(), "Every tick should record a sample");
+        } finally {
+            model.close();
+        }
+    }
+}
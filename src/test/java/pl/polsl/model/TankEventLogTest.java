@@ -0,0 +1,126 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import pl.polsl.metrics.MetricsRegistry;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TankEventLog class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class TankEventLogTest {
+
+    /** Directory of the event log */
+    @TempDir
+    Path directory;
+
+    /** Directory the log files are copied to, as left by a crash */
+    @TempDir
+    Path crashed;
+
+    /**
+     * Tests that a Model recording into the log resumes from its state after a clean restart.
+     *
+     * @throws IOException If the log can't be opened.
+     */
+    @Test
+    public void testRecoverAfterClose() throws IOException
+    {
+        Model model = new Model(16, null);
+        try {
+            try (TankEventLog log = new TankEventLog(this.directory, new MetricsRegistry())) {
+                assertNull(log.getRecoveredState(), "Empty directory shouldn't recover a state");
+                model.setEventLog(log);
+                model.setGasInflow(4.0);
+                model.setGasOutflow(1.5);
+                model.setPressure(2000.0);
+                assertEquals(4, log.getAppendedRecords(), "Every change should be appended");
+            }
+        } finally {
+            model.close();
+        }
+
+        Model restarted = new Model(16, null);
+        try (TankEventLog log = new TankEventLog(this.directory, new MetricsRegistry())) {
+            assertEquals(0, log.getReplayedRecords(), "Clean close should leave everything in the snapshot");
+            restarted.setEventLog(log);
+            assertEquals(4.0, restarted.getGasInflow(), "Wrong recovered inflow");
+            assertEquals(1.5, restarted.getGasOutflow(), "Wrong recovered outflow");
+            assertEquals(2000.0, restarted.getPressure(), "Wrong recovered pressure");
+        } finally {
+            restarted.close();
+        }
+    }
+
+    /**
+     * Tests that after a crash the snapshot is loaded, only the tail after it is replayed
+     * and a torn record at the end is ignored.
+     *
+     * @throws IOException If the log can't be opened or copied.
+     * @throws InterruptedException If waiting for the writer is interrupted.
+     */
+    @Test
+    public void testRecoverAfterCrash() throws IOException, InterruptedException
+    {
+        TankState state = new TankState(1.0, 0.0, 1000.0, 0);
+        try (TankEventLog log = new TankEventLog(this.directory, 5, new MetricsRegistry())) {
+            for (int i = 1; i <= 13; i++) {
+                state = state.withPressure(1000.0 + i, i * 1000L);
+                log.append(TankEventLog.Type.UPDATE, state);
+                log.sync();
+            }
+            assertTrue(log.getSyncCount() >= 1, "Records should be forced to disk");
+            assertTrue(log.getSnapshotCount() >= 2, "Snapshots should be written every interval");
+            Path last = null;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+                for (Path file : files) {
+                    if (!file.getFileName().toString().equals("tank.lock")) {
+                        Path copy = Files.copy(file, this.crashed.resolve(file.getFileName()));
+                        if (file.getFileName().toString().endsWith(".log")
+                                && (last == null || copy.compareTo(last) > 0)) {
+                            last = copy;
+                        }
+                    }
+                }
+            }
+            assertNotNull(last, "Log should have a segment");
+            Files.write(last, new byte[TankEventLog.RECORD_SIZE - 3], StandardOpenOption.APPEND);
+        }
+
+        try (TankEventLog log = new TankEventLog(this.crashed, 5, new MetricsRegistry())) {
+            TankState recovered = log.getRecoveredState();
+            assertNotNull(recovered, "State should be recovered");
+            assertEquals(1013.0, recovered.getPressure(), "Newest pressure should be recovered");
+            assertEquals(13000L, recovered.getTime(), "Newest time should be recovered");
+            assertEquals(1.0, recovered.getGasInflow(), "Inflow should be recovered");
+            assertTrue(log.getReplayedRecords() < 5, "Only the tail after the snapshot should be replayed");
+        }
+    }
+
+    /**
+     * Tests that a directory can't be used by two logs at once.
+     *
+     * @throws IOException If the first log can't be opened.
+     */
+    @Test
+    public void testDirectoryInUse() throws IOException
+    {
+        try (TankEventLog log = new TankEventLog(this.directory, new MetricsRegistry())) {
+            assertThrows(IOException.class, () -> new TankEventLog(this.directory, new MetricsRegistry()),
+                    "Second log on the same directory should fail");
+        }
+        new TankEventLog(this.directory, new MetricsRegistry()).close();
+    }
+}
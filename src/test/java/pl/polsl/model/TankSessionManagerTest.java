@@ -0,0 +1,240 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TankSessionManager class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class TankSessionManagerTest {
+
+    /** Directory of the snapshot files */
+    @TempDir
+    Path snapshots;
+
+    /** Model whose resources the tanks share */
+    private Model shared;
+
+    /**
+     * Creates the shared Model.
+     */
+    @BeforeEach
+    public void setUp()
+    {
+        this.shared = new Model();
+    }
+
+    /**
+     * Closes the shared Model.
+     */
+    @AfterEach
+    public void tearDown()
+    {
+        this.shared.close();
+    }
+
+    /**
+     * Tests that tanks of different ids are independent and the same id gives the same tank.
+     *
+     * @throws IOException If the snapshot directory can't be created.
+     */
+    @Test
+    public void testTanksAreSeparate() throws IOException
+    {
+        try (TankSessionManager manager = new TankSessionManager(this.shared, 10, 60000, this.snapshots, 100)) {
+            Model first = manager.get("first");
+            Model second = manager.get("second");
+            first.setGasInflow(5.0);
+            second.setGasInflow(7.0);
+            assertSame(first, manager.get("first"), "Same id should give the same tank");
+            assertEquals(5.0, first.getGasInflow(), "Tank was changed by another client");
+            assertEquals(7.0, second.getGasInflow(), "Tank was changed by another client");
+            assertEquals(0.0, this.shared.getGasInflow(), "Shared Model was changed by a client");
+        }
+    }
+
+    /**
+     * Tests that the least recently used tank is evicted to a snapshot and restored with its state and history.
+     *
+     * @throws IOException If the snapshot directory can't be created.
+     */
+    @Test
+    public void testLeastRecentlyUsedEvictedAndRestored() throws IOException
+    {
+        try (TankSessionManager manager = new TankSessionManager(this.shared, 2, 60000, this.snapshots, 100)) {
+            Model old = manager.get("old");
+            old.setGasInflow(3.0);
+            old.setGasOutflow(1.0);
+            old.setPressure(1500.0);
+            old.getPressureHistoryStore().add(1000L, 1400.0);
+            old.getPressureHistoryStore().add(2000L, 1500.0);
+            manager.get("recent");
+            manager.get("recent");
+            manager.get("new");
+
+            assertEquals(2, manager.size(), "Map should stay within its bound");
+            assertEquals(1, manager.getEvictions(), "Exactly one tank should be evicted");
+            assertTrue(Files.exists(this.snapshots.resolve("old.tank")), "Evicted tank wasn't snapshotted");
+
+            Model restored = manager.get("old");
+            assertNotSame(old, restored, "Evicted tank should be a new instance");
+            assertEquals(1, manager.getRestores(), "Tank wasn't restored from its snapshot");
+            assertFalse(Files.exists(this.snapshots.resolve("old.tank")), "Snapshot should be removed after restoring");
+            assertEquals(3.0, restored.getGasInflow(), "Wrong restored inflow");
+            assertEquals(1.0, restored.getGasOutflow(), "Wrong restored outflow");
+            assertEquals(1500.0, restored.getPressure(), "Wrong restored pressure");
+            assertArrayEquals(new double[]{1400.0, 1500.0}, restored.getPressureHistoryStore().toArray(),
+                    "Wrong restored history");
+            assertArrayEquals(new long[]{1000L, 2000L}, restored.getPressureHistoryStore().timesToArray(),
+                    "Wrong restored history times");
+        }
+    }
+
+    /**
+     * Tests that only tanks idle for the timeout are evicted, and closing snapshots the rest.
+     *
+     * @throws IOException If the snapshot directory can't be created.
+     */
+    @Test
+    public void testIdleEvictionAndClose() throws IOException
+    {
+        TankSessionManager manager = new TankSessionManager(this.shared, 10, 60000, this.snapshots, 100);
+        manager.get("idle").setGasInflow(2.0);
+        long now = System.currentTimeMillis();
+        assertEquals(0, manager.evictIdle(now), "Recently used tank shouldn't be evicted");
+        assertEquals(1, manager.evictIdle(now + 60000), "Idle tank should be evicted");
+        assertEquals(0, manager.size(), "No tank should remain in memory");
+
+        manager.get("active").setGasOutflow(4.0);
+        manager.close();
+        assertTrue(Files.exists(this.snapshots.resolve("active.tank")), "Closing should snapshot every tank");
+
+        try (TankSessionManager reopened = new TankSessionManager(this.shared, 10, 60000, this.snapshots, 100)) {
+            assertEquals(2.0, reopened.get("idle").getGasInflow(), "Idle tank lost its state");
+            assertEquals(4.0, reopened.get("active").getGasOutflow(), "Tank lost its state across restart");
+        }
+    }
+
+    /**
+     * Tests that concurrent requests for a tank being restored all get the one restored instance.
+     *
+     * @throws Exception If the snapshot directory can't be created or a thread fails.
+     */
+    @Test
+    public void testConcurrentRestoreGivesOneTank() throws Exception
+    {
+        try (TankSessionManager manager = new TankSessionManager(this.shared, 10, 60000, this.snapshots, 100)) {
+            manager.get("busy").setGasInflow(6.0);
+            manager.evictIdle(System.currentTimeMillis() + 60000);
+            ExecutorService threads = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Model>> results = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    results.add(threads.submit(() -> manager.get("busy")));
+                }
+                Model first = results.get(0).get();
+                for (Future<Model> result : results) {
+                    assertSame(first, result.get(), "Every request should get the same restored tank");
+                }
+                assertEquals(6.0, first.getGasInflow(), "Wrong restored inflow");
+                assertEquals(1, manager.getRestores(), "Tank should be restored once");
+            } finally {
+                threads.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Tests that untouched tanks aren't snapshotted, finding a tank never creates one,
+     * and snapshots older than their lifetime are deleted.
+     *
+     * @throws IOException If the snapshot directory can't be created.
+     */
+    @Test
+    public void testUntouchedAndExpiredSnapshots() throws IOException
+    {
+        try (TankSessionManager manager = new TankSessionManager(this.shared, 10, 60000, this.snapshots, 100, 120000)) {
+            assertNull(manager.find("unknown"), "Finding a missing tank shouldn't create it");
+            assertEquals(0, manager.size(), "Finding a missing tank shouldn't keep anything");
+            manager.get("untouched");
+            manager.get("changed").setGasInflow(1.0);
+            manager.evictIdle(System.currentTimeMillis() + 60000);
+            assertFalse(Files.exists(this.snapshots.resolve("untouched.tank")), "Untouched tank shouldn't be snapshotted");
+            assertTrue(Files.exists(this.snapshots.resolve("changed.tank")), "Changed tank should be snapshotted");
+
+            long now = System.currentTimeMillis();
+            assertEquals(0, manager.deleteExpiredSnapshots(now), "Fresh snapshot shouldn't be deleted");
+            assertEquals(1, manager.deleteExpiredSnapshots(now + 120000), "Old snapshot should be deleted");
+            assertFalse(Files.exists(this.snapshots.resolve("changed.tank")), "Expired snapshot still on disk");
+            assertNull(manager.find("changed"), "Tank with an expired snapshot shouldn't be found");
+        }
+    }
+
+    /**
+     * Tests that ids which could escape the snapshot directory are rejected.
+     *
+     * @throws IOException If the snapshot directory can't be created.
+     */
+    @Test
+    public void testInvalidIdRejected() throws IOException
+    {
+        assertFalse(TankSessionManager.isValidId("../etc"), "Path traversal id accepted");
+        assertFalse(TankSessionManager.isValidId(""), "Empty id accepted");
+        assertFalse(TankSessionManager.isValidId(null), "Null id accepted");
+        try (TankSessionManager manager = new TankSessionManager(this.shared, 10, 60000, this.snapshots, 100)) {
+            assertThrows(IllegalArgumentException.class, () -> manager.get("a/b"), "Invalid id should be rejected");
+        }
+    }
+
+    /**
+     * Tests that a tick advances every tank in memory by the tick length through the engine,
+     * counts the tanks above their maximum and leaves evicted tanks alone.
+     *
+     * @throws IOException If the snapshot directory can't be created.
+     */
+    @Test
+    public void testTickAdvancesTanksInMemory() throws IOException
+    {
+        try (TankSessionManager manager = new TankSessionManager(this.shared, 2, 60000, this.snapshots, 100)) {
+            Model filling = manager.get("filling");
+            Model draining = manager.get("draining");
+            filling.setGasInflow(1.0);
+            draining.setPressure(50.0);
+            draining.setGasOutflow(1.0);
+            manager.tick(1000);
+            TankState fillingState = filling.getState();
+            TankState drainingState = draining.getState();
+
+            assertEquals(0, manager.tick(60000), "No tank should overflow");
+            double change = (1.0 / filling.getGasConductivityFactor()) * 1.0;
+            assertEquals(fillingState.getPressure() + change, filling.getPressure(), 1e-9, "Wrong pressure after a tick");
+            assertEquals(fillingState.getTime() + 60000, filling.getState().getTime(), "Tick didn't advance time by its length");
+            assertEquals(Math.max(drainingState.getPressure() - change, 0.0), draining.getPressure(), 1e-9, "Wrong pressure after a tick");
+
+            filling.setPressure(filling.getMaxAllowedPressure());
+            assertEquals(1, manager.tick(60000), "Filled tank should overflow");
+            assertEquals(1, manager.getOverflowCount(), "Overflow wasn't counted");
+
+            manager.get("third");
+            double evictedPressure = filling.getPressure();
+            manager.tick(60000);
+            assertEquals(evictedPressure, filling.getPressure(), "Evicted tank was advanced");
+        }
+    }
+}
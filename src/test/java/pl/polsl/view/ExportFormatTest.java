@@ -0,0 +1,80 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the history export writers
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ExportFormatTest {
+
+    /**
+     * Tests the CSV and JSON Lines rows, including unknown flows.
+     *
+     * @throws IOException If writing fails.
+     */
+    @Test
+    public void testTextFormats() throws IOException
+    {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        HistoryExportWriter writer = ExportFormat.forName("csv").createWriter(csv);
+        writer.writeRow(1, 1013.5, 0, 3, 2.0, Double.NaN);
+        writer.finish();
+        assertEquals("id,pressure,history_time,calculation_id,inflow,outflow\n"
+                + "1,1013.5,1970-01-01T00:00:00Z,3,2.0,\n",
+                new String(csv.toByteArray(), StandardCharsets.UTF_8), "Wrong CSV output");
+
+        ByteArrayOutputStream jsonl = new ByteArrayOutputStream();
+        writer = ExportFormat.forName("JSONL").createWriter(jsonl);
+        writer.writeRow(1, 1013.5, 0, 3, 2.0, Double.NaN);
+        writer.finish();
+        assertEquals("{\"id\":1,\"pressure\":1013.5,\"historyTime\":\"1970-01-01T00:00:00Z\",\"calculationId\":3,"
+                + "\"inflow\":2.0,\"outflow\":null}\n",
+                new String(jsonl.toByteArray(), StandardCharsets.UTF_8), "Wrong JSON Lines output");
+    }
+
+    /**
+     * Tests that the columnar writer splits rows into row groups with contiguous columns.
+     *
+     * @throws IOException If writing or reading fails.
+     */
+    @Test
+    public void testColumnarRowGroups() throws IOException
+    {
+        int rows = ColumnarExportWriter.ROW_GROUP_SIZE + 5;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HistoryExportWriter writer = ExportFormat.COLUMNAR.createWriter(bytes);
+        for (int i = 0; i < rows; i++) {
+            writer.writeRow(i, i * 0.5, i * 1000L, i, 1, 0);
+        }
+        writer.finish();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(ColumnarExportWriter.MAGIC, in.readInt(), "Wrong magic number");
+        assertEquals(ColumnarExportWriter.VERSION, in.readInt(), "Wrong version");
+        assertEquals(ColumnarExportWriter.ROW_GROUP_SIZE, in.readInt(), "First row group should be full");
+        in.skipBytes(ColumnarExportWriter.ROW_GROUP_SIZE * (4 + 8 + 8 + 4 + 8 + 8));
+        assertEquals(5, in.readInt(), "Second row group should hold the rest");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ColumnarExportWriter.ROW_GROUP_SIZE + i, in.readInt(), "Ids should be contiguous");
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals((ColumnarExportWriter.ROW_GROUP_SIZE + i) * 1000L, in.readLong(), "Times should follow the ids");
+        }
+        in.skipBytes(5 * (8 + 4 + 8 + 8));
+        assertEquals(0, in.readInt(), "Missing end marker");
+        assertEquals(rows, in.readLong(), "Wrong total row count");
+    }
+}
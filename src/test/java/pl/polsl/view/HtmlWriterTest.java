@@ -0,0 +1,39 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HtmlWriter class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class HtmlWriterTest {
+
+    /**
+     * Tests that fragments and numbers are written as given and text is escaped and encoded in UTF-8,
+     * also when the output is larger than the buffer.
+     *
+     * @throws IOException If writing failed.
+     */
+    @Test
+    public void testWritesEscapedUtf8() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HtmlWriter out = new HtmlWriter(bytes, 16);
+        out.write(HtmlWriter.fragment("<td>")).write(42).write(HtmlWriter.fragment("|")).write(1013.25)
+                .write(HtmlWriter.fragment("|")).writeText("<b>\"Krzywoń\" & 'co' 😀</b>")
+                .write(HtmlWriter.fragment("</td>"));
+        out.flush();
+        assertEquals("<td>42|1013.25|&lt;b&gt;&quot;Krzywoń&quot; &amp; &#39;co&#39; 😀&lt;/b&gt;</td>",
+                new String(bytes.toByteArray(), StandardCharsets.UTF_8), "Wrong HTML output");
+    }
+}
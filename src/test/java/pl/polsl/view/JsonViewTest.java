@@ -0,0 +1,44 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import org.junit.jupiter.api.*;
+import pl.polsl.model.PressureHistory;
+import pl.polsl.model.TankState;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for JsonView class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class JsonViewTest {
+
+    /**
+     * Tests rendering of the state, where every change produces a new version.
+     */
+    @Test
+    public void testState()
+    {
+        TankState state = new TankState(1.5, 0, 1000, 42).withGasOutflow(2.0);
+        assertEquals("{\"pressure\":1000.0,\"gasInflow\":1.5,\"gasOutflow\":2.0,\"maxAllowedPressure\":5000.0,"
+                + "\"time\":42,\"version\":1}", JsonView.state(state, 5000), "Wrong state JSON");
+    }
+
+    /**
+     * Tests that a history page is cut at the limit and points to the next page.
+     */
+    @Test
+    public void testHistoryPage()
+    {
+        PressureHistory history = new PressureHistory(10);
+        history.addAll(new long[]{1, 2, 3}, new double[]{10, 20, Double.NaN});
+        assertEquals("{\"offset\":1,\"size\":3,\"next\":2,\"samples\":[{\"time\":2,\"pressure\":20.0}]}",
+                JsonView.history(history, 1, 1), "Wrong middle page");
+        assertEquals("{\"offset\":2,\"size\":3,\"next\":null,\"samples\":[{\"time\":3,\"pressure\":null}]}",
+                JsonView.history(history, 2, 5), "Wrong last page");
+    }
+}
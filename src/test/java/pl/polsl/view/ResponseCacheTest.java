@@ -0,0 +1,92 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package pl.polsl.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.*;
+import pl.polsl.model.Model;
+import pl.polsl.model.PressureHistory;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ResponseCache class
+ *
+ * @author Jakub Krzywoń
+ * @version 1.0
+ */
+public class ResponseCacheTest {
+
+    /**
+     * Tests that the cached history table is served unchanged, extended with new samples, follows
+     * evictions and is rebuilt after a rewrite, always matching a fresh rendering.
+     *
+     * @throws IOException If writing failed.
+     */
+    @Test
+    public void testHistoryRenderedIncrementally() throws IOException
+    {
+        Model model = new Model(3, null);
+        try {
+            ResponseCache cache = new ResponseCache();
+            View view = new View(model, cache);
+            PressureHistory history = model.getPressureHistoryStore();
+            history.addAll(new long[]{10, 20}, new double[]{1.0, 2.0});
+
+            assertEquals(expected(1.0, 2.0), render(view), "Wrong first rendering");
+            assertEquals(1, cache.getRebuilds(), "First rendering should build the rows");
+            assertEquals(expected(1.0, 2.0), render(view), "Wrong cached rendering");
+            assertEquals(1, cache.getHits(), "Unchanged history should be served from the cache");
+
+            history.addAll(new long[]{30, 40}, new double[]{3.0, 4.0});
+            assertEquals(expected(2.0, 3.0, 4.0), render(view), "Wrong rendering after appends and an eviction");
+            assertEquals(1, cache.getUpdates(), "Appends should only extend the rows");
+
+            history.add(35, 3.5);
+            assertEquals(expected(3.0, 3.5, 4.0), render(view), "Wrong rendering after an out-of-order sample");
+            assertEquals(2, cache.getRebuilds(), "Out-of-order sample should rebuild the rows");
+
+            for (int i = 0; i < 1000; i++) {
+                history.add(100 + i, i);
+                render(view);
+            }
+            assertEquals(expected(997.0, 998.0, 999.0), render(view), "Wrong rendering after many updates");
+        } finally {
+            model.close();
+        }
+    }
+
+    /**
+     * Renders the history table.
+     *
+     * @param view The View.
+     * @return The HTML.
+     * @throws IOException If writing failed.
+     */
+    private static String render(View view) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HtmlWriter out = new HtmlWriter(bytes);
+        view.showHistory(out);
+        out.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds the expected history table.
+     *
+     * @param values The samples.
+     * @return The HTML.
+     */
+    private static String expected(double... values)
+    {
+        StringBuilder html = new StringBuilder("<table>\n<thead><tr><th>Pressure History</th></tr></thead>\n<tbody>\n");
+        for (double value : values) {
+            html.append("<tr><td>").append(value).append("</td></tr>\n");
+        }
+        return html.append("</tbody>\n</table>\n").toString();
+    }
+}